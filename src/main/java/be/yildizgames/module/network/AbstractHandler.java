@@ -24,12 +24,18 @@
 
 package be.yildizgames.module.network;
 
-import be.yildizgames.module.network.protocol.MessageSeparation;
+import be.yildizgames.module.network.protocol.BinaryCodec;
+import be.yildizgames.module.network.protocol.FrameScanner;
+import be.yildizgames.module.network.protocol.MessageFrame;
 import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.protocol.PayloadCompressor;
 import be.yildizgames.module.network.server.Session;
 
+import java.nio.ByteBuffer;
+
 /**
  * The handler controls the way the network will react to incoming message in its concrete implementation, the abstract part will manage the message construction.
+ * The messages exceeding the rate limit of their session are handled by its rate limiter before being built.
  *
  * @author Grégory Van den Borre
  */
@@ -51,10 +57,58 @@ public abstract class AbstractHandler {
     //@Requires("message != null")
     public void processMessages(final Session session, final String message) {
         LOGGER.log(System.Logger.Level.DEBUG,"Unprocessed network message: {0}", message);
-        String messageWithoutStartChar = message.replace(MessageSeparation.MESSAGE_BEGIN, "");
-        String[] messages = messageWithoutStartChar.split(MessageSeparation.MESSAGE_END);
-        for (String c : messages) {
-            this.messageReceivedImpl(session, new MessageWrapper(c));
+        final long now = System.nanoTime();
+        FrameScanner.scan(message, (source, begin, end) -> this.frameReceived(session, source, begin, end, now));
+    }
+
+    /**
+     * Process a part of the stream received from a session, for each complete message, calling the appropriate logic.
+     * A message split across several reads is kept by the session frame decoder until it is complete.
+     *
+     * @param session Session having received the characters.
+     * @param chunk Characters received.
+     * @throws be.yildizgames.module.network.exceptions.InvalidNetworkMessage If a message is invalid or exceeds the session maximum frame size.
+     */
+    //@Requires("session != null")
+    //@Requires("chunk != null")
+    public void processStream(final Session session, final CharSequence chunk) {
+        final long now = System.nanoTime();
+        session.getFrameDecoder().decode(chunk, (source, begin, end) -> this.frameReceived(session, source, begin, end, now));
+    }
+
+    /**
+     * Process the binary messages, for each complete frame, calling the appropriate logic.
+     * The bytes of an incomplete frame are left in the buffer to be completed by the next read.
+     *
+     * @param session Session having received the message.
+     * @param message Buffer containing the received frames.
+     */
+    //@Requires("session != null")
+    //@Requires("message != null")
+    public void processMessages(final Session session, final ByteBuffer message) {
+        final long now = System.nanoTime();
+        BinaryCodec.decode(message, (command, payload) -> {
+            if (session.admit(command, now)) {
+                this.messageReceivedImpl(session, BinaryCodec.toWrapper(command, payload));
+            }
+        });
+    }
+
+    /**
+     * Build the message for a frame, inflating it with the session compressor if it is compressed, and call the implementation logic if the session rate limit admits it.
+     * The rate limit is checked once the command is parsed, before the content is copied or inflated, with the time the frame was read.
+     * The command of a compressed frame is in clear, so the frames exceeding the limit are never inflated.
+     */
+    private void frameReceived(final Session session, final CharSequence source, final int begin, final int end, final long now) {
+        if (PayloadCompressor.isCompressed(source, begin, end)) {
+            if (session.admit(PayloadCompressor.getCommand(source, begin, end), now)) {
+                this.messageReceivedImpl(session, session.getPayloadCompressor().inflate(source, begin, end));
+            }
+        } else {
+            final MessageFrame frame = new MessageFrame(source, begin, end);
+            if (session.admit(frame.command(), now)) {
+                this.messageReceivedImpl(session, frame.toWrapper());
+            }
         }
     }
 
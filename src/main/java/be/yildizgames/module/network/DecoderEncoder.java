@@ -37,7 +37,7 @@ public enum DecoderEncoder {
     STRING,
 
     /**
-     * Transfer for files using HTTP protocol.
+     * Transfer for files using HTTP protocol, served from the file root of the channel servers, the string messages are used when no file root is set.
      */
     HTTP,
 
@@ -45,5 +45,10 @@ public enum DecoderEncoder {
     /**
      * String messages over a websocket.
      */
-    WEBSOCKET
+    WEBSOCKET,
+
+    /**
+     * Binary messages, prefixed by their length, the command is a varint followed by the raw payload.
+     */
+    BINARY
 }
@@ -27,10 +27,17 @@ package be.yildizgames.module.network.client;
 import be.yildizgames.module.network.client.dummy.DummyClientProvider;
 import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
 import be.yildizgames.module.network.exceptions.NetworkException;
+import be.yildizgames.module.network.protocol.AdmissionNotice;
+import be.yildizgames.module.network.protocol.DeltaDecoder;
+import be.yildizgames.module.network.protocol.FrameScanner;
 import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+import be.yildizgames.module.network.protocol.PayloadCompressor;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.ServiceLoader;
 
 /**
@@ -70,7 +77,20 @@ public abstract class Client implements NetworkClient, ClientCallBack {
      */
     private boolean connecting;
 
-    private final ConnectionRetryStrategy connectionRetryStrategy = ConnectionRetryStrategy.none();
+    /**
+     * Strategy to connect again when the connection failed or was lost, honouring the retry-after hints of the server.
+     */
+    private ConnectionRetryStrategy connectionRetryStrategy = ConnectionRetryStrategy.none();
+
+    /**
+     * Compressor to inflate the compressed messages received from the server, and compress the messages sent once agreed with the server.
+     */
+    private PayloadCompressor payloadCompressor = new PayloadCompressor(PayloadCompressor.DISABLED);
+
+    /**
+     * Decoder rebuilding the delta state messages received from the server.
+     */
+    private DeltaDecoder deltaDecoder = new DeltaDecoder();
 
     /**
      * Url of the host to try to connect.
@@ -100,6 +120,10 @@ public abstract class Client implements NetworkClient, ClientCallBack {
         this.delayedMessage.clear();
         while (!this.messageReceivedList.isEmpty()) {
             final MessageWrapper message = this.messageReceivedList.remove(0);
+            if (AdmissionNotice.isNotice(message)) {
+                this.admissionNoticeReceived(message);
+                continue;
+            }
             for (NetworkListener networkListener : this.networkListenerList) {
                 try {
                     networkListener.parse(message);
@@ -113,6 +137,16 @@ public abstract class Client implements NetworkClient, ClientCallBack {
         }
     }
 
+    /**
+     * Set the strategy to connect again when the connection failed or was lost, no retry is done by default.
+     *
+     * @param strategy Strategy to use.
+     */
+    public final void setConnectionRetryStrategy(final ConnectionRetryStrategy strategy) {
+        Objects.requireNonNull(strategy);
+        this.connectionRetryStrategy = strategy;
+    }
+
     /**
      * Add a listener for a network message.
      *
@@ -139,6 +173,15 @@ public abstract class Client implements NetworkClient, ClientCallBack {
      */
     public abstract void sendMessage(String message);
 
+    /**
+     * Send a binary frame to the server, must be implemented by the clients using the binary codec.
+     *
+     * @param message Buffer containing the frame to send.
+     */
+    public void sendMessage(ByteBuffer message) {
+        throwError("Binary messages are not supported by this client.");
+    }
+
     @Override
     public final void connect(String address, int port) {
         this.address = address;
@@ -159,6 +202,80 @@ public abstract class Client implements NetworkClient, ClientCallBack {
         this.messageReceivedList.add(message);
     }
 
+    /**
+     * Use the compression settings agreed with the server, and notify the handshake completion.
+     *
+     * @param compressionThreshold Minimum number of characters of a payload to be compressed.
+     * @param dictionary Preset dictionary shared with the server, null if none is used.
+     */
+    @Override
+    public final void handShakeComplete(final int compressionThreshold, final byte[] dictionary) {
+        this.payloadCompressor.close();
+        this.payloadCompressor = new PayloadCompressor(compressionThreshold, dictionary);
+        this.handShakeComplete();
+    }
+
+    /**
+     * Build a message to send to the server, compressed if agreed with the server and its payload is large enough.
+     *
+     * @param message Message to build.
+     * @return The message to send.
+     */
+    protected final String buildMessage(final NetworkMessage<?> message) {
+        return this.payloadCompressor.appendTo(message, new StringBuilder()).toString();
+    }
+
+    /**
+     * Replace the decoder rebuilding the delta state messages, to use different limits or be notified when a resynchronization with the server is needed.
+     *
+     * @param deltaDecoder Decoder to use.
+     */
+    public final void setDeltaDecoder(final DeltaDecoder deltaDecoder) {
+        Objects.requireNonNull(deltaDecoder);
+        this.deltaDecoder = deltaDecoder;
+    }
+
+    /**
+     * Called from child with the text received from the server, every message is isolated, inflated if it is compressed or rebuilt if it is a delta, and queued to be processed on the next update.
+     * A delta not matching the last state received is dropped, the delta decoder listener being notified.
+     *
+     * @param chunk Text received from the server.
+     */
+    protected final void processMessages(final CharSequence chunk) {
+        FrameScanner.scan(chunk, (source, begin, end) -> {
+            if (DeltaDecoder.isDelta(source, begin, end)) {
+                final MessageWrapper message = this.deltaDecoder.decode(source, begin, end);
+                if (message != null) {
+                    this.messageReceived(message);
+                }
+            } else {
+                this.messageReceived(this.payloadCompressor.toWrapper(source, begin, end));
+            }
+        });
+    }
+
+    /**
+     * Notify the listeners of the position in the queue of the server, or of the refusal of the connection, in which case the retry strategy waits the time asked by the server.
+     *
+     * @param message Admission notice received.
+     */
+    private void admissionNoticeReceived(final MessageWrapper message) {
+        final long value;
+        try {
+            value = AdmissionNotice.getValue(message);
+        } catch (InvalidNetworkMessage e) {
+            LOGGER.log(System.Logger.Level.ERROR,"Invalid message", e);
+            return;
+        }
+        if (message.command == AdmissionNotice.QUEUED) {
+            this.networkListenerList.forEach(l -> l.queued(value));
+        } else {
+            LOGGER.log(System.Logger.Level.WARNING, "Connection refused by server, retry after {0} ms.", value);
+            this.connectionRetryStrategy.retryAfter(value);
+            this.networkListenerList.forEach(l -> l.refused(value));
+        }
+    }
+
     /**
      * Called from child when connected to the server, it will notify the listeners.
      */
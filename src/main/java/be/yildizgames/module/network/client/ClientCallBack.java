@@ -24,8 +24,11 @@
 
 package be.yildizgames.module.network.client;
 
+import be.yildizgames.module.network.protocol.BinaryCodec;
 import be.yildizgames.module.network.protocol.MessageWrapper;
 
+import java.nio.ByteBuffer;
+
 /**
  * Callback to use to notify about event fired by the engine implementation.
  *
@@ -50,6 +53,16 @@ public interface ClientCallBack {
         // empty default implementation.
     }
 
+    /**
+     * Fired when a handshake is complete and the compression settings have been agreed with the server.
+     *
+     * @param compressionThreshold Minimum number of characters of a payload to be compressed.
+     * @param dictionary Preset dictionary shared with the server, null if none is used.
+     */
+    default void handShakeComplete(int compressionThreshold, byte[] dictionary) {
+        this.handShakeComplete();
+    }
+
     /**
      * Fired when a message is received from the server/
      *
@@ -57,4 +70,14 @@ public interface ClientCallBack {
      */
     void messageReceived(MessageWrapper w);
 
+    /**
+     * Fired when binary messages are received from the server, each complete frame is notified as a message.
+     * The bytes of an incomplete frame are left in the buffer to be completed by the next read.
+     *
+     * @param buffer Buffer containing the received frames.
+     */
+    default void messageReceived(ByteBuffer buffer) {
+        BinaryCodec.decode(buffer, (command, payload) -> this.messageReceived(BinaryCodec.toWrapper(command, payload)));
+    }
+
 }
@@ -48,4 +48,20 @@ public interface ConnectionListener {
      */
     default void connectionLost() {
     }
+
+    /**
+     * Fired when the server has queued the connection until it can be served, and then regularly while waiting.
+     *
+     * @param position Position in the queue of the server, the first position being 1.
+     */
+    default void queued(long position) {
+    }
+
+    /**
+     * Fired when the server has refused the connection, before the connection is lost.
+     *
+     * @param retryAfter Time asked by the server to wait before connecting again, in milliseconds.
+     */
+    default void refused(long retryAfter) {
+    }
 }
@@ -40,6 +40,11 @@ public class ConnectionRetryStrategy {
 
     private long lastRunTime;
 
+    /**
+     * Time before which no retry is done, as asked by the server, unit is milliseconds.
+     */
+    private long notBefore;
+
     private ConnectionRetryStrategy(int maxRetries, long interval) {
         this.maxRetries = maxRetries;
         this.interval = interval;
@@ -61,10 +66,19 @@ public class ConnectionRetryStrategy {
         return new ConnectionRetryStrategy(maxRetries, interval);
     }
 
+    /**
+     * Honour a retry-after hint sent by the server when refusing the connection, no retry is done before the delay has elapsed.
+     *
+     * @param delay Time to wait before the next retry, in milliseconds.
+     */
+    public void retryAfter(long delay) {
+        this.notBefore = Math.max(this.notBefore, System.currentTimeMillis() + delay);
+    }
+
     boolean canRetryToConnect() {
         if(this.iteration < this.maxRetries) {
             long now = System.currentTimeMillis();
-            if(now >= this.lastRunTime + this.interval) {
+            if(now >= this.lastRunTime + this.interval && now >= this.notBefore) {
                 this.iteration++;
                 this.lastRunTime = now;
                 return true;
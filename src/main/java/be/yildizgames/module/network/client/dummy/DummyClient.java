@@ -28,6 +28,8 @@ package be.yildizgames.module.network.client.dummy;
 import be.yildizgames.module.network.client.Client;
 import be.yildizgames.module.network.protocol.NetworkMessage;
 
+import java.nio.ByteBuffer;
+
 /**
  * Empty network implementation.
  *
@@ -49,6 +51,11 @@ public final class DummyClient extends Client {
         //Does nothing.
     }
 
+    @Override
+    public void sendMessage(final ByteBuffer message) {
+        //Does nothing.
+    }
+
     @Override
     public void connectImpl(final String address, final int port) {
         //Does nothing.
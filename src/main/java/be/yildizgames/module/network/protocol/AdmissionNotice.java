@@ -0,0 +1,100 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.common.mapping.LongMapper;
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+
+/**
+ * Messages sent by the server to a connection not yet admitted, the commands are reserved and cannot be used by the applications.
+ * A queued connection is told its position in the pending queue, a refused connection is told how long to wait before connecting again, and then closed.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class AdmissionNotice {
+
+    /**
+     * Command of the message giving the position of a connection in the pending queue, the first position being 1.
+     */
+    public static final int QUEUED = Integer.MAX_VALUE - 1;
+
+    /**
+     * Command of the message giving the time to wait before connecting again, in milliseconds.
+     */
+    public static final int RETRY_AFTER = Integer.MAX_VALUE;
+
+    /**
+     * Private to prevent instantiation.
+     */
+    private AdmissionNotice() {
+        super();
+    }
+
+    /**
+     * Build the message giving the position of a connection in the pending queue.
+     *
+     * @param position Position in the queue, the first position being 1.
+     * @return The message to send.
+     */
+    public static NetworkMessage<Long> queued(final long position) {
+        return new NetworkMessage<>(position, LongMapper.getInstance(), QUEUED);
+    }
+
+    /**
+     * Build the message giving the time to wait before connecting again.
+     *
+     * @param delay Time to wait, in milliseconds.
+     * @return The message to send.
+     */
+    public static NetworkMessage<Long> retryAfter(final long delay) {
+        return new NetworkMessage<>(delay, LongMapper.getInstance(), RETRY_AFTER);
+    }
+
+    /**
+     * @param message Message received.
+     * @return <code>true</code> if the message is an admission notice.
+     */
+    public static boolean isNotice(final MessageWrapper message) {
+        return message.command == QUEUED || message.command == RETRY_AFTER;
+    }
+
+    /**
+     * Read the value of an admission notice.
+     *
+     * @param message Admission notice received.
+     * @return The position in the queue or the time to wait in milliseconds, depending on the command.
+     * @throws InvalidNetworkMessage If the message is not a valid admission notice.
+     */
+    public static long getValue(final MessageWrapper message) {
+        if (!isNotice(message)) {
+            throw new InvalidNetworkMessage("Not an admission notice: " + message);
+        }
+        try {
+            return Long.parseLong(message.content);
+        } catch (NumberFormatException e) {
+            throw new InvalidNetworkMessage("Invalid admission notice: " + message);
+        }
+    }
+}
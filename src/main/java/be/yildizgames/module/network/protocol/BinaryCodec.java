@@ -0,0 +1,240 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec for the binary messages.
+ * A binary frame is composed of a varint length prefix, the command as a varint and the raw payload bytes.
+ * The length covers the command and the payload, so a frame can be skipped without decoding it.
+ * Frames are read directly from a ByteBuffer, without any character decoding nor delimiter scanning.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class BinaryCodec {
+
+    /**
+     * Maximum number of bytes used by a varint holding an int.
+     */
+    public static final int MAX_VARINT_SIZE = 5;
+
+    /**
+     * Marker for a varint not completely received.
+     */
+    private static final long INCOMPLETE = -1;
+
+    /**
+     * Private to prevent instantiation.
+     */
+    private BinaryCodec() {
+        super();
+    }
+
+    /**
+     * Decode all the complete frames contained in a buffer.
+     * The buffer position is moved after the last complete frame, the bytes of an incomplete frame are left in the buffer for a later call.
+     *
+     * @param buffer Buffer to read, cannot be null.
+     * @param consumer Consumer to notify for every frame, cannot be null.
+     * @return The number of frames decoded.
+     * @throws InvalidNetworkMessage If a frame is malformed.
+     */
+    //@Requires("buffer != null")
+    //@Requires("consumer != null")
+    public static int decode(final ByteBuffer buffer, final BinaryFrameConsumer consumer) {
+        int frames = 0;
+        while (buffer.hasRemaining()) {
+            final int start = buffer.position();
+            final long length = readVarInt(buffer, buffer.limit());
+            if (length > Integer.MAX_VALUE) {
+                throw new InvalidNetworkMessage("Invalid binary message, length too large.");
+            }
+            if (length == INCOMPLETE || buffer.remaining() < length) {
+                buffer.position(start);
+                break;
+            }
+            final int frameEnd = buffer.position() + (int) length;
+            final long command = readVarInt(buffer, frameEnd);
+            if (command == INCOMPLETE) {
+                throw new InvalidNetworkMessage("Invalid binary message, missing command.");
+            }
+            final ByteBuffer payload = buffer.slice(buffer.position(), frameEnd - buffer.position());
+            buffer.position(frameEnd);
+            consumer.frame((int) command, payload);
+            frames++;
+        }
+        return frames;
+    }
+
+    /**
+     * Encode a network message in a binary frame, the mapped message is used as payload, encoded in UTF-8.
+     *
+     * @param message Message to encode, cannot be null.
+     * @return A buffer containing the frame, ready to be read.
+     */
+    //@Requires("message != null")
+    public static ByteBuffer encode(final NetworkMessage<?> message) {
+        final int payloadSize = Utf8.encodedLength(message.content());
+        final ByteBuffer buffer = ByteBuffer.allocate(frameSize(message.command(), payloadSize));
+        encode(buffer, message, payloadSize);
+        return buffer.flip();
+    }
+
+    /**
+     * Encode a network message in a binary frame written in a target buffer, the mapped message is used as payload, encoded in UTF-8.
+     *
+     * @param target Buffer to write the frame, must have enough remaining bytes.
+     * @param message Message to encode, cannot be null.
+     */
+    //@Requires("target != null")
+    //@Requires("message != null")
+    public static void encode(final ByteBuffer target, final NetworkMessage<?> message) {
+        encode(target, message, Utf8.encodedLength(message.content()));
+    }
+
+    private static void encode(final ByteBuffer target, final NetworkMessage<?> message, final int payloadSize) {
+        writeVarInt(target, varIntSize(message.command()) + payloadSize);
+        writeVarInt(target, message.command());
+        Utf8.encode(message.content(), target);
+    }
+
+    /**
+     * Encode a binary frame in a target buffer.
+     *
+     * @param target Buffer to write the frame, must have at least frameSize remaining bytes.
+     * @param command Command of the message.
+     * @param payload Raw payload, all its remaining bytes are written, its position is not changed.
+     */
+    //@Requires("target != null")
+    //@Requires("payload != null")
+    public static void encode(final ByteBuffer target, final int command, final ByteBuffer payload) {
+        writeVarInt(target, varIntSize(command) + payload.remaining());
+        writeVarInt(target, command);
+        target.put(payload.duplicate());
+    }
+
+    /**
+     * Compute the size of a frame.
+     *
+     * @param command Command of the message.
+     * @param payloadSize Number of bytes in the payload.
+     * @return The number of bytes needed to encode the frame.
+     */
+    public static int frameSize(final int command, final int payloadSize) {
+        final int length = varIntSize(command) + payloadSize;
+        return varIntSize(length) + length;
+    }
+
+    /**
+     * Convert a binary frame into a message wrapper, to be used by the listeners expecting text messages.
+     *
+     * @param command Command of the message.
+     * @param payload Payload encoded in UTF-8.
+     * @return The wrapped message.
+     */
+    public static MessageWrapper toWrapper(final int command, final ByteBuffer payload) {
+        final String content = StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+        return new MessageWrapper(command + MessageSeparation.COMMAND_SEPARATOR + content, command, content);
+    }
+
+    /**
+     * Write an int as an unsigned varint, 7 bits per byte, the most significant bit flags a following byte.
+     *
+     * @param target Buffer to write into.
+     * @param value Value to write.
+     */
+    public static void writeVarInt(final ByteBuffer target, final int value) {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            target.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        target.put((byte) v);
+    }
+
+    /**
+     * @param value Value to encode.
+     * @return The number of bytes needed to encode the value as a varint.
+     */
+    public static int varIntSize(final int value) {
+        if ((value & (~0 << 7)) == 0) {
+            return 1;
+        }
+        if ((value & (~0 << 14)) == 0) {
+            return 2;
+        }
+        if ((value & (~0 << 21)) == 0) {
+            return 3;
+        }
+        if ((value & (~0 << 28)) == 0) {
+            return 4;
+        }
+        return MAX_VARINT_SIZE;
+    }
+
+    /**
+     * Read an unsigned varint.
+     *
+     * @param buffer Buffer to read.
+     * @param limit Position not to read beyond.
+     * @return The value as an unsigned int, or INCOMPLETE if the limit is reached before the end of the varint, in this case the position is undefined.
+     * @throws InvalidNetworkMessage If the varint is longer than 5 bytes.
+     */
+    private static long readVarInt(final ByteBuffer buffer, final int limit) {
+        long result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (buffer.position() >= limit) {
+                return INCOMPLETE;
+            }
+            final byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result & 0xFFFFFFFFL;
+            }
+        }
+        throw new InvalidNetworkMessage("Invalid binary message, varint too long.");
+    }
+
+    /**
+     * Receive the frames decoded by the codec.
+     *
+     * @author Grégory Van den Borre
+     */
+    @FunctionalInterface
+    public interface BinaryFrameConsumer {
+
+        /**
+         * Called for every frame decoded.
+         *
+         * @param command Command of the message.
+         * @param payload Payload of the message, a view on the decoded buffer, only valid during the call.
+         */
+        void frame(int command, ByteBuffer payload);
+    }
+}
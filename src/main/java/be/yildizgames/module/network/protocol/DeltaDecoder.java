@@ -0,0 +1,213 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rebuild the full messages from the keyframes and deltas produced by a DeltaEncoder.
+ * When a delta does not match the baseline kept, because it was evicted or a frame was missed, the message cannot be rebuilt, the resync listener is notified so the sender can be asked for a keyframe.
+ * The number of baselines kept is bounded, the least recently used one is evicted when the limit is reached.
+ * An instance is meant to be used by a single connection and is not thread safe.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class DeltaDecoder {
+
+    /**
+     * Last payload received, by command and key.
+     */
+    private final Map<Long, DeltaEncoder.Baseline> baselines;
+
+    /**
+     * Listener notified when a delta cannot be applied.
+     */
+    private final ResyncListener resyncListener;
+
+    /**
+     * Create a decoder with the default maximum number of baselines, ignoring the resync requests.
+     */
+    public DeltaDecoder() {
+        this(DeltaEncoder.DEFAULT_MAX_ENTRIES, (command, key) -> {});
+    }
+
+    /**
+     * Create a decoder.
+     *
+     * @param maxEntries Maximum number of baselines kept, should be at least the value used by the sender.
+     * @param resyncListener Listener notified when a delta cannot be applied.
+     */
+    public DeltaDecoder(final int maxEntries, final ResyncListener resyncListener) {
+        super();
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive: " + maxEntries);
+        }
+        this.resyncListener = resyncListener;
+        this.baselines = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, DeltaEncoder.Baseline> eldest) {
+                return this.size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Check if a frame is a keyframe or a delta, only the command part is inspected.
+     *
+     * @param source Sequence containing the frame.
+     * @param begin Index of the first character of the frame, inclusive.
+     * @param end Index of the last character of the frame, exclusive.
+     * @return <code>true</code> if the frame was produced by a DeltaEncoder.
+     */
+    public static boolean isDelta(final CharSequence source, final int begin, final int end) {
+        int i = begin;
+        if (i < end && source.charAt(i) == '-') {
+            i++;
+        }
+        while (i < end && Character.isDigit(source.charAt(i))) {
+            i++;
+        }
+        return i > begin && i < end && source.charAt(i) == DeltaEncoder.SEPARATOR;
+    }
+
+    /**
+     * Rebuild the full message from a keyframe or a delta.
+     *
+     * @param source Sequence containing the frame.
+     * @param begin Index of the first character of the frame, inclusive.
+     * @param end Index of the last character of the frame, exclusive.
+     * @return The full message, or null if the delta does not match the baseline kept.
+     * @throws InvalidNetworkMessage If the frame is malformed.
+     */
+    public MessageWrapper decode(final CharSequence source, final int begin, final int end) {
+        final int s1 = indexOf(source, begin, end);
+        final int s2 = indexOf(source, s1 + 1, end);
+        final int s3 = indexOf(source, s2 + 1, end);
+        final int s4 = indexOf(source, s3 + 1, end);
+        if (s4 != s3 + 2) {
+            throw new InvalidNetworkMessage("Invalid delta message type.");
+        }
+        final int command = parse(source, begin, s1);
+        final int key = parse(source, s1 + 1, s2);
+        final int sequence = parse(source, s2 + 1, s3);
+        final char type = source.charAt(s3 + 1);
+        final Long id = DeltaEncoder.id(command, key);
+        final String[] fields;
+        if (type == DeltaEncoder.KEYFRAME) {
+            fields = DeltaEncoder.split(source.subSequence(s4 + 1, end));
+        } else if (type == DeltaEncoder.DELTA) {
+            final DeltaEncoder.Baseline base = this.baselines.get(id);
+            if (base == null || base.sequence + 1 != sequence) {
+                this.baselines.remove(id);
+                this.resyncListener.resync(command, key);
+                return null;
+            }
+            fields = applyDelta(base.fields, DeltaEncoder.split(source.subSequence(s4 + 1, end)));
+        } else {
+            throw new InvalidNetworkMessage("Invalid delta message type: " + type);
+        }
+        final DeltaEncoder.Baseline baseline = new DeltaEncoder.Baseline(fields, sequence, 0);
+        this.baselines.put(id, baseline);
+        final String content = baseline.content();
+        return new MessageWrapper(command + MessageSeparation.COMMAND_SEPARATOR + content, command, content);
+    }
+
+    /**
+     * @return The number of baselines kept.
+     */
+    public int size() {
+        return this.baselines.size();
+    }
+
+    /**
+     * Forget all the baselines.
+     */
+    public void clear() {
+        this.baselines.clear();
+    }
+
+    private static String[] applyDelta(final String[] base, final String[] delta) {
+        if (delta.length % 2 == 0) {
+            throw new InvalidNetworkMessage("Invalid delta message body.");
+        }
+        final int count = parse(delta[0]);
+        final String[] result = new String[count];
+        System.arraycopy(base, 0, result, 0, Math.min(count, base.length));
+        for (int i = 1; i < delta.length; i += 2) {
+            final int index = parse(delta[i]);
+            if (index < 0 || index >= count) {
+                throw new InvalidNetworkMessage("Invalid delta field index: " + index);
+            }
+            result[index] = delta[i + 1];
+        }
+        for (String field : result) {
+            if (field == null) {
+                throw new InvalidNetworkMessage("Missing field in delta message.");
+            }
+        }
+        return result;
+    }
+
+    private static int indexOf(final CharSequence source, final int begin, final int end) {
+        for (int i = begin; i < end; i++) {
+            if (source.charAt(i) == DeltaEncoder.SEPARATOR) {
+                return i;
+            }
+        }
+        throw new InvalidNetworkMessage("Invalid delta message.");
+    }
+
+    private static int parse(final CharSequence source, final int begin, final int end) {
+        try {
+            return Integer.parseInt(source, begin, end, 10);
+        } catch (NumberFormatException e) {
+            throw new InvalidNetworkMessage("Invalid number in delta message.", e);
+        }
+    }
+
+    private static int parse(final String value) {
+        return parse(value, 0, value.length());
+    }
+
+    /**
+     * Notified when a delta cannot be applied and a keyframe is needed.
+     *
+     * @author Grégory Van den Borre
+     */
+    @FunctionalInterface
+    public interface ResyncListener {
+
+        /**
+         * Called when a delta cannot be applied.
+         *
+         * @param command Command of the state.
+         * @param key Key of the state.
+         */
+        void resync(int command, int key);
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encode state messages as the difference with the last message sent for the same command and key.
+ * The payload is compared field by field, fields being separated by the mapping variable separator, only the changed fields are sent.
+ * A full keyframe is sent for the first message of a key, periodically, when the baseline was evicted or invalidated, and when the difference is not smaller than the message.
+ * The frame format is &amp;command!key!sequence!type!body#, the type being K for a keyframe with the full payload as body, or D for a delta with as body the field count followed by the changed field indexes and values.
+ * The number of baselines kept is bounded, the least recently used one is evicted when the limit is reached.
+ * An instance is meant to be used by a single connection and is not thread safe.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class DeltaEncoder {
+
+    /**
+     * Default maximum number of baselines kept.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    /**
+     * Default number of deltas sent between two keyframes.
+     */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 32;
+
+    /**
+     * Estimation of the memory used by a baseline, without its fields.
+     */
+    static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * Estimation of the memory used by a field, without its characters.
+     */
+    static final int FIELD_OVERHEAD = 48;
+
+    static final char SEPARATOR = MessageSeparation.DELTA_SEPARATOR.charAt(0);
+
+    static final char FIELD_SEPARATOR = '@';
+
+    static final char KEYFRAME = 'K';
+
+    static final char DELTA = 'D';
+
+    /**
+     * Number of deltas sent between two keyframes.
+     */
+    private final int keyframeInterval;
+
+    /**
+     * Last payload sent, by command and key.
+     */
+    private final Map<Long, Baseline> baselines;
+
+    /**
+     * Estimation of the memory used by the baselines, in bytes.
+     */
+    private long memoryUsage;
+
+    /**
+     * Number of keyframes sent.
+     */
+    private long keyframes;
+
+    /**
+     * Number of deltas sent.
+     */
+    private long deltas;
+
+    /**
+     * Create an encoder with the default limits.
+     */
+    public DeltaEncoder() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Create an encoder.
+     *
+     * @param maxEntries Maximum number of baselines kept, must be positive.
+     * @param keyframeInterval Number of deltas sent between two keyframes, must be positive.
+     */
+    public DeltaEncoder(final int maxEntries, final int keyframeInterval) {
+        super();
+        if (maxEntries <= 0 || keyframeInterval <= 0) {
+            throw new IllegalArgumentException("Max entries and keyframe interval must be positive.");
+        }
+        this.keyframeInterval = keyframeInterval;
+        this.baselines = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, Baseline> eldest) {
+                if (this.size() > maxEntries) {
+                    DeltaEncoder.this.memoryUsage -= eldest.getValue().memoryUsage();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Append a message to a builder, as a keyframe or as a delta with the last message sent for the same command and key.
+     *
+     * @param message Message to append.
+     * @param key Key identifying the state, for example the entity id.
+     * @param builder Builder to append the frame into.
+     * @return The builder.
+     */
+    public StringBuilder appendTo(final NetworkMessage<?> message, final int key, final StringBuilder builder) {
+        final String content = message.content();
+        final int command = message.command();
+        final String[] fields = split(content);
+        final Long id = id(command, key);
+        final Baseline base = this.baselines.get(id);
+        if (base != null && base.sinceKeyframe < this.keyframeInterval) {
+            final int start = builder.length();
+            appendHeader(builder, command, key, base.sequence + 1, DELTA);
+            final int bodyStart = builder.length();
+            builder.append(fields.length);
+            for (int i = 0; i < fields.length; i++) {
+                if (i >= base.fields.length || !fields[i].equals(base.fields[i])) {
+                    builder.append(FIELD_SEPARATOR).append(i).append(FIELD_SEPARATOR).append(fields[i]);
+                }
+            }
+            if (builder.length() - bodyStart < content.length()) {
+                builder.append(MessageSeparation.MESSAGE_END);
+                this.update(id, base, fields, base.sequence + 1, base.sinceKeyframe + 1);
+                this.deltas++;
+                return builder;
+            }
+            builder.setLength(start);
+        }
+        final int sequence = base == null ? 0 : base.sequence + 1;
+        appendHeader(builder, command, key, sequence, KEYFRAME);
+        builder.append(content).append(MessageSeparation.MESSAGE_END);
+        this.update(id, base, fields, sequence, 0);
+        this.keyframes++;
+        return builder;
+    }
+
+    /**
+     * Forget the baseline of a command and key, the next message will be sent as a keyframe.
+     *
+     * @param command Command of the state.
+     * @param key Key of the state.
+     */
+    public void invalidate(final int command, final int key) {
+        final Baseline removed = this.baselines.remove(id(command, key));
+        if (removed != null) {
+            this.memoryUsage -= removed.memoryUsage();
+        }
+    }
+
+    /**
+     * Forget all the baselines, the next messages will be sent as keyframes.
+     */
+    public void invalidateAll() {
+        this.baselines.clear();
+        this.memoryUsage = 0;
+    }
+
+    /**
+     * @return The number of baselines kept.
+     */
+    public int size() {
+        return this.baselines.size();
+    }
+
+    /**
+     * @return An estimation of the memory used by the baselines, in bytes.
+     */
+    public long getMemoryUsage() {
+        return this.memoryUsage;
+    }
+
+    /**
+     * @return The number of keyframes sent.
+     */
+    public long getKeyframes() {
+        return this.keyframes;
+    }
+
+    /**
+     * @return The number of deltas sent.
+     */
+    public long getDeltas() {
+        return this.deltas;
+    }
+
+    private void update(final Long id, final Baseline previous, final String[] fields, final int sequence, final int sinceKeyframe) {
+        if (previous != null) {
+            this.memoryUsage -= previous.memoryUsage();
+        }
+        final Baseline baseline = new Baseline(fields, sequence, sinceKeyframe);
+        this.memoryUsage += baseline.memoryUsage();
+        this.baselines.put(id, baseline);
+    }
+
+    private static void appendHeader(final StringBuilder builder, final int command, final int key, final int sequence, final char type) {
+        builder.append(MessageSeparation.MESSAGE_BEGIN)
+                .append(command)
+                .append(SEPARATOR)
+                .append(key)
+                .append(SEPARATOR)
+                .append(sequence)
+                .append(SEPARATOR)
+                .append(type)
+                .append(SEPARATOR);
+    }
+
+    /**
+     * Build the identifier of a baseline from its command and key.
+     */
+    static Long id(final int command, final int key) {
+        return ((long) command << 32) | (key & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Split a payload in fields, empty fields are kept.
+     */
+    static String[] split(final CharSequence content) {
+        int count = 1;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == FIELD_SEPARATOR) {
+                count++;
+            }
+        }
+        final String[] result = new String[count];
+        int start = 0;
+        int index = 0;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == FIELD_SEPARATOR) {
+                result[index++] = content.subSequence(start, i).toString();
+                start = i + 1;
+            }
+        }
+        result[index] = content.subSequence(start, content.length()).toString();
+        return result;
+    }
+
+    /**
+     * Last payload known for a command and key.
+     */
+    static final class Baseline {
+
+        /**
+         * Fields of the payload.
+         */
+        final String[] fields;
+
+        /**
+         * Sequence number of the payload.
+         */
+        final int sequence;
+
+        /**
+         * Number of deltas since the last keyframe.
+         */
+        final int sinceKeyframe;
+
+        Baseline(final String[] fields, final int sequence, final int sinceKeyframe) {
+            super();
+            this.fields = fields;
+            this.sequence = sequence;
+            this.sinceKeyframe = sinceKeyframe;
+        }
+
+        /**
+         * @return An estimation of the memory used by this baseline, in bytes.
+         */
+        long memoryUsage() {
+            long result = ENTRY_OVERHEAD;
+            for (String field : this.fields) {
+                result += FIELD_OVERHEAD + 2L * field.length();
+            }
+            return result;
+        }
+
+        /**
+         * Rebuild the payload from the fields.
+         */
+        String content() {
+            return String.join(String.valueOf(FIELD_SEPARATOR), this.fields);
+        }
+    }
+}
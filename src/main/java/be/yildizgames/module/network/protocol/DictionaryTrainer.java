@@ -0,0 +1,176 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Build a preset compression dictionary from sample payloads.
+ * The most frequent segments of the samples are kept, overlapping segments are merged, and the most frequent are placed at the end of the dictionary, where they are the cheapest to reference.
+ * Can be run as a tool on a file recorded from the built messages: DictionaryTrainer input output [size].
+ *
+ * @author Grégory Van den Borre
+ */
+public final class DictionaryTrainer {
+
+    /**
+     * Maximum size of a dictionary, larger dictionaries cannot be referenced by deflate.
+     */
+    public static final int MAX_DICTIONARY_SIZE = 32768;
+
+    /**
+     * Default size of a dictionary.
+     */
+    public static final int DEFAULT_DICTIONARY_SIZE = 16384;
+
+    private static final System.Logger LOGGER = System.getLogger(DictionaryTrainer.class.getName());
+
+    /**
+     * Size of the segments counted in the samples.
+     */
+    private static final int SEGMENT = 8;
+
+    /**
+     * Private to prevent instantiation.
+     */
+    private DictionaryTrainer() {
+        super();
+    }
+
+    /**
+     * Build a dictionary from payload samples.
+     *
+     * @param samples Payloads to learn from.
+     * @param maxSize Maximum size of the dictionary, in bytes.
+     * @return The dictionary, empty if no segment is repeated in the samples.
+     */
+    public static byte[] train(final Collection<String> samples, final int maxSize) {
+        if (maxSize <= 0 || maxSize > MAX_DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Dictionary size must be between 1 and " + MAX_DICTIONARY_SIZE + ": " + maxSize);
+        }
+        final Map<String, Integer> counts = new HashMap<>();
+        for (String sample : samples) {
+            for (int i = 0; i + SEGMENT <= sample.length(); i++) {
+                counts.merge(sample.substring(i, i + SEGMENT), 1, Integer::sum);
+            }
+        }
+        final List<Map.Entry<String, Integer>> candidates = new ArrayList<>();
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            if (e.getValue() > 1) {
+                candidates.add(e);
+            }
+        }
+        candidates.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        final List<StringBuilder> pieces = new ArrayList<>();
+        final StringBuilder all = new StringBuilder();
+        final Set<String> contained = new HashSet<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> candidate : candidates) {
+            final String segment = candidate.getKey();
+            if (contained.contains(segment)) {
+                continue;
+            }
+            final StringBuilder last = pieces.isEmpty() ? null : pieces.get(pieces.size() - 1);
+            final String added;
+            if (last != null && last.length() >= SEGMENT - 1
+                    && last.substring(last.length() - SEGMENT + 1).equals(segment.substring(0, SEGMENT - 1))) {
+                added = segment.substring(SEGMENT - 1);
+                last.append(added);
+            } else {
+                added = segment;
+                pieces.add(new StringBuilder(segment));
+            }
+            all.append(added);
+            for (int i = Math.max(0, all.length() - added.length() - SEGMENT + 1); i + SEGMENT <= all.length(); i++) {
+                contained.add(all.substring(i, i + SEGMENT));
+            }
+            size += added.getBytes(StandardCharsets.UTF_8).length;
+            if (size >= maxSize) {
+                break;
+            }
+        }
+        final StringBuilder result = new StringBuilder(all.length());
+        for (int i = pieces.size() - 1; i >= 0; i--) {
+            result.append(pieces.get(i));
+        }
+        final byte[] bytes = result.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= maxSize) {
+            return bytes;
+        }
+        final byte[] trimmed = new byte[maxSize];
+        System.arraycopy(bytes, bytes.length - maxSize, trimmed, 0, maxSize);
+        return trimmed;
+    }
+
+    /**
+     * Extract the payloads from recorded messages, as built by NetworkMessage.buildMessage, invalid messages are ignored.
+     *
+     * @param recorded Recorded messages, one or several per line.
+     * @return The payloads of the recorded messages.
+     */
+    public static List<String> extractPayloads(final Collection<String> recorded) {
+        final List<String> payloads = new ArrayList<>();
+        for (String line : recorded) {
+            FrameScanner.scan(line, (source, begin, end) -> {
+                try {
+                    payloads.add(new MessageFrame(source, begin, end).contentAsString());
+                } catch (InvalidNetworkMessage e) {
+                    LOGGER.log(System.Logger.Level.DEBUG, "Ignored invalid recorded message.");
+                }
+            });
+        }
+        return payloads;
+    }
+
+    /**
+     * Train a dictionary from a recorded message file and write it in a file.
+     *
+     * @param args Recorded file, dictionary file and optionally the dictionary size.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            LOGGER.log(System.Logger.Level.ERROR, "Usage: DictionaryTrainer recordedFile dictionaryFile [size]");
+            return;
+        }
+        final int size = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DICTIONARY_SIZE;
+        final List<String> payloads = extractPayloads(Files.readAllLines(Path.of(args[0]), StandardCharsets.UTF_8));
+        final byte[] dictionary = train(payloads, size);
+        Files.write(Path.of(args[1]), dictionary);
+        LOGGER.log(System.Logger.Level.INFO, "Dictionary of {0} bytes trained from {1} messages.", dictionary.length, payloads.size());
+    }
+}
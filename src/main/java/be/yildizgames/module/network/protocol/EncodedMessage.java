@@ -0,0 +1,101 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Network message serialized once, to be sent to several sessions.
+ * The instance is immutable and can be shared between threads, the text form is built on creation, the binary form on first use.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class EncodedMessage {
+
+    /**
+     * Source message.
+     */
+    private final NetworkMessage<?> message;
+
+    /**
+     * Message built with the text separators.
+     */
+    private final String text;
+
+    /**
+     * Message encoded as a binary frame, built on first use.
+     */
+    private volatile ByteBuffer binary;
+
+    private EncodedMessage(final NetworkMessage<?> message) {
+        super();
+        this.message = message;
+        this.text = message.buildMessage();
+    }
+
+    /**
+     * Serialize a message.
+     *
+     * @param message Message to serialize, cannot be null.
+     * @return The serialized message.
+     */
+    //@Requires("message != null")
+    public static EncodedMessage of(final NetworkMessage<?> message) {
+        return new EncodedMessage(message);
+    }
+
+    /**
+     * @return The message built with the begin, command and end separators.
+     */
+    public String text() {
+        return this.text;
+    }
+
+    /**
+     * Provide the binary frame, every call return a new read only view on the same bytes, so it can be consumed independently by each session.
+     *
+     * @return A read only buffer containing the binary frame, ready to be read.
+     */
+    public ByteBuffer binary() {
+        ByteBuffer result = this.binary;
+        if (result == null) {
+            result = BinaryCodec.encode(this.message).asReadOnlyBuffer();
+            this.binary = result;
+        }
+        return result.duplicate();
+    }
+
+    /**
+     * @return The command of the message.
+     */
+    public int command() {
+        return this.message.command();
+    }
+
+    @Override
+    public String toString() {
+        return this.text;
+    }
+}
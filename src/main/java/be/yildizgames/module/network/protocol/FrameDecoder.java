@@ -0,0 +1,167 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+
+/**
+ * Incremental decoder for text frames received in several parts.
+ * Only the frames terminated by the end character are emitted, the incomplete frame is kept until the next chunk completes it.
+ * Characters already inspected are never scanned again, so a frame received in many parts is decoded in linear time.
+ * Empty frames are ignored.
+ * An instance keeps the state of one connection and must not be shared.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class FrameDecoder {
+
+    /**
+     * Default maximum number of characters for a frame.
+     */
+    public static final int DEFAULT_MAX_FRAME_SIZE = 1024 * 1024;
+
+    private static final char BEGIN = MessageSeparation.MESSAGE_BEGIN.charAt(0);
+
+    private static final char END = MessageSeparation.MESSAGE_END.charAt(0);
+
+    /**
+     * Maximum number of characters for a frame, to bound the memory kept for an incomplete frame.
+     */
+    private final int maxFrameSize;
+
+    /**
+     * Characters received and not yet emitted.
+     */
+    private final StringBuilder residual = new StringBuilder();
+
+    /**
+     * Index of the first character of the current frame in the residual.
+     */
+    private int frameStart;
+
+    /**
+     * Number of characters of the residual already inspected.
+     */
+    private int scanned;
+
+    /**
+     * <code>true</code> if the current frame contains a begin character after its first content character.
+     */
+    private boolean innerBegin;
+
+    /**
+     * <code>true</code> if the current frame has no content character yet.
+     */
+    private boolean empty = true;
+
+    /**
+     * Create a decoder with the default maximum frame size.
+     */
+    public FrameDecoder() {
+        this(DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * Create a decoder.
+     *
+     * @param maxFrameSize Maximum number of characters for a frame, must be positive.
+     */
+    public FrameDecoder(final int maxFrameSize) {
+        super();
+        if (maxFrameSize <= 0) {
+            throw new IllegalArgumentException("Max frame size must be positive: " + maxFrameSize);
+        }
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Decode a received chunk, the complete frames are notified to the consumer, the incomplete one is kept.
+     *
+     * @param chunk Characters received, cannot be null.
+     * @param consumer Consumer to notify for every complete frame, cannot be null.
+     * @return The number of frames emitted.
+     * @throws InvalidNetworkMessage If a frame exceeds the maximum size, in this case the pending characters are discarded.
+     */
+    //@Requires("chunk != null")
+    //@Requires("consumer != null")
+    public int decode(final CharSequence chunk, final FrameScanner.FrameConsumer consumer) {
+        int frames = 0;
+        this.residual.append(chunk);
+        final int length = this.residual.length();
+        while (this.scanned < length) {
+            final int index = this.scanned++;
+            final char c = this.residual.charAt(index);
+            if (c == END) {
+                final int begin = this.frameStart;
+                final boolean complete = !this.empty;
+                final boolean inner = this.innerBegin;
+                this.frameStart = index + 1;
+                this.innerBegin = false;
+                this.empty = true;
+                if (complete) {
+                    frames++;
+                    FrameScanner.emit(this.residual, begin, index, inner, consumer);
+                }
+            } else if (c == BEGIN) {
+                if (this.empty) {
+                    this.frameStart = index + 1;
+                } else {
+                    this.innerBegin = true;
+                }
+            } else {
+                this.empty = false;
+            }
+            if (this.scanned - this.frameStart > this.maxFrameSize) {
+                this.reset();
+                throw new InvalidNetworkMessage("Frame exceeds maximum size of " + this.maxFrameSize + " characters.");
+            }
+        }
+        if (this.frameStart > 0) {
+            this.residual.delete(0, this.frameStart);
+            this.scanned -= this.frameStart;
+            this.frameStart = 0;
+        }
+        return frames;
+    }
+
+    /**
+     * @return The number of characters kept for the incomplete frame.
+     */
+    public int pending() {
+        return this.residual.length();
+    }
+
+    /**
+     * Discard the pending characters and release the memory kept for them.
+     */
+    public void reset() {
+        this.residual.setLength(0);
+        this.residual.trimToSize();
+        this.frameStart = 0;
+        this.scanned = 0;
+        this.innerBegin = false;
+        this.empty = true;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+/**
+ * Single pass scanner isolating the frames of a received chunk.
+ * A frame is delimited by an optional begin character and by the end character, the scanner only reports the index range of each frame, avoiding any copy of the received chunk.
+ * The result is identical to removing every begin character and splitting on the end character, trailing empty frames are ignored and an empty frame in the middle of the chunk is reported.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class FrameScanner {
+
+    private static final char BEGIN = MessageSeparation.MESSAGE_BEGIN.charAt(0);
+
+    private static final char END = MessageSeparation.MESSAGE_END.charAt(0);
+
+    /**
+     * Private to prevent instantiation.
+     */
+    private FrameScanner() {
+        super();
+    }
+
+    /**
+     * Scan a received chunk and notify the consumer for every frame found.
+     * A chunk without any content nor end character is reported as a single empty frame.
+     *
+     * @param input Chunk to scan, cannot be null.
+     * @param consumer Consumer to notify for every frame, cannot be null.
+     * @return The number of frames reported to the consumer.
+     */
+    //@Requires("input != null")
+    //@Requires("consumer != null")
+    public static int scan(final CharSequence input, final FrameConsumer consumer) {
+        final int length = input.length();
+        int frames = 0;
+        int pendingEmpty = 0;
+        int begin = 0;
+        boolean innerBegin = false;
+        boolean empty = true;
+        boolean endFound = false;
+        for (int i = 0; i < length; i++) {
+            final char c = input.charAt(i);
+            if (c == END) {
+                if (empty) {
+                    pendingEmpty++;
+                } else {
+                    frames += flushEmpty(input, pendingEmpty, consumer);
+                    pendingEmpty = 0;
+                    emit(input, begin, i, innerBegin, consumer);
+                    frames++;
+                }
+                begin = i + 1;
+                innerBegin = false;
+                empty = true;
+                endFound = true;
+            } else if (c == BEGIN) {
+                if (empty) {
+                    begin = i + 1;
+                } else {
+                    innerBegin = true;
+                }
+            } else {
+                empty = false;
+            }
+        }
+        if (!empty) {
+            frames += flushEmpty(input, pendingEmpty, consumer);
+            emit(input, begin, length, innerBegin, consumer);
+            frames++;
+        } else if (!endFound) {
+            consumer.frame(input, 0, 0);
+            frames++;
+        }
+        return frames;
+    }
+
+    /**
+     * Report the empty frames met before a non empty one.
+     */
+    private static int flushEmpty(final CharSequence input, final int count, final FrameConsumer consumer) {
+        for (int i = 0; i < count; i++) {
+            consumer.frame(input, 0, 0);
+        }
+        return count;
+    }
+
+    /**
+     * Report a frame, if it contains a begin character not placed at its start, this character is removed, which requires a copy.
+     */
+    static void emit(final CharSequence input, final int begin, final int end, final boolean innerBegin, final FrameConsumer consumer) {
+        if (innerBegin) {
+            final StringBuilder sb = new StringBuilder(end - begin);
+            for (int i = begin; i < end; i++) {
+                final char c = input.charAt(i);
+                if (c != BEGIN) {
+                    sb.append(c);
+                }
+            }
+            consumer.frame(sb, 0, sb.length());
+        } else {
+            consumer.frame(input, begin, end);
+        }
+    }
+
+    /**
+     * Receive the frames found by the scanner.
+     *
+     * @author Grégory Van den Borre
+     */
+    @FunctionalInterface
+    public interface FrameConsumer {
+
+        /**
+         * Called for every frame found.
+         *
+         * @param source Sequence containing the frame, the reference is only valid during the call.
+         * @param begin Index of the first character of the frame, inclusive.
+         * @param end Index of the last character of the frame, exclusive.
+         */
+        void frame(CharSequence source, int begin, int end);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+
+import java.nio.CharBuffer;
+
+/**
+ * View on a network message, contained in a larger sequence.
+ * The frame only records the offsets of its command and content in the original sequence, the command is parsed once when building the frame.
+ * The content is exposed as a view without copy, and only materialised as a String when requested.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class MessageFrame {
+
+    private static final char SEPARATOR = MessageSeparation.COMMAND_SEPARATOR.charAt(0);
+
+    /**
+     * Marker for a command that cannot be parsed, out of the int range.
+     */
+    private static final long INVALID = Long.MIN_VALUE;
+
+    /**
+     * Sequence containing the frame.
+     */
+    private final CharSequence source;
+
+    /**
+     * Index of the first character of the frame in the source.
+     */
+    private final int begin;
+
+    /**
+     * Index of the last character of the frame in the source, exclusive.
+     */
+    private final int end;
+
+    /**
+     * Command unique id.
+     */
+    private final int command;
+
+    /**
+     * Index of the first character of the content in the source.
+     */
+    private final int contentBegin;
+
+    /**
+     * Index of the last character of the content in the source, exclusive.
+     */
+    private final int contentEnd;
+
+    /**
+     * Whole frame, materialised on demand.
+     */
+    private String message;
+
+    /**
+     * Content, materialised on demand.
+     */
+    private String content;
+
+    /**
+     * Create a frame from a part of a sequence, the sequence must not be modified while the frame is in use.
+     *
+     * @param source Sequence containing the frame, cannot be null.
+     * @param begin Index of the first character of the frame, inclusive.
+     * @param end Index of the last character of the frame, exclusive.
+     * @throws InvalidNetworkMessage If the frame has no valid command or no content.
+     */
+    //@Requires("source != null")
+    //@Requires("begin >= 0 && begin <= end && end <= source.length()")
+    public MessageFrame(final CharSequence source, final int begin, final int end) {
+        super();
+        this.source = source;
+        this.begin = begin;
+        this.end = end;
+        int separator = -1;
+        int contentStop = end;
+        boolean hasContent = false;
+        for (int i = begin; i < end; i++) {
+            if (this.source.charAt(i) == SEPARATOR) {
+                if (separator == -1) {
+                    separator = i;
+                } else if (contentStop == end) {
+                    contentStop = i;
+                }
+            } else if (separator != -1) {
+                hasContent = true;
+            }
+        }
+        if (separator == -1 || !hasContent) {
+            throw new InvalidNetworkMessage("Invalid message: " + this);
+        }
+        final long parsed = parseCommand(source, begin, separator);
+        if (parsed == INVALID) {
+            throw new InvalidNetworkMessage("Invalid message: " + this);
+        }
+        this.command = (int) parsed;
+        this.contentBegin = separator + 1;
+        this.contentEnd = contentStop;
+    }
+
+    /**
+     * Create a frame from a whole sequence.
+     *
+     * @param source Sequence containing only the frame, cannot be null.
+     * @return The created frame.
+     * @throws InvalidNetworkMessage If the frame has no valid command or no content.
+     */
+    public static MessageFrame of(final CharSequence source) {
+        return new MessageFrame(source, 0, source.length());
+    }
+
+    /**
+     * Parse the command digit by digit, with the same rules as Integer.parseInt.
+     *
+     * @return The parsed value, or INVALID if the value cannot be parsed.
+     */
+    private static long parseCommand(final CharSequence source, final int begin, final int end) {
+        int i = begin;
+        if (i == end) {
+            return INVALID;
+        }
+        boolean negative = false;
+        final char first = source.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == end) {
+                return INVALID;
+            }
+        }
+        final long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long result = 0;
+        for (; i < end; i++) {
+            final int digit = Character.digit(source.charAt(i), 10);
+            if (digit < 0) {
+                return INVALID;
+            }
+            result = result * 10 + digit;
+            if (result > limit) {
+                return INVALID;
+            }
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * @return The command unique id.
+     */
+    public int command() {
+        return this.command;
+    }
+
+    /**
+     * Provide the content without copying it, the view is only valid as long as the source is not modified.
+     *
+     * @return A read only view on the content.
+     */
+    public CharSequence content() {
+        return CharBuffer.wrap(this.source, this.contentBegin, this.contentEnd);
+    }
+
+    /**
+     * @return The content, materialised as a String on first call.
+     */
+    public String contentAsString() {
+        if (this.content == null) {
+            this.content = this.source.subSequence(this.contentBegin, this.contentEnd).toString();
+        }
+        return this.content;
+    }
+
+    /**
+     * Materialise this frame into a message wrapper, without parsing it again.
+     *
+     * @return The message wrapper for this frame.
+     */
+    public MessageWrapper toWrapper() {
+        return new MessageWrapper(this.toString(), this.command, this.contentAsString());
+    }
+
+    @Override
+    public String toString() {
+        if (this.message == null) {
+            this.message = this.source.subSequence(this.begin, this.end).toString();
+        }
+        return this.message;
+    }
+}
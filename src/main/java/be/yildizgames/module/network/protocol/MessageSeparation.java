@@ -44,6 +44,16 @@ public final class MessageSeparation {
 
     static final String COMMAND_SEPARATOR = "_";
 
+    /**
+     * Separator replacing the command separator when the content is compressed.
+     */
+    static final String COMPRESSED_SEPARATOR = "~";
+
+    /**
+     * Separator replacing the command separator when the message is a delta encoded state.
+     */
+    static final String DELTA_SEPARATOR = "!";
+
     /**
      * Private to prevent instantiation.
      */
@@ -52,17 +52,28 @@ public final class MessageWrapper {
      * Create an instance from a String.
      *
      * @param message String to wrap in, cannot be null.
+     * @throws InvalidNetworkMessage If the message has no valid command or no content.
      */
     public MessageWrapper(final String message) {
         super();
+        final MessageFrame frame = MessageFrame.of(message);
         this.message = message;
-        final String[] base = message.split(MessageSeparation.COMMAND_SEPARATOR);
-        try {
-            this.command = Integer.parseInt(base[0]);
-            this.content = base[1];
-        } catch (NumberFormatException | IndexOutOfBoundsException e) {
-            throw new InvalidNetworkMessage("Invalid message: " + message, e);
-        }
+        this.command = frame.command();
+        this.content = frame.contentAsString();
+    }
+
+    /**
+     * Create an instance from an already parsed frame.
+     *
+     * @param message Wrapped message.
+     * @param command Command unique id.
+     * @param content Body of the message.
+     */
+    MessageWrapper(final String message, final int command, final String content) {
+        super();
+        this.message = message;
+        this.command = command;
+        this.content = content;
     }
 
     @Override
@@ -27,6 +27,8 @@ package be.yildizgames.module.network.protocol;
 import be.yildizgames.common.mapping.ObjectMapper;
 import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
 
+import java.nio.ByteBuffer;
+
 /**
  * Base class for all network messages.
  *
@@ -67,23 +69,27 @@ public final class NetworkMessage<T> {
      * @param expectedCommand Command value expected.
      */
     public NetworkMessage(final MessageWrapper message, final ObjectMapper<T> mapper, int expectedCommand){
-        String[] msgs = message.message
-                .replace(MessageSeparation.MESSAGE_BEGIN, "")
-                .replace(MessageSeparation.MESSAGE_END, "")
-                .split(MessageSeparation.COMMAND_SEPARATOR);
-        if(msgs.length > 1) {
-            this.message = msgs[1];
-        } else {
-            this.message = "";
-        }
-        try {
-            this.command = Integer.parseInt(msgs[0]);
-        } catch (NumberFormatException e) {
-            throw new InvalidNetworkMessage(e);
-        }
-        if(this.command != expectedCommand) {
+        this(message.command, message.content, mapper, expectedCommand);
+    }
+
+    /**
+     * Build a NetworkMessage from a received frame, the content is only materialised once to be mapped.
+     *
+     * @param frame Received frame, cannot be null.
+     * @param mapper Mapper to transform the message into an object.
+     * @param expectedCommand Command value expected.
+     */
+    public NetworkMessage(final MessageFrame frame, final ObjectMapper<T> mapper, int expectedCommand){
+        this(frame.command(), frame.contentAsString(), mapper, expectedCommand);
+    }
+
+    private NetworkMessage(final int command, final String content, final ObjectMapper<T> mapper, int expectedCommand) {
+        super();
+        if(command != expectedCommand) {
             throw new InvalidNetworkMessage("Expected command is " + expectedCommand + " received is " + command);
         }
+        this.command = command;
+        this.message = content;
         this.dto = mapper.from(this.message);
     }
 
@@ -94,12 +100,7 @@ public final class NetworkMessage<T> {
      * @return The number corresponding to the command.
      */
     public static int getCommandFromMessage(final MessageWrapper message) {
-        final String[] base = message.message.split(MessageSeparation.COMMAND_SEPARATOR);
-        try {
-            return Integer.parseInt(base[0]);
-        } catch (NumberFormatException e) {
-            throw new InvalidNetworkMessage("Invalid command in message: " + message, e);
-        }
+        return message.command;
     }
 
     /**
@@ -108,12 +109,82 @@ public final class NetworkMessage<T> {
      * @return the built message.
      */
     public String buildMessage() {
-        return String.format("%s%d%s%s%s",
-                MessageSeparation.MESSAGE_BEGIN,
-                this.command(),
-                MessageSeparation.COMMAND_SEPARATOR,
-                this.message,
-                MessageSeparation.MESSAGE_END);
+        return this.appendTo(new StringBuilder(this.message.length() + 16)).toString();
+    }
+
+    /**
+     * Append the message with the begin message separator, the command, the parsed dto and the end message separator to a builder.
+     * The builder can be reused between messages, to avoid creating a new String for each of them.
+     *
+     * @param builder Builder to append the message into.
+     * @return The builder.
+     */
+    public StringBuilder appendTo(final StringBuilder builder) {
+        return builder
+                .append(MessageSeparation.MESSAGE_BEGIN)
+                .append(this.command)
+                .append(MessageSeparation.COMMAND_SEPARATOR)
+                .append(this.message)
+                .append(MessageSeparation.MESSAGE_END);
+    }
+
+    /**
+     * @return The number of bytes needed to write the built message in UTF-8.
+     */
+    public int encodedSize() {
+        return MessageSeparation.MESSAGE_BEGIN.length()
+                + commandLength(this.command)
+                + MessageSeparation.COMMAND_SEPARATOR.length()
+                + Utf8.encodedLength(this.message)
+                + MessageSeparation.MESSAGE_END.length();
+    }
+
+    /**
+     * Write the built message in UTF-8 into a buffer, without creating the message as a String.
+     *
+     * @param target Buffer to write into, must have at least encodedSize remaining bytes.
+     */
+    public void writeTo(final ByteBuffer target) {
+        Utf8.encode(MessageSeparation.MESSAGE_BEGIN, target);
+        writeCommand(target, this.command);
+        Utf8.encode(MessageSeparation.COMMAND_SEPARATOR, target);
+        Utf8.encode(this.message, target);
+        Utf8.encode(MessageSeparation.MESSAGE_END, target);
+    }
+
+    /**
+     * Compute the number of characters of the command, sign included.
+     */
+    private static int commandLength(final int command) {
+        long value = command;
+        int length = 1;
+        if (value < 0) {
+            length++;
+            value = -value;
+        }
+        while (value >= 10) {
+            value /= 10;
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Write the command digits in ASCII.
+     */
+    private static void writeCommand(final ByteBuffer target, final int command) {
+        long value = command;
+        if (value < 0) {
+            target.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= value) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            target.put((byte) ('0' + (value / divisor) % 10));
+        }
     }
 
 
@@ -124,6 +195,13 @@ public final class NetworkMessage<T> {
         return this.command;
     }
 
+    /**
+     * @return The mapped dto, without the command and separators.
+     */
+    String content() {
+        return this.message;
+    }
+
     @Override
     public String toString() {
         return this.buildMessage();
@@ -0,0 +1,435 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compress the payload of the text messages above a size threshold, and inflate the compressed messages received.
+ * A compressed message uses the compressed separator instead of the command separator, its payload is the deflated UTF-8 content encoded in Base64: &amp;command~base64#.
+ * A payload is only sent compressed if it is smaller than the original one.
+ * The deflater and inflater are created on first use and kept for the life of the instance, an instance is meant to be used by a single connection.
+ * The compression and the inflation can be done by different threads, each of them being serialized by its own lock, closing is serialized with both,
+ * the messages compressed after closing are sent uncompressed and the frames inflated after closing are refused.
+ * A preset dictionary can be shared by both sides, to efficiently compress small messages repeating the same fields and values.
+ * Statistics are kept per command: number of messages sent compressed, bytes before and after compression, time spent compressing,
+ * and number of messages sent uncompressed because their compressed form was not smaller.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class PayloadCompressor {
+
+    /**
+     * Threshold value to never compress the sent messages, while still being able to inflate the received ones.
+     */
+    public static final int DISABLED = Integer.MAX_VALUE;
+
+    /**
+     * Maximum size of an inflated payload, to protect against compression bombs.
+     */
+    public static final int MAX_INFLATED_SIZE = 16 * 1024 * 1024;
+
+    private static final char COMPRESSED = MessageSeparation.COMPRESSED_SEPARATOR.charAt(0);
+
+    /**
+     * Minimum number of characters of a payload to be compressed.
+     */
+    private final int threshold;
+
+    /**
+     * Preset dictionary shared with the other side of the connection, null if none is used.
+     */
+    private final byte[] dictionary;
+
+    /**
+     * Lock serializing the use of the deflater, and the statistics.
+     */
+    private final Object deflaterLock = new Object();
+
+    /**
+     * Lock serializing the use of the inflater.
+     */
+    private final Object inflaterLock = new Object();
+
+    /**
+     * Deflater reused for all messages, created on the first compression.
+     */
+    private Deflater deflater;
+
+    /**
+     * Inflater reused for all messages, created on the first inflation.
+     */
+    private Inflater inflater;
+
+    /**
+     * Buffer reused for the deflater output.
+     */
+    private byte[] deflated = new byte[1024];
+
+    /**
+     * Buffer reused for the inflater output.
+     */
+    private byte[] inflated = new byte[1024];
+
+    /**
+     * <code>true</code> once the native resources are released, guarded by both locks.
+     */
+    private boolean closed;
+
+    /**
+     * Number of messages sent compressed, indexed by command.
+     */
+    private long[] compressedMessages = new long[0];
+
+    /**
+     * Number of messages reaching the threshold but sent uncompressed, the compressed form not being smaller, indexed by command.
+     */
+    private long[] uncompressedMessages = new long[0];
+
+    /**
+     * Number of payload bytes before compression of the messages sent compressed, indexed by command.
+     */
+    private long[] rawBytes = new long[0];
+
+    /**
+     * Number of payload bytes after compression and Base64 encoding of the messages sent compressed, indexed by command.
+     */
+    private long[] compressedBytes = new long[0];
+
+    /**
+     * Time spent compressing, including the messages finally sent uncompressed, in nanoseconds, indexed by command.
+     */
+    private long[] compressionTime = new long[0];
+
+    /**
+     * Create a new compressor.
+     *
+     * @param threshold Minimum number of characters of a payload to be compressed, DISABLED to never compress.
+     */
+    public PayloadCompressor(final int threshold) {
+        this(threshold, null);
+    }
+
+    /**
+     * Create a new compressor using a preset dictionary, the same dictionary must be used by the other side of the connection.
+     *
+     * @param threshold Minimum number of characters of a payload to be compressed, DISABLED to never compress.
+     * @param dictionary Preset dictionary, null to not use any.
+     */
+    public PayloadCompressor(final int threshold, final byte[] dictionary) {
+        super();
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+        this.threshold = threshold;
+        this.dictionary = dictionary == null ? null : dictionary.clone();
+    }
+
+    /**
+     * Check if a frame is compressed, only the command part is inspected.
+     *
+     * @param source Sequence containing the frame.
+     * @param begin Index of the first character of the frame, inclusive.
+     * @param end Index of the last character of the frame, exclusive.
+     * @return <code>true</code> if the frame is compressed.
+     */
+    public static boolean isCompressed(final CharSequence source, final int begin, final int end) {
+        int i = begin;
+        if (i < end && (source.charAt(i) == '-' || source.charAt(i) == '+')) {
+            i++;
+        }
+        while (i < end && Character.isDigit(source.charAt(i))) {
+            i++;
+        }
+        return i > begin && i < end && source.charAt(i) == COMPRESSED;
+    }
+
+    /**
+     * Read the command of a compressed frame, written in clear before the compressed separator, without inflating the payload.
+     *
+     * @param source Sequence containing the frame.
+     * @param begin Index of the first character of the frame, inclusive.
+     * @param end Index of the last character of the frame, exclusive.
+     * @return The command of the frame.
+     * @throws InvalidNetworkMessage If the frame is not compressed or its command is invalid.
+     */
+    public static int getCommand(final CharSequence source, final int begin, final int end) {
+        return parseCommand(source, begin, separator(source, begin, end));
+    }
+
+    /**
+     * Append a message to a builder, compressed if its payload reaches the threshold and the compression reduces its size.
+     *
+     * @param message Message to append.
+     * @param builder Builder to append the message into.
+     * @return The builder.
+     */
+    public StringBuilder appendTo(final NetworkMessage<?> message, final StringBuilder builder) {
+        final String content = message.content();
+        if (content.length() < this.threshold) {
+            return message.appendTo(builder);
+        }
+        synchronized (this.deflaterLock) {
+            if (this.closed) {
+                return message.appendTo(builder);
+            }
+            final long start = System.nanoTime();
+            final byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+            if (this.deflater == null) {
+                this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            }
+            this.deflater.reset();
+            if (this.dictionary != null) {
+                this.deflater.setDictionary(this.dictionary);
+            }
+            this.deflater.setInput(raw);
+            this.deflater.finish();
+            int length = 0;
+            while (!this.deflater.finished()) {
+                if (length == this.deflated.length) {
+                    this.deflated = Arrays.copyOf(this.deflated, this.deflated.length * 2);
+                }
+                length += this.deflater.deflate(this.deflated, length, this.deflated.length - length);
+            }
+            final ByteBuffer encoded = Base64.getEncoder().encode(ByteBuffer.wrap(this.deflated, 0, length));
+            final int command = message.command();
+            final boolean smaller = encoded.remaining() < raw.length;
+            this.record(command, smaller, raw.length, encoded.remaining(), System.nanoTime() - start);
+            if (!smaller) {
+                return message.appendTo(builder);
+            }
+            builder.append(MessageSeparation.MESSAGE_BEGIN)
+                    .append(command)
+                    .append(COMPRESSED);
+            while (encoded.hasRemaining()) {
+                builder.append((char) encoded.get());
+            }
+            return builder.append(MessageSeparation.MESSAGE_END);
+        }
+    }
+
+    /**
+     * Inflate a compressed frame.
+     *
+     * @param source Sequence containing the frame.
+     * @param begin Index of the first character of the frame, inclusive.
+     * @param end Index of the last character of the frame, exclusive.
+     * @return The inflated message.
+     * @throws InvalidNetworkMessage If the frame cannot be inflated.
+     */
+    public MessageWrapper inflate(final CharSequence source, final int begin, final int end) {
+        final int separator = separator(source, begin, end);
+        final int command = parseCommand(source, begin, separator);
+        final byte[] compressed = new byte[end - separator - 1];
+        for (int i = 0; i < compressed.length; i++) {
+            compressed[i] = (byte) source.charAt(separator + 1 + i);
+        }
+        final byte[] decoded;
+        try {
+            decoded = Base64.getDecoder().decode(compressed);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidNetworkMessage("Invalid compressed message encoding.", e);
+        }
+        synchronized (this.inflaterLock) {
+            if (this.closed) {
+                throw new InvalidNetworkMessage("Compressor closed.");
+            }
+            if (this.inflater == null) {
+                this.inflater = new Inflater();
+            }
+            this.inflater.reset();
+            this.inflater.setInput(decoded);
+            int length = 0;
+            while (!this.inflater.finished()) {
+                if (length == this.inflated.length) {
+                    if (this.inflated.length >= MAX_INFLATED_SIZE) {
+                        throw new InvalidNetworkMessage("Inflated message exceeds " + MAX_INFLATED_SIZE + " bytes.");
+                    }
+                    this.inflated = Arrays.copyOf(this.inflated, Math.min(this.inflated.length * 2, MAX_INFLATED_SIZE));
+                }
+                final int read;
+                try {
+                    read = this.inflater.inflate(this.inflated, length, this.inflated.length - length);
+                } catch (DataFormatException e) {
+                    throw new InvalidNetworkMessage("Invalid compressed message.", e);
+                }
+                if (read == 0 && this.inflater.needsDictionary()) {
+                    if (this.dictionary == null) {
+                        throw new InvalidNetworkMessage("Compressed message requires a dictionary.");
+                    }
+                    try {
+                        this.inflater.setDictionary(this.dictionary);
+                    } catch (IllegalArgumentException e) {
+                        throw new InvalidNetworkMessage("Compressed message uses another dictionary.", e);
+                    }
+                    continue;
+                }
+                if (read == 0 && this.inflater.needsInput()) {
+                    throw new InvalidNetworkMessage("Truncated compressed message.");
+                }
+                length += read;
+            }
+            final String content = new String(this.inflated, 0, length, StandardCharsets.UTF_8);
+            return new MessageWrapper(command + MessageSeparation.COMMAND_SEPARATOR + content, command, content);
+        }
+    }
+
+    /**
+     * Build a message wrapper from a frame, inflating it if it is compressed.
+     *
+     * @param source Sequence containing the frame.
+     * @param begin Index of the first character of the frame, inclusive.
+     * @param end Index of the last character of the frame, exclusive.
+     * @return The message.
+     * @throws InvalidNetworkMessage If the frame is invalid.
+     */
+    public MessageWrapper toWrapper(final CharSequence source, final int begin, final int end) {
+        if (isCompressed(source, begin, end)) {
+            return this.inflate(source, begin, end);
+        }
+        return new MessageFrame(source, begin, end).toWrapper();
+    }
+
+    private static int separator(final CharSequence source, final int begin, final int end) {
+        int separator = begin;
+        while (separator < end && source.charAt(separator) != COMPRESSED) {
+            separator++;
+        }
+        if (separator == end) {
+            throw new InvalidNetworkMessage("Message is not compressed.");
+        }
+        return separator;
+    }
+
+    private static int parseCommand(final CharSequence source, final int begin, final int separator) {
+        try {
+            return Integer.parseInt(source, begin, separator, 10);
+        } catch (NumberFormatException e) {
+            throw new InvalidNetworkMessage("Invalid compressed message command.", e);
+        }
+    }
+
+    private void record(final int command, final boolean sentCompressed, final int raw, final int compressed, final long time) {
+        if (command < 0) {
+            return;
+        }
+        if (command >= this.compressedMessages.length) {
+            this.compressedMessages = Arrays.copyOf(this.compressedMessages, command + 1);
+            this.uncompressedMessages = Arrays.copyOf(this.uncompressedMessages, command + 1);
+            this.rawBytes = Arrays.copyOf(this.rawBytes, command + 1);
+            this.compressedBytes = Arrays.copyOf(this.compressedBytes, command + 1);
+            this.compressionTime = Arrays.copyOf(this.compressionTime, command + 1);
+        }
+        this.compressionTime[command] += time;
+        if (sentCompressed) {
+            this.compressedMessages[command]++;
+            this.rawBytes[command] += raw;
+            this.compressedBytes[command] += compressed;
+        } else {
+            this.uncompressedMessages[command]++;
+        }
+    }
+
+    /**
+     * @param command Command to check.
+     * @return The number of messages of the command having been sent compressed.
+     */
+    public long getCompressedMessages(final int command) {
+        return command >= 0 && command < this.compressedMessages.length ? this.compressedMessages[command] : 0;
+    }
+
+    /**
+     * @param command Command to check.
+     * @return The number of messages of the command reaching the threshold but sent uncompressed, their compressed form not being smaller.
+     */
+    public long getUncompressedMessages(final int command) {
+        return command >= 0 && command < this.uncompressedMessages.length ? this.uncompressedMessages[command] : 0;
+    }
+
+    /**
+     * @param command Command to check.
+     * @return The ratio of the compressed size on the original size for the messages of the command sent compressed, 1 if no message was sent compressed.
+     */
+    public double getCompressionRatio(final int command) {
+        if (command < 0 || command >= this.rawBytes.length || this.rawBytes[command] == 0) {
+            return 1;
+        }
+        return (double) this.compressedBytes[command] / this.rawBytes[command];
+    }
+
+    /**
+     * @param command Command to check.
+     * @return The time spent compressing the messages of the command, in nanoseconds.
+     */
+    public long getCompressionTime(final int command) {
+        return command >= 0 && command < this.compressionTime.length ? this.compressionTime[command] : 0;
+    }
+
+    /**
+     * @return The minimum number of characters of a payload to be compressed.
+     */
+    public int getThreshold() {
+        return this.threshold;
+    }
+
+    /**
+     * @return <code>true</code> if the native deflater was created.
+     */
+    boolean hasDeflater() {
+        return this.deflater != null;
+    }
+
+    /**
+     * @return <code>true</code> if the native inflater was created.
+     */
+    boolean hasInflater() {
+        return this.inflater != null;
+    }
+
+    /**
+     * Release the native resources used by the deflater and inflater, the instance cannot be used afterward.
+     */
+    public void close() {
+        synchronized (this.deflaterLock) {
+            synchronized (this.inflaterLock) {
+                this.closed = true;
+                if (this.deflater != null) {
+                    this.deflater.end();
+                }
+                if (this.inflater != null) {
+                    this.inflater.end();
+                }
+            }
+        }
+    }
+}
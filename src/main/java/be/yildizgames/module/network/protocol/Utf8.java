@@ -0,0 +1,106 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encode characters in UTF-8 directly into a buffer, without any intermediate array nor encoder instance.
+ * Unpaired surrogates are encoded as '?', as done by String.getBytes.
+ *
+ * @author Grégory Van den Borre
+ */
+final class Utf8 {
+
+    /**
+     * Replacement for malformed characters.
+     */
+    private static final byte REPLACEMENT = (byte) '?';
+
+    /**
+     * Private to prevent instantiation.
+     */
+    private Utf8() {
+        super();
+    }
+
+    /**
+     * Compute the number of bytes needed to encode a sequence.
+     *
+     * @param sequence Sequence to encode.
+     * @return The number of bytes.
+     */
+    static int encodedLength(final CharSequence sequence) {
+        final int length = sequence.length();
+        int result = length;
+        for (int i = 0; i < length; i++) {
+            final char c = sequence.charAt(i);
+            if (c >= 0x800) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(sequence.charAt(i + 1))) {
+                    result += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    result += 2;
+                }
+            } else if (c >= 0x80) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Encode a sequence in a buffer.
+     *
+     * @param sequence Sequence to encode.
+     * @param target Buffer to write into, must have at least encodedLength remaining bytes.
+     */
+    static void encode(final CharSequence sequence, final ByteBuffer target) {
+        final int length = sequence.length();
+        for (int i = 0; i < length; i++) {
+            final char c = sequence.charAt(i);
+            if (c < 0x80) {
+                target.put((byte) c);
+            } else if (c < 0x800) {
+                target.put((byte) (0xC0 | (c >> 6)));
+                target.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(sequence.charAt(i + 1))) {
+                    final int cp = Character.toCodePoint(c, sequence.charAt(++i));
+                    target.put((byte) (0xF0 | (cp >> 18)));
+                    target.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                    target.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                    target.put((byte) (0x80 | (cp & 0x3F)));
+                } else {
+                    target.put(REPLACEMENT);
+                }
+            } else {
+                target.put((byte) (0xE0 | (c >> 12)));
+                target.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                target.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
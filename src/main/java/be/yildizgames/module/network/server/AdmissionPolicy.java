@@ -0,0 +1,186 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits of the connections accepted by a server, to survive all the clients connecting again at once after a restart.
+ * The number of connections accepted and not yet authenticated is limited, the connections above the limit waiting in a pending queue admitting them at a constant rate,
+ * each waiting client being told its position in the queue.
+ * The connections from a same address are limited by a token bucket, the connections exceeding it, or not fitting in the queue, are refused:
+ * the client is told how long to wait before connecting again, and the connection is closed.
+ * The policy is immutable.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class AdmissionPolicy {
+
+    /**
+     * Default time to wait before connecting again after a refusal, in milliseconds.
+     */
+    public static final long DEFAULT_RETRY_AFTER = 1000;
+
+    /**
+     * Maximum number of connections accepted and not yet authenticated.
+     */
+    private final int maxUnauthenticated;
+
+    /**
+     * Number of connections a same address can open in a burst, 0 if not limited.
+     */
+    private final long addressCapacity;
+
+    /**
+     * Number of connections a same address can open per second, 0 if not limited.
+     */
+    private final long addressRate;
+
+    /**
+     * Maximum number of connections waiting to be admitted.
+     */
+    private final int maxPending;
+
+    /**
+     * Number of waiting connections admitted per second.
+     */
+    private final long admissionRate;
+
+    /**
+     * Time the refused clients are told to wait before connecting again, in milliseconds.
+     */
+    private final long retryAfter;
+
+    /**
+     * Create a policy limiting the connections not yet authenticated, refusing the connections above the limit.
+     *
+     * @param maxUnauthenticated Maximum number of connections accepted and not yet authenticated, must be positive.
+     */
+    public AdmissionPolicy(final int maxUnauthenticated) {
+        this(maxUnauthenticated, 0, 0, 0, 1, DEFAULT_RETRY_AFTER);
+    }
+
+    private AdmissionPolicy(final int maxUnauthenticated, final long addressCapacity, final long addressRate, final int maxPending, final long admissionRate, final long retryAfter) {
+        super();
+        if (maxUnauthenticated <= 0) {
+            throw new IllegalArgumentException("Maximum unauthenticated connections must be positive: " + maxUnauthenticated);
+        }
+        this.maxUnauthenticated = maxUnauthenticated;
+        this.addressCapacity = addressCapacity;
+        this.addressRate = addressRate;
+        this.maxPending = maxPending;
+        this.admissionRate = admissionRate;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Create a policy with the same limits, and a limit of the connections per address.
+     *
+     * @param capacity Number of connections an address can open in a burst, must be positive.
+     * @param rate Number of connections an address can open per second, must be positive and at most one per nanosecond.
+     * @return The created policy.
+     */
+    public AdmissionPolicy withAddressRate(final long capacity, final long rate) {
+        checkRate(capacity, rate);
+        return new AdmissionPolicy(this.maxUnauthenticated, capacity, rate, this.maxPending, this.admissionRate, this.retryAfter);
+    }
+
+    /**
+     * Create a policy with the same limits, and a queue for the connections above the unauthenticated limit.
+     *
+     * @param maxPending Maximum number of connections waiting, the connections not fitting are refused, cannot be negative.
+     * @param rate Number of waiting connections admitted per second, when below the unauthenticated limit, must be positive and at most one per nanosecond.
+     * @return The created policy.
+     */
+    public AdmissionPolicy withQueue(final int maxPending, final long rate) {
+        if (maxPending < 0) {
+            throw new IllegalArgumentException("Maximum pending connections cannot be negative: " + maxPending);
+        }
+        checkRate(1, rate);
+        return new AdmissionPolicy(this.maxUnauthenticated, this.addressCapacity, this.addressRate, maxPending, rate, this.retryAfter);
+    }
+
+    /**
+     * Create a policy with the same limits, and another time for the refused clients to wait.
+     *
+     * @param delay Time to wait before connecting again, in milliseconds, must be positive.
+     *              The clients are told a time between this delay and twice it, so they do not all connect again at once.
+     * @return The created policy.
+     */
+    public AdmissionPolicy withRetryAfter(final long delay) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Retry delay must be positive: " + delay);
+        }
+        return new AdmissionPolicy(this.maxUnauthenticated, this.addressCapacity, this.addressRate, this.maxPending, this.admissionRate, delay);
+    }
+
+    /**
+     * @return The maximum number of connections accepted and not yet authenticated.
+     */
+    public int getMaxUnauthenticated() {
+        return this.maxUnauthenticated;
+    }
+
+    /**
+     * @return The number of connections an address can open in a burst, 0 if not limited.
+     */
+    public long getAddressCapacity() {
+        return this.addressCapacity;
+    }
+
+    /**
+     * @return The number of connections an address can open per second, 0 if not limited.
+     */
+    public long getAddressRate() {
+        return this.addressRate;
+    }
+
+    /**
+     * @return The maximum number of connections waiting to be admitted, 0 if the connections above the limit are refused.
+     */
+    public int getMaxPending() {
+        return this.maxPending;
+    }
+
+    /**
+     * @return The number of waiting connections admitted per second.
+     */
+    public long getAdmissionRate() {
+        return this.admissionRate;
+    }
+
+    /**
+     * @return The time the refused clients are told to wait before connecting again, in milliseconds.
+     */
+    public long getRetryAfter() {
+        return this.retryAfter;
+    }
+
+    private static void checkRate(final long capacity, final long rate) {
+        if (capacity <= 0 || rate <= 0 || rate > TimeUnit.SECONDS.toNanos(1)) {
+            throw new IllegalArgumentException("Invalid capacity or rate: " + capacity + ", " + rate);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Session manager authenticating the sessions asynchronously, so a slow authentication, hashing a password or querying a database, does not block the network threads.
+ * The authentication is started on a dedicated pool with a bounded number of threads and of waiting requests, the requests not fitting are rejected.
+ * The messages a session sends while its authentication is in progress are kept, up to a limit, and processed in order once it is authenticated.
+ * The completion, setting the session authenticated, notifying the listeners and dispatching the kept messages, runs on the completion executor.
+ *
+ * @author Grégory Van den Borre
+ */
+public abstract class AsyncSessionManager extends SessionManager implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(AsyncSessionManager.class.getName());
+
+    /**
+     * Pool starting the authentications.
+     */
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * Executor running the completions.
+     */
+    private final Executor completionExecutor;
+
+    /**
+     * Number of authentications started and not completed.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Create the session manager, the completions run on the thread completing the authentication.
+     *
+     * @param threads Number of threads starting the authentications, must be positive.
+     * @param maxWaiting Maximum number of authentications waiting for a thread, must be positive.
+     */
+    protected AsyncSessionManager(final int threads, final int maxWaiting) {
+        this(threads, maxWaiting, Runnable::run);
+    }
+
+    /**
+     * Create the session manager.
+     *
+     * @param threads Number of threads starting the authentications, must be positive.
+     * @param maxWaiting Maximum number of authentications waiting for a thread, must be positive.
+     * @param completionExecutor Executor running the completions, for example the game loop to be notified of the authenticated clients on its thread.
+     */
+    protected AsyncSessionManager(final int threads, final int maxWaiting, final Executor completionExecutor) {
+        super();
+        Objects.requireNonNull(completionExecutor);
+        if (threads <= 0 || maxWaiting <= 0) {
+            throw new IllegalArgumentException("Thread count and waiting authentications must be positive: " + threads + ", " + maxWaiting);
+        }
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxWaiting),
+                Thread.ofPlatform().name("network-authentication-", 0).daemon().factory());
+        this.completionExecutor = completionExecutor;
+    }
+
+    /**
+     * Authenticate a session from its first message.
+     * Called on an authentication thread, it can block or return a stage completed later.
+     *
+     * @param session Session to authenticate.
+     * @param message Authentication request.
+     * @return The authenticated player, completed with null or with an exception if the authentication failed.
+     */
+    protected abstract CompletionStage<PlayerId> authenticateAsync(Session session, MessageWrapper message);
+
+    /**
+     * Called when an authentication failed or was rejected, by default the session is disconnected.
+     *
+     * @param session Session not authenticated.
+     * @param cause Exception having failed the authentication, null if no player was returned.
+     */
+    protected void authenticationFailed(final Session session, final Throwable cause) {
+        session.disconnect();
+    }
+
+    @Override
+    protected final void authenticate(final Session session, final MessageWrapper message) {
+        final PendingAuthentication authentication = new PendingAuthentication(this, session);
+        session.setPendingAuthentication(authentication);
+        this.pending.incrementAndGet();
+        try {
+            this.pool.execute(() -> this.start(authentication, session, message));
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Too many authentications in progress, request rejected.");
+            this.complete(authentication, session, null, e);
+        }
+    }
+
+    /**
+     * @return The number of authentications started and not completed.
+     */
+    public final int getPendingAuthentications() {
+        return this.pending.get();
+    }
+
+    /**
+     * Stop the authentication threads, the authentications already started are completed.
+     */
+    @Override
+    public void close() {
+        this.pool.shutdown();
+    }
+
+    private void start(final PendingAuthentication authentication, final Session session, final MessageWrapper message) {
+        CompletionStage<PlayerId> result;
+        try {
+            result = this.authenticateAsync(session, message);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenCompleteAsync((player, error) -> this.complete(authentication, session, player, error), this.completionExecutor);
+    }
+
+    private void complete(final PendingAuthentication authentication, final Session session, final PlayerId player, final Throwable error) {
+        this.pending.decrementAndGet();
+        if (error == null && player != null) {
+            authentication.succeeded(player);
+        } else {
+            authentication.failed();
+            LOGGER.log(System.Logger.Level.DEBUG, "Authentication failed.", error);
+            this.authenticationFailed(session, error);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+
+import java.util.Arrays;
+
+/**
+ * Bind a command to its mapper and handlers, the message is decoded once and shared by all the handlers.
+ *
+ * @param <T> Type of the decoded message.
+ * @author Grégory Van den Borre
+ */
+final class CommandBinding<T> {
+
+    /**
+     * Command bound.
+     */
+    private final int command;
+
+    /**
+     * Mapper to decode the message.
+     */
+    private final ObjectMapper<T> mapper;
+
+    /**
+     * Handlers to notify, replaced by a new array when a handler is added, so it can be read without lock.
+     */
+    private volatile CommandHandler<T>[] handlers;
+
+    @SuppressWarnings("unchecked")
+    CommandBinding(final int command, final ObjectMapper<T> mapper) {
+        super();
+        this.command = command;
+        this.mapper = mapper;
+        this.handlers = (CommandHandler<T>[]) new CommandHandler<?>[0];
+    }
+
+    /**
+     * Add a handler.
+     *
+     * @param handler Handler to add.
+     */
+    void addHandler(final CommandHandler<T> handler) {
+        final CommandHandler<T>[] updated = Arrays.copyOf(this.handlers, this.handlers.length + 1);
+        updated[updated.length - 1] = handler;
+        this.handlers = updated;
+    }
+
+    /**
+     * Check if a mapper is the one used by this binding.
+     *
+     * @param other Mapper to check.
+     * @return <code>true</code> if the mapper is the one used.
+     */
+    boolean isMappedBy(final ObjectMapper<?> other) {
+        return this.mapper == other;
+    }
+
+    /**
+     * Decode the message and dispatch it to the handlers.
+     *
+     * @param session Session having sent the message.
+     * @param message Message received.
+     */
+    void dispatch(final Session session, final MessageWrapper message) {
+        final T dto = new NetworkMessage<>(message, this.mapper, this.command).getDto();
+        for (CommandHandler<T> handler : this.handlers) {
+            handler.handle(session, dto);
+        }
+    }
+}
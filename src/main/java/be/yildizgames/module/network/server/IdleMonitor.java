@@ -0,0 +1,308 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.module.network.protocol.EncodedMessage;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watch the activity of the authenticated sessions of a session manager, sending them heartbeats when they are quiet and disconnecting them when idle for too long,
+ * so a half open connection does not stay in the connected players forever.
+ * Every session has a single timeout in a timing wheel, at the time its next heartbeat or disconnection is due from its last received message.
+ * The messages only record their time in the session, the timeout is not moved, when it expires it is scheduled again from the last activity if the session was active meanwhile,
+ * so a session costs one timeout expiration per heartbeat interval, whatever the number of messages it sends.
+ * The monitor is driven either by its own thread, once started, or by calling update regularly, from the session manager update for example.
+ * The sessions are disconnected from the thread driving the monitor, the heartbeats are sent with the message dispatcher of the session manager, from the thread processing the messages of the session,
+ * so they do not share the compression and coalescing state of the session with another thread.
+ * Without dispatcher, the heartbeats are sent from the thread driving the monitor, which must then be the one sending the messages, by calling update from the session manager update instead of starting the monitor.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class IdleMonitor implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(IdleMonitor.class.getName());
+
+    /**
+     * Number of slots in the wheel.
+     */
+    private static final int SLOTS = 512;
+
+    /**
+     * Session manager of the watched sessions.
+     */
+    private final SessionManager sessionManager;
+
+    /**
+     * Time without message before disconnecting a session, in nanoseconds.
+     */
+    private final long idleTimeout;
+
+    /**
+     * Time without message before sending a heartbeat, in nanoseconds.
+     */
+    private final long heartbeatInterval;
+
+    /**
+     * Heartbeat frame, encoded once, null if no heartbeat is sent.
+     */
+    private final EncodedMessage heartbeat;
+
+    /**
+     * Timeouts of the sessions, only used by the thread driving the monitor.
+     */
+    private final TimingWheel wheel;
+
+    /**
+     * Timeouts of the sessions authenticated since the last update.
+     */
+    private final Queue<IdleTimeout> added = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Timeouts of the sessions closed since the last update.
+     */
+    private final Queue<IdleTimeout> removed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Listener registered on the session manager, removed when closed.
+     */
+    private final SessionListener listener = new ActivityListener();
+
+    /**
+     * <code>true</code> once closed, the sessions are not watched anymore.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Thread driving the monitor, null if not started.
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * Create a monitor disconnecting the idle sessions, without heartbeat, with a precision of a tenth of the timeout.
+     *
+     * @param sessionManager Session manager of the sessions to watch.
+     * @param idleTimeout Time without message before disconnecting a session, in milliseconds, must be positive.
+     */
+    public IdleMonitor(final SessionManager sessionManager, final long idleTimeout) {
+        this(sessionManager, idleTimeout, 0, null, Math.max(1, idleTimeout / 10));
+    }
+
+    /**
+     * Create a monitor sending heartbeats to the quiet sessions and disconnecting the idle ones.
+     * The clients are expected to answer the heartbeat, any message they send being an activity.
+     *
+     * @param sessionManager Session manager of the sessions to watch.
+     * @param idleTimeout Time without message before disconnecting a session, in milliseconds, must be positive.
+     * @param heartbeatInterval Time without message before sending a heartbeat, in milliseconds, must be positive and lower than the idle timeout.
+     * @param heartbeat Heartbeat message.
+     * @param tick Precision of the monitor, in milliseconds, must be positive.
+     */
+    public IdleMonitor(final SessionManager sessionManager, final long idleTimeout, final long heartbeatInterval, final NetworkMessage<?> heartbeat, final long tick) {
+        super();
+        Objects.requireNonNull(sessionManager);
+        if (idleTimeout <= 0 || tick <= 0) {
+            throw new IllegalArgumentException("Idle timeout and tick must be positive: " + idleTimeout + ", " + tick);
+        }
+        if (heartbeat != null && (heartbeatInterval <= 0 || heartbeatInterval >= idleTimeout)) {
+            throw new IllegalArgumentException("Heartbeat interval must be positive and lower than the idle timeout: " + heartbeatInterval);
+        }
+        this.sessionManager = sessionManager;
+        this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        this.heartbeatInterval = TimeUnit.MILLISECONDS.toNanos(heartbeatInterval);
+        this.heartbeat = heartbeat == null ? null : EncodedMessage.of(heartbeat);
+        this.wheel = new TimingWheel(TimeUnit.MILLISECONDS.toNanos(tick), SLOTS, System.nanoTime());
+        sessionManager.addSessionListener(this.listener);
+        sessionManager.getActiveSessions().forEach(this::watch);
+    }
+
+    /**
+     * Drive the monitor with its own daemon thread.
+     *
+     * @param period Time between two updates, in milliseconds, must be positive.
+     * @throws IllegalStateException If the monitor is closed.
+     */
+    public synchronized void start(final long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        if (this.closed) {
+            throw new IllegalStateException("Idle monitor closed.");
+        }
+        if (this.executor == null) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("network-idle-monitor").daemon().factory());
+            this.executor.scheduleAtFixedRate(this::update, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop watching the sessions, the listener is removed from the session manager and the thread driving the monitor is stopped, if started.
+     */
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        this.sessionManager.removeSessionListener(this.listener);
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+        this.added.clear();
+        this.removed.clear();
+    }
+
+    /**
+     * Send the heartbeats and disconnect the idle sessions due since the previous update.
+     *
+     * @return The number of session timeouts expired, 0 once closed.
+     */
+    public synchronized int update() {
+        if (this.closed) {
+            return 0;
+        }
+        IdleTimeout timeout;
+        while ((timeout = this.added.poll()) != null) {
+            this.wheel.schedule(timeout, timeout.nextDeadline());
+        }
+        while ((timeout = this.removed.poll()) != null) {
+            this.wheel.cancel(timeout);
+        }
+        return this.wheel.advance(System.nanoTime());
+    }
+
+    /**
+     * @return The number of sessions watched, as of the last update.
+     */
+    public synchronized int getWatchedSessions() {
+        return this.wheel.size();
+    }
+
+    private void watch(final Session session) {
+        if (this.closed) {
+            return;
+        }
+        final IdleTimeout timeout = new IdleTimeout(session);
+        final IdleTimeout previous = session.setIdleTimeout(timeout);
+        this.added.add(timeout);
+        if (previous != null) {
+            this.removed.add(previous);
+        }
+    }
+
+    /**
+     * Timeout of a session, due at its next heartbeat or at its disconnection.
+     */
+    final class IdleTimeout extends TimingWheel.Timeout {
+
+        private final Session session;
+
+        /**
+         * Last activity of the session when the last heartbeat was sent.
+         */
+        private long heartbeatSentFor = Long.MIN_VALUE;
+
+        private IdleTimeout(final Session session) {
+            super();
+            this.session = session;
+        }
+
+        @Override
+        void expired(final long now) {
+            try {
+                this.check(now);
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "Error while checking idle session.", e);
+            }
+        }
+
+        private void check(final long now) {
+            if (!this.session.isConnected()) {
+                sessionManager.removeSession(this.session);
+                return;
+            }
+            final long lastActivity = this.session.getLastActivity();
+            if (now - lastActivity >= idleTimeout) {
+                LOGGER.log(System.Logger.Level.INFO, this.session.getPlayer() + " idle, disconnecting.");
+                sessionManager.disconnectSession(this.session);
+                return;
+            }
+            if (heartbeat != null && this.heartbeatSentFor != lastActivity && now - lastActivity >= heartbeatInterval) {
+                sessionManager.execute(this.session, this::sendHeartbeat);
+                this.heartbeatSentFor = lastActivity;
+            }
+            wheel.schedule(this, this.nextDeadline());
+        }
+
+        /**
+         * Send the heartbeat, from the thread processing the messages of the session.
+         */
+        private void sendHeartbeat() {
+            if (this.session.isConnected()) {
+                this.session.sendMessage(heartbeat);
+            }
+        }
+
+        /**
+         * @return The time of the next heartbeat, or of the disconnection if the heartbeat was already sent.
+         */
+        private long nextDeadline() {
+            final long lastActivity = this.session.getLastActivity();
+            if (heartbeat != null && this.heartbeatSentFor != lastActivity) {
+                return lastActivity + heartbeatInterval;
+            }
+            return lastActivity + idleTimeout;
+        }
+    }
+
+    /**
+     * Start watching the sessions once authenticated, and stop when they are closed.
+     */
+    private final class ActivityListener implements SessionListener {
+
+        @Override
+        public void messageReceived(final Session session, final MessageWrapper message) {
+            //the activity is recorded by the session manager.
+        }
+
+        @Override
+        public void clientAuthenticated(final Session session) {
+            watch(session);
+        }
+
+        @Override
+        public void sessionClosed(final Session session) {
+            final IdleTimeout timeout = session.setIdleTimeout(null);
+            if (timeout != null && !closed) {
+                removed.add(timeout);
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.module.network.protocol.EncodedMessage;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Spatial index of the sessions, to send the events of an area only to the players near it.
+ * The world is divided in square cells, a session moved to a position subscribes to the cells around the cell of its position, within the grid radius,
+ * so a message published at a position reaches the sessions less than the radius away in cells.
+ * Moving inside the same cell does not change anything, moving to a neighbour cell only changes the subscriptions of the cells entering and leaving the area.
+ * Every cell is an interest group, created when its first session subscribes and removed with its last one, messages are serialized once per publication.
+ * Moves are serialized on the grid, the messages being sent without holding the grid lock.
+ * The sessions leave the grid when disconnected.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class InterestGrid implements Interest {
+
+    /**
+     * Side of a cell, in world units.
+     */
+    private final double cellSize;
+
+    /**
+     * Number of cells around the cell of a session it subscribes to, in every direction.
+     */
+    private final int radius;
+
+    /**
+     * Cells with at least one subscriber, by packed coordinates.
+     */
+    private final Map<Long, InterestGroup> cells = new HashMap<>();
+
+    /**
+     * Packed coordinates of the cell of every session, indexed by identity.
+     */
+    private final Map<Session, Long> positions = new IdentityHashMap<>();
+
+    /**
+     * Number of cell subscriptions and unsubscriptions done.
+     */
+    private long membershipChanges;
+
+    /**
+     * Create a new grid.
+     *
+     * @param cellSize Side of a cell, in world units, must be positive.
+     * @param radius Number of cells around the cell of a session it subscribes to, 0 to only subscribe to its cell, cannot be negative.
+     */
+    public InterestGrid(final double cellSize, final int radius) {
+        super();
+        if (!(cellSize > 0) || radius < 0) {
+            throw new IllegalArgumentException("Invalid cell size or radius: " + cellSize + ", " + radius);
+        }
+        this.cellSize = cellSize;
+        this.radius = radius;
+    }
+
+    /**
+     * Move a session to a position, subscribing it to the cells around it and unsubscribing it from the cells it is now too far from.
+     * The first move adds the session to the grid.
+     *
+     * @param session Session to move.
+     * @param x Position on the x axis.
+     * @param y Position on the y axis.
+     */
+    public synchronized void move(final Session session, final double x, final double y) {
+        final int cellX = this.cellOf(x);
+        final int cellY = this.cellOf(y);
+        final long cell = key(cellX, cellY);
+        final Long previous = this.positions.put(session, cell);
+        if (previous == null) {
+            this.subscribe(session, cellX, cellY, Integer.MIN_VALUE, Integer.MIN_VALUE);
+            if (!session.join(this)) {
+                this.leave(session);
+            }
+        } else if (previous != cell) {
+            final int previousX = cellX(previous);
+            final int previousY = cellY(previous);
+            this.unsubscribe(session, previousX, previousY, cellX, cellY);
+            this.subscribe(session, cellX, cellY, previousX, previousY);
+        }
+    }
+
+    /**
+     * Remove a session from the grid, unsubscribing it from all its cells.
+     *
+     * @param session Session to remove.
+     */
+    public synchronized void remove(final Session session) {
+        if (this.positions.containsKey(session)) {
+            this.leave(session);
+            session.quit(this);
+        }
+    }
+
+    /**
+     * Serialize a message once and send it to the sessions near a position.
+     *
+     * @param x Position of the event on the x axis.
+     * @param y Position of the event on the y axis.
+     * @param message Message to send.
+     * @return The number of sessions the message was sent to.
+     */
+    public int publish(final double x, final double y, final NetworkMessage<?> message) {
+        final InterestGroup group = this.getCell(x, y);
+        return group == null ? 0 : group.publish(message);
+    }
+
+    /**
+     * Send an already serialized message to the sessions near a position.
+     *
+     * @param x Position of the event on the x axis.
+     * @param y Position of the event on the y axis.
+     * @param message Message to send.
+     * @return The number of sessions the message was sent to.
+     */
+    public int publish(final double x, final double y, final EncodedMessage message) {
+        final InterestGroup group = this.getCell(x, y);
+        return group == null ? 0 : group.publish(message);
+    }
+
+    /**
+     * @param x Position on the x axis.
+     * @param y Position on the y axis.
+     * @return The number of sessions a message published at this position would be sent to.
+     */
+    public int getSubscriberCount(final double x, final double y) {
+        final InterestGroup group = this.getCell(x, y);
+        return group == null ? 0 : group.size();
+    }
+
+    /**
+     * @param session Session to check.
+     * @return <code>true</code> if the session is in the grid.
+     */
+    public synchronized boolean contains(final Session session) {
+        return this.positions.containsKey(session);
+    }
+
+    /**
+     * @return The number of sessions in the grid.
+     */
+    public synchronized int size() {
+        return this.positions.size();
+    }
+
+    /**
+     * @return The number of cells having at least one subscriber.
+     */
+    public synchronized int getCellCount() {
+        return this.cells.size();
+    }
+
+    /**
+     * @return The number of cell subscriptions and unsubscriptions done since the grid was created.
+     */
+    public synchronized long getMembershipChanges() {
+        return this.membershipChanges;
+    }
+
+    @Override
+    public synchronized void leave(final Session session) {
+        final Long cell = this.positions.remove(session);
+        if (cell != null) {
+            this.unsubscribe(session, cellX(cell), cellY(cell), Integer.MIN_VALUE, Integer.MIN_VALUE);
+        }
+    }
+
+    private synchronized InterestGroup getCell(final double x, final double y) {
+        return this.cells.get(key(this.cellOf(x), this.cellOf(y)));
+    }
+
+    /**
+     * Subscribe a session to the cells around a center, except those around the previous center.
+     *
+     * @param session Session to subscribe.
+     * @param centerX Cell of the session on the x axis.
+     * @param centerY Cell of the session on the y axis.
+     * @param previousX Previous cell of the session on the x axis, Integer.MIN_VALUE if none.
+     * @param previousY Previous cell of the session on the y axis, Integer.MIN_VALUE if none.
+     */
+    private void subscribe(final Session session, final int centerX, final int centerY, final int previousX, final int previousY) {
+        for (int x = centerX - this.radius; x <= centerX + this.radius; x++) {
+            for (int y = centerY - this.radius; y <= centerY + this.radius; y++) {
+                if (!this.isAround(x, y, previousX, previousY)) {
+                    final long cell = key(x, y);
+                    InterestGroup group = this.cells.get(cell);
+                    if (group == null) {
+                        group = new InterestGroup(x + ":" + y);
+                        this.cells.put(cell, group);
+                    }
+                    group.add(session);
+                    this.membershipChanges++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Unsubscribe a session from the cells around a previous center, except those around the new center, the cells without subscriber are removed.
+     *
+     * @param session Session to unsubscribe.
+     * @param previousX Previous cell of the session on the x axis.
+     * @param previousY Previous cell of the session on the y axis.
+     * @param centerX Cell of the session on the x axis, Integer.MIN_VALUE if none.
+     * @param centerY Cell of the session on the y axis, Integer.MIN_VALUE if none.
+     */
+    private void unsubscribe(final Session session, final int previousX, final int previousY, final int centerX, final int centerY) {
+        for (int x = previousX - this.radius; x <= previousX + this.radius; x++) {
+            for (int y = previousY - this.radius; y <= previousY + this.radius; y++) {
+                if (!this.isAround(x, y, centerX, centerY)) {
+                    final long cell = key(x, y);
+                    final InterestGroup group = this.cells.get(cell);
+                    if (group != null && group.remove(session)) {
+                        this.membershipChanges++;
+                        if (group.size() == 0) {
+                            this.cells.remove(cell);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if a cell is within the radius of a center, always <code>false</code> for the Integer.MIN_VALUE center.
+     */
+    private boolean isAround(final int x, final int y, final int centerX, final int centerY) {
+        return centerX != Integer.MIN_VALUE
+                && Math.abs((long) x - centerX) <= this.radius
+                && Math.abs((long) y - centerY) <= this.radius;
+    }
+
+    private int cellOf(final double position) {
+        return (int) Math.floor(position / this.cellSize);
+    }
+
+    private static long key(final int x, final int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    private static int cellX(final long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int cellY(final long key) {
+        return (int) key;
+    }
+}
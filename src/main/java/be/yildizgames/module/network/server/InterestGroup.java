@@ -0,0 +1,239 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.module.network.protocol.EncodedMessage;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Named group of sessions, a published message is serialized once and sent only to the subscribed sessions.
+ * The members are kept in an array, a removed member being replaced by the last one, and indexed by identity, so subscribing and unsubscribing is constant time.
+ * Publishing iterates an immutable snapshot of the members, only rebuilt when they changed since the previous publication, so the messages are sent without holding the group lock.
+ * The sessions leave their groups when disconnected.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class InterestGroup implements Interest {
+
+    /**
+     * Empty members snapshot.
+     */
+    private static final Session[] EMPTY = new Session[0];
+
+    /**
+     * Group name.
+     */
+    private final String name;
+
+    /**
+     * Position of every member in the members array, the sessions equality being on their player, they are indexed by identity.
+     */
+    private final Map<Session, Integer> positions = new IdentityHashMap<>();
+
+    /**
+     * Members, the first size entries are used.
+     */
+    private Session[] members = new Session[8];
+
+    /**
+     * Number of members.
+     */
+    private int size;
+
+    /**
+     * Copy of the members to publish to, null when the members changed since it was built.
+     */
+    private volatile Session[] snapshot = EMPTY;
+
+    /**
+     * Create a new group.
+     *
+     * @param name Group name.
+     */
+    public InterestGroup(final String name) {
+        super();
+        Objects.requireNonNull(name);
+        this.name = name;
+    }
+
+    /**
+     * Add a session to this group, the session leaves the group when disconnected.
+     *
+     * @param session Session to add.
+     * @return <code>true</code> if the session was added, <code>false</code> if it was already a member or is disconnected.
+     */
+    public boolean subscribe(final Session session) {
+        if (!this.add(session)) {
+            return false;
+        }
+        if (!session.join(this)) {
+            this.remove(session);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remove a session from this group.
+     *
+     * @param session Session to remove.
+     * @return <code>true</code> if the session was removed, <code>false</code> if it was not a member.
+     */
+    public boolean unsubscribe(final Session session) {
+        if (this.remove(session)) {
+            session.quit(this);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Serialize a message once and send it to all the members.
+     *
+     * @param message Message to send.
+     * @return The number of sessions the message was sent to.
+     */
+    public int publish(final NetworkMessage<?> message) {
+        final Session[] current = this.getSnapshot();
+        return current.length == 0 ? 0 : publish(current, EncodedMessage.of(message));
+    }
+
+    /**
+     * Send an already serialized message to all the members.
+     *
+     * @param message Message to send.
+     * @return The number of sessions the message was sent to.
+     */
+    public int publish(final EncodedMessage message) {
+        return publish(this.getSnapshot(), message);
+    }
+
+    /**
+     * @param session Session to check.
+     * @return <code>true</code> if the session is a member of this group.
+     */
+    public synchronized boolean isSubscribed(final Session session) {
+        return this.positions.containsKey(session);
+    }
+
+    /**
+     * @return The number of members.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * @return The group name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public void leave(final Session session) {
+        this.remove(session);
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+    /**
+     * Add a member, without tracking the group in the session.
+     *
+     * @param session Session to add.
+     * @return <code>true</code> if the session was added, <code>false</code> if it was already a member.
+     */
+    synchronized boolean add(final Session session) {
+        if (this.positions.putIfAbsent(session, this.size) != null) {
+            return false;
+        }
+        if (this.size == this.members.length) {
+            this.members = Arrays.copyOf(this.members, this.size * 2);
+        }
+        this.members[this.size++] = session;
+        this.snapshot = null;
+        return true;
+    }
+
+    /**
+     * Remove a member, without tracking the group in the session, the last member takes its place.
+     *
+     * @param session Session to remove.
+     * @return <code>true</code> if the session was removed, <code>false</code> if it was not a member.
+     */
+    synchronized boolean remove(final Session session) {
+        final Integer position = this.positions.remove(session);
+        if (position == null) {
+            return false;
+        }
+        final int last = --this.size;
+        if (position != last) {
+            final Session moved = this.members[last];
+            this.members[position] = moved;
+            this.positions.put(moved, position);
+        }
+        this.members[last] = null;
+        this.snapshot = null;
+        return true;
+    }
+
+    /**
+     * Provide the members to publish to, rebuilding the snapshot if they changed.
+     *
+     * @return The members snapshot, not to be modified.
+     */
+    private Session[] getSnapshot() {
+        Session[] result = this.snapshot;
+        if (result == null) {
+            synchronized (this) {
+                result = this.snapshot;
+                if (result == null) {
+                    result = this.size == 0 ? EMPTY : Arrays.copyOf(this.members, this.size);
+                    this.snapshot = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int publish(final Session[] sessions, final EncodedMessage message) {
+        int reached = 0;
+        for (Session session : sessions) {
+            if (session.isConnected()) {
+                session.sendMessage(message);
+                reached++;
+            }
+        }
+        return reached;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queue of the messages of a session waiting to be processed by a shared executor.
+ * The mailbox is submitted to the executor when a message arrives and it is not already scheduled, so it is run by a single thread at a time and its messages keep their order.
+ * After a batch of messages, the mailbox is submitted again rather than keeping the thread, so a busy session does not starve the others.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class Mailbox {
+
+    /**
+     * Maximum number of messages processed before giving the thread back to the executor.
+     */
+    static final int BATCH_SIZE = 32;
+
+    private static final System.Logger LOGGER = System.getLogger(Mailbox.class.getName());
+
+    private final Executor executor;
+
+    /**
+     * Task submitted to the executor to process the queued messages.
+     */
+    private final Runnable drainTask = this::drain;
+
+    private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * <code>true</code> while the mailbox is submitted to the executor or running.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private volatile int maxDepth;
+
+    /**
+     * Number of messages processed, only modified by the thread running the mailbox.
+     */
+    private volatile long dispatched;
+
+    /**
+     * Sum of the time the messages waited before being processed, in nanoseconds.
+     */
+    private volatile long totalLatency;
+
+    private volatile long maxLatency;
+
+    Mailbox(final Executor executor) {
+        super();
+        this.executor = executor;
+    }
+
+    /**
+     * Add a task to run after the ones already queued.
+     *
+     * @param task Task to run.
+     */
+    void submit(final Runnable task) {
+        this.tasks.add(new Task(task, System.nanoTime()));
+        final int current = this.depth.incrementAndGet();
+        if (current > this.maxDepth) {
+            this.maxDepth = current;
+        }
+        this.schedule();
+    }
+
+    /**
+     * Process a batch of messages, and submit the mailbox again if messages remain.
+     */
+    private void drain() {
+        Task task;
+        int processed = 0;
+        while (processed < BATCH_SIZE && (task = this.tasks.poll()) != null) {
+            this.depth.decrementAndGet();
+            final long latency = System.nanoTime() - task.submitted;
+            this.dispatched++;
+            this.totalLatency += latency;
+            if (latency > this.maxLatency) {
+                this.maxLatency = latency;
+            }
+            try {
+                task.runnable.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "Error processing message.", e);
+            }
+            processed++;
+        }
+        this.scheduled.set(false);
+        if (!this.tasks.isEmpty()) {
+            this.schedule();
+        }
+    }
+
+    /**
+     * @return The number of messages waiting to be processed.
+     */
+    public int getQueueDepth() {
+        return this.depth.get();
+    }
+
+    /**
+     * @return The highest number of messages having waited at the same time.
+     */
+    public int getMaxQueueDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * @return The number of messages processed.
+     */
+    public long getDispatchedCount() {
+        return this.dispatched;
+    }
+
+    /**
+     * @return The average time the messages waited before being processed, in nanoseconds.
+     */
+    public long getAverageLatency() {
+        final long count = this.dispatched;
+        return count == 0 ? 0 : this.totalLatency / count;
+    }
+
+    /**
+     * @return The longest time a message waited before being processed, in nanoseconds.
+     */
+    public long getMaxLatency() {
+        return this.maxLatency;
+    }
+
+    private void schedule() {
+        if (this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this.drainTask);
+            } catch (RejectedExecutionException e) {
+                this.scheduled.set(false);
+                LOGGER.log(System.Logger.Level.WARNING, "Executor rejected the mailbox, messages not processed.", e);
+            }
+        }
+    }
+
+    /**
+     * Task with the time it was submitted.
+     */
+    private static final class Task {
+
+        private final Runnable runnable;
+
+        private final long submitted;
+
+        private Task(final Runnable runnable, final long submitted) {
+            super();
+            this.runnable = runnable;
+            this.submitted = submitted;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Dispatcher giving every session its own mailbox, run by a shared executor.
+ * The messages of a session are processed in order, one at a time, while the messages of different sessions are processed in parallel,
+ * so a slow handler only delays the session it is processing.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class MailboxDispatcher implements MessageDispatcher, AutoCloseable {
+
+    /**
+     * Executor running the mailboxes.
+     */
+    private final Executor executor;
+
+    /**
+     * <code>true</code> if the executor was created by this dispatcher and must be shut down with it.
+     */
+    private final boolean ownExecutor;
+
+    /**
+     * Create a dispatcher running the mailboxes with an executor, the executor is not shut down when the dispatcher is closed.
+     *
+     * @param executor Executor running the mailboxes.
+     */
+    public MailboxDispatcher(final Executor executor) {
+        this(executor, false);
+    }
+
+    private MailboxDispatcher(final Executor executor, final boolean ownExecutor) {
+        super();
+        Objects.requireNonNull(executor);
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+    }
+
+    /**
+     * Create a dispatcher running the mailboxes on a fixed number of daemon threads.
+     *
+     * @param threads Number of threads, must be positive.
+     * @return The created dispatcher.
+     */
+    public static MailboxDispatcher pool(final int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        return new MailboxDispatcher(Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("network-dispatcher-", 0).daemon().factory()), true);
+    }
+
+    /**
+     * Create a dispatcher running every mailbox batch on a new virtual thread, the listeners can so use blocking code.
+     *
+     * @return The created dispatcher.
+     */
+    public static MailboxDispatcher virtualThreads() {
+        return new MailboxDispatcher(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("network-dispatcher-", 0).factory()), true);
+    }
+
+    @Override
+    public void dispatch(final Session session, final Runnable task) {
+        session.getMailbox(this.executor).submit(task);
+    }
+
+    /**
+     * Shut down the executor if it was created by this dispatcher, the messages already submitted are still processed.
+     */
+    @Override
+    public void close() {
+        if (this.ownExecutor) {
+            ((ExecutorService) this.executor).shutdown();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Accumulate the frames sent to a session, to write them to the transport at once.
+ * The buffer must be flushed when the byte threshold is reached or when the oldest pending frame is older than the delay.
+ * An instance is owned by a single session and is not thread safe, the session only uses it while holding its outbound lock.
+ *
+ * @author Grégory Van den Borre
+ */
+final class OutboundBuffer {
+
+    /**
+     * Number of bytes or characters pending triggering a flush.
+     */
+    private final int maxBytes;
+
+    /**
+     * Maximum time a frame can be pending, in nanoseconds.
+     */
+    private final long maxDelay;
+
+    /**
+     * Pending text frames.
+     */
+    private final StringBuilder text;
+
+    /**
+     * Pending binary frames, allocated on first use and handed to the transport on flush.
+     */
+    private ByteBuffer binary;
+
+    /**
+     * Number of frames pending.
+     */
+    private int frames;
+
+    /**
+     * Time when the oldest pending frame was added, in nanoseconds.
+     */
+    private long firstFrameTime;
+
+    /**
+     * Number of flushes done.
+     */
+    private long flushes;
+
+    /**
+     * Number of frames written by all the flushes.
+     */
+    private long flushedFrames;
+
+    /**
+     * Maximum number of frames written by a single flush.
+     */
+    private int maxFramesPerFlush;
+
+    /**
+     * Create a new buffer.
+     *
+     * @param maxBytes Number of bytes or characters pending triggering a flush, must be positive.
+     * @param maxDelay Maximum time a frame can be pending, in nanoseconds, must be positive.
+     */
+    OutboundBuffer(final int maxBytes, final long maxDelay) {
+        super();
+        if (maxBytes <= 0 || maxDelay <= 0) {
+            throw new IllegalArgumentException("Max bytes and delay must be positive.");
+        }
+        this.maxBytes = maxBytes;
+        this.maxDelay = maxDelay;
+        this.text = new StringBuilder(Math.min(maxBytes, 65536));
+    }
+
+    /**
+     * Add a text frame.
+     *
+     * @param frame Frame to add.
+     * @return <code>true</code> if the buffer must be flushed.
+     */
+    boolean add(final CharSequence frame) {
+        this.added();
+        this.text.append(frame);
+        return this.mustFlush(this.text.length());
+    }
+
+    /**
+     * Add a binary frame, the frame position is not changed.
+     *
+     * @param frame Frame to add.
+     * @return <code>true</code> if the buffer must be flushed.
+     */
+    boolean add(final ByteBuffer frame) {
+        this.added();
+        final int needed = frame.remaining();
+        if (this.binary == null) {
+            this.binary = ByteBuffer.allocate(Math.max(Math.min(this.maxBytes, 65536), needed));
+        } else if (this.binary.remaining() < needed) {
+            final ByteBuffer grown = ByteBuffer.allocate(Math.max(this.binary.capacity() * 2, this.binary.position() + needed));
+            this.binary.flip();
+            grown.put(this.binary);
+            this.binary = grown;
+        }
+        this.binary.put(frame.duplicate());
+        return this.mustFlush(this.binary.position());
+    }
+
+    /**
+     * @return <code>true</code> if no frame is pending.
+     */
+    boolean isEmpty() {
+        return this.frames == 0;
+    }
+
+    /**
+     * @return <code>true</code> if the oldest pending frame is older than the delay.
+     */
+    boolean isExpired() {
+        return this.frames > 0 && System.nanoTime() - this.firstFrameTime >= this.maxDelay;
+    }
+
+    /**
+     * Provide the pending text, to be written before calling flushed.
+     *
+     * @return The pending text frames.
+     */
+    CharSequence text() {
+        return this.text;
+    }
+
+    /**
+     * Provide the pending binary frames, the buffer is given to the caller and no longer used by this instance.
+     *
+     * @return The pending binary frames, ready to be read.
+     */
+    ByteBuffer takeBinary() {
+        final ByteBuffer result = this.binary.flip();
+        this.binary = null;
+        return result;
+    }
+
+    /**
+     * Mark the pending frames as written.
+     */
+    void flushed() {
+        this.flushes++;
+        this.flushedFrames += this.frames;
+        this.maxFramesPerFlush = Math.max(this.maxFramesPerFlush, this.frames);
+        this.frames = 0;
+        this.text.setLength(0);
+    }
+
+    /**
+     * Discard the pending frames.
+     */
+    void clear() {
+        this.frames = 0;
+        this.text.setLength(0);
+        this.binary = null;
+    }
+
+    long getFlushes() {
+        return this.flushes;
+    }
+
+    long getFlushedFrames() {
+        return this.flushedFrames;
+    }
+
+    int getMaxFramesPerFlush() {
+        return this.maxFramesPerFlush;
+    }
+
+    private void added() {
+        if (this.frames == 0) {
+            this.firstFrameTime = System.nanoTime();
+        }
+        this.frames++;
+    }
+
+    private boolean mustFlush(final int pending) {
+        return pending >= this.maxBytes || System.nanoTime() - this.firstFrameTime >= this.maxDelay;
+    }
+}
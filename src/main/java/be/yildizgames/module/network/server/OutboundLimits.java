@@ -0,0 +1,82 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import java.util.Objects;
+
+/**
+ * Limits of the bytes waiting to be written to a session.
+ * The session is no longer writable when its pending bytes go above the high watermark, and becomes writable again when they go back to the low watermark.
+ * A message that would make the pending bytes exceed the capacity is handled by the overflow policy.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class OutboundLimits {
+
+    /**
+     * No limit, the session is always writable and no message is ever dropped.
+     */
+    public static final OutboundLimits UNBOUNDED = new OutboundLimits(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, OverflowPolicy.DROP_NEWEST);
+
+    /**
+     * Number of pending bytes under which a session becomes writable again.
+     */
+    public final long lowWatermark;
+
+    /**
+     * Number of pending bytes above which a session is no longer writable.
+     */
+    public final long highWatermark;
+
+    /**
+     * Maximum number of pending bytes.
+     */
+    public final long capacity;
+
+    /**
+     * Action to take when a message does not fit in the capacity.
+     */
+    public final OverflowPolicy policy;
+
+    /**
+     * Create new limits.
+     *
+     * @param lowWatermark Number of pending bytes under which a session becomes writable again, cannot be negative.
+     * @param highWatermark Number of pending bytes above which a session is no longer writable, cannot be lower than the low watermark.
+     * @param capacity Maximum number of pending bytes, cannot be lower than the high watermark.
+     * @param policy Action to take when a message does not fit in the capacity.
+     */
+    public OutboundLimits(final long lowWatermark, final long highWatermark, final long capacity, final OverflowPolicy policy) {
+        super();
+        Objects.requireNonNull(policy);
+        if (lowWatermark < 0 || highWatermark < lowWatermark || capacity < highWatermark) {
+            throw new IllegalArgumentException("Invalid limits, expected 0 <= low <= high <= capacity: " + lowWatermark + ", " + highWatermark + ", " + capacity);
+        }
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+}
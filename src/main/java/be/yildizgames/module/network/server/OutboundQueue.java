@@ -0,0 +1,203 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+
+/**
+ * Bounded queue of the encoded messages waiting to be written to a session, for the sessions writing asynchronously.
+ * The pending bytes count the queued buffers and the ones taken by the writer until it reports them as written.
+ * Crossing the watermarks changes the session writability and notifies the session listeners, messages not fitting in the capacity are handled by the overflow policy.
+ * Only whole queued messages are dropped, a buffer taken by the writer is never dropped, so a partially written message is always completed.
+ * Messages can be offered from any thread, the calls are serialized on the queue.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class OutboundQueue {
+
+    private static final System.Logger LOGGER = System.getLogger(OutboundQueue.class.getName());
+
+    /**
+     * Session the messages are written to.
+     */
+    private final Session session;
+
+    /**
+     * Messages not yet taken by the writer.
+     */
+    private final Deque<ByteBuffer> queue = new ArrayDeque<>();
+
+    private OutboundLimits limits = OutboundLimits.UNBOUNDED;
+
+    /**
+     * Bytes queued or taken by the writer and not yet written.
+     */
+    private long pendingBytes;
+
+    /**
+     * Number of messages dropped because of the capacity.
+     */
+    private long dropped;
+
+    private volatile boolean writable = true;
+
+    OutboundQueue(final Session session) {
+        super();
+        this.session = session;
+    }
+
+    /**
+     * Change the limits, the current pending bytes are kept even if above the new capacity.
+     *
+     * @param limits New limits.
+     */
+    public synchronized void setLimits(final OutboundLimits limits) {
+        Objects.requireNonNull(limits);
+        this.limits = limits;
+        this.updateWritability();
+    }
+
+    /**
+     * Queue a message, applying the overflow policy if it does not fit in the capacity.
+     *
+     * @param data Encoded message, not to be modified afterwards.
+     * @return <code>true</code> if the message was queued, <code>false</code> if it was dropped or the session is being disconnected.
+     */
+    public boolean offer(final ByteBuffer data) {
+        final int size = data.remaining();
+        synchronized (this) {
+            if (this.pendingBytes + size <= this.limits.capacity) {
+                this.add(data, size);
+                return true;
+            }
+            if (this.limits.policy == OverflowPolicy.DROP_OLDEST) {
+                while (!this.queue.isEmpty() && this.pendingBytes + size > this.limits.capacity) {
+                    this.pendingBytes -= this.queue.poll().remaining();
+                    this.dropped++;
+                }
+                if (this.pendingBytes + size <= this.limits.capacity) {
+                    this.add(data, size);
+                    return true;
+                }
+            }
+            this.dropped++;
+            if (this.limits.policy != OverflowPolicy.DISCONNECT) {
+                return false;
+            }
+        }
+        LOGGER.log(System.Logger.Level.WARNING, "Outbound queue full for " + this.session.getPlayer() + ", closing connection.");
+        this.session.closeSession();
+        return false;
+    }
+
+    /**
+     * Take the next message to write, it stays counted as pending until reported as written.
+     *
+     * @return The next message, null if none.
+     */
+    public synchronized ByteBuffer poll() {
+        return this.queue.poll();
+    }
+
+    /**
+     * Take several messages to write, they stay counted as pending until reported as written.
+     *
+     * @param target Collection to add the messages to.
+     * @param max Maximum number of messages to take.
+     */
+    public synchronized void drainTo(final Deque<ByteBuffer> target, final int max) {
+        for (int i = 0; i < max && !this.queue.isEmpty(); i++) {
+            target.add(this.queue.poll());
+        }
+    }
+
+    /**
+     * Report bytes taken from this queue as written.
+     *
+     * @param bytes Number of bytes written.
+     */
+    public synchronized void written(final long bytes) {
+        this.pendingBytes = Math.max(0, this.pendingBytes - bytes);
+        this.updateWritability();
+    }
+
+    /**
+     * Drop all the messages, when the connection is closed.
+     */
+    public synchronized void clear() {
+        this.queue.clear();
+        this.pendingBytes = 0;
+    }
+
+    /**
+     * @return <code>true</code> if no message is waiting to be taken by the writer.
+     */
+    public synchronized boolean isEmpty() {
+        return this.queue.isEmpty();
+    }
+
+    /**
+     * @return <code>false</code> if the pending bytes went above the high watermark and did not go back to the low watermark yet.
+     */
+    public boolean isWritable() {
+        return this.writable;
+    }
+
+    /**
+     * @return The number of bytes not yet written.
+     */
+    public synchronized long getPendingBytes() {
+        return this.pendingBytes;
+    }
+
+    /**
+     * @return The number of messages dropped because of the capacity.
+     */
+    public synchronized long getDroppedCount() {
+        return this.dropped;
+    }
+
+    private void add(final ByteBuffer data, final int size) {
+        this.queue.add(data);
+        this.pendingBytes += size;
+        this.updateWritability();
+    }
+
+    /**
+     * Change the writability if a watermark was crossed, the listeners are notified holding the queue monitor so they see the changes in order.
+     */
+    private void updateWritability() {
+        if (this.writable && this.pendingBytes > this.limits.highWatermark) {
+            this.writable = false;
+            this.session.writabilityChanged(false);
+        } else if (!this.writable && this.pendingBytes <= this.limits.lowWatermark) {
+            this.writable = true;
+            this.session.writabilityChanged(true);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Asynchronous authentication of a session, keeping the messages received until it completes.
+ * Once authenticated, the kept messages are dispatched before any message received later: the messages received meanwhile wait on the monitor.
+ *
+ * @author Grégory Van den Borre
+ */
+final class PendingAuthentication {
+
+    /**
+     * Maximum number of messages kept, the session is disconnected if it sends more before being authenticated.
+     */
+    static final int MAX_QUEUED_MESSAGES = 16;
+
+    private static final System.Logger LOGGER = System.getLogger(PendingAuthentication.class.getName());
+
+    private final SessionManager sessionManager;
+
+    private final Session session;
+
+    private final Queue<MessageWrapper> queued = new ArrayDeque<>();
+
+    /**
+     * <code>true</code> once completed, the messages are then processed by the session manager again.
+     */
+    private boolean done;
+
+    PendingAuthentication(final SessionManager sessionManager, final Session session) {
+        super();
+        this.sessionManager = sessionManager;
+        this.session = session;
+    }
+
+    /**
+     * Keep a message received while the authentication is in progress.
+     *
+     * @param message Message received.
+     * @return <code>true</code> if the message was taken, <code>false</code> if the authentication is completed and the message must be processed normally.
+     */
+    boolean offer(final MessageWrapper message) {
+        synchronized (this) {
+            if (this.done) {
+                return false;
+            }
+            if (this.queued.size() < MAX_QUEUED_MESSAGES) {
+                this.queued.add(message);
+                return true;
+            }
+            this.complete();
+        }
+        LOGGER.log(System.Logger.Level.WARNING, "Too many messages before authentication, closing connection.");
+        this.session.disconnect();
+        return true;
+    }
+
+    /**
+     * Authenticate the session as a player, and dispatch the kept messages, unless the session was disconnected meanwhile.
+     *
+     * @param player Authenticated player.
+     */
+    synchronized void succeeded(final PlayerId player) {
+        if (this.done || !this.session.isConnected()) {
+            this.complete();
+            return;
+        }
+        this.session.setPlayer(player);
+        this.sessionManager.setAuthenticated(this.session);
+        for (MessageWrapper message : this.queued) {
+            this.sessionManager.dispatch(this.session, message);
+        }
+        this.complete();
+        if (!this.session.isConnected()) {
+            this.sessionManager.removeSession(this.session);
+        }
+    }
+
+    /**
+     * Drop the kept messages, the session stays not authenticated.
+     */
+    synchronized void failed() {
+        this.complete();
+    }
+
+    private void complete() {
+        this.done = true;
+        this.queued.clear();
+        this.session.setPendingAuthentication(null);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket limiting the rate of the messages received from each session, checked before the message content is decoded.
+ * Every session has its own bucket, filled at a constant rate up to its capacity, every message taking the cost of its command.
+ * The bucket is kept as a single time per session, the time at which it would be full again, so checking a message is a few operations, without allocation or lock,
+ * the time being read once for all the messages of a read.
+ * The limiter is immutable and shared by the sessions, it only counts, per command, the messages exceeding the limit.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class RateLimiter {
+
+    /**
+     * Bucket state of a session closed for exceeding its limit.
+     */
+    static final long CLOSED = Long.MAX_VALUE;
+
+    private static final System.Logger LOGGER = System.getLogger(RateLimiter.class.getName());
+
+    /**
+     * Number of tokens the bucket can hold.
+     */
+    private final long capacity;
+
+    /**
+     * Number of tokens added to the bucket per second.
+     */
+    private final long rate;
+
+    /**
+     * Time to refill one token, in nanoseconds.
+     */
+    private final long interval;
+
+    /**
+     * Time to refill the whole bucket, in nanoseconds.
+     */
+    private final long tolerance;
+
+    /**
+     * Cost of the commands, indexed by command, the commands out of the array or with a negative cost cost the default cost.
+     */
+    private final int[] costs;
+
+    /**
+     * Cost of the commands without specific cost.
+     */
+    private final int defaultCost;
+
+    /**
+     * Action to take for the messages exceeding the limit.
+     */
+    private final RateLimitAction action;
+
+    /**
+     * Number of messages exceeding the limit, indexed by command, the last one counting the commands without specific cost.
+     */
+    private final LongAdder[] limited;
+
+    /**
+     * Create a limiter where every command costs one token.
+     *
+     * @param capacity Number of tokens the bucket can hold, the maximum burst, must be positive.
+     * @param rate Number of tokens added per second, must be positive and at most one per nanosecond.
+     * @param action Action to take for the messages exceeding the limit.
+     */
+    public RateLimiter(final long capacity, final long rate, final RateLimitAction action) {
+        this(capacity, rate, action, new int[0], 1);
+    }
+
+    private RateLimiter(final long capacity, final long rate, final RateLimitAction action, final int[] costs, final int defaultCost) {
+        super();
+        Objects.requireNonNull(action);
+        if (capacity <= 0 || rate <= 0 || rate > TimeUnit.SECONDS.toNanos(1)) {
+            throw new IllegalArgumentException("Invalid capacity or rate: " + capacity + ", " + rate);
+        }
+        this.capacity = capacity;
+        this.rate = rate;
+        this.interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        this.tolerance = Math.multiplyExact(capacity, this.interval);
+        this.action = action;
+        this.costs = costs;
+        this.defaultCost = defaultCost;
+        this.limited = new LongAdder[costs.length + 1];
+        Arrays.setAll(this.limited, i -> new LongAdder());
+    }
+
+    /**
+     * Create a limiter with the same limits, and a specific cost for a command.
+     *
+     * @param command Command to set the cost for, cannot be negative.
+     * @param cost Number of tokens taken by a message of the command, 0 for a command never limited, must be at most the capacity.
+     * @return The created limiter, with its own counters.
+     */
+    public RateLimiter withCost(final int command, final int cost) {
+        if (command < 0) {
+            throw new IllegalArgumentException("Command cannot be negative: " + command);
+        }
+        this.checkCost(cost);
+        final int[] newCosts = Arrays.copyOf(this.costs, Math.max(this.costs.length, command + 1));
+        Arrays.fill(newCosts, this.costs.length, newCosts.length, -1);
+        newCosts[command] = cost;
+        return new RateLimiter(this.capacity, this.rate, this.action, newCosts, this.defaultCost);
+    }
+
+    /**
+     * Create a limiter with the same limits and specific costs, and a cost for all the other commands.
+     *
+     * @param cost Number of tokens taken by a message of a command without specific cost, must be at most the capacity.
+     * @return The created limiter, with its own counters.
+     */
+    public RateLimiter withDefaultCost(final int cost) {
+        this.checkCost(cost);
+        return new RateLimiter(this.capacity, this.rate, this.action, this.costs.clone(), cost);
+    }
+
+    /**
+     * @param command Command to get the cost for.
+     * @return The number of tokens taken by a message of the command.
+     */
+    public int getCost(final int command) {
+        final int cost = command >= 0 && command < this.costs.length ? this.costs[command] : -1;
+        return cost < 0 ? this.defaultCost : cost;
+    }
+
+    /**
+     * @param command Command to get the count for.
+     * @return The number of messages of the command having exceeded the limit, for all the sessions, the commands above the highest command with a specific cost share the same count.
+     */
+    public long getLimitedCount(final int command) {
+        return this.limited[command >= 0 && command < this.costs.length ? command : this.costs.length].sum();
+    }
+
+    /**
+     * @return The action taken for the messages exceeding the limit.
+     */
+    public RateLimitAction getAction() {
+        return this.action;
+    }
+
+    /**
+     * Take the tokens of a message from the bucket of a session, and apply the action if there are not enough.
+     * Called by the thread reading the session only.
+     *
+     * @param session Session having received the message.
+     * @param command Command of the message.
+     * @param now Time the message was read, in nanoseconds.
+     * @return <code>true</code> if the message must be processed, <code>false</code> if it must be ignored.
+     */
+    boolean admit(final Session session, final int command, final long now) {
+        final long state = session.getRateLimitState();
+        if (state == CLOSED) {
+            return false;
+        }
+        final int cost = this.getCost(command);
+        if (cost == 0) {
+            return true;
+        }
+        final long full = Math.max(state, now) + cost * this.interval;
+        if (full - now <= this.tolerance) {
+            session.setRateLimitState(full);
+            return true;
+        }
+        this.limited[command >= 0 && command < this.costs.length ? command : this.costs.length].increment();
+        session.rateLimited();
+        switch (this.action) {
+            case DELAY:
+                session.setRateLimitState(full);
+                session.pauseReading(full - now - this.tolerance);
+                return true;
+            case DISCONNECT:
+                LOGGER.log(System.Logger.Level.WARNING, "Rate limit exceeded by " + session.getPlayer() + ", closing connection.");
+                session.setRateLimitState(CLOSED);
+                session.evict();
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private void checkCost(final int cost) {
+        if (cost < 0 || cost > this.capacity) {
+            throw new IllegalArgumentException("Cost must be between 0 and the capacity: " + cost);
+        }
+    }
+}
@@ -27,6 +27,8 @@ package be.yildizgames.module.network.server;
 import be.yildizgames.module.network.DecoderEncoder;
 import be.yildizgames.module.network.exceptions.NetworkException;
 import be.yildizgames.module.network.server.dummy.DummyServerProvider;
+import be.yildizgames.module.network.server.nio.NioServerProvider;
+import be.yildizgames.module.network.server.nio.VirtualThreadServerProvider;
 
 import java.util.ServiceLoader;
 
@@ -37,9 +39,61 @@ import java.util.ServiceLoader;
  */
 public abstract class Server {
 
+    /**
+     * System property to select the server provider by its name, when several are available.
+     */
+    public static final String PROVIDER_PROPERTY = "yildiz.network.server";
+
+    /**
+     * Provide a server from the provider named in the PROVIDER_PROPERTY system property.
+     * If the property is not set, the first provider found that is not bundled with this module is used.
+     * The bundled providers are only used when selected by name.
+     *
+     * @return The server, a dummy one if no provider other than the bundled ones is available.
+     * @throws NetworkException If the property is set and no provider has this name.
+     */
     public static Server getEngine() {
-        ServiceLoader<ServerProvider> provider = ServiceLoader.load(ServerProvider.class);
-        return provider.findFirst().orElseGet(DummyServerProvider::new).getEngine();
+        final String name = System.getProperty(PROVIDER_PROPERTY);
+        if (name != null) {
+            return getEngine(name);
+        }
+        return select(ServiceLoader.load(ServerProvider.class)).getEngine();
+    }
+
+    /**
+     * Choose the provider to use when none is selected by name.
+     *
+     * @param providers Available providers.
+     * @return The first provider not bundled with this module, the dummy provider if there is none.
+     */
+    static ServerProvider select(final Iterable<ServerProvider> providers) {
+        for (ServerProvider provider : providers) {
+            if (!isBundled(provider)) {
+                return provider;
+            }
+        }
+        return new DummyServerProvider();
+    }
+
+    private static boolean isBundled(final ServerProvider provider) {
+        return provider.getClass() == NioServerProvider.class || provider.getClass() == VirtualThreadServerProvider.class;
+    }
+
+    /**
+     * Provide a server from the provider with a given name.
+     * The bundled providers are nio, for the selector based server, and virtual-thread, for the server using a virtual thread per session.
+     *
+     * @param name Name of the provider.
+     * @return The server.
+     * @throws NetworkException If no provider has this name.
+     */
+    public static Server getEngine(final String name) {
+        for (ServerProvider provider : ServiceLoader.load(ServerProvider.class)) {
+            if (provider.getName().equals(name)) {
+                return provider.getEngine();
+            }
+        }
+        throw new NetworkException("No server provider named " + name);
     }
 
     /**
@@ -47,7 +101,7 @@ public abstract class Server {
      * @param address Address to connect to.
      * @param port Port to connect to.
      * @param sessionManager Session manager to handle connexions.
-     * @param codec Transmission codec.
+     * @param codec Transmission codec, when BINARY, the sessions must be created with this codec.
      */
     public abstract void startServer(String address, int port, SessionManager sessionManager, DecoderEncoder codec);
 
@@ -55,7 +109,7 @@ public abstract class Server {
      * Initialize and start the server.
      * @param port Port to connect to.
      * @param sessionManager Session manager to handle connexions.
-     * @param codec Transmission codec.
+     * @param codec Transmission codec, when BINARY, the sessions must be created with this codec.
      */
     public abstract void startServer(int port, SessionManager sessionManager, DecoderEncoder codec);
 
@@ -30,4 +30,13 @@ package be.yildizgames.module.network.server;
 public interface ServerProvider {
 
     Server getEngine();
+
+    /**
+     * Provide the name used to select this provider with the Server.PROVIDER_PROPERTY system property.
+     *
+     * @return The provider name, by default its simple class name.
+     */
+    default String getName() {
+        return this.getClass().getSimpleName();
+    }
 }
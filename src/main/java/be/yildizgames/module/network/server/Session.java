@@ -25,10 +25,22 @@
 package be.yildizgames.module.network.server;
 
 import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.exceptions.NetworkException;
+import be.yildizgames.module.network.protocol.BinaryCodec;
+import be.yildizgames.module.network.protocol.DeltaEncoder;
+import be.yildizgames.module.network.protocol.EncodedMessage;
+import be.yildizgames.module.network.protocol.FrameDecoder;
 import be.yildizgames.module.network.protocol.NetworkMessage;
+import be.yildizgames.module.network.protocol.PayloadCompressor;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A session is a player when it is currently playing.
@@ -39,30 +51,133 @@ public abstract class Session {
 
     private static final System.Logger LOGGER = System.getLogger(Session.class.getName());
 
+    /**
+     * Builder reused to serialize the messages, one per thread sending messages.
+     */
+    private static final ThreadLocal<StringBuilder> ENCODER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    /**
+     * Capacity above which the reused builder is released, to not retain the memory used by an exceptionally large message.
+     */
+    private static final int ENCODER_MAX_CAPACITY = 65536;
+
     /**
      * Associated player.
      */
-    private PlayerId player;
+    private volatile PlayerId player;
 
     /**
      * <code>true</code> if the client is physically connected to the server.
      */
-    private boolean connected;
+    private volatile boolean connected;
 
     /**
      * <code>true</code> if the client's credentials have been accepted.
      */
-    private boolean authenticated;
+    private volatile boolean authenticated;
 
     /**
-     * Full constructor.
+     * Codec used to send the messages.
+     */
+    private final DecoderEncoder codec;
+
+    /**
+     * Decoder keeping the incomplete frame between two reads, created on first use.
+     */
+    private FrameDecoder frameDecoder;
+
+    /**
+     * Compressor for the message payloads, created on first use.
+     * Read once by the sending threads, a compressor closed by a disconnection while in use sends the message uncompressed.
+     */
+    private volatile PayloadCompressor payloadCompressor;
+
+    /**
+     * Lock guarding the coalescing buffer and the delta encoder, the session being sent messages by several threads at once.
+     */
+    private final Object outboundLock = new Object();
+
+    /**
+     * Encoder for the delta state messages, created on first use, guarded by the outbound lock.
+     */
+    private DeltaEncoder deltaEncoder;
+
+    /**
+     * Buffer accumulating the frames to write them at once, null if the frames are written immediately, only used while holding the outbound lock.
+     */
+    private volatile OutboundBuffer outbound;
+
+    /**
+     * Bounded queue of the messages waiting to be written, used by the implementations writing asynchronously.
+     */
+    private final OutboundQueue outboundQueue = new OutboundQueue(this);
+
+    /**
+     * Session manager to notify when the writability changes, set once authenticated.
+     */
+    private volatile SessionManager sessionManager;
+
+    /**
+     * Mailbox of the messages waiting to be processed, created when the first message is given to a mailbox dispatcher.
+     */
+    private volatile Mailbox mailbox;
+
+    /**
+     * Asynchronous authentication in progress, null if none.
+     */
+    private volatile PendingAuthentication pendingAuthentication;
+
+    /**
+     * Time of the last message received, in nanoseconds.
+     */
+    private volatile long lastActivity = System.nanoTime();
+
+    /**
+     * Timeout of the idle monitor watching this session, null if none.
+     */
+    private final AtomicReference<IdleMonitor.IdleTimeout> idleTimeout = new AtomicReference<>();
+
+    /**
+     * Rate limiter checking the received messages, null if not limited.
+     */
+    private volatile RateLimiter rateLimiter;
+
+    /**
+     * Time at which the rate limit bucket is full again, only used by the thread reading the session.
+     */
+    private long rateLimitState = Long.MIN_VALUE;
+
+    /**
+     * Number of received messages having exceeded the rate limit, only incremented by the thread reading the session.
+     */
+    private volatile long rateLimitedCount;
+
+    /**
+     * Interest groups and grids this session is subscribed to, created on first subscription, guarded by the session monitor.
+     */
+    private List<Interest> interests;
+
+    /**
+     * Create a session using string messages.
      *
      * @param player Player associated to this session.
      */
     protected Session(final PlayerId player) {
+        this(player, DecoderEncoder.STRING);
+    }
+
+    /**
+     * Full constructor.
+     *
+     * @param player Player associated to this session.
+     * @param codec Codec used to send the messages.
+     */
+    protected Session(final PlayerId player, final DecoderEncoder codec) {
         super();
         Objects.requireNonNull(player);
+        Objects.requireNonNull(codec);
         this.player = player;
+        this.codec = codec;
         this.connected = true;
     }
 
@@ -73,9 +188,36 @@ public abstract class Session {
         LOGGER.log(System.Logger.Level.INFO, this.getPlayer() + " disconnected.");
         this.connected = false;
         this.authenticated = false;
+        this.frameDecoder = null;
+        final PayloadCompressor compressor = this.payloadCompressor;
+        this.payloadCompressor = null;
+        if (compressor != null) {
+            compressor.close();
+        }
+        synchronized (this.outboundLock) {
+            this.deltaEncoder = null;
+            final OutboundBuffer buffer = this.outbound;
+            if (buffer != null) {
+                buffer.clear();
+            }
+        }
+        this.leaveInterests();
         this.closeSession();
     }
 
+    /**
+     * Disconnect this session on behalf of the server, when it exceeded a limit.
+     * Once authenticated, it is disconnected through its session manager, so it is removed from the connected players and the listeners are notified.
+     */
+    final void evict() {
+        final SessionManager manager = this.sessionManager;
+        if (manager != null && this.authenticated) {
+            manager.disconnectSession(this);
+        } else {
+            this.disconnect();
+        }
+    }
+
     /**
      * Set this session as setAuthenticated.
      */
@@ -89,7 +231,60 @@ public abstract class Session {
      * @param message Message to send to the client.
      */
     public final void sendMessage(final NetworkMessage<?> message) {
-        this.sendMessage(message.buildMessage());
+        if (this.codec == DecoderEncoder.BINARY) {
+            this.write(BinaryCodec.encode(message));
+        } else {
+            final StringBuilder builder = ENCODER.get();
+            builder.setLength(0);
+            final PayloadCompressor compressor = this.payloadCompressor;
+            if (compressor == null) {
+                message.appendTo(builder);
+            } else {
+                compressor.appendTo(message, builder);
+            }
+            this.write(builder);
+            if (builder.capacity() > ENCODER_MAX_CAPACITY) {
+                ENCODER.remove();
+            }
+        }
+    }
+
+    /**
+     * Send an already serialized message to the connected client, the serialized form matching the session codec is used.
+     *
+     * @param message Message to send to the client.
+     */
+    public final void sendMessage(final EncodedMessage message) {
+        if (this.codec == DecoderEncoder.BINARY) {
+            this.write(message.binary());
+        } else {
+            this.write(message.text());
+        }
+    }
+
+    /**
+     * Send a state message as the difference with the last one sent for the same command and key.
+     * The client must be able to rebuild delta messages, so this is to be used once it has been negotiated with the client.
+     * Binary sessions do not support delta messages, the full message is sent.
+     *
+     * @param message State message to send to the client.
+     * @param key Key identifying the state, for example the entity id.
+     */
+    public final void sendDelta(final NetworkMessage<?> message, final int key) {
+        if (this.codec == DecoderEncoder.BINARY) {
+            this.sendMessage(message);
+        } else {
+            final StringBuilder builder = ENCODER.get();
+            builder.setLength(0);
+            //encoded and written under the lock, so the frames reach the client in the order of their baselines.
+            synchronized (this.outboundLock) {
+                this.getDeltaEncoder().appendTo(message, key, builder);
+                this.write(builder);
+            }
+            if (builder.capacity() > ENCODER_MAX_CAPACITY) {
+                ENCODER.remove();
+            }
+        }
     }
 
     /**
@@ -101,6 +296,327 @@ public abstract class Session {
         messageList.forEach(this::sendMessage);
     }
 
+    /**
+     * Accumulate the frames sent to this session and write them at once, when the session is flushed, when the pending frames reach a size, or when a frame is sent after the oldest pending one has waited for a delay.
+     * The session manager writes the frames of all its sessions after every update when driven by a tick scheduler or a shard, otherwise its flush method must be called after its update.
+     * The frames sent between two updates are written by the next one, or before when a new frame reaches the size or the delay.
+     *
+     * @param maxBytes Number of pending bytes, or characters for the text codecs, triggering a flush.
+     * @param maxDelay Maximum time to keep a frame pending when other frames are sent, in nanoseconds.
+     */
+    public final void enableCoalescing(final int maxBytes, final long maxDelay) {
+        synchronized (this.outboundLock) {
+            this.flush();
+            this.outbound = new OutboundBuffer(maxBytes, maxDelay);
+        }
+    }
+
+    /**
+     * Write the pending frames immediately, to be used for latency critical messages, does nothing if no frame is pending.
+     * The frames are handed to the transport while holding the outbound lock, so they are not interleaved with the frames of another thread.
+     */
+    public final void flush() {
+        final OutboundBuffer buffer = this.outbound;
+        if (buffer == null) {
+            return;
+        }
+        synchronized (this.outboundLock) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            if (this.codec == DecoderEncoder.BINARY) {
+                this.sendMessage(buffer.takeBinary());
+            } else {
+                this.sendMessage(buffer.text());
+            }
+            buffer.flushed();
+        }
+    }
+
+    /**
+     * Flush the pending frames if the oldest one has waited for the coalescing delay.
+     */
+    public final void flushIfExpired() {
+        final OutboundBuffer buffer = this.outbound;
+        if (buffer == null) {
+            return;
+        }
+        synchronized (this.outboundLock) {
+            if (buffer.isExpired()) {
+                this.flush();
+            }
+        }
+    }
+
+    /**
+     * @return The number of writes done by flushing the coalesced frames.
+     */
+    public final long getFlushCount() {
+        final OutboundBuffer buffer = this.outbound;
+        if (buffer == null) {
+            return 0;
+        }
+        synchronized (this.outboundLock) {
+            return buffer.getFlushes();
+        }
+    }
+
+    /**
+     * @return The number of frames written by flushing, divided by the flush count gives the average number of frames per write.
+     */
+    public final long getFlushedFrameCount() {
+        final OutboundBuffer buffer = this.outbound;
+        if (buffer == null) {
+            return 0;
+        }
+        synchronized (this.outboundLock) {
+            return buffer.getFlushedFrames();
+        }
+    }
+
+    /**
+     * @return The maximum number of frames written by a single flush.
+     */
+    public final int getMaxFramesPerFlush() {
+        final OutboundBuffer buffer = this.outbound;
+        if (buffer == null) {
+            return 0;
+        }
+        synchronized (this.outboundLock) {
+            return buffer.getMaxFramesPerFlush();
+        }
+    }
+
+    /**
+     * Limit the bytes waiting to be written to this session, only applied by the implementations writing asynchronously.
+     *
+     * @param limits Watermarks, capacity and overflow policy.
+     */
+    public final void setOutboundLimits(final OutboundLimits limits) {
+        this.outboundQueue.setLimits(limits);
+    }
+
+    /**
+     * A session is not writable when too many bytes are waiting to be written, non essential messages should not be sent to it until it is writable again.
+     *
+     * @return <code>true</code> if the pending bytes are under the high watermark.
+     */
+    public final boolean isWritable() {
+        return this.outboundQueue.isWritable();
+    }
+
+    /**
+     * @return The queue of the messages waiting to be written, for the implementations writing asynchronously.
+     */
+    protected final OutboundQueue getOutboundQueue() {
+        return this.outboundQueue;
+    }
+
+    /**
+     * Provide the mailbox of this session, to follow how many messages are waiting and how long they wait.
+     *
+     * @return The mailbox, null if the messages of this session are not processed through a mailbox dispatcher.
+     */
+    public final Mailbox getMailbox() {
+        return this.mailbox;
+    }
+
+    /**
+     * Record an interest this session subscribed to, to leave it when disconnected.
+     *
+     * @param interest Interest subscribed to.
+     * @return <code>false</code> if the session is disconnected, the interest is then not recorded and the session must be removed from it.
+     */
+    final boolean join(final Interest interest) {
+        synchronized (this) {
+            if (this.interests == null) {
+                this.interests = new ArrayList<>(4);
+            }
+            this.interests.add(interest);
+        }
+        if (!this.connected) {
+            this.quit(interest);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stop recording an interest this session unsubscribed from.
+     *
+     * @param interest Interest unsubscribed from.
+     */
+    final synchronized void quit(final Interest interest) {
+        if (this.interests != null) {
+            this.interests.remove(interest);
+        }
+    }
+
+    /**
+     * Remove this disconnected session from all the interests it subscribed to.
+     */
+    private void leaveInterests() {
+        final List<Interest> left;
+        synchronized (this) {
+            left = this.interests;
+            this.interests = null;
+        }
+        if (left != null) {
+            left.forEach(i -> i.leave(this));
+        }
+    }
+
+    /**
+     * Provide the mailbox of this session, creating it on first use.
+     *
+     * @param executor Executor to run the mailbox if it is created.
+     * @return The mailbox of this session.
+     */
+    final Mailbox getMailbox(final Executor executor) {
+        Mailbox result = this.mailbox;
+        if (result == null) {
+            synchronized (this) {
+                result = this.mailbox;
+                if (result == null) {
+                    result = new Mailbox(executor);
+                    this.mailbox = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    final PendingAuthentication getPendingAuthentication() {
+        return this.pendingAuthentication;
+    }
+
+    final void setPendingAuthentication(final PendingAuthentication pendingAuthentication) {
+        this.pendingAuthentication = pendingAuthentication;
+    }
+
+    /**
+     * @return The time of the last message received, or of the creation of the session if none, from System.nanoTime.
+     */
+    public final long getLastActivity() {
+        return this.lastActivity;
+    }
+
+    /**
+     * Limit the rate of the messages received from this session, the limit is checked before the message is decoded.
+     *
+     * @param rateLimiter Rate limiter to use, null to remove the limit.
+     */
+    public final void setRateLimiter(final RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Check if a received message is within the rate limit of this session, applying the limiter action if it is not.
+     * Called by the thread reading the session, for every message, before decoding it.
+     * The messages decoded from the same read having arrived together, the time can be read once for all of them.
+     *
+     * @param command Command of the received message.
+     * @param now Time the message was read, from System.nanoTime.
+     * @return <code>true</code> if the message must be processed, <code>false</code> if it must be ignored.
+     */
+    public final boolean admit(final int command, final long now) {
+        final RateLimiter limiter = this.rateLimiter;
+        return limiter == null || limiter.admit(this, command, now);
+    }
+
+    /**
+     * @return The number of received messages having exceeded the rate limit.
+     */
+    public final long getRateLimitedCount() {
+        return this.rateLimitedCount;
+    }
+
+    /**
+     * Stop reading from the client for a while, called when the rate limit is exceeded with the delay action.
+     * Called by the thread reading the session, the implementations able to stop reading override it, by default nothing is done.
+     *
+     * @param nanos Time to wait before reading again, in nanoseconds.
+     */
+    protected void pauseReading(final long nanos) {
+        //not supported by default.
+    }
+
+    final long getRateLimitState() {
+        return this.rateLimitState;
+    }
+
+    final void setRateLimitState(final long rateLimitState) {
+        this.rateLimitState = rateLimitState;
+    }
+
+    final void rateLimited() {
+        this.rateLimitedCount++;
+    }
+
+    /**
+     * Record a message received now.
+     */
+    final void touch() {
+        this.lastActivity = System.nanoTime();
+    }
+
+    /**
+     * Replace the timeout of the idle monitor watching this session.
+     *
+     * @param timeout New timeout, null if not watched anymore.
+     * @return The previous timeout, null if none.
+     */
+    final IdleMonitor.IdleTimeout setIdleTimeout(final IdleMonitor.IdleTimeout timeout) {
+        return this.idleTimeout.getAndSet(timeout);
+    }
+
+    /**
+     * Set the session manager to notify when the writability changes.
+     *
+     * @param sessionManager Session manager having authenticated this session.
+     */
+    final void setSessionManager(final SessionManager sessionManager) {
+        this.sessionManager = sessionManager;
+    }
+
+    /**
+     * Called by the outbound queue when a watermark is crossed.
+     *
+     * @param writable New writability.
+     */
+    final void writabilityChanged(final boolean writable) {
+        final SessionManager manager = this.sessionManager;
+        if (manager != null && this.authenticated) {
+            manager.writabilityChanged(this, writable);
+        }
+    }
+
+    private void write(final CharSequence frame) {
+        final OutboundBuffer buffer = this.outbound;
+        if (buffer == null) {
+            this.sendMessage(frame);
+            return;
+        }
+        synchronized (this.outboundLock) {
+            if (buffer.add(frame)) {
+                this.flush();
+            }
+        }
+    }
+
+    private void write(final ByteBuffer frame) {
+        final OutboundBuffer buffer = this.outbound;
+        if (buffer == null) {
+            this.sendMessage(frame);
+            return;
+        }
+        synchronized (this.outboundLock) {
+            if (buffer.add(frame)) {
+                this.flush();
+            }
+        }
+    }
+
     /**
      * Close the session if the client has been disconnected.
      */
@@ -109,6 +625,127 @@ public abstract class Session {
 
     public abstract void sendMessage(String message);
 
+    /**
+     * Send a serialized message to the connected client.
+     * The sequence is reused once the call returns, the implementation must not keep a reference to it.
+     * By default, the sequence is converted to a String, implementations able to write the characters directly should override this method.
+     *
+     * @param message Message to send to the client.
+     */
+    public void sendMessage(final CharSequence message) {
+        this.sendMessage(message.toString());
+    }
+
+    /**
+     * Send a binary frame to the connected client, must be implemented by the sessions using the binary codec.
+     * The buffer may be written asynchronously, its content must not be modified once given to this method.
+     *
+     * @param message Buffer containing the frame to send.
+     */
+    public void sendMessage(final ByteBuffer message) {
+        throw new NetworkException("Binary messages are not supported by this session.");
+    }
+
+    /**
+     * Provide the decoder keeping the incomplete frame received from this session, a decoder with the default maximum frame size is created on first use.
+     *
+     * @return The frame decoder for this session.
+     */
+    public final FrameDecoder getFrameDecoder() {
+        if (this.frameDecoder == null) {
+            this.frameDecoder = new FrameDecoder();
+        }
+        return this.frameDecoder;
+    }
+
+    /**
+     * Replace the frame decoder for this session, to use a different maximum frame size.
+     *
+     * @param frameDecoder Decoder to use.
+     */
+    public final void setFrameDecoder(final FrameDecoder frameDecoder) {
+        Objects.requireNonNull(frameDecoder);
+        this.frameDecoder = frameDecoder;
+    }
+
+    /**
+     * Compress the payload of the text messages sent to this session when they reach a size threshold.
+     * The client must be able to inflate compressed messages, so this is to be called once it has been negotiated with the client.
+     *
+     * @param threshold Minimum number of characters of a payload to be compressed.
+     */
+    public final void enableCompression(final int threshold) {
+        this.enableCompression(threshold, null);
+    }
+
+    /**
+     * Compress the payload of the text messages sent to this session against a preset dictionary when they reach a size threshold.
+     * The client must use the same dictionary, so this is to be called once it has been agreed with the client during the handshake.
+     *
+     * @param threshold Minimum number of characters of a payload to be compressed.
+     * @param dictionary Preset dictionary shared with the client, null to not use any.
+     */
+    public final void enableCompression(final int threshold, final byte[] dictionary) {
+        final PayloadCompressor previous = this.payloadCompressor;
+        this.payloadCompressor = new PayloadCompressor(threshold, dictionary);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Provide the compressor used for this session, a compressor only able to inflate received messages is created on first use if compression is not enabled.
+     *
+     * @return The payload compressor for this session.
+     */
+    public final PayloadCompressor getPayloadCompressor() {
+        PayloadCompressor compressor = this.payloadCompressor;
+        if (compressor == null) {
+            compressor = new PayloadCompressor(PayloadCompressor.DISABLED);
+            this.payloadCompressor = compressor;
+        }
+        return compressor;
+    }
+
+    /**
+     * Provide the encoder used for the delta state messages of this session, an encoder with the default limits is created on first use.
+     * The encoder is not thread safe and is used by the threads sending delta messages, it is to be read only, the baselines are invalidated with invalidateDelta.
+     *
+     * @return The delta encoder for this session.
+     */
+    public final DeltaEncoder getDeltaEncoder() {
+        synchronized (this.outboundLock) {
+            if (this.deltaEncoder == null) {
+                this.deltaEncoder = new DeltaEncoder();
+            }
+            return this.deltaEncoder;
+        }
+    }
+
+    /**
+     * Replace the delta encoder for this session, to use different limits.
+     *
+     * @param deltaEncoder Encoder to use.
+     */
+    public final void setDeltaEncoder(final DeltaEncoder deltaEncoder) {
+        Objects.requireNonNull(deltaEncoder);
+        synchronized (this.outboundLock) {
+            this.deltaEncoder = deltaEncoder;
+        }
+    }
+
+    /**
+     * Invalidate a delta baseline, when the client requests a resynchronization, the next message for that command and key is sent as a keyframe.
+     *
+     * @param command Command of the state.
+     * @param key Key identifying the state.
+     */
+    public final void invalidateDelta(final int command, final int key) {
+        synchronized (this.outboundLock) {
+            this.getDeltaEncoder().invalidate(command, key);
+        }
+    }
+
     /**
      * @return <code>true</code>.
      */
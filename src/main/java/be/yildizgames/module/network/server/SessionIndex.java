@@ -0,0 +1,339 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.model.PlayerId;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the sessions by the int value of their player id.
+ * The player ids being dense, the sessions are stored directly at their id in pages of fixed size, created when the first id of their range is added:
+ * a lookup is two array reads, without hashing, boxing or node object.
+ * Reads are lock free and can be done from any thread, writes are serialized on the index, a page never moves once created so a reader never misses a session present before its read.
+ * Only the ids from 0 to MAX_PAGED_ID, exclusive, are paged, bounding the pages array to a few kilobytes whatever the ids,
+ * the negative ids and the ids above are kept in a hash map, so a few sparse ids cost a map entry each instead of growing the pages.
+ *
+ * @author Grégory Van den Borre
+ */
+final class SessionIndex implements Iterable<Session> {
+
+    /**
+     * Number of bits of the id used to find the slot in a page.
+     */
+    static final int PAGE_BITS = 10;
+
+    /**
+     * Number of slots in a page.
+     */
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /**
+     * First id not stored in the pages.
+     */
+    static final int MAX_PAGED_ID = 1 << 20;
+
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * Maximum number of pages.
+     */
+    private static final int MAX_PAGES = MAX_PAGED_ID >>> PAGE_BITS;
+
+    private static final VarHandle PAGES = MethodHandles.arrayElementVarHandle(Session[][].class);
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Session[].class);
+
+    /**
+     * Pages of sessions, indexed by the id high bits, replaced by a bigger array when a higher id is added.
+     */
+    private volatile Session[][] pages = new Session[1][];
+
+    /**
+     * Sessions with an id out of the paged range, negative or from MAX_PAGED_ID.
+     */
+    private final Map<Integer, Session> sparse = new ConcurrentHashMap<>();
+
+    /**
+     * Number of sessions, only modified holding the index monitor.
+     */
+    private volatile int size;
+
+    /**
+     * Incremented after every addition or removal.
+     */
+    private volatile long version;
+
+    /**
+     * Read only view on the players of the indexed sessions.
+     */
+    private final Set<PlayerId> players = new PlayerSet();
+
+    SessionIndex() {
+        super();
+    }
+
+    /**
+     * Retrieve the session of a player.
+     *
+     * @param player Player id value.
+     * @return The session for that player, null if none.
+     */
+    Session get(final int player) {
+        if (!isPaged(player)) {
+            return this.sparse.get(player);
+        }
+        final Session[][] current = this.pages;
+        final int page = player >>> PAGE_BITS;
+        if (page >= current.length) {
+            return null;
+        }
+        final Session[] slots = (Session[]) PAGES.getAcquire(current, page);
+        return slots == null ? null : (Session) SLOTS.getAcquire(slots, player & PAGE_MASK);
+    }
+
+    /**
+     * Add a session at the id of its player, replacing any session already present for that player.
+     *
+     * @param session Session to add.
+     * @return The replaced session, null if none.
+     */
+    synchronized Session put(final Session session) {
+        final int player = session.getPlayer().value;
+        final Session previous;
+        if (!isPaged(player)) {
+            previous = this.sparse.put(player, session);
+        } else {
+            final Session[] slots = this.page(player >>> PAGE_BITS);
+            previous = (Session) SLOTS.getAcquire(slots, player & PAGE_MASK);
+            SLOTS.setRelease(slots, player & PAGE_MASK, session);
+        }
+        if (previous == null) {
+            this.size++;
+        }
+        this.version++;
+        return previous;
+    }
+
+    /**
+     * Remove a session, only if it is still the one indexed for its player.
+     *
+     * @param session Session to remove.
+     * @return <code>true</code> if the session was removed.
+     */
+    synchronized boolean remove(final Session session) {
+        final int player = session.getPlayer().value;
+        if (this.get(player) != session) {
+            return false;
+        }
+        if (!isPaged(player)) {
+            this.sparse.remove(player);
+        } else {
+            SLOTS.setRelease((Session[]) PAGES.getAcquire(this.pages, player >>> PAGE_BITS), player & PAGE_MASK, null);
+        }
+        this.size--;
+        this.version++;
+        return true;
+    }
+
+    /**
+     * @return The number of indexed sessions.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return A value changing every time a session is added or removed, read before iterating, it is changed only after the index is.
+     */
+    long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @return A copy of the indexed sessions.
+     */
+    List<Session> toList() {
+        final List<Session> result = new ArrayList<>(this.size);
+        this.forEach(result::add);
+        return List.copyOf(result);
+    }
+
+    /**
+     * @return A live read only view on the players of the indexed sessions.
+     */
+    Set<PlayerId> players() {
+        return this.players;
+    }
+
+    /**
+     * @return An estimation of the memory used by the pages and the sparse ids, in bytes, counting a reference as 4 bytes.
+     */
+    long getMemoryUsage() {
+        final Session[][] current = this.pages;
+        long result = 16L + 4L * current.length;
+        for (Session[] slots : current) {
+            if (slots != null) {
+                result += 16L + 4L * PAGE_SIZE;
+            }
+        }
+        return result + 64L * this.sparse.size();
+    }
+
+    /**
+     * Iterate over the indexed sessions, the iteration is weakly consistent: sessions added or removed during the iteration may be seen or not.
+     *
+     * @return An iterator over the sessions, not supporting removal.
+     */
+    @Override
+    public Iterator<Session> iterator() {
+        return new SessionIterator(this.pages, this.sparse.values().iterator());
+    }
+
+    /**
+     * Provide the page for a page index, creating it and growing the pages if needed, to be called holding the monitor.
+     *
+     * @param page Page index.
+     * @return The page.
+     */
+    private Session[] page(final int page) {
+        Session[][] current = this.pages;
+        if (page >= current.length) {
+            current = Arrays.copyOf(current, Math.max(page + 1, Math.min(current.length * 2, MAX_PAGES)));
+            this.pages = current;
+        }
+        Session[] slots = (Session[]) PAGES.getAcquire(current, page);
+        if (slots == null) {
+            slots = new Session[PAGE_SIZE];
+            PAGES.setRelease(current, page, slots);
+        }
+        return slots;
+    }
+
+    private static boolean isPaged(final int player) {
+        return player >= 0 && player < MAX_PAGED_ID;
+    }
+
+    /**
+     * Iterate over the sparse ids, then the pages in id order.
+     */
+    private static final class SessionIterator implements Iterator<Session> {
+
+        private final Session[][] pages;
+
+        private final Iterator<Session> sparse;
+
+        private int id;
+
+        private Session next;
+
+        private SessionIterator(final Session[][] pages, final Iterator<Session> sparse) {
+            super();
+            this.pages = pages;
+            this.sparse = sparse;
+            this.advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public Session next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            final Session result = this.next;
+            this.advance();
+            return result;
+        }
+
+        private void advance() {
+            if (this.sparse.hasNext()) {
+                this.next = this.sparse.next();
+                return;
+            }
+            final int end = this.pages.length << PAGE_BITS;
+            while (this.id < end) {
+                final Session[] slots = (Session[]) PAGES.getAcquire(this.pages, this.id >>> PAGE_BITS);
+                if (slots == null) {
+                    this.id = ((this.id >>> PAGE_BITS) + 1) << PAGE_BITS;
+                    continue;
+                }
+                final Session session = (Session) SLOTS.getAcquire(slots, this.id & PAGE_MASK);
+                this.id++;
+                if (session != null) {
+                    this.next = session;
+                    return;
+                }
+            }
+            this.next = null;
+        }
+    }
+
+    /**
+     * Read only set of the players, backed by the index.
+     */
+    private final class PlayerSet extends AbstractSet<PlayerId> {
+
+        @Override
+        public boolean contains(final Object o) {
+            return o instanceof PlayerId && get(((PlayerId) o).value) != null;
+        }
+
+        @Override
+        public Iterator<PlayerId> iterator() {
+            final Iterator<Session> sessions = SessionIndex.this.iterator();
+            return new Iterator<>() {
+
+                @Override
+                public boolean hasNext() {
+                    return sessions.hasNext();
+                }
+
+                @Override
+                public PlayerId next() {
+                    return sessions.next().getPlayer();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return SessionIndex.this.size;
+        }
+    }
+}
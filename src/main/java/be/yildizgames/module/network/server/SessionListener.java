@@ -58,4 +58,14 @@ public interface SessionListener {
     default void sessionClosed(Session session) {
     }
 
+    /**
+     * Called when a session stops or starts again to be writable, because its pending bytes crossed a watermark.
+     * Called by the thread having sent or written the messages, the listener must return quickly.
+     *
+     * @param session Client session.
+     * @param writable <code>true</code> if the session is writable again, <code>false</code> if it is no longer writable.
+     */
+    default void writabilityChanged(Session session, boolean writable) {
+    }
+
 }
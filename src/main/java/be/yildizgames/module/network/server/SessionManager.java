@@ -24,50 +24,112 @@
 
 package be.yildizgames.module.network.server;
 
+import be.yildizgames.common.mapping.ObjectMapper;
 import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.protocol.EncodedMessage;
 import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.protocol.NetworkMessage;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
 
 /**
+ * Keep the connected sessions and dispatch the messages they send.
+ * The session manager is thread safe without a global lock, so the messages can be dispatched from several network threads:
+ * the sessions are kept in an index by player id, read without lock, the listeners and command handlers are copied on registration,
+ * and the list of active sessions is a snapshot rebuilt only when the sessions changed.
+ *
  * @author Grégory Van den Borre
  */
 public abstract class SessionManager {
 
+    /**
+     * Highest command a handler can be added for, the handlers being stored in an array indexed by command.
+     */
+    public static final int MAX_COMMAND = 65535;
+
     private static final System.Logger LOGGER = System.getLogger(SessionManager.class.getName());
 
     /**
      * List of listeners for sessions.
      */
-    private final List<SessionListener> sessionListeners = new ArrayList<>();
+    private final List<SessionListener> sessionListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Bindings for the commands, indexed by the command value, replaced by a new array when a binding is added.
+     */
+    private volatile CommandBinding<?>[] commandBindings = new CommandBinding<?>[0];
+
+    /**
+     * Index to link the player id to their associated session.
+     */
+    private final SessionIndex connectedPlayerList = new SessionIndex();
 
     /**
-     * Map to link the player to their associated session, those players may not be setAuthenticated.
+     * Last list of active sessions built, with the version it was built from.
      */
-    private final Map<PlayerId, Session> connectedPlayerList = new HashMap<>();
+    private volatile SessionsSnapshot activeSessions = new SessionsSnapshot(0, List.of());
+
+    /**
+     * Dispatcher running the processing of the messages, null to process them on the calling thread.
+     */
+    private volatile MessageDispatcher messageDispatcher;
+
+    /**
+     * Named channels, created on first use.
+     */
+    private final Map<String, InterestGroup> channels = new ConcurrentHashMap<>();
 
     /**
      * Constant for a disconnected session.
      */
     private final Session disconnectedSession = new SessionManager.DisconnectedSession();
 
+    protected SessionManager() {
+        super();
+    }
+
     /**
-     * @return The list of all connected players.
+     * Create a session manager with a dispatcher and a listener set before any subclass code runs.
+     *
+     * @param dispatcher Dispatcher running the processing of the messages.
+     * @param listener Listener to notify first.
+     */
+    SessionManager(final MessageDispatcher dispatcher, final SessionListener listener) {
+        super();
+        this.messageDispatcher = dispatcher;
+        this.sessionListeners.add(listener);
+    }
+
+    /**
+     * @return A live read only view on all connected players, without copy.
      */
     public final Set<PlayerId> getActivePlayers() {
-        return Collections.unmodifiableSet(this.connectedPlayerList.keySet());
+        return this.connectedPlayerList.players();
     }
 
     /**
+     * Provide the connected sessions, the list is an immutable snapshot only rebuilt when sessions were added or removed since the previous call.
+     *
      * @return The list of all connected sessions.
      */
     public final List<Session> getActiveSessions() {
-        return List.copyOf(this.connectedPlayerList.values());
+        final SessionsSnapshot snapshot = this.activeSessions;
+        final long version = this.connectedPlayerList.getVersion();
+        if (snapshot.version == version) {
+            return snapshot.sessions;
+        }
+        final List<Session> sessions = this.connectedPlayerList.toList();
+        this.activeSessions = new SessionsSnapshot(version, sessions);
+        return sessions;
     }
 
     /**
@@ -77,17 +139,132 @@ public abstract class SessionManager {
      * @return The associated Session or a disconnected session if the Player is currently logged off.
      */
     public final Session getSessionByPlayer(final PlayerId player) {
-        return this.connectedPlayerList.getOrDefault(player, this.disconnectedSession);
+        final Session session = this.connectedPlayerList.get(player.value);
+        return session == null ? this.disconnectedSession : session;
+    }
+
+    /**
+     * Find the session of a connected player.
+     *
+     * @param player Player to find.
+     * @return The session of the player, null if the player is not connected.
+     */
+    final Session findSession(final PlayerId player) {
+        return this.connectedPlayerList.get(player.value);
+    }
+
+    /**
+     * Send a message to all the connected sessions matching a filter, the message is serialized only once.
+     *
+     * @param message Message to send.
+     * @param filter Filter to select the sessions to send the message to.
+     * @return The number of sessions the message was sent to.
+     */
+    public final int broadcast(final NetworkMessage<?> message, final Predicate<Session> filter) {
+        Objects.requireNonNull(filter);
+        return this.deliver(EncodedMessage.of(message), filter);
     }
 
     /**
-     * Disconnect a session from the connected players.
+     * Send an encoded message to the connected sessions matching a filter, from the calling thread.
+     *
+     * @param encoded Message to send.
+     * @param filter Filter to select the sessions to send the message to.
+     * @return The number of sessions the message was sent to.
+     */
+    int deliver(final EncodedMessage encoded, final Predicate<Session> filter) {
+        int reached = 0;
+        for (Session session : this.connectedPlayerList) {
+            if (filter.test(session)) {
+                session.sendMessage(encoded);
+                reached++;
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Send a message to all the connected sessions, the message is serialized only once.
+     *
+     * @param message Message to send.
+     * @return The number of sessions the message was sent to.
+     */
+    public final int broadcast(final NetworkMessage<?> message) {
+        return this.broadcast(message, s -> true);
+    }
+
+    /**
+     * Send a message to a group of players, the message is serialized only once, players not connected are ignored.
+     *
+     * @param message Message to send.
+     * @param players Players to send the message to.
+     * @return The number of sessions the message was sent to.
+     */
+    public final int broadcast(final NetworkMessage<?> message, final Collection<PlayerId> players) {
+        Objects.requireNonNull(players);
+        return this.deliver(EncodedMessage.of(message), players);
+    }
+
+    /**
+     * Send an encoded message to a group of players, from the calling thread, players not connected are ignored.
+     *
+     * @param encoded Message to send.
+     * @param players Players to send the message to.
+     * @return The number of sessions the message was sent to.
+     */
+    int deliver(final EncodedMessage encoded, final Collection<PlayerId> players) {
+        int reached = 0;
+        for (PlayerId player : players) {
+            final Session session = this.connectedPlayerList.get(player.value);
+            if (session != null) {
+                session.sendMessage(encoded);
+                reached++;
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Provide a named channel, to send messages only to the sessions having subscribed to it, without filtering all the connected sessions.
+     *
+     * @param name Channel name.
+     * @return The channel with that name, created if it does not exist.
+     */
+    public final InterestGroup getChannel(final String name) {
+        return this.channels.computeIfAbsent(name, InterestGroup::new);
+    }
+
+    /**
+     * Send a message to the sessions subscribed to a channel, the message is serialized only once.
+     *
+     * @param channel Channel name.
+     * @param message Message to send.
+     * @return The number of sessions the message was sent to, 0 if the channel does not exist.
+     */
+    public final int publish(final String channel, final NetworkMessage<?> message) {
+        final InterestGroup group = this.channels.get(channel);
+        return group == null ? 0 : group.publish(message);
+    }
+
+    /**
+     * Disconnect a session from the connected players, the listeners are notified if the session was connected.
      *
      * @param session Session to disconnect.
      */
     public final void disconnectSession(final Session session) {
         session.disconnect();
-        this.connectedPlayerList.remove(session.getPlayer());
+        this.removeSession(session);
+    }
+
+    /**
+     * Remove a session from the connected players, without disconnecting it, and notify the listeners if it was connected.
+     *
+     * @param session Session to remove.
+     */
+    final void removeSession(final Session session) {
+        if (this.connectedPlayerList.remove(session)) {
+            this.sessionListeners.forEach(l -> l.sessionClosed(session));
+        }
     }
 
     /**
@@ -100,19 +277,103 @@ public abstract class SessionManager {
     }
 
     /**
-     * Callback for a received message, check if it is authenticated, if so, dispatch to the listeners, if not consider the message as an authentication request.
+     * Remove a session listener, it is not notified anymore.
+     *
+     * @param listener SessionListener to remove.
+     */
+    public final void removeSessionListener(final SessionListener listener) {
+        this.sessionListeners.remove(listener);
+    }
+
+    /**
+     * Add a handler to be notified when a message for a given command is received from an authenticated client.
+     * The message is decoded once with the mapper, and the decoded object is shared by all the handlers of the command.
+     *
+     * @param command Command to handle, must be positive and at most MAX_COMMAND.
+     * @param mapper Mapper to decode the message, all handlers of a command must use the same mapper instance.
+     * @param handler Handler to notify.
+     * @param <T> Type of the decoded message.
+     * @throws IllegalArgumentException If the command is negative, above MAX_COMMAND, or is already bound to another mapper.
+     */
+    @SuppressWarnings("unchecked")
+    public final synchronized <T> void addCommandHandler(final int command, final ObjectMapper<T> mapper, final CommandHandler<T> handler) {
+        Objects.requireNonNull(mapper);
+        Objects.requireNonNull(handler);
+        if (command < 0 || command > MAX_COMMAND) {
+            throw new IllegalArgumentException("Command must be between 0 and " + MAX_COMMAND + ": " + command);
+        }
+        CommandBinding<T> binding = command < this.commandBindings.length ? (CommandBinding<T>) this.commandBindings[command] : null;
+        if (binding == null) {
+            binding = new CommandBinding<>(command, mapper);
+            final CommandBinding<?>[] updated = Arrays.copyOf(this.commandBindings, Math.max(this.commandBindings.length, command + 1));
+            updated[command] = binding;
+            this.commandBindings = updated;
+        } else if (!binding.isMappedBy(mapper)) {
+            throw new IllegalArgumentException("Command " + command + " is already bound to another mapper.");
+        }
+        binding.addHandler(handler);
+    }
+
+    /**
+     * Callback for a received message, check if it is authenticated, if so, dispatch to the command handlers and to the listeners, if not consider the message as an authentication request.
+     * The time of the message is recorded as the last activity of the session.
+     * The messages received while an asynchronous authentication is in progress are kept until it completes.
      *
      * @param session Session having sent the message.
      * @param message Message received.
      */
     public final void messageReceived(final Session session, final MessageWrapper message) {
+        session.touch();
+        final PendingAuthentication pending = session.getPendingAuthentication();
+        if (pending != null && pending.offer(message)) {
+            return;
+        }
         if (session.isAuthenticated()) {
-            this.sessionListeners.forEach(l -> l.messageReceived(session, message));
+            this.dispatch(session, message);
         } else {
             authenticate(session, message);
         }
     }
 
+    /**
+     * Process a message from an authenticated session, with the dispatcher if any.
+     *
+     * @param session Session having sent the message.
+     * @param message Message received.
+     */
+    final void dispatch(final Session session, final MessageWrapper message) {
+        final MessageDispatcher dispatcher = this.messageDispatcher;
+        if (dispatcher == null) {
+            this.process(session, message);
+        } else {
+            dispatcher.dispatch(session, () -> this.process(session, message));
+        }
+    }
+
+    /**
+     * Run a task with the dispatcher if any, on the thread processing the messages of a session, or on the calling thread if there is no dispatcher.
+     *
+     * @param session Session the task is about.
+     * @param task Task to run.
+     */
+    final void execute(final Session session, final Runnable task) {
+        final MessageDispatcher dispatcher = this.messageDispatcher;
+        if (dispatcher == null) {
+            task.run();
+        } else {
+            dispatcher.dispatch(session, task);
+        }
+    }
+
+    /**
+     * Choose how the messages from the authenticated sessions are processed, the authentication requests are still processed on the calling thread.
+     *
+     * @param dispatcher Dispatcher running the processing of the messages, null to process them on the thread having received them.
+     */
+    public final void setMessageDispatcher(final MessageDispatcher dispatcher) {
+        this.messageDispatcher = dispatcher;
+    }
+
     /**
      * Set a session as setAuthenticated and thus as connected.
      *
@@ -120,14 +381,80 @@ public abstract class SessionManager {
      */
     public final void setAuthenticated(final Session session) {
         session.setAuthenticated();
-        this.connectedPlayerList.put(session.getPlayer(), session);
+        session.setSessionManager(this);
+        this.connectedPlayerList.put(session);
         this.sessionListeners.forEach(l -> l.clientAuthenticated(session));
     }
 
+    /**
+     * Give a message to the command handlers and the listeners.
+     *
+     * @param session Session having sent the message.
+     * @param message Message received.
+     */
+    final void process(final Session session, final MessageWrapper message) {
+        final int command = message.command;
+        final CommandBinding<?>[] bindings = this.commandBindings;
+        if (command >= 0 && command < bindings.length && bindings[command] != null) {
+            bindings[command].dispatch(session, message);
+        }
+        this.sessionListeners.forEach(l -> l.messageReceived(session, message));
+    }
+
+    /**
+     * Notify the listeners that the writability of a session changed.
+     *
+     * @param session Session having crossed a watermark.
+     * @param writable New writability.
+     */
+    final void writabilityChanged(final Session session, final boolean writable) {
+        this.sessionListeners.forEach(l -> l.writabilityChanged(session, writable));
+    }
+
+    /**
+     * Write the frames coalesced by the connected sessions.
+     * Called after every update when the session manager is driven by a tick scheduler or a shard, to be called after update otherwise.
+     */
+    public final void flush() {
+        for (Session session : this.connectedPlayerList) {
+            session.flush();
+        }
+    }
+
     protected abstract void authenticate(Session session, MessageWrapper message);
 
+    /**
+     * Process the pending work, the frames coalesced during the update are written by flush.
+     */
     public abstract void update();
 
+    /**
+     * Run the update and then write the frames coalesced by the sessions, even if the update failed.
+     */
+    final void updateAndFlush() {
+        try {
+            this.update();
+        } finally {
+            this.flush();
+        }
+    }
+
+    /**
+     * List of sessions built for a version of the connected sessions.
+     */
+    private static final class SessionsSnapshot {
+
+        private final long version;
+
+        private final List<Session> sessions;
+
+        private SessionsSnapshot(final long version, final List<Session> sessions) {
+            super();
+            this.version = version;
+            this.sessions = sessions;
+        }
+    }
+
     /**
      * Simple class to use for disconnected players.
      *
@@ -147,6 +474,11 @@ public abstract class SessionManager {
             LOGGER.log(System.Logger.Level.DEBUG, "Not sending message(disconnected session): {0}", message);
         }
 
+        @Override
+        public void sendMessage(final ByteBuffer message) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Not sending binary message(disconnected session)");
+        }
+
         @Override
         protected void closeSession() {
             LOGGER.log(System.Logger.Level.DEBUG, "Not closing session(disconnected session)");
@@ -0,0 +1,128 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Partition of the sessions, with its own session manager whose messages, tasks and updates all run on the shard thread.
+ * Running everything on a single thread, the shard session manager and the game state it updates need no lock.
+ *
+ * @author Grégory Van den Borre
+ */
+final class Shard {
+
+    private static final System.Logger LOGGER = System.getLogger(Shard.class.getName());
+
+    /**
+     * Session manager of the sessions of this shard.
+     */
+    private final SessionManager sessionManager;
+
+    /**
+     * Single thread running the tasks and the updates.
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Number of updates done.
+     */
+    private volatile long updates;
+
+    Shard(final int index, final SessionManager sessionManager) {
+        super();
+        this.sessionManager = sessionManager;
+        this.executor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("network-shard-" + index).daemon().factory());
+    }
+
+    /**
+     * Start updating the session manager at a fixed rate.
+     *
+     * @param period Time between two updates, in milliseconds.
+     */
+    void start(final long period) {
+        this.executor.scheduleAtFixedRate(this::update, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run a task on the shard thread, after the tasks already submitted.
+     *
+     * @param task Task to run.
+     */
+    void execute(final Runnable task) {
+        try {
+            this.executor.execute(() -> this.run(task));
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Shard stopped, task ignored.");
+        }
+    }
+
+    /**
+     * Stop the shard thread, the tasks already submitted are still run.
+     */
+    void stop() {
+        this.executor.shutdown();
+    }
+
+    /**
+     * Wait for the shard thread to finish its tasks after being stopped.
+     *
+     * @param timeout Maximum time to wait, in milliseconds.
+     * @return <code>true</code> if the thread finished.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    boolean awaitTermination(final long timeout) throws InterruptedException {
+        return this.executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    SessionManager getSessionManager() {
+        return this.sessionManager;
+    }
+
+    long getUpdateCount() {
+        return this.updates;
+    }
+
+    private void update() {
+        this.run(this.sessionManager::updateAndFlush);
+        this.updates++;
+    }
+
+    /**
+     * Run a task, logging its errors so they do not stop the shard thread.
+     *
+     * @param task Task to run.
+     */
+    private void run(final Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.ERROR, "Error in shard task.", e);
+        }
+    }
+}
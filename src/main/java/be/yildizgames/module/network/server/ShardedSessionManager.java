@@ -0,0 +1,303 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.protocol.EncodedMessage;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Session manager partitioning the authenticated sessions by player into shards, each shard having its own session manager updated by its own thread.
+ * The implementations authenticate the sessions as with any session manager, once authenticated a session is given to the shard of its player,
+ * and all its messages are processed by that shard thread, in order, the shard session manager receiving them as if it was the only session manager.
+ * The command handlers and listeners are so registered on the shard session managers, the shards being independent, they use no common lock.
+ * The shard session managers never authenticate, their authenticate implementation is not called.
+ * This session manager keeps the index of all the sessions, so they can be found from any thread, messages to players of another shard are sent with the send, publish and broadcast methods,
+ * running on the shard threads so the sessions are only written by their shard, the broadcast filter is still tested on the calling thread.
+ *
+ * @author Grégory Van den Borre
+ */
+public abstract class ShardedSessionManager extends SessionManager implements AutoCloseable {
+
+    /**
+     * Maximum time to wait for the shards to stop, in milliseconds.
+     */
+    private static final long STOP_TIMEOUT = 5000;
+
+    private final Shard[] shards;
+
+    /**
+     * Create the shards, they are not updated until started.
+     *
+     * @param shardCount Number of shards, must be positive.
+     * @param shardFactory Create the session manager of each shard from its index, its update is called by the shard thread.
+     */
+    protected ShardedSessionManager(final int shardCount, final IntFunction<SessionManager> shardFactory) {
+        this(new ShardRouter(createShards(shardCount, shardFactory)));
+    }
+
+    /**
+     * The router is given to the parent constructor, so the instance does not escape before the subclass is initialized.
+     */
+    private ShardedSessionManager(final ShardRouter router) {
+        super(router, router);
+        this.shards = router.shards;
+    }
+
+    private static Shard[] createShards(final int shardCount, final IntFunction<SessionManager> shardFactory) {
+        Objects.requireNonNull(shardFactory);
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        final Shard[] shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, Objects.requireNonNull(shardFactory.apply(i)));
+        }
+        return shards;
+    }
+
+    /**
+     * Start updating every shard on its thread.
+     *
+     * @param period Time between two updates of a shard, in milliseconds, must be positive.
+     */
+    public final void start(final long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        for (Shard shard : this.shards) {
+            shard.start(period);
+        }
+    }
+
+    /**
+     * Stop the shard threads, once they have run the tasks already submitted.
+     */
+    @Override
+    public final void close() {
+        for (Shard shard : this.shards) {
+            shard.stop();
+        }
+        try {
+            for (Shard shard : this.shards) {
+                shard.awaitTermination(STOP_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The shards are updated by their own thread, nothing is done by this update.
+     */
+    @Override
+    public final void update() {
+        //updates are done by the shards.
+    }
+
+    /**
+     * @return The number of shards.
+     */
+    public final int getShardCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * @param index Shard index, from 0 to the shard count excluded.
+     * @return The session manager of the shard.
+     */
+    public final SessionManager getShard(final int index) {
+        return this.shards[index].getSessionManager();
+    }
+
+    /**
+     * Provide the session manager of the shard a player is assigned to, a player is always assigned to the same shard.
+     *
+     * @param player Player to find the shard for.
+     * @return The session manager of the shard.
+     */
+    public final SessionManager getShard(final PlayerId player) {
+        return this.shardOf(player).getSessionManager();
+    }
+
+    /**
+     * @param index Shard index, from 0 to the shard count excluded.
+     * @return The number of updates done by the shard.
+     */
+    public final long getShardUpdateCount(final int index) {
+        return this.shards[index].getUpdateCount();
+    }
+
+    /**
+     * Run a task on the thread of the shard a player is assigned to, after the tasks and messages already submitted to that shard.
+     *
+     * @param player Player whose shard runs the task.
+     * @param task Task to run.
+     */
+    public final void execute(final PlayerId player, final Runnable task) {
+        Objects.requireNonNull(task);
+        this.shardOf(player).execute(task);
+    }
+
+    /**
+     * Send a message to a player from the thread of its shard, the message is ignored if the player is not connected.
+     *
+     * @param player Player to send the message to.
+     * @param message Message to send.
+     */
+    public final void send(final PlayerId player, final NetworkMessage<?> message) {
+        Objects.requireNonNull(message);
+        final Shard shard = this.shardOf(player);
+        shard.execute(() -> shard.getSessionManager().getSessionByPlayer(player).sendMessage(message));
+    }
+
+    /**
+     * Send a message to all the connected players, the message is serialized once and sent by every shard to its sessions from its thread.
+     *
+     * @param message Message to send.
+     */
+    public final void publish(final NetworkMessage<?> message) {
+        final EncodedMessage encoded = EncodedMessage.of(message);
+        for (Shard shard : this.shards) {
+            shard.execute(() -> {
+                for (Session session : shard.getSessionManager().getActiveSessions()) {
+                    session.sendMessage(encoded);
+                }
+            });
+        }
+    }
+
+    /**
+     * Select the sessions on the calling thread and send the message to them from the thread of their shard.
+     *
+     * @return The number of sessions the message is sent to.
+     */
+    @Override
+    final int deliver(final EncodedMessage encoded, final Predicate<Session> filter) {
+        final List<List<Session>> targets = this.newTargets();
+        int reached = 0;
+        for (Session session : this.getActiveSessions()) {
+            if (filter.test(session)) {
+                targets.get(Math.floorMod(session.getPlayer().value, this.shards.length)).add(session);
+                reached++;
+            }
+        }
+        this.sendFromShards(encoded, targets);
+        return reached;
+    }
+
+    /**
+     * Select the sessions on the calling thread and send the message to them from the thread of their shard, players not connected are ignored.
+     *
+     * @return The number of sessions the message is sent to.
+     */
+    @Override
+    final int deliver(final EncodedMessage encoded, final Collection<PlayerId> players) {
+        final List<List<Session>> targets = this.newTargets();
+        int reached = 0;
+        for (PlayerId player : players) {
+            final Session session = this.findSession(player);
+            if (session != null) {
+                targets.get(Math.floorMod(player.value, this.shards.length)).add(session);
+                reached++;
+            }
+        }
+        this.sendFromShards(encoded, targets);
+        return reached;
+    }
+
+    private List<List<Session>> newTargets() {
+        final List<List<Session>> targets = new ArrayList<>(this.shards.length);
+        for (int i = 0; i < this.shards.length; i++) {
+            targets.add(new ArrayList<>());
+        }
+        return targets;
+    }
+
+    private void sendFromShards(final EncodedMessage encoded, final List<List<Session>> targets) {
+        for (int i = 0; i < this.shards.length; i++) {
+            final List<Session> sessions = targets.get(i);
+            if (!sessions.isEmpty()) {
+                this.shards[i].execute(() -> {
+                    for (Session session : sessions) {
+                        session.sendMessage(encoded);
+                    }
+                });
+            }
+        }
+    }
+
+    private Shard shardOf(final PlayerId player) {
+        return shardOf(this.shards, player);
+    }
+
+    private static Shard shardOf(final Shard[] shards, final PlayerId player) {
+        return shards[Math.floorMod(player.value, shards.length)];
+    }
+
+    /**
+     * Give the authenticated sessions and their messages to their shard, the messages being dispatched to the shard thread.
+     */
+    private static final class ShardRouter implements SessionListener, MessageDispatcher {
+
+        private final Shard[] shards;
+
+        private ShardRouter(final Shard[] shards) {
+            super();
+            this.shards = shards;
+        }
+
+        @Override
+        public void dispatch(final Session session, final Runnable task) {
+            shardOf(this.shards, session.getPlayer()).execute(task);
+        }
+
+        @Override
+        public void messageReceived(final Session session, final MessageWrapper message) {
+            //already on the shard thread, through the dispatcher.
+            shardOf(this.shards, session.getPlayer()).getSessionManager().process(session, message);
+        }
+
+        @Override
+        public void clientAuthenticated(final Session session) {
+            final Shard shard = shardOf(this.shards, session.getPlayer());
+            shard.execute(() -> shard.getSessionManager().setAuthenticated(session));
+        }
+
+        @Override
+        public void sessionClosed(final Session session) {
+            final Shard shard = shardOf(this.shards, session.getPlayer());
+            shard.execute(() -> shard.getSessionManager().removeSession(session));
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed rate loop driving an update, for example the session manager or the client update, on its own platform thread.
+ * As a message dispatcher, it queues the messages of the authenticated sessions, and processes them at the beginning of every tick, before the update, within a time budget:
+ * the messages not processed when the budget is spent are kept, in order, for the next tick, so a burst of messages does not delay the update.
+ * The thread parks until shortly before the next tick and then spins, so a tick starts less than a millisecond after its time;
+ * a tick taking longer than the period is counted as an overrun, and the ticks missed by more than one period are skipped instead of being run back to back.
+ * The queued messages are bounded by a maximum backlog, the messages received when it is full pause the reading of their session or close it, depending on the backlog policy.
+ * The duration of the ticks, split in dispatch and update, the overruns and the number of messages carried over are recorded.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class TickScheduler implements MessageDispatcher, AutoCloseable {
+
+    /**
+     * Time before the next tick from which the thread spins instead of parking, in nanoseconds.
+     */
+    static final long SPIN_THRESHOLD = TimeUnit.MICROSECONDS.toNanos(200);
+
+    /**
+     * Number of messages processed between two checks of the time budget, to not read the time for every message.
+     */
+    static final int BUDGET_CHECK_INTERVAL = 16;
+
+    /**
+     * Maximum backlog used when none is given.
+     */
+    public static final int DEFAULT_MAX_BACKLOG = 65536;
+
+    private static final System.Logger LOGGER = System.getLogger(TickScheduler.class.getName());
+
+    /**
+     * Update to run every tick.
+     */
+    private final Runnable update;
+
+    /**
+     * Time between two ticks, in nanoseconds.
+     */
+    private final long period;
+
+    /**
+     * Maximum time spent processing the messages in a tick, in nanoseconds.
+     */
+    private final long dispatchBudget;
+
+    /**
+     * Number of queued messages from which the backlog policy is applied.
+     */
+    private final int maxBacklog;
+
+    /**
+     * Action taken when a message is received while the backlog is full.
+     */
+    private final BacklogPolicy backlogPolicy;
+
+    /**
+     * Messages waiting to be processed.
+     */
+    private final Queue<Runnable> inbound = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of messages waiting to be processed.
+     */
+    private final AtomicInteger backlog = new AtomicInteger();
+
+    private Thread thread;
+
+    private volatile boolean running;
+
+    /**
+     * Statistics, only modified by the thread running the ticks, the started thread or the caller of tick, never both at once.
+     */
+    private volatile long tickCount;
+
+    private volatile long overrunCount;
+
+    private volatile long lastDispatchDuration;
+
+    private volatile long lastUpdateDuration;
+
+    private volatile long maxTickDuration;
+
+    private volatile long totalTickDuration;
+
+    private volatile int lastDispatched;
+
+    /**
+     * Maximum delay between the time a tick was due and the time it started, in nanoseconds.
+     */
+    private volatile long maxJitter;
+
+    /**
+     * Create a scheduler, with the default maximum backlog, the sessions stop reading when it is full.
+     *
+     * @param update Update to run every tick.
+     * @param ticksPerSecond Number of ticks per second, must be positive and at most 1000.
+     * @param dispatchBudget Maximum time spent processing the messages in a tick, in nanoseconds, must be positive.
+     */
+    public TickScheduler(final Runnable update, final int ticksPerSecond, final long dispatchBudget) {
+        this(update, ticksPerSecond, dispatchBudget, DEFAULT_MAX_BACKLOG, BacklogPolicy.PAUSE_READING);
+    }
+
+    /**
+     * Create a scheduler.
+     *
+     * @param update Update to run every tick.
+     * @param ticksPerSecond Number of ticks per second, must be positive and at most 1000.
+     * @param dispatchBudget Maximum time spent processing the messages in a tick, in nanoseconds, must be positive.
+     * @param maxBacklog Number of queued messages from which the backlog policy is applied, must be positive.
+     * @param backlogPolicy Action taken when a message is received while the backlog is full.
+     */
+    public TickScheduler(final Runnable update, final int ticksPerSecond, final long dispatchBudget, final int maxBacklog, final BacklogPolicy backlogPolicy) {
+        super();
+        Objects.requireNonNull(update);
+        Objects.requireNonNull(backlogPolicy);
+        if (ticksPerSecond <= 0 || ticksPerSecond > 1000 || dispatchBudget <= 0) {
+            throw new IllegalArgumentException("Invalid tick rate or budget: " + ticksPerSecond + ", " + dispatchBudget);
+        }
+        if (maxBacklog <= 0) {
+            throw new IllegalArgumentException("Maximum backlog must be positive: " + maxBacklog);
+        }
+        this.update = update;
+        this.period = TimeUnit.SECONDS.toNanos(1) / ticksPerSecond;
+        this.dispatchBudget = dispatchBudget;
+        this.maxBacklog = maxBacklog;
+        this.backlogPolicy = backlogPolicy;
+    }
+
+    /**
+     * Create a scheduler driving the update of a session manager, and processing the messages of its authenticated sessions.
+     * The frames coalesced by the sessions are written after every update.
+     *
+     * @param sessionManager Session manager to drive, the scheduler is set as its message dispatcher.
+     * @param ticksPerSecond Number of ticks per second, must be positive and at most 1000.
+     * @param dispatchBudget Maximum time spent processing the messages in a tick, in nanoseconds, must be positive.
+     * @return The created scheduler, not started.
+     */
+    public static TickScheduler of(final SessionManager sessionManager, final int ticksPerSecond, final long dispatchBudget) {
+        final TickScheduler scheduler = new TickScheduler(sessionManager::updateAndFlush, ticksPerSecond, dispatchBudget);
+        sessionManager.setMessageDispatcher(scheduler);
+        return scheduler;
+    }
+
+    /**
+     * Queue a message to be processed by the next tick, the messages are processed in the order they are given.
+     * When the backlog is full, the backlog policy is applied to the session, called by the thread reading it.
+     * With the disconnect policy, no more than the maximum backlog of messages are ever queued, with the pause policy the message is still queued.
+     *
+     * @param session Session having sent the message.
+     * @param task Processing of the message.
+     */
+    @Override
+    public void dispatch(final Session session, final Runnable task) {
+        if (this.backlog.incrementAndGet() > this.maxBacklog) {
+            if (this.backlogPolicy == BacklogPolicy.DISCONNECT) {
+                this.backlog.decrementAndGet();
+                if (session.isConnected()) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Tick backlog full, disconnecting " + session.getPlayer() + ".");
+                    session.evict();
+                }
+                return;
+            }
+            session.pauseReading(this.period);
+        }
+        this.inbound.add(task);
+    }
+
+    /**
+     * Start running the ticks on a new platform thread.
+     */
+    public synchronized void start() {
+        if (this.thread != null) {
+            throw new IllegalStateException("Scheduler already started.");
+        }
+        this.running = true;
+        this.thread = Thread.ofPlatform().name("network-tick").daemon().start(this::run);
+    }
+
+    /**
+     * Stop running the ticks, the current tick is completed, the messages not processed yet are kept.
+     * Once closed, the scheduler can be started again.
+     */
+    @Override
+    public void close() {
+        final Thread current;
+        synchronized (this) {
+            current = this.thread;
+            this.running = false;
+        }
+        if (current != null) {
+            LockSupport.unpark(current);
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            synchronized (this) {
+                if (this.thread == current) {
+                    this.thread = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Run a single tick on the calling thread, to drive the scheduler from an existing loop.
+     * The queued messages are processed within the budget, and then the update is run.
+     *
+     * @throws IllegalStateException If the scheduler is started, its thread being the only one running the ticks.
+     */
+    public synchronized void tick() {
+        if (this.thread != null) {
+            throw new IllegalStateException("Scheduler started, ticks are run by its thread.");
+        }
+        this.runTick();
+    }
+
+    /**
+     * Run a tick, only one thread runs the ticks at a time, so the statistics are only modified by that thread.
+     */
+    private void runTick() {
+        final long start = System.nanoTime();
+        final int dispatched = this.drain(start + this.dispatchBudget);
+        final long dispatchEnd = System.nanoTime();
+        try {
+            this.update.run();
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.ERROR, "Error during tick update.", e);
+        }
+        final long end = System.nanoTime();
+        final long duration = end - start;
+        this.lastDispatched = dispatched;
+        this.lastDispatchDuration = dispatchEnd - start;
+        this.lastUpdateDuration = end - dispatchEnd;
+        this.totalTickDuration += duration;
+        if (duration > this.maxTickDuration) {
+            this.maxTickDuration = duration;
+        }
+        if (duration > this.period) {
+            this.overrunCount++;
+        }
+        this.tickCount++;
+    }
+
+    /**
+     * @return The number of ticks run.
+     */
+    public long getTickCount() {
+        return this.tickCount;
+    }
+
+    /**
+     * @return The number of ticks having taken longer than the period.
+     */
+    public long getOverrunCount() {
+        return this.overrunCount;
+    }
+
+    /**
+     * @return The number of messages waiting to be processed, carried over from the previous ticks when their budget was spent.
+     */
+    public int getBacklog() {
+        return this.backlog.get();
+    }
+
+    /**
+     * @return The number of messages processed by the last tick.
+     */
+    public int getLastDispatched() {
+        return this.lastDispatched;
+    }
+
+    /**
+     * @return The time spent processing the messages during the last tick, in nanoseconds.
+     */
+    public long getLastDispatchDuration() {
+        return this.lastDispatchDuration;
+    }
+
+    /**
+     * @return The time spent in the update during the last tick, in nanoseconds.
+     */
+    public long getLastUpdateDuration() {
+        return this.lastUpdateDuration;
+    }
+
+    /**
+     * @return The longest tick duration, in nanoseconds.
+     */
+    public long getMaxTickDuration() {
+        return this.maxTickDuration;
+    }
+
+    /**
+     * @return The average tick duration, in nanoseconds.
+     */
+    public long getAverageTickDuration() {
+        final long count = this.tickCount;
+        return count == 0 ? 0 : this.totalTickDuration / count;
+    }
+
+    /**
+     * @return The longest delay between the time a tick was due and the time it started, in nanoseconds, the skipped ticks not being counted.
+     */
+    public long getMaxJitter() {
+        return this.maxJitter;
+    }
+
+    /**
+     * @return The time between two ticks, in nanoseconds.
+     */
+    public long getPeriod() {
+        return this.period;
+    }
+
+    /**
+     * Run the ticks at a fixed rate until closed.
+     */
+    private void run() {
+        long next = System.nanoTime();
+        while (this.running) {
+            final long jitter = System.nanoTime() - next;
+            if (jitter > this.maxJitter) {
+                this.maxJitter = jitter;
+            }
+            this.runTick();
+            next += this.period;
+            final long now = System.nanoTime();
+            if (now - next > this.period) {
+                next = now;
+            }
+            this.waitUntil(next);
+        }
+    }
+
+    /**
+     * Process the queued messages until there is no more or the deadline is passed, the time being checked every few messages.
+     *
+     * @param deadline Time at which to stop processing, in nanoseconds.
+     * @return The number of messages processed.
+     */
+    private int drain(final long deadline) {
+        int processed = 0;
+        Runnable task;
+        while ((task = this.inbound.poll()) != null) {
+            this.backlog.decrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "Error processing message.", e);
+            }
+            processed++;
+            if (processed % BUDGET_CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+        return processed;
+    }
+
+    /**
+     * Park until shortly before a time, and then spin until it.
+     *
+     * @param deadline Time to wait for, in nanoseconds.
+     */
+    private void waitUntil(final long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_THRESHOLD) {
+            LockSupport.parkNanos(this, remaining - SPIN_THRESHOLD);
+            if (!this.running) {
+                return;
+            }
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+/**
+ * Hashed timing wheel, the timeouts are kept in a ring of slots by their deadline tick, inserting and cancelling a timeout are O(1),
+ * and advancing the wheel only visits the slots of the ticks elapsed.
+ * A timeout farther than a full turn of the wheel stays in its slot for the remaining number of turns.
+ * The wheel is not thread safe, it must be used by a single thread.
+ *
+ * @author Grégory Van den Borre
+ */
+final class TimingWheel {
+
+    /**
+     * Slot of a timeout removed from its slot to be expired.
+     */
+    private static final int EXPIRING = -2;
+
+    /**
+     * Duration of a tick, in nanoseconds.
+     */
+    private final long tickDuration;
+
+    /**
+     * Time of the tick 0, in nanoseconds.
+     */
+    private final long start;
+
+    /**
+     * Slots of the wheel, each one the head of a doubly linked list of timeouts.
+     */
+    private final Timeout[] slots;
+
+    /**
+     * Mask to get the slot of a tick, the number of slots being a power of 2.
+     */
+    private final int mask;
+
+    /**
+     * Next tick to process.
+     */
+    private long tick;
+
+    /**
+     * Number of timeouts scheduled.
+     */
+    private int size;
+
+    /**
+     * Create a wheel.
+     *
+     * @param tickDuration Duration of a tick, in nanoseconds, must be positive.
+     * @param slotCount Number of slots, rounded up to a power of 2, must be positive.
+     * @param start Time of the tick 0, in nanoseconds.
+     */
+    TimingWheel(final long tickDuration, final int slotCount, final long start) {
+        super();
+        if (tickDuration <= 0 || slotCount <= 0 || slotCount > 1 << 30) {
+            throw new IllegalArgumentException("Invalid tick duration or slot count: " + tickDuration + ", " + slotCount);
+        }
+        this.tickDuration = tickDuration;
+        this.start = start;
+        final int length = Integer.highestOneBit(slotCount) == slotCount ? slotCount : Integer.highestOneBit(slotCount) << 1;
+        this.slots = new Timeout[length];
+        this.mask = length - 1;
+    }
+
+    /**
+     * Schedule a timeout, if it is already scheduled, it is moved to its new deadline.
+     * A deadline already passed expires on the next tick processed.
+     *
+     * @param timeout Timeout to schedule.
+     * @param deadline Time to expire, in nanoseconds.
+     */
+    void schedule(final Timeout timeout, final long deadline) {
+        this.cancel(timeout);
+        final long elapsed = deadline - this.start;
+        final long deadlineTick = Math.max(elapsed <= 0 ? 0 : (elapsed + this.tickDuration - 1) / this.tickDuration, this.tick);
+        timeout.rounds = (deadlineTick - this.tick) / this.slots.length;
+        timeout.slot = (int) (deadlineTick & this.mask);
+        final Timeout head = this.slots[timeout.slot];
+        timeout.next = head;
+        if (head != null) {
+            head.previous = timeout;
+        }
+        this.slots[timeout.slot] = timeout;
+        this.size++;
+    }
+
+    /**
+     * Remove a timeout, nothing is done if it is not scheduled.
+     *
+     * @param timeout Timeout to remove.
+     */
+    void cancel(final Timeout timeout) {
+        if (timeout.slot == EXPIRING) {
+            timeout.slot = -1;
+            return;
+        }
+        if (timeout.slot < 0) {
+            return;
+        }
+        if (timeout.previous == null) {
+            this.slots[timeout.slot] = timeout.next;
+        } else {
+            timeout.previous.next = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.slot = -1;
+        this.size--;
+    }
+
+    /**
+     * Process the ticks elapsed up to a time, expiring their timeouts.
+     * The timeouts are expired once their slot is processed, they can be scheduled again from their expiration.
+     *
+     * @param now Current time, in nanoseconds.
+     * @return The number of timeouts expired.
+     */
+    int advance(final long now) {
+        final long last = (now - this.start) / this.tickDuration;
+        int expired = 0;
+        while (this.tick <= last) {
+            final int slot = (int) (this.tick & this.mask);
+            this.tick++;
+            Timeout due = null;
+            Timeout current = this.slots[slot];
+            while (current != null) {
+                final Timeout next = current.next;
+                if (current.rounds <= 0) {
+                    this.cancel(current);
+                    current.slot = EXPIRING;
+                    current.nextDue = due;
+                    due = current;
+                } else {
+                    current.rounds--;
+                }
+                current = next;
+            }
+            //expired after the slot is walked, so a timeout scheduled again in the same slot is not expired twice,
+            //a timeout cancelled or scheduled again by the expiration of another one is not expired.
+            while (due != null) {
+                final Timeout next = due.nextDue;
+                due.nextDue = null;
+                if (due.slot == EXPIRING) {
+                    due.slot = -1;
+                    due.expired(now);
+                    expired++;
+                }
+                due = next;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * @return The number of timeouts scheduled.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Timeout to schedule in the wheel, linked in its slot without any other allocation.
+     */
+    abstract static class Timeout {
+
+        private Timeout previous;
+
+        private Timeout next;
+
+        /**
+         * Next timeout to expire in the current tick.
+         */
+        private Timeout nextDue;
+
+        /**
+         * Slot of the timeout, -1 if not scheduled.
+         */
+        private int slot = -1;
+
+        /**
+         * Full turns of the wheel before expiring.
+         */
+        private long rounds;
+
+        /**
+         * @return <code>true</code> if the timeout is scheduled.
+         */
+        final boolean isScheduled() {
+            return this.slot >= 0;
+        }
+
+        /**
+         * Called when the deadline is reached.
+         *
+         * @param now Current time, in nanoseconds.
+         */
+        abstract void expired(long now);
+    }
+}
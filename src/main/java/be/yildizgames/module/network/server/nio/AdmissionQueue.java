@@ -0,0 +1,392 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.protocol.AdmissionNotice;
+import be.yildizgames.module.network.protocol.BinaryCodec;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+import be.yildizgames.module.network.server.AdmissionPolicy;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Apply an admission policy to the connections accepted by a server.
+ * The acceptor thread offers every accepted connection, which is admitted at once, queued or refused.
+ * The queued connections are admitted in order by the admission thread, at the policy rate and when below the unauthenticated limit,
+ * the waiting clients being told their position when queued and then every second.
+ * The notices are written without blocking, a notice not fitting in the socket buffer is dropped, a notice only partly written closes the connection, so the client never reads a truncated frame,
+ * and are not sent with the websocket codec, the handshake not being done yet.
+ *
+ * @author Grégory Van den Borre
+ */
+final class AdmissionQueue implements Runnable {
+
+    private static final System.Logger LOGGER = System.getLogger(AdmissionQueue.class.getName());
+
+    /**
+     * Time between two position notices to the waiting clients, in nanoseconds.
+     */
+    private static final long NOTICE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Time between two checks of the unauthenticated connections count when at the limit, in nanoseconds.
+     */
+    private static final long POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Minimum number of addresses before removing the ones whose bucket is full again.
+     */
+    private static final int MIN_PURGE_THRESHOLD = 1024;
+
+    /**
+     * Server serving the admitted connections.
+     */
+    private final ChannelServer server;
+
+    /**
+     * Handler counting the connections not yet authenticated.
+     */
+    private final NioHandler handler;
+
+    private final AdmissionPolicy policy;
+
+    /**
+     * Codec used to encode the notices, null if the notices are not sent.
+     */
+    private final ChannelCodec encoder;
+
+    /**
+     * <code>true</code> if the notices are binary frames.
+     */
+    private final boolean binary;
+
+    /**
+     * Time to open a connection for an address, in nanoseconds, 0 if not limited.
+     */
+    private final long addressInterval;
+
+    /**
+     * Time for an address to open all its burst, in nanoseconds.
+     */
+    private final long addressTolerance;
+
+    /**
+     * Time between two admissions from the queue, in nanoseconds.
+     */
+    private final long admissionInterval;
+
+    /**
+     * Time at which the bucket of every address would be full again, only used by the acceptor thread.
+     */
+    private final Map<InetAddress, Long> addresses = new HashMap<>();
+
+    /**
+     * Connections waiting to be admitted, in non blocking mode.
+     */
+    private final ArrayDeque<SocketChannel> pending = new ArrayDeque<>();
+
+    /**
+     * Number of connections refused.
+     */
+    private final LongAdder refused = new LongAdder();
+
+    private final Thread thread;
+
+    /**
+     * Number of addresses above which the addresses whose bucket is full again are removed, only used by the acceptor thread.
+     */
+    private int purgeThreshold = MIN_PURGE_THRESHOLD;
+
+    /**
+     * Time of the next admission from the queue, in nanoseconds.
+     */
+    private long nextAdmission = System.nanoTime();
+
+    private boolean running = true;
+
+    AdmissionQueue(final ChannelServer server, final NioHandler handler, final DecoderEncoder codec, final AdmissionPolicy policy) {
+        super();
+        this.server = server;
+        this.handler = handler;
+        this.policy = policy;
+        this.encoder = codec == DecoderEncoder.WEBSOCKET || handler.getFileRoot() != null && codec == DecoderEncoder.HTTP ? null : ChannelCodec.of(codec);
+        this.binary = codec == DecoderEncoder.BINARY;
+        this.addressInterval = policy.getAddressRate() == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / policy.getAddressRate();
+        this.addressTolerance = Math.multiplyExact(policy.getAddressCapacity(), this.addressInterval);
+        this.admissionInterval = TimeUnit.SECONDS.toNanos(1) / policy.getAdmissionRate();
+        this.thread = new Thread(this, "network-admission");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        this.thread.start();
+    }
+
+    /**
+     * Admit, queue or refuse a connection, called by the acceptor thread.
+     *
+     * @param channel Accepted connection, in blocking mode.
+     */
+    void offer(final SocketChannel channel) {
+        final long wait = this.takeAddressToken(channel, System.nanoTime());
+        if (wait > 0) {
+            this.refuse(channel, Math.max(TimeUnit.NANOSECONDS.toMillis(wait) + 1, this.retryAfter()));
+            return;
+        }
+        synchronized (this) {
+            if (this.pending.isEmpty() && this.handler.getUnauthenticatedCount() < this.policy.getMaxUnauthenticated()) {
+                this.server.admit(channel);
+                return;
+            }
+            if (this.pending.size() < this.policy.getMaxPending() && this.configureBlocking(channel, false)) {
+                if (this.notice(channel, AdmissionNotice.queued(this.pending.size() + 1))) {
+                    this.pending.add(channel);
+                    this.notifyAll();
+                } else {
+                    close(channel);
+                }
+                return;
+            }
+        }
+        this.refuse(channel, this.retryAfter());
+    }
+
+    /**
+     * Admit the queued connections until closed.
+     */
+    @Override
+    public void run() {
+        long nextNotice = System.nanoTime() + NOTICE_INTERVAL;
+        synchronized (this) {
+            while (this.running) {
+                long now = System.nanoTime();
+                long wait = this.release(now);
+                if (now - nextNotice >= 0) {
+                    this.sendPositions();
+                    nextNotice = now + NOTICE_INTERVAL;
+                }
+                wait = Math.min(wait, nextNotice - now);
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, Math.max(wait, 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop admitting the queued connections, and close them.
+     *
+     * @throws InterruptedException If interrupted while waiting for the admission thread to stop.
+     */
+    void close() throws InterruptedException {
+        synchronized (this) {
+            this.running = false;
+            this.notifyAll();
+            for (SocketChannel channel : this.pending) {
+                close(channel);
+            }
+            this.pending.clear();
+        }
+        this.thread.join();
+    }
+
+    /**
+     * @return The number of connections waiting to be admitted.
+     */
+    synchronized int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * @return The number of connections refused.
+     */
+    long getRefusedCount() {
+        return this.refused.sum();
+    }
+
+    /**
+     * Admit the queued connections allowed by the rate and the unauthenticated limit, must be called holding the lock.
+     *
+     * @param now Current time, in nanoseconds.
+     * @return The time to wait before the next admission can be tried, in nanoseconds.
+     */
+    private long release(final long now) {
+        while (!this.pending.isEmpty()) {
+            if (this.handler.getUnauthenticatedCount() >= this.policy.getMaxUnauthenticated()) {
+                return POLL_INTERVAL;
+            }
+            if (this.nextAdmission - now > 0) {
+                return this.nextAdmission - now;
+            }
+            final SocketChannel channel = this.pending.poll();
+            if (this.configureBlocking(channel, true)) {
+                this.server.admit(channel);
+            }
+            this.nextAdmission = Math.max(this.nextAdmission, now) + this.admissionInterval;
+        }
+        return NOTICE_INTERVAL;
+    }
+
+    /**
+     * Tell the waiting clients their position, the connections closed by their client are removed.
+     */
+    private void sendPositions() {
+        int position = 1;
+        final Iterator<SocketChannel> iterator = this.pending.iterator();
+        while (iterator.hasNext()) {
+            final SocketChannel channel = iterator.next();
+            if (this.notice(channel, AdmissionNotice.queued(position))) {
+                position++;
+            } else {
+                iterator.remove();
+                close(channel);
+            }
+        }
+    }
+
+    /**
+     * Take a token from the bucket of the address of a connection, only called by the acceptor thread.
+     *
+     * @param channel Accepted connection.
+     * @param now Current time, in nanoseconds.
+     * @return 0 if the connection is allowed, or the time to wait before the address can open a connection, in nanoseconds.
+     */
+    private long takeAddressToken(final SocketChannel channel, final long now) {
+        if (this.addressInterval == 0) {
+            return 0;
+        }
+        final InetAddress address;
+        try {
+            address = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+        } catch (IOException e) {
+            return 0;
+        }
+        final Long state = this.addresses.get(address);
+        final long full = (state == null ? now : Math.max(state, now)) + this.addressInterval;
+        if (full - now > this.addressTolerance) {
+            return full - now - this.addressTolerance;
+        }
+        this.addresses.put(address, full);
+        if (this.addresses.size() >= this.purgeThreshold) {
+            this.addresses.values().removeIf(t -> t - now <= 0);
+            this.purgeThreshold = Math.max(MIN_PURGE_THRESHOLD, this.addresses.size() * 2);
+        }
+        return 0;
+    }
+
+    /**
+     * Tell a client when to connect again, and close its connection.
+     *
+     * @param channel Refused connection.
+     * @param delay Time to wait before connecting again, in milliseconds.
+     */
+    private void refuse(final SocketChannel channel, final long delay) {
+        this.refused.increment();
+        if (this.configureBlocking(channel, false)) {
+            this.notice(channel, AdmissionNotice.retryAfter(delay));
+        }
+        close(channel);
+    }
+
+    /**
+     * @return The time for a refused client to wait, between the policy delay and twice it, so the refused clients do not all connect again at once.
+     */
+    private long retryAfter() {
+        return this.policy.getRetryAfter() + ThreadLocalRandom.current().nextLong(this.policy.getRetryAfter());
+    }
+
+    /**
+     * Write a notice to a connection in non blocking mode, the notice is dropped if it does not fit in the socket buffer.
+     *
+     * @param channel Connection to write to.
+     * @param message Notice to write.
+     * @return <code>false</code> if the connection is closed or must be closed.
+     */
+    private boolean notice(final SocketChannel channel, final NetworkMessage<Long> message) {
+        if (this.encoder == null) {
+            return channel.isOpen();
+        }
+        final ByteBuffer data = this.binary ? this.encoder.encode(BinaryCodec.encode(message)) : this.encoder.encode(message.buildMessage());
+        try {
+            return write(channel, data);
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Cannot write admission notice.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Write a notice without blocking, the notice is either written completely or not at all, as the client cannot skip a truncated frame.
+     *
+     * @param channel Connection to write to, in non blocking mode.
+     * @param data Encoded notice.
+     * @return <code>true</code> if the notice is written or dropped without any byte written, <code>false</code> if it is only partly written and the connection must be closed.
+     * @throws IOException If the connection cannot be written.
+     */
+    static boolean write(final WritableByteChannel channel, final ByteBuffer data) throws IOException {
+        final int size = data.remaining();
+        final int written = channel.write(data);
+        if (written == 0 || written == size) {
+            return true;
+        }
+        LOGGER.log(System.Logger.Level.DEBUG, "Admission notice partly written, closing connection.");
+        return false;
+    }
+
+    private boolean configureBlocking(final SocketChannel channel, final boolean blocking) {
+        try {
+            channel.configureBlocking(blocking);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Cannot configure connection.", e);
+            close(channel);
+            return false;
+        }
+    }
+
+    private static void close(final SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Error closing connection.", e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+import be.yildizgames.module.network.protocol.FrameDecoder;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec for the length prefixed binary frames.
+ * The frames are decoded directly from the event loop read buffer, only the bytes of an incomplete frame are copied and kept by the codec.
+ *
+ * @author Grégory Van den Borre
+ */
+final class BinaryChannelCodec implements ChannelCodec {
+
+    /**
+     * Maximum number of bytes kept for an incomplete frame.
+     */
+    private static final int MAX_PENDING = FrameDecoder.DEFAULT_MAX_FRAME_SIZE;
+
+    /**
+     * Bytes of an incomplete frame, in write mode, null if none.
+     */
+    private ByteBuffer pending;
+
+    BinaryChannelCodec() {
+        super();
+    }
+
+    @Override
+    public void decode(final ByteBuffer input, final ChannelSession session) {
+        if (this.pending == null) {
+            session.getHandler().processMessages(session, input);
+            if (input.hasRemaining()) {
+                this.pending = ByteBuffer.allocate(Math.max(1024, input.remaining() * 2)).put(input);
+            }
+            return;
+        }
+        if (this.pending.remaining() < input.remaining()) {
+            final int needed = this.pending.position() + input.remaining();
+            if (needed > MAX_PENDING) {
+                this.pending = null;
+                throw new InvalidNetworkMessage("Binary frame exceeds " + MAX_PENDING + " bytes.");
+            }
+            final ByteBuffer grown = ByteBuffer.allocate(Math.min(MAX_PENDING, Math.max(needed, this.pending.capacity() * 2)));
+            this.pending.flip();
+            this.pending = grown.put(this.pending);
+        }
+        this.pending.put(input).flip();
+        session.getHandler().processMessages(session, this.pending);
+        if (this.pending.hasRemaining()) {
+            this.pending.compact();
+        } else {
+            this.pending = null;
+        }
+    }
+
+    @Override
+    public ByteBuffer encode(final CharSequence message) {
+        return StandardCharsets.UTF_8.encode(CharBuffer.wrap(message));
+    }
+
+    @Override
+    public ByteBuffer encode(final ByteBuffer message) {
+        return message.duplicate();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.DecoderEncoder;
+
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server serving every connection with its own thread, using blocking reads and writes, the listeners can so use blocking code.
+ * With virtual threads, tens of thousands of connections can be served, the blocked threads not holding any platform thread.
+ * With platform threads, every connection uses an operating system thread and its stack, this is mostly useful as a comparison.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class BlockingServer extends ChannelServer {
+
+    /**
+     * Size of the read buffer of a session, kept small as every session has its own.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 2048;
+
+    /**
+     * Factory creating the thread of every session.
+     */
+    private final ThreadFactory threadFactory;
+
+    /**
+     * Size of the read buffer of a session.
+     */
+    private final int bufferSize;
+
+    /**
+     * Sessions currently open, by connection id, the sessions equality being on their player which is not known before authentication.
+     */
+    private final Map<Long, BlockingSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Id of the next connection.
+     */
+    private final AtomicLong nextId = new AtomicLong();
+
+    private NioHandler handler;
+
+    private DecoderEncoder codec;
+
+    /**
+     * Create a server.
+     *
+     * @param threadFactory Factory creating the thread of every session.
+     * @param bufferSize Size of the read buffer of a session, must be positive.
+     */
+    public BlockingServer(final ThreadFactory threadFactory, final int bufferSize) {
+        super();
+        Objects.requireNonNull(threadFactory);
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.threadFactory = threadFactory;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Create a server serving every session with a virtual thread.
+     *
+     * @return The created server.
+     */
+    public static BlockingServer virtualThreads() {
+        return new BlockingServer(Thread.ofVirtual().name("network-session-", 0).factory(), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a server serving every session with a platform thread.
+     *
+     * @return The created server.
+     */
+    public static BlockingServer platformThreads() {
+        return new BlockingServer(Thread.ofPlatform().name("network-session-", 0).daemon().factory(), DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public int getConnectionCount() {
+        return this.sessions.size();
+    }
+
+    @Override
+    void startConnections(final NioHandler handler, final DecoderEncoder codec) {
+        this.handler = handler;
+        this.codec = codec;
+    }
+
+    @Override
+    void accepted(final SocketChannel channel) {
+        final BlockingSession session = new BlockingSession(this.nextId.incrementAndGet(), channel, this, this.handler, this.codec, this.bufferSize);
+        this.sessions.put(session.getId(), session);
+        this.threadFactory.newThread(session).start();
+    }
+
+    @Override
+    void stopConnections() {
+        for (BlockingSession session : this.sessions.values()) {
+            session.closeChannel();
+        }
+    }
+
+    void sessionClosed(final BlockingSession session) {
+        this.sessions.remove(session.getId());
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.server.OutboundQueue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Session for a connection served by its own thread with blocking reads and writes.
+ * Messages can be sent from any thread, they are queued in the bounded outbound queue and written by the sending thread holding the write lock.
+ * A thread finding the lock held leaves its message to the writing thread and returns, so only one sending thread at a time can be blocked by a slow client, the queue limiting the bytes kept for it.
+ * A lock is used rather than a monitor, so a virtual thread waiting for the socket releases its carrier thread.
+ *
+ * @author Grégory Van den Borre
+ */
+final class BlockingSession extends ChannelSession implements Runnable {
+
+    private static final System.Logger LOGGER = System.getLogger(BlockingSession.class.getName());
+
+    /**
+     * Unique id of the connection.
+     */
+    private final long id;
+
+    /**
+     * Connection of this session.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * Server serving this session.
+     */
+    private final BlockingServer server;
+
+    /**
+     * Lock serializing the writes.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Buffer for the bytes read.
+     */
+    private final ByteBuffer readBuffer;
+
+    /**
+     * Buffer to decode the characters read.
+     */
+    private final CharBuffer charBuffer;
+
+    /**
+     * <code>true</code> to stop reading once the current bytes are decoded.
+     */
+    private volatile boolean closing;
+
+    /**
+     * <code>true</code> once the connection is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * <code>true</code> to wait before the next read, only used by the reading thread.
+     */
+    private boolean readPaused;
+
+    /**
+     * Time of the next read when paused, in nanoseconds, only used by the reading thread.
+     */
+    private long resumeReading;
+
+    BlockingSession(final long id, final SocketChannel channel, final BlockingServer server, final NioHandler handler, final DecoderEncoder codec, final int bufferSize) {
+        super(codec, handler);
+        this.id = id;
+        this.channel = channel;
+        this.server = server;
+        this.readBuffer = ByteBuffer.allocate(bufferSize);
+        this.charBuffer = CharBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Read and decode the bytes until the connection is closed.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!this.closing) {
+                if (this.readPaused) {
+                    TimeUnit.NANOSECONDS.sleep(this.resumeReading - System.nanoTime());
+                    this.readPaused = false;
+                }
+                this.readBuffer.clear();
+                if (this.channel.read(this.readBuffer) < 0) {
+                    break;
+                }
+                this.readBuffer.flip();
+                this.getChannelCodec().decode(this.readBuffer, this);
+            }
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Read failed, closing connection.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Error processing message from " + this.getPlayer() + ", closing connection.", e);
+        } finally {
+            this.close();
+        }
+    }
+
+    /**
+     * Wait before the next read, the reading thread sleeps once the bytes already read are decoded.
+     *
+     * @param nanos Time to wait before reading again, in nanoseconds.
+     */
+    @Override
+    protected void pauseReading(final long nanos) {
+        if (!this.readPaused) {
+            this.readPaused = true;
+            this.resumeReading = System.nanoTime() + nanos;
+        }
+    }
+
+    @Override
+    void enqueue(final ByteBuffer data) {
+        if (this.closed || !this.getOutboundQueue().offer(data)) {
+            return;
+        }
+        this.writeQueued();
+    }
+
+    /**
+     * Write the header and the file region with the write lock held, after the buffers already queued, the reading thread being blocked until the region is written.
+     *
+     * @param header Bytes to write before the file, not to be modified afterwards.
+     * @param region Part of the file to write, closed once written.
+     */
+    @Override
+    void transfer(final ByteBuffer header, final FileRegion region) {
+        final OutboundQueue queue = this.getOutboundQueue();
+        try (region) {
+            if (this.closed || !queue.offer(header)) {
+                return;
+            }
+            this.writeLock.lock();
+            try {
+                this.write(queue);
+                while (!region.transferTo(this.channel)) {
+                    // the socket is blocking, only a zero length transfer returns early
+                }
+            } catch (IOException e) {
+                LOGGER.log(System.Logger.Level.DEBUG, "Transfer failed, closing connection.", e);
+                queue.clear();
+                this.closeChannel();
+                return;
+            } finally {
+                this.writeLock.unlock();
+            }
+        }
+        this.writeQueued();
+    }
+
+    @Override
+    void closeAfterWrite() {
+        this.closing = true;
+    }
+
+    @Override
+    CharBuffer getCharBuffer() {
+        return this.charBuffer;
+    }
+
+    long getId() {
+        return this.id;
+    }
+
+    @Override
+    protected void closeSession() {
+        this.closeChannel();
+    }
+
+    /**
+     * Close the connection, unblocking the reading thread.
+     */
+    void closeChannel() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Error closing connection.", e);
+        }
+    }
+
+    /**
+     * Write the queued buffers if no other thread is writing.
+     */
+    private void writeQueued() {
+        final OutboundQueue queue = this.getOutboundQueue();
+        // checked again after releasing the lock, for the messages queued by threads having failed to acquire it
+        while (!queue.isEmpty() && this.writeLock.tryLock()) {
+            try {
+                this.write(queue);
+            } catch (IOException e) {
+                LOGGER.log(System.Logger.Level.DEBUG, "Write failed, closing connection.", e);
+                queue.clear();
+                this.closeChannel();
+                return;
+            } finally {
+                this.writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Write the queued buffers, the write lock being held.
+     */
+    private void write(final OutboundQueue queue) throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = queue.poll()) != null) {
+            final int size = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+            queue.written(size);
+        }
+    }
+
+    /**
+     * Close the connection and notify the session manager if the session was not already disconnected, called by the reading thread when it stops.
+     */
+    private void close() {
+        this.closed = true;
+        this.closeChannel();
+        this.getOutboundQueue().clear();
+        if (this.isConnected()) {
+            this.getHandler().sessionClosed(this);
+        }
+        this.server.sessionClosed(this);
+    }
+}
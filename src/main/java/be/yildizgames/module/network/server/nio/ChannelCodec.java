@@ -0,0 +1,108 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.DecoderEncoder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Convert the bytes of a connection into messages, and the messages into bytes, for one of the codecs.
+ * An instance is created for every connection, decoding is only done by the thread reading the connection, the encoding methods must be stateless as they can be called by any thread.
+ *
+ * @author Grégory Van den Borre
+ */
+interface ChannelCodec {
+
+    /**
+     * Create the codec for a new connection.
+     * The HTTP codec uses the text messages, as the STRING codec, when no file is served.
+     *
+     * @param codec Codec used by the server.
+     * @return A new codec instance.
+     */
+    static ChannelCodec of(final DecoderEncoder codec) {
+        switch (codec) {
+            case BINARY:
+                return new BinaryChannelCodec();
+            case WEBSOCKET:
+                return new WebSocketChannelCodec();
+            default:
+                return new TextChannelCodec();
+        }
+    }
+
+    /**
+     * Create the codec for a new connection, serving the files of a directory with the HTTP codec.
+     *
+     * @param codec Codec used by the server.
+     * @param fileRoot Directory of the files served with the HTTP codec, null to use the text messages.
+     * @return A new codec instance.
+     */
+    static ChannelCodec of(final DecoderEncoder codec, final Path fileRoot) {
+        if (codec == DecoderEncoder.HTTP && fileRoot != null) {
+            return new HttpFileChannelCodec(fileRoot);
+        }
+        return of(codec);
+    }
+
+    /**
+     * Decode the bytes read from the connection and dispatch the complete messages.
+     * The bytes of an incomplete message must be kept by the codec, the input buffer is reused once the call returns.
+     *
+     * @param input Bytes read, ready to be read.
+     * @param session Session having read the bytes.
+     * @throws be.yildizgames.module.network.exceptions.InvalidNetworkMessage If the bytes are not valid for the codec, the connection is closed.
+     */
+    void decode(ByteBuffer input, ChannelSession session);
+
+    /**
+     * Encode serialized text messages to be written to the connection.
+     *
+     * @param message Messages to encode.
+     * @return The bytes to write, ready to be read.
+     */
+    ByteBuffer encode(CharSequence message);
+
+    /**
+     * Encode binary frames to be written to the connection.
+     *
+     * @param message Frames to encode, not modified.
+     * @return The bytes to write, ready to be read.
+     * @throws be.yildizgames.module.network.exceptions.NetworkException If the codec does not support binary messages.
+     */
+    ByteBuffer encode(ByteBuffer message);
+
+    /**
+     * Notify the codec that a file transfer it started is complete, to decode the bytes it kept while the transfer was running.
+     * Called by the thread reading the connection only.
+     *
+     * @param session Session having completed the transfer.
+     */
+    default void transferCompleted(final ChannelSession session) {
+        //does nothing
+    }
+}
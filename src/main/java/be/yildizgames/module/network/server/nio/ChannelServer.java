@@ -0,0 +1,358 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.server.AdmissionPolicy;
+import be.yildizgames.module.network.server.OutboundLimits;
+import be.yildizgames.module.network.server.RateLimiter;
+import be.yildizgames.module.network.server.Server;
+import be.yildizgames.module.network.server.SessionManager;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Server accepting the connections on a single acceptor thread, the implementations deciding how the accepted connections are served.
+ * The STRING and HTTP codecs use the text messages, the WEBSOCKET codec the text messages in websocket frames, and the BINARY codec the length prefixed binary frames.
+ * When a file root is set, the HTTP codec serves the files of that directory instead, the file bytes being sent without copy on the heap.
+ *
+ * @author Grégory Van den Borre
+ */
+abstract class ChannelServer extends Server {
+
+    /**
+     * Number of pending connections the system can keep before they are accepted.
+     */
+    static final int ACCEPT_BACKLOG = 4096;
+
+    /**
+     * Time to wait after an accept failure, in milliseconds.
+     */
+    private static final long ACCEPT_RETRY_DELAY = 10;
+
+    private static final System.Logger LOGGER = System.getLogger(ChannelServer.class.getName());
+
+    private ServerSocketChannel serverChannel;
+
+    private Thread acceptor;
+
+    /**
+     * Handler of the started server, null if not started.
+     */
+    private NioHandler handler;
+
+    /**
+     * Limits of the bytes waiting to be written to each connection.
+     */
+    private OutboundLimits outboundLimits = OutboundLimits.UNBOUNDED;
+
+    /**
+     * Rate limiter of the messages received from each connection, null if not limited.
+     */
+    private RateLimiter rateLimiter;
+
+    /**
+     * Policy limiting the connections accepted, null if not limited.
+     */
+    private AdmissionPolicy admissionPolicy;
+
+    /**
+     * Directory of the files served with the HTTP codec, null if no file is served.
+     */
+    private Path fileRoot;
+
+    /**
+     * Queue applying the admission policy for the started server, null if not started or not limited.
+     */
+    private AdmissionQueue admissionQueue;
+
+    ChannelServer() {
+        super();
+    }
+
+    @Override
+    public final void startServer(final String address, final int port, final SessionManager sessionManager, final DecoderEncoder codec) {
+        this.start(new InetSocketAddress(address, port), sessionManager, codec);
+    }
+
+    @Override
+    public final void startServer(final int port, final SessionManager sessionManager, final DecoderEncoder codec) {
+        this.start(new InetSocketAddress(port), sessionManager, codec);
+    }
+
+    /**
+     * Stop accepting connections and close all the connections.
+     */
+    public final synchronized void stop() {
+        if (this.serverChannel == null) {
+            return;
+        }
+        try {
+            this.serverChannel.close();
+            if (this.acceptor != null) {
+                this.acceptor.join();
+            }
+            if (this.admissionQueue != null) {
+                this.admissionQueue.close();
+            }
+            this.stopConnections();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Error closing server.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.handler.close();
+        this.serverChannel = null;
+        this.handler = null;
+        this.admissionQueue = null;
+        this.acceptor = null;
+    }
+
+    /**
+     * Limit the bytes waiting to be written to each connection, to protect the server memory from the clients not reading fast enough.
+     * The limits apply to the connections accepted after this call, there is no limit by default.
+     *
+     * @param limits Watermarks, capacity and overflow policy.
+     */
+    public final synchronized void setOutboundLimits(final OutboundLimits limits) {
+        Objects.requireNonNull(limits);
+        this.outboundLimits = limits;
+        if (this.handler != null) {
+            this.handler.setOutboundLimits(limits);
+        }
+    }
+
+    /**
+     * Limit the rate of the messages received from each connection, to protect the server from the clients flooding it.
+     * The limiter applies to the connections accepted after this call, there is no limit by default.
+     *
+     * @param limiter Rate limiter, null to remove the limit.
+     */
+    public final synchronized void setRateLimiter(final RateLimiter limiter) {
+        this.rateLimiter = limiter;
+        if (this.handler != null) {
+            this.handler.setRateLimiter(limiter);
+        }
+    }
+
+    /**
+     * Limit the connections accepted, to protect the server from all the clients connecting again at once, for example after a restart.
+     * The policy applies when the server is started, there is no limit by default.
+     *
+     * @param policy Admission policy, null to remove the limit.
+     */
+    public final synchronized void setAdmissionPolicy(final AdmissionPolicy policy) {
+        this.admissionPolicy = policy;
+    }
+
+    /**
+     * Serve the files of a directory to the HTTP clients, with the GET and HEAD requests, supporting single byte ranges to resume the downloads.
+     * The root applies when the server is started with the HTTP codec, the HTTP connections use the text messages by default.
+     *
+     * @param root Directory of the files to serve, the files out of it cannot be requested, null to use the text messages.
+     */
+    public final synchronized void setFileRoot(final Path root) {
+        if (root == null) {
+            this.fileRoot = null;
+            return;
+        }
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("Not a directory: " + root);
+        }
+        try {
+            this.fileRoot = root.toRealPath();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot resolve directory: " + root, e);
+        }
+    }
+
+    /**
+     * @return The number of connections accepted and not yet authenticated nor closed.
+     */
+    public final synchronized int getUnauthenticatedCount() {
+        return this.handler == null ? 0 : this.handler.getUnauthenticatedCount();
+    }
+
+    /**
+     * @return The number of connections waiting to be admitted.
+     */
+    public final synchronized int getPendingConnectionCount() {
+        return this.admissionQueue == null ? 0 : this.admissionQueue.getPendingCount();
+    }
+
+    /**
+     * @return The number of connections refused since the server was started.
+     */
+    public final synchronized long getRefusedConnectionCount() {
+        return this.admissionQueue == null ? 0 : this.admissionQueue.getRefusedCount();
+    }
+
+    /**
+     * @return The port the server is listening on, useful when started on port 0.
+     */
+    public final int getPort() {
+        try {
+            return ((InetSocketAddress) this.serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throwError("Cannot retrieve server port.", e);
+            return -1;
+        }
+    }
+
+    /**
+     * @return The number of connections currently open.
+     */
+    public abstract int getConnectionCount();
+
+    /**
+     * Prepare the resources serving the connections, called before accepting the first connection.
+     *
+     * @param handler Handler to forward the messages to the session manager.
+     * @param codec Codec used by the connections.
+     * @throws IOException If the resources cannot be created.
+     */
+    abstract void startConnections(NioHandler handler, DecoderEncoder codec) throws IOException;
+
+    /**
+     * Serve a new connection, called by the acceptor thread, or by the admission thread for the queued connections, one at a time.
+     *
+     * @param channel Accepted connection, in blocking mode.
+     */
+    abstract void accepted(SocketChannel channel);
+
+    /**
+     * Close all the connections and release the resources serving them.
+     *
+     * @throws InterruptedException If interrupted while waiting for the threads to stop.
+     */
+    abstract void stopConnections() throws InterruptedException;
+
+    /**
+     * Serve a connection allowed by the admission policy, counting it as not authenticated.
+     *
+     * @param channel Admitted connection, in blocking mode.
+     */
+    final void admit(final SocketChannel channel) {
+        this.handler.connectionAccepted();
+        this.accepted(channel);
+    }
+
+    private synchronized void start(final InetSocketAddress address, final SessionManager sessionManager, final DecoderEncoder codec) {
+        Objects.requireNonNull(sessionManager);
+        Objects.requireNonNull(codec);
+        if (this.serverChannel != null) {
+            throwError("Server already started.");
+        }
+        try {
+            this.handler = new NioHandler(sessionManager, this.outboundLimits, this.rateLimiter, this.fileRoot);
+            this.startConnections(this.handler, codec);
+            this.serverChannel = ServerSocketChannel.open();
+            this.serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            this.serverChannel.bind(address, ACCEPT_BACKLOG);
+            if (this.admissionPolicy != null) {
+                this.admissionQueue = new AdmissionQueue(this, this.handler, codec, this.admissionPolicy);
+                this.admissionQueue.start();
+            }
+        } catch (IOException e) {
+            this.abortStart();
+            throwError("Cannot start server on " + address, e);
+        } catch (RuntimeException e) {
+            this.abortStart();
+            throw e;
+        }
+        this.acceptor = new Thread(this::accept, "network-acceptor");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+        LOGGER.log(System.Logger.Level.INFO, "{0} started on {1}.", this.getClass().getSimpleName(), address);
+    }
+
+    /**
+     * Release what was started by a failed start, so the server can be started again.
+     */
+    private void abortStart() {
+        try {
+            if (this.serverChannel != null) {
+                this.serverChannel.close();
+            }
+            if (this.admissionQueue != null) {
+                this.admissionQueue.close();
+            }
+            this.stopConnections();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Error closing server.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.handler != null) {
+            this.handler.close();
+        }
+        this.serverChannel = null;
+        this.handler = null;
+        this.admissionQueue = null;
+    }
+
+    /**
+     * Accept the connections until the server channel is closed, the connections being given to the admission queue if any.
+     */
+    private void accept() {
+        final ServerSocketChannel channel = this.serverChannel;
+        final AdmissionQueue queue = this.admissionQueue;
+        while (channel.isOpen()) {
+            try {
+                final SocketChannel client = channel.accept();
+                client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                if (queue == null) {
+                    this.admit(client);
+                } else {
+                    queue.offer(client);
+                }
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Error accepting connection.", e);
+                pause();
+            }
+        }
+    }
+
+    /**
+     * Wait a bit after an accept failure, to not spin when no more file descriptor is available.
+     */
+    private static void pause() {
+        try {
+            Thread.sleep(ACCEPT_RETRY_DELAY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.server.Session;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Session for a connection using a channel codec, the transport writing the encoded bytes being provided by the implementations.
+ *
+ * @author Grégory Van den Borre
+ */
+abstract class ChannelSession extends Session {
+
+    /**
+     * Codec converting the bytes of this connection.
+     */
+    private final ChannelCodec channelCodec;
+
+    /**
+     * Handler forwarding the decoded messages.
+     */
+    private final NioHandler handler;
+
+    /**
+     * <code>true</code> as long as the session is counted as not authenticated by the handler.
+     */
+    private final AtomicBoolean authenticating = new AtomicBoolean(true);
+
+    ChannelSession(final DecoderEncoder codec, final NioHandler handler) {
+        super(PlayerId.WORLD, codec);
+        this.channelCodec = ChannelCodec.of(codec, handler.getFileRoot());
+        this.handler = handler;
+        this.setOutboundLimits(handler.getOutboundLimits());
+        this.setRateLimiter(handler.getRateLimiter());
+    }
+
+    @Override
+    public final void sendMessage(final String message) {
+        this.enqueue(this.channelCodec.encode(message));
+    }
+
+    @Override
+    public final void sendMessage(final CharSequence message) {
+        this.enqueue(this.channelCodec.encode(message));
+    }
+
+    @Override
+    public final void sendMessage(final ByteBuffer message) {
+        this.enqueue(this.channelCodec.encode(message));
+    }
+
+    /**
+     * Write encoded bytes to the connection.
+     *
+     * @param data Bytes to write, not to be modified afterwards.
+     */
+    abstract void enqueue(ByteBuffer data);
+
+    /**
+     * Close the connection once the bytes already given are written.
+     */
+    abstract void closeAfterWrite();
+
+    /**
+     * Write encoded bytes followed by a part of a file, the file bytes being transferred without copy on the heap.
+     * Called by the thread reading the connection only, no other transfer can be started until this one is complete.
+     *
+     * @param header Bytes to write before the file, not to be modified afterwards.
+     * @param region Part of the file to write, closed once written or when the connection is closed.
+     */
+    abstract void transfer(ByteBuffer header, FileRegion region);
+
+    /**
+     * @return <code>true</code> while a file transfer started by the reading thread is not complete, the reads being suspended until then.
+     */
+    boolean isTransferring() {
+        return false;
+    }
+
+    /**
+     * Provide a buffer to decode the characters read, only used during a decode call.
+     *
+     * @return The character buffer.
+     */
+    abstract CharBuffer getCharBuffer();
+
+    final ChannelCodec getChannelCodec() {
+        return this.channelCodec;
+    }
+
+    final NioHandler getHandler() {
+        return this.handler;
+    }
+
+    /**
+     * Stop counting this session as not authenticated.
+     *
+     * @return <code>true</code> if the session was counted, <code>false</code> if it was already no longer counted.
+     */
+    final boolean endAuthentication() {
+        return this.authenticating.getAndSet(false);
+    }
+}
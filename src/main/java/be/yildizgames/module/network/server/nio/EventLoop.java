@@ -0,0 +1,255 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.DecoderEncoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread serving a set of connections with a selector.
+ * A connection is assigned to a single event loop for its whole life, all its reads, writes and decoding are done by this loop thread.
+ * The read buffer is a direct buffer shared by all the connections of the loop, only the bytes of incomplete messages are copied by the connection codecs.
+ *
+ * @author Grégory Van den Borre
+ */
+final class EventLoop implements Runnable {
+
+    /**
+     * Size of the read buffer.
+     */
+    static final int READ_BUFFER_SIZE = 65536;
+
+    /**
+     * Maximum number of buffers written by a single gathering write.
+     */
+    private static final int MAX_GATHER = 64;
+
+    private static final System.Logger LOGGER = System.getLogger(EventLoop.class.getName());
+
+    private final Selector selector;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    private final CharBuffer charBuffer = CharBuffer.allocate(READ_BUFFER_SIZE);
+
+    private final ByteBuffer[] gatherArray = new ByteBuffer[MAX_GATHER];
+
+    /**
+     * Tasks submitted to be run by the loop thread.
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Tasks to run by the loop thread after a delay, ordered by deadline, only used by the loop thread.
+     */
+    private final Queue<DelayedTask> delayedTasks = new PriorityQueue<>();
+
+    /**
+     * Number of connections served.
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final NioHandler handler;
+
+    private final DecoderEncoder codec;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    EventLoop(final String name, final NioHandler handler, final DecoderEncoder codec) throws IOException {
+        super();
+        this.selector = Selector.open();
+        this.handler = handler;
+        this.codec = codec;
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        this.thread.start();
+    }
+
+    /**
+     * Assign a newly accepted connection to this loop.
+     *
+     * @param channel Accepted connection.
+     */
+    void register(final SocketChannel channel) {
+        this.execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                final SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+                key.attach(new NioSession(channel, key, this, this.codec));
+                this.connections.incrementAndGet();
+            } catch (IOException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Cannot register connection.", e);
+                this.handler.connectionFailed();
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    LOGGER.log(System.Logger.Level.DEBUG, "Error closing connection.", ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Run a task in the loop thread.
+     *
+     * @param task Task to run.
+     */
+    void execute(final Runnable task) {
+        this.tasks.add(task);
+        if (Thread.currentThread() != this.thread) {
+            this.selector.wakeup();
+        }
+    }
+
+    /**
+     * Run a task in the loop thread after a delay, must be called from the loop thread.
+     *
+     * @param task Task to run.
+     * @param delay Time to wait before running the task, in nanoseconds.
+     */
+    void schedule(final Runnable task, final long delay) {
+        this.delayedTasks.add(new DelayedTask(System.nanoTime() + delay, task));
+    }
+
+    @Override
+    public void run() {
+        while (this.running) {
+            try {
+                final DelayedTask next = this.delayedTasks.peek();
+                if (!this.tasks.isEmpty()) {
+                    this.selector.selectNow(this::process);
+                } else if (next == null) {
+                    this.selector.select(this::process);
+                } else {
+                    final long wait = next.deadline - System.nanoTime();
+                    if (wait <= 0) {
+                        this.selector.selectNow(this::process);
+                    } else {
+                        this.selector.select(this::process, Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+                    }
+                }
+                Runnable task;
+                while ((task = this.tasks.poll()) != null) {
+                    task.run();
+                }
+                final long now = System.nanoTime();
+                DelayedTask delayed;
+                while ((delayed = this.delayedTasks.peek()) != null && delayed.deadline - now <= 0) {
+                    this.delayedTasks.poll().task.run();
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "Error in event loop.", e);
+            }
+        }
+        for (SelectionKey key : this.selector.keys()) {
+            if (key.attachment() instanceof NioSession) {
+                ((NioSession) key.attachment()).close();
+            }
+        }
+        try {
+            this.selector.close();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Error closing selector.", e);
+        }
+    }
+
+    /**
+     * Stop the loop and close all its connections.
+     *
+     * @throws InterruptedException If interrupted while waiting for the loop to stop.
+     */
+    void stop() throws InterruptedException {
+        this.running = false;
+        this.selector.wakeup();
+        this.thread.join();
+    }
+
+    void connectionClosed() {
+        this.connections.decrementAndGet();
+    }
+
+    int getConnectionCount() {
+        return this.connections.get();
+    }
+
+    NioHandler getHandler() {
+        return this.handler;
+    }
+
+    CharBuffer getCharBuffer() {
+        return this.charBuffer;
+    }
+
+    ByteBuffer[] getGatherArray() {
+        return this.gatherArray;
+    }
+
+    private void process(final SelectionKey key) {
+        final NioSession session = (NioSession) key.attachment();
+        if (key.isValid() && key.isReadable()) {
+            session.read(this.readBuffer);
+        }
+        if (key.isValid() && key.isWritable()) {
+            session.flushWrites();
+        }
+    }
+
+    /**
+     * Task to run once its deadline is reached.
+     */
+    private static final class DelayedTask implements Comparable<DelayedTask> {
+
+        private final long deadline;
+
+        private final Runnable task;
+
+        private DelayedTask(final long deadline, final Runnable task) {
+            super();
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(final DelayedTask other) {
+            return Long.compare(this.deadline - other.deadline, 0);
+        }
+    }
+}
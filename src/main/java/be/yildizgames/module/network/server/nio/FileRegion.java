@@ -0,0 +1,109 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Part of a file to send on a connection, transferred from the file channel to the socket without being copied on the heap.
+ * The transfer uses sendfile when the system supports it, the JDK falling back to mapped buffers otherwise.
+ *
+ * @author Grégory Van den Borre
+ */
+final class FileRegion implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(FileRegion.class.getName());
+
+    /**
+     * File to send, closed with the region.
+     */
+    private final FileChannel file;
+
+    /**
+     * Position of the next byte to send.
+     */
+    private long position;
+
+    /**
+     * Position after the last byte to send.
+     */
+    private final long end;
+
+    /**
+     * Create a region.
+     *
+     * @param file File to send, closed with the region.
+     * @param position Position of the first byte to send.
+     * @param count Number of bytes to send.
+     */
+    FileRegion(final FileChannel file, final long position, final long count) {
+        super();
+        this.file = file;
+        this.position = position;
+        this.end = position + count;
+    }
+
+    /**
+     * Send as many bytes as the target can take.
+     *
+     * @param target Connection to send the bytes to, in blocking mode all the bytes are sent.
+     * @return <code>true</code> if the whole region is sent, <code>false</code> if the target cannot take more bytes for now.
+     * @throws IOException If the file cannot be read or the connection cannot be written.
+     */
+    boolean transferTo(final WritableByteChannel target) throws IOException {
+        while (this.position < this.end) {
+            final long sent = this.file.transferTo(this.position, this.end - this.position, target);
+            if (sent == 0) {
+                if (this.position >= this.file.size()) {
+                    throw new IOException("File truncated during the transfer.");
+                }
+                return false;
+            }
+            this.position += sent;
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of bytes not sent yet.
+     */
+    long getRemaining() {
+        return this.end - this.position;
+    }
+
+    /**
+     * Close the file.
+     */
+    @Override
+    public void close() {
+        try {
+            this.file.close();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Error closing file.", e);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+import be.yildizgames.module.network.exceptions.NetworkException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Codec serving the files of a directory over HTTP/1.1, for the GET and HEAD requests.
+ * The response headers are encoded on the heap, the file bytes are transferred from the file to the socket without being copied on the heap.
+ * A single byte range can be requested to resume a download, the requests with several ranges get the whole file.
+ * The connections are kept alive, the requests pipelined during a transfer are kept and answered once it is complete.
+ * The connection does not carry messages, the session is never authenticated.
+ *
+ * @author Grégory Van den Borre
+ */
+final class HttpFileChannelCodec implements ChannelCodec {
+
+    /**
+     * Maximum size of a request.
+     */
+    private static final int MAX_REQUEST_SIZE = 8192;
+
+    private static final System.Logger LOGGER = System.getLogger(HttpFileChannelCodec.class.getName());
+
+    /**
+     * Range returned when the requested range cannot be satisfied.
+     */
+    private static final long[] NOT_SATISFIABLE = new long[0];
+
+    /**
+     * Directory of the served files, as a real path.
+     */
+    private final Path root;
+
+    /**
+     * Bytes of the requests not answered yet, in write mode, null if none.
+     */
+    private ByteBuffer pending;
+
+    /**
+     * <code>true</code> once a response closing the connection is sent, the next requests are ignored.
+     */
+    private boolean closed;
+
+    HttpFileChannelCodec(final Path root) {
+        super();
+        this.root = root;
+    }
+
+    @Override
+    public void decode(final ByteBuffer input, final ChannelSession session) {
+        if (this.closed) {
+            return;
+        }
+        ByteBuffer in = input;
+        if (this.pending != null) {
+            if (this.pending.remaining() < input.remaining()) {
+                final ByteBuffer grown = ByteBuffer.allocate(this.pending.position() + input.remaining());
+                this.pending.flip();
+                this.pending = grown.put(this.pending);
+            }
+            in = this.pending.put(input).flip();
+            this.pending = null;
+        }
+        while (!this.closed && !session.isTransferring() && this.request(in, session)) {
+            // Answer all the complete requests, until a transfer must complete first.
+        }
+        if (!this.closed && in.hasRemaining()) {
+            if (in.remaining() > MAX_REQUEST_SIZE) {
+                throw new InvalidNetworkMessage("Incomplete HTTP request exceeds " + MAX_REQUEST_SIZE + " bytes.");
+            }
+            this.pending = ByteBuffer.allocate(Math.max(1024, in.remaining() * 2)).put(in);
+        }
+    }
+
+    @Override
+    public void transferCompleted(final ChannelSession session) {
+        this.decode(ByteBuffer.allocate(0), session);
+    }
+
+    @Override
+    public ByteBuffer encode(final CharSequence message) {
+        throw new NetworkException("Messages are not supported by the HTTP file codec.");
+    }
+
+    @Override
+    public ByteBuffer encode(final ByteBuffer message) {
+        throw new NetworkException("Messages are not supported by the HTTP file codec.");
+    }
+
+    /**
+     * Read a request and answer it.
+     *
+     * @return <code>true</code> if a request was answered, <code>false</code> if the request is not complete.
+     */
+    private boolean request(final ByteBuffer in, final ChannelSession session) {
+        int end = -1;
+        for (int i = in.position(); i + 3 < in.limit(); i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) {
+            return false;
+        }
+        final byte[] request = new byte[end - in.position()];
+        in.get(request);
+        in.position(end + 4);
+        final String[] lines = new String(request, StandardCharsets.ISO_8859_1).split("\r\n");
+        final String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            this.status(session, "400 Bad Request", "", false);
+            return true;
+        }
+        String range = null;
+        String connection = "";
+        for (int i = 1; i < lines.length; i++) {
+            final int separator = lines[i].indexOf(':');
+            if (separator > 0) {
+                final String name = lines[i].substring(0, separator).trim().toLowerCase(Locale.ROOT);
+                if (name.equals("range")) {
+                    range = lines[i].substring(separator + 1).trim();
+                } else if (name.equals("connection")) {
+                    connection = lines[i].substring(separator + 1).toLowerCase(Locale.ROOT);
+                }
+            }
+        }
+        final boolean keepAlive = requestLine[2].equals("HTTP/1.0") ? connection.contains("keep-alive") : !connection.contains("close");
+        final boolean head = requestLine[0].equals("HEAD");
+        if (!head && !requestLine[0].equals("GET")) {
+            this.status(session, "405 Method Not Allowed", "Allow: GET, HEAD\r\n", keepAlive);
+            return true;
+        }
+        final Path file = this.resolve(requestLine[1]);
+        if (file == null) {
+            this.status(session, "404 Not Found", "", keepAlive);
+            return true;
+        }
+        this.send(session, file, range, head, keepAlive);
+        return true;
+    }
+
+    /**
+     * Answer a request for a file, with the whole file or the requested range.
+     */
+    private void send(final ChannelSession session, final Path file, final String rangeHeader, final boolean head, final boolean keepAlive) {
+        final FileChannel channel;
+        final long size;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            size = channel.size();
+        } catch (IOException e) {
+            this.status(session, "404 Not Found", "", keepAlive);
+            return;
+        }
+        final long[] range = range(rangeHeader, size);
+        if (range == NOT_SATISFIABLE) {
+            close(channel);
+            this.status(session, "416 Range Not Satisfiable", "Content-Range: bytes */" + size + "\r\n", keepAlive);
+            return;
+        }
+        final long start = range == null ? 0 : range[0];
+        final long length = range == null ? size : range[1] - range[0] + 1;
+        final StringBuilder response = new StringBuilder(256);
+        if (range == null) {
+            response.append("HTTP/1.1 200 OK\r\n");
+        } else {
+            response.append("HTTP/1.1 206 Partial Content\r\n")
+                    .append("Content-Range: bytes ").append(range[0]).append('-').append(range[1]).append('/').append(size).append("\r\n");
+        }
+        response.append("Accept-Ranges: bytes\r\n")
+                .append("Content-Type: application/octet-stream\r\n")
+                .append("Content-Length: ").append(length).append("\r\n");
+        if (!keepAlive) {
+            response.append("Connection: close\r\n");
+        }
+        response.append("\r\n");
+        final ByteBuffer header = StandardCharsets.ISO_8859_1.encode(response.toString());
+        if (head || length == 0) {
+            close(channel);
+            session.enqueue(header);
+        } else {
+            session.transfer(header, new FileRegion(channel, start, length));
+        }
+        if (!keepAlive) {
+            this.closed = true;
+            session.closeAfterWrite();
+        }
+    }
+
+    /**
+     * Answer a request with a status and no content.
+     */
+    private void status(final ChannelSession session, final String status, final String headers, final boolean keepAlive) {
+        session.enqueue(StandardCharsets.ISO_8859_1.encode("HTTP/1.1 " + status + "\r\n" + headers + "Content-Length: 0\r\n"
+                + (keepAlive ? "" : "Connection: close\r\n") + "\r\n"));
+        if (!keepAlive) {
+            this.closed = true;
+            session.closeAfterWrite();
+        }
+    }
+
+    /**
+     * Find the file requested by a request target, only the readable files in the root directory can be found.
+     *
+     * @param target Request target.
+     * @return The real path of the file, null if not found.
+     */
+    private Path resolve(final String target) {
+        final String path;
+        try {
+            path = new URI(target).getPath();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        if (path == null || !path.startsWith("/")) {
+            return null;
+        }
+        try {
+            final Path file = this.root.resolve(path.substring(1)).normalize();
+            if (!file.startsWith(this.root) || !Files.isRegularFile(file)) {
+                return null;
+            }
+            final Path real = file.toRealPath();
+            return real.startsWith(this.root) ? real : null;
+        } catch (InvalidPathException | IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse a range header, as defined in the RFC 7233, only a single byte range is supported.
+     *
+     * @param header Range header value, null if none.
+     * @param size Size of the file.
+     * @return The first and last positions of the range, null to send the whole file, NOT_SATISFIABLE if the range is out of the file.
+     */
+    static long[] range(final String header, final long size) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        final String spec = header.substring(6).trim();
+        final int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        final String first = spec.substring(0, dash).trim();
+        final String last = spec.substring(dash + 1).trim();
+        try {
+            if (first.isEmpty()) {
+                final long suffix = Long.parseLong(last);
+                if (suffix < 0) {
+                    return null;
+                }
+                return suffix == 0 || size == 0 ? NOT_SATISFIABLE : new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            final long start = Long.parseLong(first);
+            final long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            return start >= size ? NOT_SATISFIABLE : new long[]{start, Math.min(end, size - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void close(final FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Error closing file.", e);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.AbstractHandler;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.server.OutboundLimits;
+import be.yildizgames.module.network.server.RateLimiter;
+import be.yildizgames.module.network.server.Session;
+import be.yildizgames.module.network.server.SessionListener;
+import be.yildizgames.module.network.server.SessionManager;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Forward the messages decoded by the event loops to the session manager.
+ * The session manager is thread safe, so the event loops call it directly, without lock, each of them for its own connections.
+ *
+ * @author Grégory Van den Borre
+ */
+final class NioHandler extends AbstractHandler {
+
+    private final SessionManager sessionManager;
+
+    /**
+     * Limits of the bytes waiting to be written, given to the new sessions.
+     */
+    private volatile OutboundLimits outboundLimits;
+
+    /**
+     * Rate limiter given to the new sessions, null if not limited.
+     */
+    private volatile RateLimiter rateLimiter;
+
+    /**
+     * Directory of the files served with the HTTP codec, null if no file is served.
+     */
+    private final Path fileRoot;
+
+    /**
+     * Number of connections accepted and not yet authenticated nor closed.
+     */
+    private final AtomicInteger unauthenticated = new AtomicInteger();
+
+    /**
+     * Listener registered on the session manager, removed when the handler is closed.
+     */
+    private final SessionListener authenticationListener = new AuthenticationListener();
+
+    NioHandler(final SessionManager sessionManager, final OutboundLimits outboundLimits, final RateLimiter rateLimiter, final Path fileRoot) {
+        super();
+        this.sessionManager = sessionManager;
+        this.outboundLimits = outboundLimits;
+        this.rateLimiter = rateLimiter;
+        this.fileRoot = fileRoot;
+        sessionManager.addSessionListener(this.authenticationListener);
+    }
+
+    /**
+     * Remove the listener registered on the session manager, called when the server is stopped.
+     */
+    void close() {
+        this.sessionManager.removeSessionListener(this.authenticationListener);
+    }
+
+    @Override
+    protected void messageReceivedImpl(final Session session, final MessageWrapper message) {
+        this.sessionManager.messageReceived(session, message);
+    }
+
+    /**
+     * Notify the session manager that the connection of a session was closed.
+     *
+     * @param session Session having been closed.
+     */
+    void sessionClosed(final ChannelSession session) {
+        this.authenticationEnded(session);
+        if (session.isAuthenticated()) {
+            this.sessionManager.disconnectSession(session);
+        } else {
+            session.disconnect();
+        }
+    }
+
+    /**
+     * Count a connection accepted, as not authenticated until its session is authenticated or closed.
+     */
+    void connectionAccepted() {
+        this.unauthenticated.incrementAndGet();
+    }
+
+    /**
+     * Stop counting a connection accepted without its session having been created.
+     */
+    void connectionFailed() {
+        this.unauthenticated.decrementAndGet();
+    }
+
+    /**
+     * @return The number of connections accepted and not yet authenticated nor closed.
+     */
+    int getUnauthenticatedCount() {
+        return this.unauthenticated.get();
+    }
+
+    /**
+     * Stop counting a session as not authenticated, only the first call for a session is counted.
+     *
+     * @param session Session having been authenticated or closed.
+     */
+    private void authenticationEnded(final ChannelSession session) {
+        if (session.endAuthentication()) {
+            this.unauthenticated.decrementAndGet();
+        }
+    }
+
+    OutboundLimits getOutboundLimits() {
+        return this.outboundLimits;
+    }
+
+    void setOutboundLimits(final OutboundLimits outboundLimits) {
+        this.outboundLimits = outboundLimits;
+    }
+
+    RateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
+    void setRateLimiter(final RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    Path getFileRoot() {
+        return this.fileRoot;
+    }
+
+    /**
+     * Listener of the session manager, to stop counting the sessions once authenticated, even asynchronously.
+     */
+    private final class AuthenticationListener implements SessionListener {
+
+        @Override
+        public void messageReceived(final Session session, final MessageWrapper message) {
+            //does nothing
+        }
+
+        @Override
+        public void clientAuthenticated(final Session session) {
+            if (session instanceof ChannelSession) {
+                NioHandler.this.authenticationEnded((ChannelSession) session);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.DecoderEncoder;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Server based on the java.nio selectors.
+ * A single acceptor thread accepts the connections and assigns them in turn to a fixed number of event loops, each connection being served by the same loop for its whole life.
+ * No thread is created per connection, the number of threads is the number of event loops plus the acceptor.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class NioServer extends ChannelServer {
+
+    /**
+     * Number of event loops to create.
+     */
+    private final int eventLoopCount;
+
+    private EventLoop[] eventLoops = new EventLoop[0];
+
+    /**
+     * Index of the event loop to assign the next connection to, only used by the thread admitting the connections, the acceptor or the admission queue holding its lock.
+     */
+    private int next;
+
+    /**
+     * Create a server with an event loop per available processor.
+     */
+    public NioServer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a server.
+     *
+     * @param eventLoopCount Number of event loops serving the connections, must be positive.
+     */
+    public NioServer(final int eventLoopCount) {
+        super();
+        if (eventLoopCount <= 0) {
+            throw new IllegalArgumentException("Event loop count must be positive: " + eventLoopCount);
+        }
+        this.eventLoopCount = eventLoopCount;
+    }
+
+    @Override
+    public int getConnectionCount() {
+        int result = 0;
+        for (EventLoop loop : this.eventLoops) {
+            result += loop.getConnectionCount();
+        }
+        return result;
+    }
+
+    @Override
+    void startConnections(final NioHandler handler, final DecoderEncoder codec) throws IOException {
+        final EventLoop[] loops = new EventLoop[this.eventLoopCount];
+        for (int i = 0; i < this.eventLoopCount; i++) {
+            loops[i] = new EventLoop("network-event-loop-" + i, handler, codec);
+        }
+        for (EventLoop loop : loops) {
+            loop.start();
+        }
+        this.eventLoops = loops;
+    }
+
+    @Override
+    void accepted(final SocketChannel channel) {
+        this.eventLoops[this.next].register(channel);
+        this.next = (this.next + 1) % this.eventLoops.length;
+    }
+
+    @Override
+    void stopConnections() throws InterruptedException {
+        for (EventLoop loop : this.eventLoops) {
+            loop.stop();
+        }
+        this.eventLoops = new EventLoop[0];
+    }
+}
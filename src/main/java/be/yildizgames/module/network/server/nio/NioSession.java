@@ -0,0 +1,321 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.server.OutboundQueue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Session for a connection served by an event loop.
+ * Messages can be sent from any thread, they are queued in the bounded outbound queue and written by the event loop, with a single gathering write for all the queued buffers.
+ * When the socket cannot take all the bytes, the buffers being written are kept and completed once the socket is writable again, the queue limits the bytes kept for a slow client.
+ * A file region is written after the queued buffers, directly from the file to the socket, the reads being suspended until it is complete.
+ *
+ * @author Grégory Van den Borre
+ */
+final class NioSession extends ChannelSession {
+
+    private static final System.Logger LOGGER = System.getLogger(NioSession.class.getName());
+
+    /**
+     * Connection of this session.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * Registration of the connection in the event loop selector.
+     */
+    private final SelectionKey key;
+
+    /**
+     * Event loop serving this session.
+     */
+    private final EventLoop eventLoop;
+
+    /**
+     * Buffers taken from the outbound queue and not completely written yet, only used by the event loop.
+     */
+    private final Deque<ByteBuffer> writing = new ArrayDeque<>();
+
+    /**
+     * <code>true</code> when a write is already scheduled in the event loop.
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /**
+     * File region to write once the buffers queued before it are written, null if none, only used by the event loop.
+     * The reads are suspended while a region is being written.
+     */
+    private FileRegion region;
+
+    /**
+     * <code>true</code> if the connection is registered for the write events.
+     */
+    private boolean writeInterest;
+
+    /**
+     * <code>true</code> while the reads are paused by the rate limiter, only used by the event loop.
+     */
+    private boolean readPaused;
+
+    /**
+     * <code>true</code> to close the connection once the queued buffers are written.
+     */
+    private volatile boolean closing;
+
+    /**
+     * <code>true</code> once the connection is closed.
+     */
+    private volatile boolean closed;
+
+    NioSession(final SocketChannel channel, final SelectionKey key, final EventLoop eventLoop, final DecoderEncoder codec) {
+        super(codec, eventLoop.getHandler());
+        this.channel = channel;
+        this.key = key;
+        this.eventLoop = eventLoop;
+    }
+
+    @Override
+    protected void closeSession() {
+        this.eventLoop.execute(this::close);
+    }
+
+    /**
+     * Queue bytes to be written by the event loop.
+     *
+     * @param data Bytes to write, not to be modified afterwards.
+     */
+    @Override
+    void enqueue(final ByteBuffer data) {
+        if (!this.closed && this.getOutboundQueue().offer(data)) {
+            this.scheduleFlush();
+        }
+    }
+
+    /**
+     * Close the connection once the queued bytes are written.
+     */
+    @Override
+    void closeAfterWrite() {
+        this.closing = true;
+        this.scheduleFlush();
+    }
+
+    /**
+     * Queue the header to be written by the event loop, then the file region, the reads being suspended until the region is written.
+     * Called by the event loop only, while decoding.
+     *
+     * @param header Bytes to write before the file, not to be modified afterwards.
+     * @param region Part of the file to write, closed once written or when the connection is closed.
+     */
+    @Override
+    void transfer(final ByteBuffer header, final FileRegion region) {
+        if (this.closed || !this.getOutboundQueue().offer(header)) {
+            region.close();
+            return;
+        }
+        this.region = region;
+        this.updateInterest();
+        this.scheduleFlush();
+    }
+
+    @Override
+    boolean isTransferring() {
+        return this.region != null;
+    }
+
+    /**
+     * Read the available bytes and decode them, close the connection at the end of the stream or if the bytes are invalid.
+     * Called by the event loop only.
+     *
+     * @param buffer Event loop read buffer.
+     */
+    void read(final ByteBuffer buffer) {
+        buffer.clear();
+        final int read;
+        try {
+            read = this.channel.read(buffer);
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Read failed, closing connection.", e);
+            this.close();
+            return;
+        }
+        if (read < 0) {
+            this.close();
+            return;
+        }
+        buffer.flip();
+        try {
+            this.getChannelCodec().decode(buffer, this);
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Error processing message from " + this.getPlayer() + ", closing connection.", e);
+            this.close();
+        }
+    }
+
+    /**
+     * Write the queued buffers, as much as the socket can take.
+     * Called by the event loop only.
+     */
+    void flushWrites() {
+        this.flushScheduled.set(false);
+        final OutboundQueue queue = this.getOutboundQueue();
+        if (this.closed) {
+            queue.clear();
+            this.writing.clear();
+            return;
+        }
+        final ByteBuffer[] batch = this.eventLoop.getGatherArray();
+        try {
+            while (true) {
+                queue.drainTo(this.writing, batch.length - this.writing.size());
+                if (this.writing.isEmpty()) {
+                    break;
+                }
+                int count = 0;
+                for (ByteBuffer buffer : this.writing) {
+                    if (count == batch.length) {
+                        break;
+                    }
+                    batch[count++] = buffer;
+                }
+                final long written = this.channel.write(batch, 0, count);
+                Arrays.fill(batch, 0, count, null);
+                queue.written(written);
+                while (!this.writing.isEmpty() && !this.writing.peek().hasRemaining()) {
+                    this.writing.poll();
+                }
+                if (!this.writing.isEmpty()) {
+                    this.setWriteInterest(true);
+                    return;
+                }
+            }
+            if (this.region != null) {
+                if (!this.region.transferTo(this.channel)) {
+                    this.setWriteInterest(true);
+                    return;
+                }
+                this.region.close();
+                this.region = null;
+                this.updateInterest();
+                this.getChannelCodec().transferCompleted(this);
+                if (this.region != null || !queue.isEmpty()) {
+                    // the pipelined requests were answered, the flush is already scheduled
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            Arrays.fill(batch, null);
+            LOGGER.log(System.Logger.Level.DEBUG, "Write failed, closing connection.", e);
+            this.close();
+            return;
+        }
+        this.setWriteInterest(false);
+        if (this.closing) {
+            this.close();
+        }
+    }
+
+    /**
+     * Close the connection and notify the session manager if the session was not already disconnected.
+     * Called by the event loop only.
+     */
+    void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.key.cancel();
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Error closing connection.", e);
+        }
+        this.getOutboundQueue().clear();
+        this.writing.clear();
+        if (this.region != null) {
+            this.region.close();
+            this.region = null;
+        }
+        if (this.isConnected()) {
+            this.getHandler().sessionClosed(this);
+        }
+        this.eventLoop.connectionClosed();
+    }
+
+    /**
+     * Stop reading from the connection, the reads resume once the delay is elapsed.
+     * Called by the event loop only, while decoding, the messages already read are still processed.
+     *
+     * @param nanos Time to wait before reading again, in nanoseconds.
+     */
+    @Override
+    protected void pauseReading(final long nanos) {
+        if (!this.readPaused && !this.closed) {
+            this.readPaused = true;
+            this.updateInterest();
+            this.eventLoop.schedule(this::resumeReading, nanos);
+        }
+    }
+
+    @Override
+    CharBuffer getCharBuffer() {
+        return this.eventLoop.getCharBuffer();
+    }
+
+    private void scheduleFlush() {
+        if (this.flushScheduled.compareAndSet(false, true)) {
+            this.eventLoop.execute(this::flushWrites);
+        }
+    }
+
+    private void resumeReading() {
+        this.readPaused = false;
+        this.updateInterest();
+    }
+
+    private void setWriteInterest(final boolean interest) {
+        if (interest != this.writeInterest) {
+            this.writeInterest = interest;
+            this.updateInterest();
+        }
+    }
+
+    private void updateInterest() {
+        if (this.key.isValid()) {
+            this.key.interestOps((this.readPaused || this.region != null ? 0 : SelectionKey.OP_READ) | (this.writeInterest ? SelectionKey.OP_WRITE : 0));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.exceptions.NetworkException;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec for the text messages encoded in UTF-8.
+ * The bytes are decoded in the event loop character buffer and given to the handler as a stream, the session frame decoder keeps the incomplete messages.
+ * Only the bytes of a character split between two reads are kept by the codec.
+ *
+ * @author Grégory Van den Borre
+ */
+final class TextChannelCodec implements ChannelCodec {
+
+    /**
+     * Decoder keeping its state between two reads.
+     */
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * Bytes of a character not completely received, null if none.
+     */
+    private ByteBuffer leftover;
+
+    TextChannelCodec() {
+        super();
+    }
+
+    @Override
+    public void decode(final ByteBuffer input, final ChannelSession session) {
+        ByteBuffer in = input;
+        if (this.leftover != null) {
+            in = ByteBuffer.allocate(this.leftover.remaining() + input.remaining()).put(this.leftover).put(input).flip();
+            this.leftover = null;
+        }
+        final CharBuffer chars = session.getCharBuffer();
+        while (in.hasRemaining()) {
+            chars.clear();
+            final CoderResult result = this.decoder.decode(in, chars, false);
+            chars.flip();
+            if (chars.hasRemaining()) {
+                session.getHandler().processStream(session, chars);
+            }
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        if (in.hasRemaining()) {
+            this.leftover = ByteBuffer.allocate(in.remaining()).put(in).flip();
+        }
+    }
+
+    @Override
+    public ByteBuffer encode(final CharSequence message) {
+        return StandardCharsets.UTF_8.encode(CharBuffer.wrap(message));
+    }
+
+    @Override
+    public ByteBuffer encode(final ByteBuffer message) {
+        throw new NetworkException("Binary messages are not supported by the text codec.");
+    }
+}
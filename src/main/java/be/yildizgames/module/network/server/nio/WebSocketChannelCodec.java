@@ -0,0 +1,275 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+import be.yildizgames.module.network.exceptions.NetworkException;
+import be.yildizgames.module.network.protocol.FrameDecoder;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Codec for the text messages carried over a websocket, as defined in the RFC 6455.
+ * The connection starts with the HTTP upgrade handshake, then every text frame payload is unmasked and decoded as a text stream, so a message can be split across several websocket frames.
+ * Ping frames are answered, close frames are acknowledged and close the connection, binary frames are refused.
+ *
+ * @author Grégory Van den Borre
+ */
+final class WebSocketChannelCodec implements ChannelCodec {
+
+    /**
+     * Key to append to the client key to build the handshake answer.
+     */
+    private static final String HANDSHAKE_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /**
+     * Maximum size of the handshake request.
+     */
+    private static final int MAX_HANDSHAKE_SIZE = 8192;
+
+    /**
+     * Maximum size of a frame payload.
+     */
+    private static final int MAX_PAYLOAD_SIZE = FrameDecoder.DEFAULT_MAX_FRAME_SIZE;
+
+    private static final int OPCODE_CONTINUATION = 0x0;
+
+    private static final int OPCODE_TEXT = 0x1;
+
+    private static final int OPCODE_CLOSE = 0x8;
+
+    private static final int OPCODE_PING = 0x9;
+
+    private static final int OPCODE_PONG = 0xA;
+
+    private static final int FIN = 0x80;
+
+    /**
+     * Decoder for the text payloads.
+     */
+    private final TextChannelCodec text = new TextChannelCodec();
+
+    /**
+     * Bytes of an incomplete handshake or frame, in write mode, null if none.
+     */
+    private ByteBuffer pending;
+
+    /**
+     * <code>true</code> once the handshake is done.
+     */
+    private boolean open;
+
+    WebSocketChannelCodec() {
+        super();
+    }
+
+    @Override
+    public void decode(final ByteBuffer input, final ChannelSession session) {
+        ByteBuffer in = input;
+        if (this.pending != null) {
+            if (this.pending.remaining() < input.remaining()) {
+                final ByteBuffer grown = ByteBuffer.allocate(this.pending.position() + input.remaining());
+                this.pending.flip();
+                this.pending = grown.put(this.pending);
+            }
+            in = this.pending.put(input).flip();
+            this.pending = null;
+        }
+        if (!this.open && !this.handshake(in, session)) {
+            this.keep(in, MAX_HANDSHAKE_SIZE);
+            return;
+        }
+        while (this.open && this.frame(in, session)) {
+            // Decode all the complete frames.
+        }
+        if (this.open) {
+            this.keep(in, MAX_PAYLOAD_SIZE + 14);
+        }
+    }
+
+    @Override
+    public ByteBuffer encode(final CharSequence message) {
+        return frame(OPCODE_TEXT, StandardCharsets.UTF_8.encode(CharBuffer.wrap(message)));
+    }
+
+    @Override
+    public ByteBuffer encode(final ByteBuffer message) {
+        throw new NetworkException("Binary messages are not supported by the websocket codec.");
+    }
+
+    /**
+     * Read the handshake request and answer it.
+     *
+     * @return <code>true</code> if the handshake is done, <code>false</code> if the request is not complete.
+     */
+    private boolean handshake(final ByteBuffer in, final ChannelSession session) {
+        int end = -1;
+        for (int i = in.position(); i + 3 < in.limit(); i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) {
+            return false;
+        }
+        final byte[] request = new byte[end - in.position()];
+        in.get(request);
+        in.position(end + 4);
+        String key = null;
+        for (String line : new String(request, StandardCharsets.ISO_8859_1).split("\r\n")) {
+            final int separator = line.indexOf(':');
+            if (separator > 0 && line.substring(0, separator).trim().toLowerCase(Locale.ROOT).equals("sec-websocket-key")) {
+                key = line.substring(separator + 1).trim();
+            }
+        }
+        if (key == null) {
+            throw new InvalidNetworkMessage("Invalid websocket handshake, missing key.");
+        }
+        final String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + accept(key) + "\r\n\r\n";
+        session.enqueue(StandardCharsets.ISO_8859_1.encode(response));
+        this.open = true;
+        return true;
+    }
+
+    /**
+     * Decode a frame.
+     *
+     * @return <code>true</code> if a frame was decoded, <code>false</code> if the frame is not complete.
+     */
+    private boolean frame(final ByteBuffer in, final ChannelSession session) {
+        final int start = in.position();
+        if (in.remaining() < 2) {
+            return false;
+        }
+        final int first = in.get(start) & 0xFF;
+        final int second = in.get(start + 1) & 0xFF;
+        if ((second & 0x80) == 0) {
+            throw new InvalidNetworkMessage("Invalid websocket frame, client frames must be masked.");
+        }
+        int header = 2;
+        long length = second & 0x7F;
+        if (length == 126) {
+            header += 2;
+            if (in.remaining() < header) {
+                return false;
+            }
+            length = in.getShort(start + 2) & 0xFFFF;
+        } else if (length == 127) {
+            header += 8;
+            if (in.remaining() < header) {
+                return false;
+            }
+            length = in.getLong(start + 2);
+        }
+        if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+            throw new InvalidNetworkMessage("Websocket frame exceeds " + MAX_PAYLOAD_SIZE + " bytes.");
+        }
+        header += 4;
+        if (in.remaining() < header + length) {
+            return false;
+        }
+        final int maskStart = start + header - 4;
+        final int payloadStart = start + header;
+        final int payloadEnd = payloadStart + (int) length;
+        for (int i = payloadStart; i < payloadEnd; i++) {
+            in.put(i, (byte) (in.get(i) ^ in.get(maskStart + ((i - payloadStart) & 3))));
+        }
+        final ByteBuffer payload = in.slice(payloadStart, (int) length);
+        in.position(payloadEnd);
+        final int opcode = first & 0x0F;
+        switch (opcode) {
+            case OPCODE_TEXT:
+            case OPCODE_CONTINUATION:
+                this.text.decode(payload, session);
+                break;
+            case OPCODE_PING:
+                session.enqueue(frame(OPCODE_PONG, payload));
+                break;
+            case OPCODE_PONG:
+                break;
+            case OPCODE_CLOSE:
+                session.enqueue(frame(OPCODE_CLOSE, payload));
+                this.open = false;
+                session.closeAfterWrite();
+                break;
+            default:
+                throw new InvalidNetworkMessage("Unsupported websocket frame opcode: " + opcode);
+        }
+        return true;
+    }
+
+    /**
+     * Keep the remaining bytes for the next read.
+     */
+    private void keep(final ByteBuffer in, final int max) {
+        if (!in.hasRemaining()) {
+            return;
+        }
+        if (in.remaining() > max) {
+            throw new InvalidNetworkMessage("Incomplete websocket data exceeds " + max + " bytes.");
+        }
+        this.pending = ByteBuffer.allocate(Math.max(1024, in.remaining() * 2)).put(in);
+    }
+
+    /**
+     * Build an unmasked server frame.
+     */
+    private static ByteBuffer frame(final int opcode, final ByteBuffer payload) {
+        final int length = payload.remaining();
+        final int header = length < 126 ? 2 : length < 65536 ? 4 : 10;
+        final ByteBuffer result = ByteBuffer.allocate(header + length);
+        result.put((byte) (FIN | opcode));
+        if (length < 126) {
+            result.put((byte) length);
+        } else if (length < 65536) {
+            result.put((byte) 126).putShort((short) length);
+        } else {
+            result.put((byte) 127).putLong(length);
+        }
+        return result.put(payload).flip();
+    }
+
+    /**
+     * Compute the handshake answer for a client key.
+     */
+    static String accept(final String key) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return Base64.getEncoder().encodeToString(digest.digest((key + HANDSHAKE_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new NetworkException("SHA-1 not available.", e);
+        }
+    }
+}
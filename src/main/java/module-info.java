@@ -33,5 +33,10 @@ open module be.yildizgames.module.network {
     exports be.yildizgames.module.network;
     exports be.yildizgames.module.network.client;
     exports be.yildizgames.module.network.server;
+    exports be.yildizgames.module.network.server.nio;
     exports be.yildizgames.module.network.protocol;
+
+    provides be.yildizgames.module.network.server.ServerProvider with
+            be.yildizgames.module.network.server.nio.NioServerProvider,
+            be.yildizgames.module.network.server.nio.VirtualThreadServerProvider;
 }
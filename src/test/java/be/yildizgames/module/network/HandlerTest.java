@@ -26,11 +26,16 @@ package be.yildizgames.module.network;
 
 import be.yildizgames.common.model.PlayerId;
 import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+import be.yildizgames.module.network.protocol.BinaryCodec;
 import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.server.RateLimitAction;
+import be.yildizgames.module.network.server.RateLimiter;
 import be.yildizgames.module.network.server.Session;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -67,6 +72,69 @@ class HandlerTest {
         assertEquals("ghi", h.messages.get(2).content);
     }
 
+    @Test
+    void testProcessMessagesLastWithoutEnd() {
+        TestHandler h = new TestHandler();
+        h.processMessages(session, "&1_abc#&2_def");
+        assertEquals(2, h.messages.size());
+        assertEquals(2, h.messages.get(1).command);
+        assertEquals("def", h.messages.get(1).content);
+    }
+
+    @Test
+    void testProcessMessagesEmptyFrameInTheMiddle() {
+        TestHandler h = new TestHandler();
+        Assertions.assertThrows(InvalidNetworkMessage.class, () -> h.processMessages(session, "&1_abc#&#&2_def#"));
+        assertEquals(1, h.messages.size());
+    }
+
+    @Test
+    void testProcessBinaryMessages() {
+        TestHandler h = new TestHandler();
+        ByteBuffer b = ByteBuffer.allocate(64);
+        BinaryCodec.encode(b, 1, ByteBuffer.wrap("abc".getBytes(StandardCharsets.UTF_8)));
+        BinaryCodec.encode(b, 2, ByteBuffer.wrap("def".getBytes(StandardCharsets.UTF_8)));
+        h.processMessages(session, b.flip());
+        assertEquals(2, h.messages.size());
+        assertEquals("abc", h.messages.get(0).content);
+        assertEquals(2, h.messages.get(1).command);
+    }
+
+    @Test
+    void testProcessStreamSplitMessage() {
+        TestHandler h = new TestHandler();
+        Session s = Helper.givenASession(PlayerId.valueOf(2));
+        h.processStream(s, "&1_abc#&2_d");
+        assertEquals(1, h.messages.size());
+        h.processStream(s, "ef#");
+        assertEquals(2, h.messages.size());
+        assertEquals("def", h.messages.get(1).content);
+    }
+
+    @Test
+    void testProcessMessagesRateLimited() {
+        TestHandler h = new TestHandler();
+        Session s = Helper.givenASession(PlayerId.valueOf(2));
+        s.setRateLimiter(new RateLimiter(3, 1, RateLimitAction.DROP).withCost(2, 2));
+        h.processMessages(s, "&1_abc#&2_def#&2_ghi#&1_jkl#");
+        assertEquals(2, h.messages.size());
+        assertEquals("def", h.messages.get(1).content);
+        assertEquals(2, s.getRateLimitedCount());
+    }
+
+    @Test
+    void testProcessMessagesCompressedRateLimitedNotInflated() {
+        TestHandler h = new TestHandler();
+        Session s = Helper.givenASession(PlayerId.valueOf(2));
+        s.setRateLimiter(new RateLimiter(1, 1, RateLimitAction.DROP));
+        // the payload is not valid, inflating it would throw
+        h.processMessages(s, "&1_abc#&2~@@@@#");
+        assertEquals(1, h.messages.size());
+        assertEquals(1, s.getRateLimitedCount());
+        Session unlimited = Helper.givenASession(PlayerId.valueOf(3));
+        Assertions.assertThrows(InvalidNetworkMessage.class, () -> h.processMessages(unlimited, "&2~@@@@#"));
+    }
+
     private static class TestHandler extends AbstractHandler {
 
         private final List<MessageWrapper> messages = new ArrayList<>();
@@ -29,6 +29,8 @@ package be.yildizgames.module.network;
 import be.yildizgames.common.model.PlayerId;
 import be.yildizgames.module.network.server.Session;
 
+import java.nio.ByteBuffer;
+
 /**
  * @author Grégory Van den Borre
  */
@@ -38,14 +40,26 @@ public class Helper {
         return new SessionWrapper(p);
     }
 
+    public static SessionWrapper givenABinarySession(PlayerId p) {
+        return new SessionWrapper(p, DecoderEncoder.BINARY);
+    }
+
     public static class SessionWrapper extends Session {
 
         private String message;
 
-        SessionWrapper(PlayerId p) {
+        private ByteBuffer binaryMessage;
+
+        private int writes;
+
+        public SessionWrapper(PlayerId p) {
             super(p);
         }
 
+        SessionWrapper(PlayerId p, DecoderEncoder codec) {
+            super(p, codec);
+        }
+
         @Override
         protected void closeSession() {
             //does nothing
@@ -54,10 +68,25 @@ public class Helper {
         @Override
         public void sendMessage(String message) {
             this.message = message;
+            this.writes++;
+        }
+
+        @Override
+        public void sendMessage(ByteBuffer message) {
+            this.binaryMessage = message;
+            this.writes++;
         }
 
         public String getMessage() {
             return message;
         }
+
+        public ByteBuffer getBinaryMessage() {
+            return binaryMessage;
+        }
+
+        public int getWrites() {
+            return writes;
+        }
     }
 }
@@ -25,8 +25,15 @@
 package be.yildizgames.module.network.client;
 
 import be.yildizgames.module.network.client.dummy.DummyClient;
+import be.yildizgames.module.network.protocol.AdmissionNotice;
+import be.yildizgames.module.network.protocol.MessageWrapper;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -43,4 +50,41 @@ class NetworkEngineTest {
         //Still true as no listener has notified that the connection is indeed lost.
         assertTrue(ne.isConnected());
     }
+
+    @Test
+    void testAdmissionNotices() {
+        Client ne = new DummyClient();
+        List<String> events = new ArrayList<>();
+        ne.addNetworkListener(new NetworkListener() {
+            @Override
+            public void parse(MessageWrapper message) {
+                events.add("parse " + message.command);
+            }
+
+            @Override
+            public void queued(long position) {
+                events.add("queued " + position);
+            }
+
+            @Override
+            public void refused(long retryAfter) {
+                events.add("refused " + retryAfter);
+            }
+        });
+        ne.messageReceived(new MessageWrapper(AdmissionNotice.QUEUED + "_3"));
+        ne.messageReceived(new MessageWrapper(AdmissionNotice.RETRY_AFTER + "_200"));
+        ne.messageReceived(new MessageWrapper("5_a"));
+        ne.update();
+        assertEquals(List.of("queued 3", "refused 200", "parse 5"), events);
+    }
+
+    @Test
+    void testRetryAfterHonoured() throws InterruptedException {
+        ConnectionRetryStrategy strategy = ConnectionRetryStrategy.retryEvery(0);
+        assertTrue(strategy.canRetryToConnect());
+        strategy.retryAfter(100);
+        assertFalse(strategy.canRetryToConnect());
+        Thread.sleep(150);
+        assertTrue(strategy.canRetryToConnect());
+    }
 }
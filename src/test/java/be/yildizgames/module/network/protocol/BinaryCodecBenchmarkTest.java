@@ -0,0 +1,123 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Encode and decode the same messages with the binary codec and with the text framing, logging the throughput and the size of both.
+ * Decoding is measured twice, up to the frames given to the handler, and up to the message wrappers given to the listeners.
+ * The number of messages is set with the network.codec.benchmark.frames system property, 1 000 000 by default.
+ * Tagged as benchmark, it is only run with the benchmark profile.
+ *
+ * @author Grégory Van den Borre
+ */
+@Tag("benchmark")
+class BinaryCodecBenchmarkTest {
+
+    private static final System.Logger LOGGER = System.getLogger(BinaryCodecBenchmarkTest.class.getName());
+
+    private static final int FRAMES = Integer.getInteger("network.codec.benchmark.frames", 1_000_000);
+
+    /**
+     * Number of runs before the measured one, to let the JIT compile both paths.
+     */
+    private static final int WARM_UP = 5;
+
+    private static final ObjectMapper<String> MAPPER = new ObjectMapper<>() {
+        @Override
+        public String from(String s) {
+            return s;
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    };
+
+    private static long measure(Runnable task) {
+        long begin = System.nanoTime();
+        task.run();
+        return (System.nanoTime() - begin) / FRAMES;
+    }
+
+    @Test
+    void binaryAgainstText() {
+        List<NetworkMessage<String>> messages = new ArrayList<>(FRAMES);
+        int textSize = 0;
+        int binarySize = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            NetworkMessage<String> message = new NetworkMessage<>(i + "," + (i * 0.5f) + ",-3.25,entity-" + (i % 100), MAPPER, i % 64);
+            messages.add(message);
+            textSize += message.encodedSize();
+            binarySize += BinaryCodec.frameSize(message.command(), Utf8.encodedLength(message.content()));
+        }
+        ByteBuffer text = ByteBuffer.allocate(textSize);
+        ByteBuffer binary = ByteBuffer.allocate(binarySize);
+        List<MessageWrapper> textResult = new ArrayList<>(FRAMES);
+        List<MessageWrapper> binaryResult = new ArrayList<>(FRAMES);
+        long[] checksum = new long[2];
+        long[] times = new long[6];
+        for (int run = 0; run <= WARM_UP; run++) {
+            text.clear();
+            binary.clear();
+            textResult.clear();
+            binaryResult.clear();
+            checksum[0] = 0;
+            checksum[1] = 0;
+            times[0] = measure(() -> messages.forEach(m -> m.writeTo(text)));
+            text.flip();
+            times[1] = measure(() -> FrameScanner.scan(StandardCharsets.UTF_8.decode(text.duplicate()), (s, b, e) -> {
+                MessageFrame frame = new MessageFrame(s, b, e);
+                checksum[0] += frame.command() + frame.content().length();
+            }));
+            times[2] = measure(() -> FrameScanner.scan(StandardCharsets.UTF_8.decode(text.duplicate()),
+                    (s, b, e) -> textResult.add(new MessageFrame(s, b, e).toWrapper())));
+            times[3] = measure(() -> messages.forEach(m -> BinaryCodec.encode(binary, m)));
+            binary.flip();
+            times[4] = measure(() -> BinaryCodec.decode(binary.duplicate(), (c, p) -> checksum[1] += c + p.remaining()));
+            times[5] = measure(() -> BinaryCodec.decode(binary.duplicate(), (c, p) -> binaryResult.add(BinaryCodec.toWrapper(c, p))));
+            assertEquals(FRAMES, textResult.size());
+            assertEquals(FRAMES, binaryResult.size());
+            assertEquals(checksum[0], checksum[1]);
+            assertEquals(textResult.get(FRAMES - 1).message, binaryResult.get(FRAMES - 1).message);
+        }
+        assertTrue(binarySize < textSize);
+        LOGGER.log(System.Logger.Level.INFO, "{0} messages, text: {1} bytes, encode {2} ns/msg, frames {3} ns/msg, wrappers {4} ns/msg, "
+                        + "binary: {5} bytes, encode {6} ns/msg, frames {7} ns/msg, wrappers {8} ns/msg.",
+                FRAMES, textSize, times[0], times[1], times[2], binarySize, times[3], times[4], times[5]);
+    }
+}
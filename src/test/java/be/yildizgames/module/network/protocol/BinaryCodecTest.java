@@ -0,0 +1,164 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class BinaryCodecTest {
+
+    private static final ObjectMapper<String> MAPPER = new ObjectMapper<>() {
+        @Override
+        public String from(String s) {
+            return s;
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    };
+
+    private static List<MessageWrapper> decode(ByteBuffer buffer) {
+        List<MessageWrapper> result = new ArrayList<>();
+        BinaryCodec.decode(buffer, (c, p) -> result.add(BinaryCodec.toWrapper(c, p)));
+        return result;
+    }
+
+    @Nested
+    class RoundTrip {
+
+        @Test
+        void happyFlow() {
+            ByteBuffer b = BinaryCodec.encode(new NetworkMessage<>("abc", MAPPER, 12));
+            List<MessageWrapper> result = decode(b);
+            assertEquals(1, result.size());
+            assertEquals(12, result.get(0).command);
+            assertEquals("abc", result.get(0).content);
+            assertEquals("12_abc", result.get(0).message);
+            assertEquals(0, b.remaining());
+        }
+
+        @Test
+        void utf8() {
+            List<MessageWrapper> result = decode(BinaryCodec.encode(new NetworkMessage<>("éà€", MAPPER, 1)));
+            assertEquals("éà€", result.get(0).content);
+        }
+
+        @Test
+        void commandLimits() {
+            int[] commands = {0, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+            for (int command : commands) {
+                List<MessageWrapper> result = decode(BinaryCodec.encode(new NetworkMessage<>("x", MAPPER, command)));
+                assertEquals(command, result.get(0).command);
+            }
+        }
+
+        @Test
+        void largePayload() {
+            String payload = "a".repeat(100_000);
+            List<MessageWrapper> result = decode(BinaryCodec.encode(new NetworkMessage<>(payload, MAPPER, 3)));
+            assertEquals(payload, result.get(0).content);
+        }
+
+        @Test
+        void manyFrames() {
+            int count = 100_000;
+            byte[] payload = "some payload".getBytes(StandardCharsets.UTF_8);
+            ByteBuffer b = ByteBuffer.allocate(count * BinaryCodec.frameSize(count, payload.length));
+            for (int i = 0; i < count; i++) {
+                BinaryCodec.encode(b, i, ByteBuffer.wrap(payload));
+            }
+            b.flip();
+            int[] next = {0};
+            int decoded = BinaryCodec.decode(b, (c, p) -> {
+                assertEquals(next[0]++, c);
+                assertEquals(payload.length, p.remaining());
+            });
+            assertEquals(count, decoded);
+        }
+    }
+
+    @Nested
+    class Decode {
+
+        @Test
+        void partialFrameKept() {
+            ByteBuffer full = BinaryCodec.encode(new NetworkMessage<>("abcdef", MAPPER, 300));
+            ByteBuffer b = ByteBuffer.allocate(full.remaining());
+            b.put(full.slice(0, 4)).flip();
+            assertEquals(0, decode(b).size());
+            assertEquals(0, b.position());
+            b.position(4).limit(b.capacity());
+            b.put(full.slice(4, full.remaining() - 4)).flip();
+            assertEquals("abcdef", decode(b).get(0).content);
+        }
+
+        @Test
+        void emptyPayload() {
+            List<MessageWrapper> result = decode(BinaryCodec.encode(new NetworkMessage<>("", MAPPER, 4)));
+            assertEquals(4, result.get(0).command);
+            assertEquals("", result.get(0).content);
+        }
+
+        @Test
+        void missingCommand() {
+            ByteBuffer b = ByteBuffer.wrap(new byte[]{0});
+            assertThrows(InvalidNetworkMessage.class, () -> decode(b));
+        }
+
+        @Test
+        void varIntTooLong() {
+            ByteBuffer b = ByteBuffer.wrap(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1});
+            assertThrows(InvalidNetworkMessage.class, () -> decode(b));
+        }
+    }
+
+    @Nested
+    class VarIntSize {
+
+        @Test
+        void happyFlow() {
+            assertEquals(1, BinaryCodec.varIntSize(0));
+            assertEquals(1, BinaryCodec.varIntSize(127));
+            assertEquals(2, BinaryCodec.varIntSize(128));
+            assertEquals(3, BinaryCodec.varIntSize(16384));
+            assertEquals(5, BinaryCodec.varIntSize(-1));
+        }
+    }
+}
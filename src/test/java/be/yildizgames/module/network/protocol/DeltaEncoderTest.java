@@ -0,0 +1,207 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class DeltaEncoderTest {
+
+    private static final ObjectMapper<String> MAPPER = new ObjectMapper<>() {
+        @Override
+        public String from(String s) {
+            return s;
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    };
+
+    private static String encode(DeltaEncoder encoder, String content, int key) {
+        return encoder.appendTo(new NetworkMessage<>(content, MAPPER, 4), key, new StringBuilder()).toString();
+    }
+
+    private static MessageWrapper decode(DeltaDecoder decoder, String frame) {
+        return decoder.decode(frame, 1, frame.length() - 1);
+    }
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void invalidLimits() {
+            assertThrows(IllegalArgumentException.class, () -> new DeltaEncoder(0, 10));
+            assertThrows(IllegalArgumentException.class, () -> new DeltaEncoder(10, 0));
+            assertThrows(IllegalArgumentException.class, () -> new DeltaDecoder(0, (c, k) -> {}));
+        }
+    }
+
+    @Nested
+    class AppendTo {
+
+        @Test
+        void firstIsKeyframe() {
+            DeltaEncoder e = new DeltaEncoder();
+            assertEquals("&4!12!0!K!10@20@ok#", encode(e, "10@20@ok", 12));
+            assertEquals(1, e.getKeyframes());
+            assertEquals(0, e.getDeltas());
+        }
+
+        @Test
+        void onlyChangedFields() {
+            DeltaEncoder e = new DeltaEncoder();
+            encode(e, "100@200@running@full", 12);
+            assertEquals("&4!12!1!D!4@1@201#", encode(e, "100@201@running@full", 12));
+            assertEquals("&4!12!2!D!4#", encode(e, "100@201@running@full", 12));
+            assertEquals(2, e.getDeltas());
+        }
+
+        @Test
+        void keysAreIndependent() {
+            DeltaEncoder e = new DeltaEncoder();
+            encode(e, "100@200@running", 1);
+            assertTrue(encode(e, "100@200@running", 2).contains("!K!"));
+            assertTrue(encode(e, "100@200@running", 1).contains("!D!"));
+        }
+
+        @Test
+        void notSmallerSentAsKeyframe() {
+            DeltaEncoder e = new DeltaEncoder();
+            encode(e, "1@2", 1);
+            assertEquals("&4!1!1!K!3@4#", encode(e, "3@4", 1));
+        }
+
+        @Test
+        void periodicKeyframe() {
+            DeltaEncoder e = new DeltaEncoder(10, 2);
+            encode(e, "100@200@running", 1);
+            assertTrue(encode(e, "100@201@running", 1).contains("!D!"));
+            assertTrue(encode(e, "100@202@running", 1).contains("!D!"));
+            assertTrue(encode(e, "100@203@running", 1).contains("!K!"));
+            assertTrue(encode(e, "100@204@running", 1).contains("!D!"));
+        }
+
+        @Test
+        void evictionBoundsMemory() {
+            DeltaEncoder e = new DeltaEncoder(8, 10);
+            for (int i = 0; i < 1000; i++) {
+                encode(e, "100@200@running", i);
+            }
+            assertEquals(8, e.size());
+            long perEntry = e.getMemoryUsage() / 8;
+            assertTrue(perEntry > 0);
+            assertTrue(encode(e, "100@200@running", 0).contains("!K!"));
+            assertTrue(encode(e, "100@200@running", 999).contains("!D!"));
+            assertEquals(8 * perEntry, e.getMemoryUsage());
+        }
+
+        @Test
+        void invalidate() {
+            DeltaEncoder e = new DeltaEncoder();
+            encode(e, "100@200@running", 1);
+            encode(e, "100@200@running", 2);
+            e.invalidate(4, 1);
+            assertEquals(1, e.size());
+            assertTrue(encode(e, "100@200@running", 1).contains("!K!"));
+            e.invalidateAll();
+            assertEquals(0, e.size());
+            assertEquals(0, e.getMemoryUsage());
+        }
+    }
+
+    @Nested
+    class Decode {
+
+        @Test
+        void isDelta() {
+            assertTrue(DeltaDecoder.isDelta("4!1!0!K!abc", 0, 11));
+            assertFalse(DeltaDecoder.isDelta("4_abc", 0, 5));
+            assertFalse(DeltaDecoder.isDelta("!abc", 0, 4));
+        }
+
+        @Test
+        void roundTrip() {
+            DeltaEncoder e = new DeltaEncoder(10, 3);
+            DeltaDecoder d = new DeltaDecoder();
+            String[] states = {"100@200@running@", "100@201@running@", "100@201@stopped@x", "100@201", "", "1@2@3@4@5", "1@2@3@4@5"};
+            for (String state : states) {
+                MessageWrapper w = decode(d, encode(e, state, 9));
+                assertEquals(4, w.command);
+                assertEquals(state, w.content);
+                assertEquals("4_" + state, w.message);
+            }
+        }
+
+        @Test
+        void missingBaselineRequestsResync() {
+            List<String> resync = new ArrayList<>();
+            DeltaEncoder e = new DeltaEncoder();
+            DeltaDecoder d = new DeltaDecoder(10, (c, k) -> resync.add(c + ":" + k));
+            encode(e, "100@200@running", 9);
+            assertNull(decode(d, encode(e, "100@201@running", 9)));
+            assertEquals(List.of("4:9"), resync);
+            e.invalidate(4, 9);
+            assertEquals("100@202@running", decode(d, encode(e, "100@202@running", 9)).content);
+        }
+
+        @Test
+        void lostFrameRequestsResync() {
+            List<String> resync = new ArrayList<>();
+            DeltaEncoder e = new DeltaEncoder();
+            DeltaDecoder d = new DeltaDecoder(10, (c, k) -> resync.add(c + ":" + k));
+            decode(d, encode(e, "100@200@running", 9));
+            encode(e, "100@201@running", 9);
+            assertNull(decode(d, encode(e, "100@202@running", 9)));
+            assertEquals(1, resync.size());
+            assertEquals(0, d.size());
+        }
+
+        @Test
+        void malformed() {
+            DeltaDecoder d = new DeltaDecoder();
+            assertThrows(InvalidNetworkMessage.class, () -> decode(d, "&4!1!0!X!abc#"));
+            assertThrows(InvalidNetworkMessage.class, () -> decode(d, "&4!1!0#"));
+            assertThrows(InvalidNetworkMessage.class, () -> decode(d, "&4!a!0!K!abc#"));
+            decode(d, "&4!1!0!K!a@b#");
+            assertThrows(InvalidNetworkMessage.class, () -> decode(d, "&4!1!1!D!3@0@c#"));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class DictionaryTrainerTest {
+
+    private static final ObjectMapper<String> MAPPER = new ObjectMapper<>() {
+        @Override
+        public String from(String s) {
+            return s;
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    };
+
+    private static List<String> givenMessages(int count, long seed) {
+        Random r = new Random(seed);
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add("{\"entity\":" + r.nextInt(100000) + ",\"position\":{\"x\":" + r.nextInt(1000) + ",\"y\":"
+                    + r.nextInt(1000) + ",\"z\":" + r.nextInt(1000) + "},\"state\":\"MOVING\",\"owner\":" + r.nextInt(50) + "}");
+        }
+        return result;
+    }
+
+    private static int compressedSize(PayloadCompressor compressor, List<String> messages) {
+        int size = 0;
+        for (String m : messages) {
+            size += compressor.appendTo(new NetworkMessage<>(m, MAPPER, 12), new StringBuilder()).length();
+        }
+        return size;
+    }
+
+    @Nested
+    class Train {
+
+        @Test
+        void sizeLimit() {
+            byte[] d = DictionaryTrainer.train(givenMessages(1000, 1), 256);
+            assertEquals(256, d.length);
+        }
+
+        @Test
+        void invalidSize() {
+            assertThrows(IllegalArgumentException.class, () -> DictionaryTrainer.train(List.of(), 0));
+            assertThrows(IllegalArgumentException.class, () -> DictionaryTrainer.train(List.of(), DictionaryTrainer.MAX_DICTIONARY_SIZE + 1));
+        }
+
+        @Test
+        void noRepetition() {
+            assertEquals(0, DictionaryTrainer.train(List.of("abcdefghijkl"), 100).length);
+        }
+
+        @Test
+        void bytesPerMessage() {
+            byte[] dictionary = DictionaryTrainer.train(givenMessages(2000, 1), 1024);
+            List<String> messages = givenMessages(1000, 2);
+            int raw = 0;
+            for (String m : messages) {
+                raw += new NetworkMessage<>(m, MAPPER, 12).buildMessage().getBytes(StandardCharsets.UTF_8).length;
+            }
+            int withoutDictionary = compressedSize(new PayloadCompressor(0), messages);
+            int withDictionary = compressedSize(new PayloadCompressor(0, dictionary), messages);
+            assertTrue(withDictionary < withoutDictionary);
+            assertTrue(withDictionary < raw, "without: " + withoutDictionary / messages.size() + " " + "raw: " + raw / messages.size() + " dictionary: " + withDictionary / messages.size());
+        }
+
+        @Test
+        void roundTripWithDictionary() {
+            byte[] dictionary = DictionaryTrainer.train(givenMessages(500, 1), 1024);
+            PayloadCompressor sender = new PayloadCompressor(0, dictionary);
+            PayloadCompressor receiver = new PayloadCompressor(PayloadCompressor.DISABLED, dictionary);
+            for (String m : givenMessages(20, 3)) {
+                String frame = sender.appendTo(new NetworkMessage<>(m, MAPPER, 12), new StringBuilder()).toString();
+                assertTrue(frame.startsWith("&12~"));
+                assertEquals(m, receiver.toWrapper(frame, 1, frame.length() - 1).content);
+            }
+        }
+
+        @Test
+        void missingDictionary() {
+            byte[] dictionary = DictionaryTrainer.train(givenMessages(500, 1), 1024);
+            String m = givenMessages(1, 3).get(0);
+            String frame = new PayloadCompressor(0, dictionary).appendTo(new NetworkMessage<>(m, MAPPER, 12), new StringBuilder()).toString();
+            PayloadCompressor receiver = new PayloadCompressor(PayloadCompressor.DISABLED);
+            assertThrows(InvalidNetworkMessage.class, () -> receiver.toWrapper(frame, 1, frame.length() - 1));
+        }
+    }
+
+    @Nested
+    class ExtractPayloads {
+
+        @Test
+        void happyFlow() {
+            assertEquals(List.of("abc", "def", "ghi"), DictionaryTrainer.extractPayloads(List.of("&1_abc#&2_def#", "&3_ghi#", "&invalid#")));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class FrameDecoderTest {
+
+    private static List<String> decode(FrameDecoder decoder, String chunk) {
+        List<String> result = new ArrayList<>();
+        decoder.decode(chunk, (s, b, e) -> result.add(s.subSequence(b, e).toString()));
+        return result;
+    }
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void invalidSize() {
+            assertThrows(IllegalArgumentException.class, () -> new FrameDecoder(0));
+        }
+    }
+
+    @Nested
+    class Decode {
+
+        @Test
+        void completeFrames() {
+            FrameDecoder d = new FrameDecoder();
+            assertEquals(List.of("1_abc", "2_def"), decode(d, "&1_abc#&2_def#"));
+            assertEquals(0, d.pending());
+        }
+
+        @Test
+        void splitFrame() {
+            FrameDecoder d = new FrameDecoder();
+            assertEquals(List.of("1_abc"), decode(d, "&1_abc#&2_d"));
+            assertEquals(3, d.pending());
+            assertEquals(List.of(), decode(d, "e"));
+            assertEquals(List.of("2_def", "3_g"), decode(d, "f#&3_g#"));
+            assertEquals(0, d.pending());
+        }
+
+        @Test
+        void oneCharacterAtATime() {
+            FrameDecoder d = new FrameDecoder();
+            String stream = "&1_abc#&2_def#&3_ghi#";
+            List<String> result = new ArrayList<>();
+            for (char c : stream.toCharArray()) {
+                result.addAll(decode(d, String.valueOf(c)));
+            }
+            assertEquals(List.of("1_abc", "2_def", "3_ghi"), result);
+        }
+
+        @Test
+        void emptyFramesIgnored() {
+            FrameDecoder d = new FrameDecoder();
+            assertEquals(List.of("1_abc"), decode(d, "##&#&1_abc##"));
+        }
+
+        @Test
+        void innerBeginRemoved() {
+            FrameDecoder d = new FrameDecoder();
+            assertEquals(List.of(), decode(d, "&1_a&b"));
+            assertEquals(List.of("1_abc"), decode(d, "c#"));
+        }
+
+        @Test
+        void tooLarge() {
+            FrameDecoder d = new FrameDecoder(5);
+            assertEquals(List.of("1_abc"), decode(d, "&1_abc#"));
+            assertThrows(InvalidNetworkMessage.class, () -> decode(d, "&1_abcdef"));
+            assertEquals(0, d.pending());
+            assertEquals(List.of("2_a"), decode(d, "&2_a#"));
+        }
+
+        @Test
+        void consumerFailureDoesNotLoseFollowingFrames() {
+            FrameDecoder d = new FrameDecoder();
+            List<String> result = new ArrayList<>();
+            assertThrows(InvalidNetworkMessage.class, () -> d.decode("&x#&1_abc#", (s, b, e) -> {
+                throw new InvalidNetworkMessage("invalid");
+            }));
+            d.decode("", (s, b, e) -> result.add(s.subSequence(b, e).toString()));
+            assertEquals(List.of("1_abc"), result);
+        }
+
+        @Test
+        void largeFrameInManySegments() {
+            FrameDecoder d = new FrameDecoder();
+            String payload = "a".repeat(500_000);
+            List<String> result = new ArrayList<>();
+            decode(d, "&1_");
+            for (int i = 0; i < payload.length(); i += 10) {
+                result.addAll(decode(d, payload.substring(i, i + 10)));
+            }
+            result.addAll(decode(d, "#"));
+            assertEquals(1, result.size());
+            assertEquals(500_002, result.get(0).length());
+        }
+    }
+}
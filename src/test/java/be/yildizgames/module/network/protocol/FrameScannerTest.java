@@ -0,0 +1,108 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class FrameScannerTest {
+
+    private static List<String> scan(String input) {
+        List<String> result = new ArrayList<>();
+        int count = FrameScanner.scan(input, (s, b, e) -> result.add(s.subSequence(b, e).toString()));
+        assertEquals(result.size(), count);
+        return result;
+    }
+
+    private static List<String> legacy(String input) {
+        return Arrays.asList(input.replace(MessageSeparation.MESSAGE_BEGIN, "").split(MessageSeparation.MESSAGE_END));
+    }
+
+    @Nested
+    class Scan {
+
+        @Test
+        void singleWithoutSeparator() {
+            assertEquals(List.of("1_abc"), scan("1_abc"));
+        }
+
+        @Test
+        void concatenated() {
+            assertEquals(List.of("1_abc", "2_def", "3_ghi"), scan("&1_abc#&2_def#&3_ghi#"));
+        }
+
+        @Test
+        void lastWithoutEnd() {
+            assertEquals(List.of("1_abc", "2_def"), scan("&1_abc#&2_def"));
+        }
+
+        @Test
+        void empty() {
+            assertEquals(List.of(""), scan(""));
+        }
+
+        @Test
+        void onlyBegin() {
+            assertEquals(List.of(""), scan("&&"));
+        }
+
+        @Test
+        void onlyEnd() {
+            assertEquals(List.of(), scan("###"));
+        }
+
+        @Test
+        void emptyInTheMiddle() {
+            assertEquals(List.of("1_abc", "", "2_def"), scan("&1_abc#&#&2_def#"));
+        }
+
+        @Test
+        void trailingEmptyIgnored() {
+            assertEquals(List.of("1_abc"), scan("&1_abc###&#"));
+        }
+
+        @Test
+        void innerBeginRemoved() {
+            assertEquals(List.of("1_abc"), scan("&1_a&b&c#"));
+        }
+
+        @Test
+        void sameAsLegacy() {
+            String[] inputs = {"", "&", "#", "1_a", "&1_a#", "&1_a##&2_b#", "##1_a", "&&1_a&#&2&_b", "a#b#c##", "&#&#1_x#&"};
+            for (String input : inputs) {
+                assertEquals(legacy(input), scan(input), input);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class MessageFrameTest {
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void happyFlow() {
+            MessageFrame f = new MessageFrame("&12_abc#", 1, 7);
+            assertEquals(12, f.command());
+            assertEquals("abc", f.content().toString());
+            assertEquals("abc", f.contentAsString());
+            assertEquals("12_abc", f.toString());
+        }
+
+        @Test
+        void withNull() {
+            assertThrows(NullPointerException.class, () -> MessageFrame.of(null));
+        }
+
+        @Test
+        void noSeparator() {
+            assertThrows(InvalidNetworkMessage.class, () -> MessageFrame.of("12"));
+        }
+
+        @Test
+        void noContent() {
+            assertThrows(InvalidNetworkMessage.class, () -> MessageFrame.of("12_"));
+        }
+
+        @Test
+        void noCommand() {
+            assertThrows(InvalidNetworkMessage.class, () -> MessageFrame.of("_abc"));
+        }
+
+        @Test
+        void invalidCommand() {
+            assertThrows(InvalidNetworkMessage.class, () -> MessageFrame.of("1a_abc"));
+        }
+
+        @Test
+        void commandOverflow() {
+            assertThrows(InvalidNetworkMessage.class, () -> MessageFrame.of("2147483648_abc"));
+        }
+
+        @Test
+        void commandLimits() {
+            assertEquals(Integer.MAX_VALUE, MessageFrame.of("2147483647_abc").command());
+            assertEquals(Integer.MIN_VALUE, MessageFrame.of("-2147483648_abc").command());
+        }
+
+        @Test
+        void sameAsLegacy() {
+            String[] inputs = {"1_a", "+1_a", "-3_a", "1_a_b", "1__b", "007_x", "1_", "1__", "", "_", "a_b", "-_a", "99999999999_a"};
+            for (String input : inputs) {
+                String[] base = input.split(MessageSeparation.COMMAND_SEPARATOR);
+                int command;
+                String content;
+                try {
+                    command = Integer.parseInt(base[0]);
+                    content = base[1];
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    assertThrows(InvalidNetworkMessage.class, () -> MessageFrame.of(input), input);
+                    continue;
+                }
+                MessageFrame f = MessageFrame.of(input);
+                assertEquals(command, f.command(), input);
+                assertEquals(content, f.contentAsString(), input);
+            }
+        }
+    }
+
+    @Nested
+    class ContentAsString {
+
+        @Test
+        void materialisedOnce() {
+            MessageFrame f = MessageFrame.of("1_abc");
+            assertSame(f.contentAsString(), f.contentAsString());
+        }
+    }
+
+    @Nested
+    class ToWrapper {
+
+        @Test
+        void happyFlow() {
+            MessageWrapper w = new MessageFrame("&5_def#", 1, 6).toWrapper();
+            assertEquals(5, w.command);
+            assertEquals("def", w.content);
+            assertEquals("5_def", w.message);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Serialize the same messages with the former String.format path, with a new builder, with a reused builder and directly in a buffer, logging the time taken by each.
+ * Every path produces the UTF-8 bytes to send, the output of all of them is checked to be identical.
+ * The number of messages is set with the network.message.benchmark.messages system property, 1 000 000 by default.
+ * Tagged as benchmark, it is only run with the benchmark profile.
+ *
+ * @author Grégory Van den Borre
+ */
+@Tag("benchmark")
+class NetworkMessageBenchmarkTest {
+
+    private static final System.Logger LOGGER = System.getLogger(NetworkMessageBenchmarkTest.class.getName());
+
+    private static final int MESSAGES = Integer.getInteger("network.message.benchmark.messages", 1_000_000);
+
+    /**
+     * Number of runs before the measured one, to let the JIT compile all the paths.
+     */
+    private static final int WARM_UP = 5;
+
+    private static final ObjectMapper<String> MAPPER = new ObjectMapper<>() {
+        @Override
+        public String from(String s) {
+            return s;
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    };
+
+    /**
+     * Serialization as done before the builder and buffer paths.
+     */
+    private static String format(NetworkMessage<?> message) {
+        return String.format("%s%d%s%s%s",
+                MessageSeparation.MESSAGE_BEGIN,
+                message.command(),
+                MessageSeparation.COMMAND_SEPARATOR,
+                message.content(),
+                MessageSeparation.MESSAGE_END);
+    }
+
+    private static long measure(Runnable task) {
+        long begin = System.nanoTime();
+        task.run();
+        return (System.nanoTime() - begin) / MESSAGES;
+    }
+
+    @Test
+    void builderAgainstFormat() {
+        List<NetworkMessage<String>> messages = new ArrayList<>(MESSAGES);
+        int size = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            NetworkMessage<String> message = new NetworkMessage<>(i + "," + (i * 0.5f) + ",-3.25,entity-" + (i % 100), MAPPER, i % 64);
+            messages.add(message);
+            size += message.encodedSize();
+        }
+        ByteBuffer formatted = ByteBuffer.allocate(size);
+        ByteBuffer built = ByteBuffer.allocate(size);
+        ByteBuffer appended = ByteBuffer.allocate(size);
+        ByteBuffer written = ByteBuffer.allocate(size);
+        StringBuilder builder = new StringBuilder(64);
+        long[] times = new long[4];
+        for (int run = 0; run <= WARM_UP; run++) {
+            formatted.clear();
+            built.clear();
+            appended.clear();
+            written.clear();
+            times[0] = measure(() -> messages.forEach(m -> formatted.put(format(m).getBytes(StandardCharsets.UTF_8))));
+            times[1] = measure(() -> messages.forEach(m -> built.put(m.buildMessage().getBytes(StandardCharsets.UTF_8))));
+            times[2] = measure(() -> messages.forEach(m -> {
+                builder.setLength(0);
+                Utf8.encode(m.appendTo(builder), appended);
+            }));
+            times[3] = measure(() -> messages.forEach(m -> m.writeTo(written)));
+            assertEquals(formatted.flip(), built.flip());
+            assertEquals(formatted, appended.flip());
+            assertEquals(formatted, written.flip());
+        }
+        LOGGER.log(System.Logger.Level.INFO, "{0} messages, {1} bytes, String.format {2} ns/msg, new builder {3} ns/msg, reused builder {4} ns/msg, buffer {5} ns/msg.",
+                MESSAGES, size, times[0], times[1], times[2], times[3]);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class NetworkMessageTest {
+
+    private static final ObjectMapper<String> MAPPER = new ObjectMapper<>() {
+        @Override
+        public String from(String s) {
+            return s;
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    };
+
+    private static final String[] PAYLOADS = {"", "abc", "éà", "€uro", "😀smile", "bad\uD800surrogate"};
+
+    private static final int[] COMMANDS = {0, 7, 10, 12345, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+
+    @Nested
+    class BuildMessage {
+
+        @Test
+        void sameAsFormat() {
+            for (int command : COMMANDS) {
+                for (String payload : PAYLOADS) {
+                    String expected = String.format("%s%d%s%s%s", MessageSeparation.MESSAGE_BEGIN, command,
+                            MessageSeparation.COMMAND_SEPARATOR, payload, MessageSeparation.MESSAGE_END);
+                    assertEquals(expected, new NetworkMessage<>(payload, MAPPER, command).buildMessage());
+                }
+            }
+        }
+    }
+
+    @Nested
+    class AppendTo {
+
+        @Test
+        void reusedBuilder() {
+            StringBuilder sb = new StringBuilder();
+            new NetworkMessage<>("abc", MAPPER, 1).appendTo(sb);
+            new NetworkMessage<>("def", MAPPER, 2).appendTo(sb);
+            assertEquals("&1_abc#&2_def#", sb.toString());
+        }
+    }
+
+    @Nested
+    class WriteTo {
+
+        @Test
+        void sameAsBuildMessageBytes() {
+            for (int command : COMMANDS) {
+                for (String payload : PAYLOADS) {
+                    NetworkMessage<String> m = new NetworkMessage<>(payload, MAPPER, command);
+                    byte[] expected = m.buildMessage().getBytes(StandardCharsets.UTF_8);
+                    assertEquals(expected.length, m.encodedSize());
+                    ByteBuffer b = ByteBuffer.allocate(m.encodedSize());
+                    m.writeTo(b);
+                    assertEquals(0, b.remaining());
+                    assertArrayEquals(expected, Arrays.copyOf(b.array(), b.position()));
+                }
+            }
+        }
+    }
+
+    @Nested
+    class FromMessageWrapper {
+
+        @Test
+        void happyFlow() {
+            NetworkMessage<String> m = new NetworkMessage<>(new MessageWrapper("5_abc"), MAPPER, 5);
+            assertEquals("abc", m.getDto());
+            assertEquals(5, m.command());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.protocol;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import be.yildizgames.module.network.exceptions.InvalidNetworkMessage;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class PayloadCompressorTest {
+
+    private static final ObjectMapper<String> MAPPER = new ObjectMapper<>() {
+        @Override
+        public String from(String s) {
+            return s;
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    };
+
+    private static final String LARGE = "item,sword,1,true;".repeat(200);
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void negativeThreshold() {
+            assertThrows(IllegalArgumentException.class, () -> new PayloadCompressor(-1));
+        }
+    }
+
+    @Nested
+    class AppendTo {
+
+        @Test
+        void belowThreshold() {
+            PayloadCompressor c = new PayloadCompressor(100);
+            String frame = c.appendTo(new NetworkMessage<>("abc", MAPPER, 5), new StringBuilder()).toString();
+            assertEquals("&5_abc#", frame);
+            assertEquals(0, c.getCompressedMessages(5));
+        }
+
+        @Test
+        void aboveThreshold() {
+            PayloadCompressor c = new PayloadCompressor(100);
+            String frame = c.appendTo(new NetworkMessage<>(LARGE, MAPPER, 5), new StringBuilder()).toString();
+            assertTrue(frame.startsWith("&5~"));
+            assertTrue(frame.length() < LARGE.length());
+            assertEquals(1, c.getCompressedMessages(5));
+            assertTrue(c.getCompressionRatio(5) < 0.5);
+            assertTrue(c.getCompressionTime(5) > 0);
+            assertEquals(1, c.getCompressionRatio(6));
+        }
+
+        @Test
+        void notSmallerSentAsIs() {
+            PayloadCompressor c = new PayloadCompressor(0);
+            String frame = c.appendTo(new NetworkMessage<>("a1", MAPPER, 5), new StringBuilder()).toString();
+            assertEquals("&5_a1#", frame);
+            assertEquals(0, c.getCompressedMessages(5));
+            assertEquals(1, c.getUncompressedMessages(5));
+            assertEquals(1, c.getCompressionRatio(5));
+        }
+
+        @Test
+        void afterClose() {
+            PayloadCompressor c = new PayloadCompressor(100);
+            String frame = c.appendTo(new NetworkMessage<>(LARGE, MAPPER, 5), new StringBuilder()).toString();
+            c.close();
+            assertEquals("&5_" + LARGE + "#", c.appendTo(new NetworkMessage<>(LARGE, MAPPER, 5), new StringBuilder()).toString());
+            assertThrows(InvalidNetworkMessage.class, () -> c.inflate(frame, 1, frame.length() - 1));
+        }
+
+        @Test
+        void nativeResourcesCreatedOnUse() {
+            PayloadCompressor c = new PayloadCompressor(100);
+            assertFalse(c.hasDeflater());
+            assertFalse(c.hasInflater());
+            c.appendTo(new NetworkMessage<>("abc", MAPPER, 5), new StringBuilder());
+            assertFalse(c.hasDeflater());
+            String frame = c.appendTo(new NetworkMessage<>(LARGE, MAPPER, 5), new StringBuilder()).toString();
+            assertTrue(c.hasDeflater());
+            assertFalse(c.hasInflater());
+            PayloadCompressor receiver = new PayloadCompressor(PayloadCompressor.DISABLED);
+            receiver.toWrapper(frame, 1, frame.length() - 1);
+            assertTrue(receiver.hasInflater());
+            assertFalse(receiver.hasDeflater());
+            c.close();
+            receiver.close();
+        }
+    }
+
+    @Nested
+    class Inflate {
+
+        @Test
+        void roundTrip() {
+            PayloadCompressor sender = new PayloadCompressor(100);
+            PayloadCompressor receiver = new PayloadCompressor(PayloadCompressor.DISABLED);
+            for (int i = 0; i < 3; i++) {
+                String frame = sender.appendTo(new NetworkMessage<>(LARGE + i, MAPPER, 7), new StringBuilder()).toString();
+                MessageWrapper w = receiver.toWrapper(frame, 1, frame.length() - 1);
+                assertEquals(7, w.command);
+                assertEquals(LARGE + i, w.content);
+            }
+        }
+
+        @Test
+        void notCompressed() {
+            PayloadCompressor receiver = new PayloadCompressor(PayloadCompressor.DISABLED);
+            assertEquals("abc", receiver.toWrapper("5_abc", 0, 5).content);
+        }
+
+        @Test
+        void invalidEncoding() {
+            PayloadCompressor receiver = new PayloadCompressor(PayloadCompressor.DISABLED);
+            assertThrows(InvalidNetworkMessage.class, () -> receiver.inflate("5~!!!", 0, 5));
+        }
+
+        @Test
+        void invalidData() {
+            PayloadCompressor receiver = new PayloadCompressor(PayloadCompressor.DISABLED);
+            assertThrows(InvalidNetworkMessage.class, () -> receiver.inflate("5~YWJjZA==", 0, 10));
+        }
+    }
+
+    @Nested
+    class IsCompressed {
+
+        @Test
+        void happyFlow() {
+            assertTrue(PayloadCompressor.isCompressed("12~abc", 0, 6));
+            assertFalse(PayloadCompressor.isCompressed("12_abc", 0, 6));
+            assertFalse(PayloadCompressor.isCompressed("~abc", 0, 4));
+            assertFalse(PayloadCompressor.isCompressed("12", 0, 2));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class AdmissionPolicyTest {
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void happyFlow() {
+            AdmissionPolicy policy = new AdmissionPolicy(10);
+            assertEquals(10, policy.getMaxUnauthenticated());
+            assertEquals(0, policy.getAddressRate());
+            assertEquals(0, policy.getMaxPending());
+            assertEquals(AdmissionPolicy.DEFAULT_RETRY_AFTER, policy.getRetryAfter());
+        }
+
+        @Test
+        void invalidMaxUnauthenticated() {
+            assertThrows(IllegalArgumentException.class, () -> new AdmissionPolicy(0));
+        }
+    }
+
+    @Nested
+    class With {
+
+        @Test
+        void happyFlow() {
+            AdmissionPolicy policy = new AdmissionPolicy(10).withAddressRate(5, 2).withQueue(100, 50).withRetryAfter(300);
+            assertEquals(10, policy.getMaxUnauthenticated());
+            assertEquals(5, policy.getAddressCapacity());
+            assertEquals(2, policy.getAddressRate());
+            assertEquals(100, policy.getMaxPending());
+            assertEquals(50, policy.getAdmissionRate());
+            assertEquals(300, policy.getRetryAfter());
+        }
+
+        @Test
+        void invalidAddressRate() {
+            AdmissionPolicy policy = new AdmissionPolicy(10);
+            assertThrows(IllegalArgumentException.class, () -> policy.withAddressRate(0, 1));
+            assertThrows(IllegalArgumentException.class, () -> policy.withAddressRate(1, 0));
+        }
+
+        @Test
+        void invalidQueue() {
+            AdmissionPolicy policy = new AdmissionPolicy(10);
+            assertThrows(IllegalArgumentException.class, () -> policy.withQueue(-1, 1));
+            assertThrows(IllegalArgumentException.class, () -> policy.withQueue(1, 0));
+        }
+
+        @Test
+        void invalidRetryAfter() {
+            assertThrows(IllegalArgumentException.class, () -> new AdmissionPolicy(10).withRetryAfter(0));
+        }
+    }
+}
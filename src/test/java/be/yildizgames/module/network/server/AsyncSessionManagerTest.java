@@ -0,0 +1,243 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.Helper;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class AsyncSessionManagerTest {
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void invalidThreads() {
+            assertThrows(IllegalArgumentException.class, () -> new TestAsyncSessionManager(0, 1, 0));
+        }
+
+        @Test
+        void invalidWaiting() {
+            assertThrows(IllegalArgumentException.class, () -> new TestAsyncSessionManager(1, 0, 0));
+        }
+    }
+
+    @Nested
+    class Authenticate {
+
+        @Test
+        void happyFlow() throws InterruptedException {
+            try (TestAsyncSessionManager sm = new TestAsyncSessionManager(1, 4, 0)) {
+                List<String> received = Collections.synchronizedList(new ArrayList<>());
+                sm.addSessionListener((s, m) -> received.add(m.content));
+                Session session = Helper.givenASession(PlayerId.WORLD);
+                sm.messageReceived(session, new MessageWrapper("0_5"));
+                sm.messageReceived(session, new MessageWrapper("1_a"));
+                sm.messageReceived(session, new MessageWrapper("1_b"));
+                sm.release.countDown();
+                awaitAuthenticated(sm, session);
+                sm.messageReceived(session, new MessageWrapper("1_c"));
+                assertEquals(List.of("a", "b", "c"), received);
+                assertEquals(PlayerId.valueOf(5), session.getPlayer());
+                assertTrue(sm.getActivePlayers().contains(PlayerId.valueOf(5)));
+                assertEquals(0, sm.getPendingAuthentications());
+            }
+        }
+
+        @Test
+        void failed() throws InterruptedException {
+            try (TestAsyncSessionManager sm = new TestAsyncSessionManager(1, 4, 0)) {
+                sm.release.countDown();
+                Session session = Helper.givenASession(PlayerId.WORLD);
+                sm.messageReceived(session, new MessageWrapper("0_wrong"));
+                awaitDisconnected(session);
+                assertFalse(session.isAuthenticated());
+                assertTrue(sm.getActivePlayers().isEmpty());
+            }
+        }
+
+        @Test
+        void tooManyMessages() throws InterruptedException {
+            try (TestAsyncSessionManager sm = new TestAsyncSessionManager(1, 4, 0)) {
+                List<String> received = Collections.synchronizedList(new ArrayList<>());
+                sm.addSessionListener((s, m) -> received.add(m.content));
+                Session session = Helper.givenASession(PlayerId.WORLD);
+                sm.messageReceived(session, new MessageWrapper("0_5"));
+                for (int i = 0; i <= PendingAuthentication.MAX_QUEUED_MESSAGES; i++) {
+                    sm.messageReceived(session, new MessageWrapper("1_" + i));
+                }
+                assertFalse(session.isConnected());
+                sm.release.countDown();
+                long end = System.currentTimeMillis() + 5000;
+                while (sm.getPendingAuthentications() > 0) {
+                    assertTrue(System.currentTimeMillis() < end);
+                    Thread.sleep(1);
+                }
+                assertFalse(session.isAuthenticated());
+                assertTrue(received.isEmpty());
+                assertTrue(sm.getActivePlayers().isEmpty());
+            }
+        }
+
+        @Test
+        void rejected() {
+            try (TestAsyncSessionManager sm = new TestAsyncSessionManager(1, 1, 0)) {
+                Session running = Helper.givenASession(PlayerId.WORLD);
+                Session waiting = Helper.givenASession(PlayerId.WORLD);
+                Session rejected = Helper.givenASession(PlayerId.WORLD);
+                sm.messageReceived(running, new MessageWrapper("0_1"));
+                sm.messageReceived(waiting, new MessageWrapper("0_2"));
+                sm.messageReceived(rejected, new MessageWrapper("0_3"));
+                assertFalse(rejected.isConnected());
+                assertTrue(running.isConnected());
+                assertTrue(waiting.isConnected());
+                assertEquals(2, sm.getPendingAuthentications());
+                sm.release.countDown();
+            }
+        }
+    }
+
+    @Nested
+    class LoginStorm {
+
+        private static final System.Logger LOGGER = System.getLogger(AsyncSessionManagerTest.class.getName());
+
+        private static final int LOGINS = 5000;
+
+        private static final int IO_THREADS = 4;
+
+        @Test
+        void fiveThousandSimultaneousLogins() throws InterruptedException {
+            try (TestAsyncSessionManager sm = new TestAsyncSessionManager(64, LOGINS, 2)) {
+                sm.release.countDown();
+                Map<PlayerId, String> received = new ConcurrentHashMap<>();
+                CountDownLatch done = new CountDownLatch(LOGINS);
+                sm.addSessionListener((s, m) -> {
+                    received.put(s.getPlayer(), m.content);
+                    done.countDown();
+                });
+                AtomicLong maxBlocked = new AtomicLong();
+                List<Thread> ioThreads = new ArrayList<>();
+                long begin = System.nanoTime();
+                for (int t = 0; t < IO_THREADS; t++) {
+                    final int first = t;
+                    ioThreads.add(Thread.ofPlatform().start(() -> {
+                        for (int i = first + 1; i <= LOGINS; i += IO_THREADS) {
+                            Session session = Helper.givenASession(PlayerId.WORLD);
+                            long start = System.nanoTime();
+                            sm.messageReceived(session, new MessageWrapper("0_" + i));
+                            sm.messageReceived(session, new MessageWrapper("1_" + i));
+                            maxBlocked.accumulateAndGet(System.nanoTime() - start, Math::max);
+                        }
+                    }));
+                }
+                for (Thread thread : ioThreads) {
+                    thread.join();
+                }
+                assertTrue(done.await(60, TimeUnit.SECONDS));
+                long elapsed = System.nanoTime() - begin;
+                assertEquals(LOGINS, sm.getActivePlayers().size());
+                for (int i = 1; i <= LOGINS; i++) {
+                    assertEquals(String.valueOf(i), received.get(PlayerId.valueOf(i)));
+                }
+                LOGGER.log(System.Logger.Level.INFO, "{0} logins in {1} ms, I/O thread blocked at most {2} µs.",
+                        LOGINS, elapsed / 1_000_000, maxBlocked.get() / 1_000);
+            }
+        }
+    }
+
+    private static void awaitAuthenticated(SessionManager sm, Session session) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (!sm.getActivePlayers().contains(session.getPlayer())) {
+            assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitDisconnected(Session session) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (session.isConnected()) {
+            assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Authenticate the player whose id is the message content, after a delay standing for a password hash and a database query.
+     */
+    private static final class TestAsyncSessionManager extends AsyncSessionManager {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final long delay;
+
+        private TestAsyncSessionManager(int threads, int maxWaiting, long delay) {
+            super(threads, maxWaiting);
+            this.delay = delay;
+        }
+
+        @Override
+        protected CompletionStage<PlayerId> authenticateAsync(Session session, MessageWrapper message) {
+            try {
+                this.release.await();
+                Thread.sleep(this.delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.failedFuture(e);
+            }
+            try {
+                return CompletableFuture.completedFuture(PlayerId.valueOf(Integer.parseInt(message.content)));
+            } catch (NumberFormatException e) {
+                return CompletableFuture.completedFuture(null);
+            }
+        }
+
+        @Override
+        public void update() {
+            this.flush();
+        }
+    }
+}
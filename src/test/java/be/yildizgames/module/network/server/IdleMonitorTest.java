@@ -0,0 +1,276 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.Helper;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class IdleMonitorTest {
+
+    private static final ObjectMapper<String> MAPPER = new ObjectMapper<>() {
+        @Override
+        public String from(String s) {
+            return s;
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    };
+
+    private static final NetworkMessage<String> HEARTBEAT = new NetworkMessage<>("ping", MAPPER, 99);
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void invalidTimeout() {
+            assertThrows(IllegalArgumentException.class, () -> new IdleMonitor(new SessionManagerTest.TestSessionManager(), 0));
+        }
+
+        @Test
+        void heartbeatAfterTimeout() {
+            assertThrows(IllegalArgumentException.class, () -> new IdleMonitor(new SessionManagerTest.TestSessionManager(), 100, 100, HEARTBEAT, 10));
+        }
+
+        @Test
+        void watchAlreadyAuthenticated() {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            sm.setAuthenticated(Helper.givenASession(PlayerId.valueOf(1)));
+            IdleMonitor monitor = new IdleMonitor(sm, 1000);
+            monitor.update();
+            assertEquals(1, monitor.getWatchedSessions());
+        }
+    }
+
+    @Nested
+    class Update {
+
+        @Test
+        void idleSessionDisconnected() throws InterruptedException {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            List<Session> closed = new ArrayList<>();
+            sm.addSessionListener(closedListener(closed));
+            IdleMonitor monitor = new IdleMonitor(sm, 50, 0, null, 5);
+            Session idle = Helper.givenASession(PlayerId.valueOf(1));
+            Session active = Helper.givenASession(PlayerId.valueOf(2));
+            sm.setAuthenticated(idle);
+            sm.setAuthenticated(active);
+            monitor.update();
+            assertEquals(2, monitor.getWatchedSessions());
+            long end = System.currentTimeMillis() + 5000;
+            while (idle.isConnected()) {
+                assertTrue(System.currentTimeMillis() < end);
+                sm.messageReceived(active, new MessageWrapper("1_a"));
+                monitor.update();
+                Thread.sleep(5);
+            }
+            assertTrue(active.isConnected());
+            assertEquals(List.of(idle), closed);
+            assertEquals(List.of(PlayerId.valueOf(2)), List.copyOf(sm.getActivePlayers()));
+            assertEquals(1, monitor.getWatchedSessions());
+        }
+
+        @Test
+        void heartbeatBeforeDisconnection() throws InterruptedException {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            IdleMonitor monitor = new IdleMonitor(sm, 100, 30, HEARTBEAT, 5);
+            Helper.SessionWrapper session = Helper.givenASession(PlayerId.valueOf(1));
+            sm.setAuthenticated(session);
+            long end = System.currentTimeMillis() + 5000;
+            while (session.getMessage() == null) {
+                assertTrue(System.currentTimeMillis() < end);
+                monitor.update();
+                Thread.sleep(5);
+            }
+            assertEquals("&99_ping#", session.getMessage());
+            assertTrue(session.isConnected());
+            assertEquals(1, session.getWrites());
+            //answer to the heartbeat.
+            sm.messageReceived(session, new MessageWrapper("1_pong"));
+            while (session.getWrites() < 2) {
+                assertTrue(System.currentTimeMillis() < end);
+                monitor.update();
+                Thread.sleep(5);
+            }
+            while (session.isConnected()) {
+                assertTrue(System.currentTimeMillis() < end);
+                monitor.update();
+                Thread.sleep(5);
+            }
+            assertEquals(2, session.getWrites());
+        }
+
+        @Test
+        void heartbeatSentWithDispatcher() throws InterruptedException {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            List<Runnable> dispatched = new ArrayList<>();
+            sm.setMessageDispatcher((s, task) -> dispatched.add(task));
+            IdleMonitor monitor = new IdleMonitor(sm, 1000, 30, HEARTBEAT, 5);
+            Helper.SessionWrapper session = Helper.givenASession(PlayerId.valueOf(1));
+            sm.setAuthenticated(session);
+            long end = System.currentTimeMillis() + 5000;
+            while (dispatched.isEmpty()) {
+                assertTrue(System.currentTimeMillis() < end);
+                monitor.update();
+                Thread.sleep(5);
+            }
+            assertNull(session.getMessage());
+            dispatched.forEach(Runnable::run);
+            assertEquals("&99_ping#", session.getMessage());
+        }
+
+        @Test
+        void closedSessionNotWatched() {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            IdleMonitor monitor = new IdleMonitor(sm, 1000);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            sm.setAuthenticated(session);
+            monitor.update();
+            sm.disconnectSession(session);
+            monitor.update();
+            assertEquals(0, monitor.getWatchedSessions());
+        }
+    }
+
+    @Nested
+    class Close {
+
+        @Test
+        void stopWatching() {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            IdleMonitor monitor = new IdleMonitor(sm, 1000);
+            monitor.close();
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            sm.setAuthenticated(session);
+            assertNull(session.setIdleTimeout(null));
+            assertEquals(0, monitor.update());
+            assertEquals(0, monitor.getWatchedSessions());
+            assertThrows(IllegalStateException.class, () -> monitor.start(5));
+        }
+    }
+
+    @Nested
+    class Start {
+
+        @Test
+        void ownThread() throws InterruptedException {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            CountDownLatch closed = new CountDownLatch(1);
+            sm.addSessionListener(new SessionListener() {
+                @Override
+                public void messageReceived(Session session, MessageWrapper message) {
+                    //does nothing
+                }
+
+                @Override
+                public void sessionClosed(Session session) {
+                    closed.countDown();
+                }
+            });
+            try (IdleMonitor monitor = new IdleMonitor(sm, 20)) {
+                monitor.start(5);
+                sm.setAuthenticated(Helper.givenASession(PlayerId.valueOf(1)));
+                assertTrue(closed.await(5, TimeUnit.SECONDS));
+                assertTrue(sm.getActivePlayers().isEmpty());
+            }
+        }
+    }
+
+    @Nested
+    class Load {
+
+        private static final System.Logger LOGGER = System.getLogger(IdleMonitorTest.class.getName());
+
+        private static final int SESSIONS = 100_000;
+
+        @Test
+        void hundredThousandSessions() throws InterruptedException {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            IdleMonitor monitor = new IdleMonitor(sm, 60_000, 200, HEARTBEAT, 10);
+            List<Helper.SessionWrapper> sessions = new ArrayList<>(SESSIONS);
+            for (int i = 1; i <= SESSIONS; i++) {
+                Helper.SessionWrapper session = Helper.givenASession(PlayerId.valueOf(i));
+                sm.setAuthenticated(session);
+                sessions.add(session);
+            }
+            long begin = System.nanoTime();
+            int expired = monitor.update();
+            long registration = System.nanoTime() - begin;
+            assertEquals(SESSIONS, monitor.getWatchedSessions());
+            long busy = 0;
+            int updates = 0;
+            long end = System.currentTimeMillis() + 400;
+            while (System.currentTimeMillis() < end) {
+                begin = System.nanoTime();
+                expired += monitor.update();
+                busy += System.nanoTime() - begin;
+                updates++;
+                Thread.sleep(10);
+            }
+            assertEquals(SESSIONS, expired);
+            for (Helper.SessionWrapper session : sessions) {
+                assertTrue(session.isConnected());
+                assertEquals(1, session.getWrites());
+            }
+            assertEquals(SESSIONS, monitor.getWatchedSessions());
+            LOGGER.log(System.Logger.Level.INFO, "{0} sessions: registered in {1} ms, then {2} updates over 400 ms, sending the heartbeats not yet sent, took {3} ms.",
+                    SESSIONS, registration / 1_000_000, updates, busy / 1_000_000);
+        }
+    }
+
+    private static SessionListener closedListener(List<Session> closed) {
+        return new SessionListener() {
+            @Override
+            public void messageReceived(Session session, MessageWrapper message) {
+                //does nothing
+            }
+
+            @Override
+            public void sessionClosed(Session session) {
+                closed.add(session);
+            }
+        };
+    }
+}
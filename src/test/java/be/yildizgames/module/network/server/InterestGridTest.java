@@ -0,0 +1,203 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.Helper;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class InterestGridTest {
+
+    private static final NetworkMessage<String> EVENT = new NetworkMessage<>("boom", InterestGroupTest.MAPPER, 7);
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void invalidCellSize() {
+            assertThrows(IllegalArgumentException.class, () -> new InterestGrid(0, 1));
+        }
+
+        @Test
+        void invalidRadius() {
+            assertThrows(IllegalArgumentException.class, () -> new InterestGrid(10, -1));
+        }
+    }
+
+    @Nested
+    class Move {
+
+        @Test
+        void subscribedAround() {
+            InterestGrid grid = new InterestGrid(10, 1);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            grid.move(session, 15, 15);
+            assertTrue(grid.contains(session));
+            assertEquals(9, grid.getCellCount());
+            assertEquals(1, grid.getSubscriberCount(0, 0));
+            assertEquals(1, grid.getSubscriberCount(29, 29));
+            assertEquals(0, grid.getSubscriberCount(30, 15));
+            assertEquals(0, grid.getSubscriberCount(-1, 15));
+        }
+
+        @Test
+        void sameCellNoChange() {
+            InterestGrid grid = new InterestGrid(10, 1);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            grid.move(session, 15, 15);
+            grid.move(session, 19, 11);
+            assertEquals(9, grid.getMembershipChanges());
+        }
+
+        @Test
+        void neighbourCellOnlyChangesEdges() {
+            InterestGrid grid = new InterestGrid(10, 1);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            grid.move(session, 15, 15);
+            grid.move(session, 25, 15);
+            assertEquals(15, grid.getMembershipChanges());
+            assertEquals(9, grid.getCellCount());
+            assertEquals(0, grid.getSubscriberCount(5, 15));
+            assertEquals(1, grid.getSubscriberCount(35, 15));
+        }
+
+        @Test
+        void farMove() {
+            InterestGrid grid = new InterestGrid(10, 1);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            grid.move(session, 15, 15);
+            grid.move(session, -1000, 500);
+            assertEquals(9, grid.getCellCount());
+            assertEquals(0, grid.getSubscriberCount(15, 15));
+            assertEquals(1, grid.getSubscriberCount(-1000, 500));
+        }
+
+        @Test
+        void negativeCoordinates() {
+            InterestGrid grid = new InterestGrid(10, 0);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            grid.move(session, -5, -5);
+            assertEquals(1, grid.getSubscriberCount(-9.9, -0.1));
+            assertEquals(0, grid.getSubscriberCount(0.1, -0.1));
+        }
+    }
+
+    @Nested
+    class Remove {
+
+        @Test
+        void happyFlow() {
+            InterestGrid grid = new InterestGrid(10, 1);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            grid.move(session, 15, 15);
+            grid.remove(session);
+            assertFalse(grid.contains(session));
+            assertEquals(0, grid.getCellCount());
+            assertEquals(0, grid.size());
+        }
+
+        @Test
+        void disconnected() {
+            InterestGrid grid = new InterestGrid(10, 1);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            grid.move(session, 15, 15);
+            session.disconnect();
+            assertFalse(grid.contains(session));
+            assertEquals(0, grid.getCellCount());
+        }
+    }
+
+    @Nested
+    class Publish {
+
+        @Test
+        void onlyNearSessions() {
+            InterestGrid grid = new InterestGrid(10, 1);
+            Helper.SessionWrapper near = Helper.givenASession(PlayerId.valueOf(1));
+            Helper.SessionWrapper far = Helper.givenASession(PlayerId.valueOf(2));
+            grid.move(near, 15, 15);
+            grid.move(far, 55, 15);
+            assertEquals(1, grid.publish(25, 25, EVENT));
+            assertEquals("&7_boom#", near.getMessage());
+            assertNull(far.getMessage());
+            assertEquals(0, grid.publish(1000, 1000, EVENT));
+        }
+    }
+
+    @Nested
+    class Load {
+
+        private static final System.Logger LOGGER = System.getLogger(InterestGridTest.class.getName());
+
+        private static final int SESSIONS = 10_000;
+
+        private static final int MOVES = 1_000_000;
+
+        @Test
+        void membershipChangesPerSecond() {
+            InterestGrid grid = new InterestGrid(10, 1);
+            List<Session> sessions = new ArrayList<>(SESSIONS);
+            double[] x = new double[SESSIONS];
+            double[] y = new double[SESSIONS];
+            Random random = new Random(42);
+            for (int i = 0; i < SESSIONS; i++) {
+                Session session = Helper.givenASession(PlayerId.valueOf(i + 1));
+                sessions.add(session);
+                x[i] = random.nextDouble() * 2000;
+                y[i] = random.nextDouble() * 2000;
+                grid.move(session, x[i], y[i]);
+            }
+            long changes = grid.getMembershipChanges();
+            long begin = System.nanoTime();
+            for (int i = 0; i < MOVES; i++) {
+                int s = i % SESSIONS;
+                x[s] += random.nextDouble() * 4 - 2;
+                y[s] += random.nextDouble() * 4 - 2;
+                grid.move(sessions.get(s), x[s], y[s]);
+            }
+            long elapsed = System.nanoTime() - begin;
+            changes = grid.getMembershipChanges() - changes;
+            assertEquals(SESSIONS, grid.size());
+            assertTrue(changes > 0);
+            LOGGER.log(System.Logger.Level.INFO, "{0} moves of {1} sessions in {2} ms, {3} membership changes, {4} changes per second.",
+                    MOVES, SESSIONS, elapsed / 1_000_000, changes, changes * 1_000_000_000L / elapsed);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.Helper;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class InterestGroupTest {
+
+    static final ObjectMapper<String> MAPPER = new ObjectMapper<>() {
+        @Override
+        public String from(String s) {
+            return s;
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    };
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void nullName() {
+            assertThrows(NullPointerException.class, () -> new InterestGroup(null));
+        }
+    }
+
+    @Nested
+    class Subscribe {
+
+        @Test
+        void happyFlow() {
+            InterestGroup group = new InterestGroup("guild");
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            assertTrue(group.subscribe(session));
+            assertTrue(group.isSubscribed(session));
+            assertEquals(1, group.size());
+        }
+
+        @Test
+        void alreadySubscribed() {
+            InterestGroup group = new InterestGroup("guild");
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            group.subscribe(session);
+            assertFalse(group.subscribe(session));
+            assertEquals(1, group.size());
+        }
+
+        @Test
+        void disconnected() {
+            InterestGroup group = new InterestGroup("guild");
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            session.disconnect();
+            assertFalse(group.subscribe(session));
+            assertEquals(0, group.size());
+        }
+
+        @Test
+        void leftWhenDisconnected() {
+            InterestGroup first = new InterestGroup("guild");
+            InterestGroup second = new InterestGroup("trade");
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            Session other = Helper.givenASession(PlayerId.valueOf(2));
+            first.subscribe(session);
+            first.subscribe(other);
+            second.subscribe(session);
+            session.disconnect();
+            assertFalse(first.isSubscribed(session));
+            assertTrue(first.isSubscribed(other));
+            assertEquals(0, second.size());
+        }
+    }
+
+    @Nested
+    class Unsubscribe {
+
+        @Test
+        void happyFlow() {
+            InterestGroup group = new InterestGroup("guild");
+            List<Session> sessions = givenSessions(group, 5);
+            assertTrue(group.unsubscribe(sessions.get(1)));
+            assertFalse(group.isSubscribed(sessions.get(1)));
+            assertEquals(4, group.size());
+            assertEquals(4, group.publish(new NetworkMessage<>("a", MAPPER, 5)));
+            assertNull(((Helper.SessionWrapper) sessions.get(1)).getMessage());
+        }
+
+        @Test
+        void notSubscribed() {
+            InterestGroup group = new InterestGroup("guild");
+            assertFalse(group.unsubscribe(Helper.givenASession(PlayerId.valueOf(1))));
+        }
+
+        @Test
+        void sessionWithSamePlayer() {
+            InterestGroup group = new InterestGroup("guild");
+            group.subscribe(Helper.givenASession(PlayerId.valueOf(1)));
+            assertFalse(group.unsubscribe(Helper.givenASession(PlayerId.valueOf(1))));
+            assertEquals(1, group.size());
+        }
+    }
+
+    @Nested
+    class Publish {
+
+        @Test
+        void onlySubscribers() {
+            InterestGroup group = new InterestGroup("guild");
+            List<Session> sessions = givenSessions(group, 3);
+            Helper.SessionWrapper outside = Helper.givenASession(PlayerId.valueOf(10));
+            assertEquals(3, group.publish(new NetworkMessage<>("hello", MAPPER, 5)));
+            for (Session session : sessions) {
+                assertEquals("&5_hello#", ((Helper.SessionWrapper) session).getMessage());
+            }
+            assertNull(outside.getMessage());
+        }
+
+        @Test
+        void empty() {
+            assertEquals(0, new InterestGroup("guild").publish(new NetworkMessage<>("hello", MAPPER, 5)));
+        }
+    }
+
+    @Nested
+    class Channel {
+
+        @Test
+        void sameInstance() {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            assertSame(sm.getChannel("guild"), sm.getChannel("guild"));
+            assertEquals("guild", sm.getChannel("guild").getName());
+        }
+
+        @Test
+        void publish() {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            Helper.SessionWrapper session = Helper.givenASession(PlayerId.valueOf(1));
+            sm.setAuthenticated(session);
+            assertEquals(0, sm.publish("guild", new NetworkMessage<>("hello", MAPPER, 5)));
+            sm.getChannel("guild").subscribe(session);
+            assertEquals(1, sm.publish("guild", new NetworkMessage<>("hello", MAPPER, 5)));
+            assertEquals("&5_hello#", session.getMessage());
+            sm.disconnectSession(session);
+            assertEquals(0, sm.getChannel("guild").size());
+        }
+    }
+
+    private static List<Session> givenSessions(InterestGroup group, int count) {
+        List<Session> result = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Session session = Helper.givenASession(PlayerId.valueOf(i));
+            group.subscribe(session);
+            result.add(session);
+        }
+        return result;
+    }
+}
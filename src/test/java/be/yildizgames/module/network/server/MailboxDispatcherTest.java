@@ -0,0 +1,169 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.Helper;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class MailboxDispatcherTest {
+
+    @Nested
+    class Pool {
+
+        @Test
+        void invalidThreadCount() {
+            assertThrows(IllegalArgumentException.class, () -> MailboxDispatcher.pool(0));
+        }
+    }
+
+    @Nested
+    class Dispatch {
+
+        @Test
+        void orderPerSession() throws InterruptedException {
+            try (MailboxDispatcher dispatcher = MailboxDispatcher.pool(4)) {
+                SessionManager sm = new SessionManagerTest.TestSessionManager();
+                sm.setMessageDispatcher(dispatcher);
+                Map<PlayerId, List<Integer>> received = new ConcurrentHashMap<>();
+                CountDownLatch done = new CountDownLatch(10 * 500);
+                sm.addSessionListener((s, m) -> {
+                    received.computeIfAbsent(s.getPlayer(), p -> Collections.synchronizedList(new ArrayList<>())).add(m.command);
+                    done.countDown();
+                });
+                List<Session> sessions = new ArrayList<>();
+                for (int i = 1; i <= 10; i++) {
+                    Session session = Helper.givenASession(PlayerId.valueOf(i));
+                    sm.setAuthenticated(session);
+                    sessions.add(session);
+                }
+                for (int command = 0; command < 500; command++) {
+                    for (Session session : sessions) {
+                        sm.messageReceived(session, new MessageWrapper(command + "_abc"));
+                    }
+                }
+                assertTrue(done.await(10, TimeUnit.SECONDS));
+                for (Session session : sessions) {
+                    List<Integer> commands = received.get(session.getPlayer());
+                    for (int command = 0; command < 500; command++) {
+                        assertEquals(command, commands.get(command));
+                    }
+                    assertEquals(500, session.getMailbox().getDispatchedCount());
+                    assertEquals(0, session.getMailbox().getQueueDepth());
+                }
+            }
+        }
+
+        @Test
+        void slowSessionDoesNotBlockOthers() throws InterruptedException {
+            try (MailboxDispatcher dispatcher = MailboxDispatcher.pool(2)) {
+                SessionManager sm = new SessionManagerTest.TestSessionManager();
+                sm.setMessageDispatcher(dispatcher);
+                CountDownLatch release = new CountDownLatch(1);
+                CountDownLatch slowStarted = new CountDownLatch(1);
+                CountDownLatch fastDone = new CountDownLatch(3);
+                Session slow = Helper.givenASession(PlayerId.valueOf(1));
+                Session fast = Helper.givenASession(PlayerId.valueOf(2));
+                sm.addSessionListener((s, m) -> {
+                    if (s == slow) {
+                        slowStarted.countDown();
+                        awaitQuietly(release);
+                    } else {
+                        fastDone.countDown();
+                    }
+                });
+                sm.setAuthenticated(slow);
+                sm.setAuthenticated(fast);
+                sm.messageReceived(slow, new MessageWrapper("1_a"));
+                sm.messageReceived(slow, new MessageWrapper("1_b"));
+                for (int i = 0; i < 3; i++) {
+                    sm.messageReceived(fast, new MessageWrapper("1_c"));
+                }
+                assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+                assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+                assertEquals(1, slow.getMailbox().getQueueDepth());
+                release.countDown();
+            }
+        }
+
+        @Test
+        void latency() throws InterruptedException {
+            try (MailboxDispatcher dispatcher = MailboxDispatcher.virtualThreads()) {
+                SessionManager sm = new SessionManagerTest.TestSessionManager();
+                sm.setMessageDispatcher(dispatcher);
+                CountDownLatch done = new CountDownLatch(2);
+                sm.addSessionListener((s, m) -> done.countDown());
+                Session session = Helper.givenASession(PlayerId.valueOf(1));
+                sm.setAuthenticated(session);
+                sm.messageReceived(session, new MessageWrapper("1_a"));
+                sm.messageReceived(session, new MessageWrapper("1_b"));
+                assertTrue(done.await(5, TimeUnit.SECONDS));
+                Mailbox mailbox = session.getMailbox();
+                assertNotNull(mailbox);
+                assertTrue(mailbox.getMaxLatency() >= mailbox.getAverageLatency());
+                assertTrue(mailbox.getMaxQueueDepth() >= 1);
+            }
+        }
+
+        @Test
+        void withoutDispatcher() {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            List<MessageWrapper> received = new ArrayList<>();
+            sm.addSessionListener((s, m) -> received.add(m));
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            sm.setAuthenticated(session);
+            sm.messageReceived(session, new MessageWrapper("1_a"));
+            assertEquals(1, received.size());
+            assertNull(session.getMailbox());
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class OutboundQueueTest {
+
+    @Nested
+    class Limits {
+
+        @Test
+        void invalid() {
+            assertThrows(IllegalArgumentException.class, () -> new OutboundLimits(-1, 10, 20, OverflowPolicy.DROP_NEWEST));
+            assertThrows(IllegalArgumentException.class, () -> new OutboundLimits(20, 10, 30, OverflowPolicy.DROP_NEWEST));
+            assertThrows(IllegalArgumentException.class, () -> new OutboundLimits(5, 10, 8, OverflowPolicy.DROP_NEWEST));
+            assertThrows(NullPointerException.class, () -> new OutboundLimits(5, 10, 20, null));
+        }
+    }
+
+    @Nested
+    class Writability {
+
+        @Test
+        void happyFlow() {
+            TestSession session = givenASession(new OutboundLimits(10, 20, 100, OverflowPolicy.DROP_NEWEST));
+            List<Boolean> changes = new ArrayList<>();
+            SessionManager sm = givenASessionManager(session, changes);
+            OutboundQueue queue = session.getOutboundQueue();
+            queue.offer(bytes(15));
+            assertTrue(session.isWritable());
+            queue.offer(bytes(15));
+            assertFalse(session.isWritable());
+            assertEquals(List.of(false), changes);
+            Deque<ByteBuffer> writing = new ArrayDeque<>();
+            queue.drainTo(writing, 10);
+            assertEquals(2, writing.size());
+            assertEquals(30, queue.getPendingBytes());
+            queue.written(15);
+            assertFalse(session.isWritable());
+            queue.written(10);
+            assertTrue(session.isWritable());
+            assertEquals(List.of(false, true), changes);
+            sm.disconnectSession(session);
+        }
+
+        @Test
+        void notAuthenticatedNotNotified() {
+            TestSession session = givenASession(new OutboundLimits(10, 20, 100, OverflowPolicy.DROP_NEWEST));
+            session.getOutboundQueue().offer(bytes(30));
+            assertFalse(session.isWritable());
+        }
+
+        @Test
+        void unboundedByDefault() {
+            TestSession session = new TestSession();
+            session.getOutboundQueue().offer(bytes(10_000_000));
+            assertTrue(session.isWritable());
+        }
+    }
+
+    @Nested
+    class Overflow {
+
+        @Test
+        void dropNewest() {
+            TestSession session = givenASession(new OutboundLimits(10, 20, 30, OverflowPolicy.DROP_NEWEST));
+            OutboundQueue queue = session.getOutboundQueue();
+            ByteBuffer first = bytes(20);
+            assertTrue(queue.offer(first));
+            assertFalse(queue.offer(bytes(20)));
+            assertEquals(1, queue.getDroppedCount());
+            assertEquals(20, queue.getPendingBytes());
+            assertSame(first, queue.poll());
+            assertFalse(session.closed);
+        }
+
+        @Test
+        void dropOldest() {
+            TestSession session = givenASession(new OutboundLimits(10, 20, 30, OverflowPolicy.DROP_OLDEST));
+            OutboundQueue queue = session.getOutboundQueue();
+            queue.offer(bytes(10));
+            queue.offer(bytes(10));
+            ByteBuffer last = bytes(20);
+            assertTrue(queue.offer(last));
+            assertEquals(1, queue.getDroppedCount());
+            assertEquals(30, queue.getPendingBytes());
+            queue.poll();
+            assertSame(last, queue.poll());
+        }
+
+        @Test
+        void dropOldestKeepsBuffersBeingWritten() {
+            TestSession session = givenASession(new OutboundLimits(10, 20, 30, OverflowPolicy.DROP_OLDEST));
+            OutboundQueue queue = session.getOutboundQueue();
+            queue.offer(bytes(25));
+            queue.poll();
+            assertFalse(queue.offer(bytes(10)));
+            assertEquals(25, queue.getPendingBytes());
+        }
+
+        @Test
+        void disconnect() {
+            TestSession session = givenASession(new OutboundLimits(10, 20, 30, OverflowPolicy.DISCONNECT));
+            OutboundQueue queue = session.getOutboundQueue();
+            queue.offer(bytes(20));
+            assertFalse(queue.offer(bytes(20)));
+            assertTrue(session.closed);
+        }
+    }
+
+    private static TestSession givenASession(OutboundLimits limits) {
+        TestSession session = new TestSession();
+        session.setOutboundLimits(limits);
+        return session;
+    }
+
+    private static SessionManager givenASessionManager(Session session, List<Boolean> changes) {
+        SessionManager sm = new SessionManagerTest.TestSessionManager();
+        sm.addSessionListener(new SessionListener() {
+            @Override
+            public void messageReceived(Session s, MessageWrapper message) {
+                //does nothing
+            }
+
+            @Override
+            public void writabilityChanged(Session s, boolean writable) {
+                changes.add(writable);
+            }
+        });
+        sm.setAuthenticated(session);
+        return sm;
+    }
+
+    private static ByteBuffer bytes(int size) {
+        return ByteBuffer.allocate(size);
+    }
+
+    private static final class TestSession extends Session {
+
+        private boolean closed;
+
+        private TestSession() {
+            super(PlayerId.valueOf(1));
+        }
+
+        @Override
+        protected void closeSession() {
+            this.closed = true;
+        }
+
+        @Override
+        public void sendMessage(String message) {
+            this.getOutboundQueue().offer(ByteBuffer.wrap(message.getBytes()));
+        }
+    }
+}
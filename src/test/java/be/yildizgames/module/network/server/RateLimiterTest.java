@@ -0,0 +1,277 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.Helper;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class RateLimiterTest {
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void invalidCapacity() {
+            assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 10, RateLimitAction.DROP));
+        }
+
+        @Test
+        void invalidRate() {
+            assertThrows(IllegalArgumentException.class, () -> new RateLimiter(10, 0, RateLimitAction.DROP));
+        }
+
+        @Test
+        void nullAction() {
+            assertThrows(NullPointerException.class, () -> new RateLimiter(10, 10, null));
+        }
+    }
+
+    @Nested
+    class WithCost {
+
+        @Test
+        void happyFlow() {
+            RateLimiter limiter = new RateLimiter(10, 10, RateLimitAction.DROP).withCost(5, 3).withDefaultCost(2);
+            assertEquals(3, limiter.getCost(5));
+            assertEquals(2, limiter.getCost(4));
+            assertEquals(2, limiter.getCost(6));
+            assertEquals(2, limiter.getCost(-1));
+        }
+
+        @Test
+        void aboveCapacity() {
+            RateLimiter limiter = new RateLimiter(10, 10, RateLimitAction.DROP);
+            assertThrows(IllegalArgumentException.class, () -> limiter.withCost(1, 11));
+        }
+
+        @Test
+        void negativeCommand() {
+            RateLimiter limiter = new RateLimiter(10, 10, RateLimitAction.DROP);
+            assertThrows(IllegalArgumentException.class, () -> limiter.withCost(-1, 1));
+        }
+    }
+
+    @Nested
+    class Admit {
+
+        @Test
+        void noLimiter() {
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(session.admit(1, System.nanoTime()));
+            }
+        }
+
+        @Test
+        void dropAboveCapacity() {
+            RateLimiter limiter = new RateLimiter(10, 1, RateLimitAction.DROP).withCost(2, 5);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            session.setRateLimiter(limiter);
+            assertTrue(session.admit(2, System.nanoTime()));
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertFalse(session.admit(2, System.nanoTime()));
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertFalse(session.admit(1, System.nanoTime()));
+            assertEquals(1, limiter.getLimitedCount(2));
+            assertEquals(1, limiter.getLimitedCount(1));
+            assertEquals(2, session.getRateLimitedCount());
+            assertTrue(session.isConnected());
+        }
+
+        @Test
+        void freeCommand() {
+            RateLimiter limiter = new RateLimiter(1, 1, RateLimitAction.DROP).withCost(3, 0);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            session.setRateLimiter(limiter);
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertFalse(session.admit(1, System.nanoTime()));
+            for (int i = 0; i < 100; i++) {
+                assertTrue(session.admit(3, System.nanoTime()));
+            }
+        }
+
+        @Test
+        void refilled() throws InterruptedException {
+            RateLimiter limiter = new RateLimiter(2, 100, RateLimitAction.DROP);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            session.setRateLimiter(limiter);
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertFalse(session.admit(1, System.nanoTime()));
+            Thread.sleep(30);
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertTrue(session.admit(1, System.nanoTime()));
+        }
+
+        @Test
+        void bucketPerSession() {
+            RateLimiter limiter = new RateLimiter(1, 1, RateLimitAction.DROP);
+            Session first = Helper.givenASession(PlayerId.valueOf(1));
+            Session second = Helper.givenASession(PlayerId.valueOf(2));
+            first.setRateLimiter(limiter);
+            second.setRateLimiter(limiter);
+            assertTrue(first.admit(1, System.nanoTime()));
+            assertFalse(first.admit(1, System.nanoTime()));
+            assertTrue(second.admit(1, System.nanoTime()));
+        }
+
+        @Test
+        void delay() {
+            RateLimiter limiter = new RateLimiter(2, 10, RateLimitAction.DELAY);
+            PausedSession session = new PausedSession();
+            session.setRateLimiter(limiter);
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertEquals(0, session.pause);
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertTrue(session.pause > 0 && session.pause <= 100_000_000L);
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertTrue(session.pause > 100_000_000L && session.pause <= 200_000_000L);
+            assertEquals(2, limiter.getLimitedCount(1));
+        }
+
+        @Test
+        void disconnect() {
+            RateLimiter limiter = new RateLimiter(1, 1, RateLimitAction.DISCONNECT);
+            PausedSession session = new PausedSession();
+            session.setRateLimiter(limiter);
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertFalse(session.admit(1, System.nanoTime()));
+            assertTrue(session.closed);
+            assertFalse(session.isConnected());
+            assertFalse(session.admit(2, System.nanoTime()));
+            assertEquals(1, limiter.getLimitedCount(1));
+            assertEquals(1, session.getRateLimitedCount());
+        }
+
+        @Test
+        void disconnectRemovedFromSessionManager() {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            List<Session> closed = new ArrayList<>();
+            sm.addSessionListener(new SessionListener() {
+                @Override
+                public void messageReceived(Session session, MessageWrapper message) {
+                    //does nothing
+                }
+
+                @Override
+                public void sessionClosed(Session session) {
+                    closed.add(session);
+                }
+            });
+            PausedSession session = new PausedSession();
+            session.setRateLimiter(new RateLimiter(1, 1, RateLimitAction.DISCONNECT));
+            sm.setAuthenticated(session);
+            assertTrue(session.admit(1, System.nanoTime()));
+            assertFalse(session.admit(1, System.nanoTime()));
+            assertFalse(session.isConnected());
+            assertFalse(session.isAuthenticated());
+            assertTrue(sm.getActivePlayers().isEmpty());
+            assertEquals(List.of(session), closed);
+        }
+    }
+
+    @Nested
+    class Cost {
+
+        private static final System.Logger LOGGER = System.getLogger(RateLimiterTest.class.getName());
+
+        private static final int MESSAGES = 10_000_000;
+
+        /**
+         * Number of messages per read.
+         */
+        private static final int READ = 16;
+
+        @Test
+        void nanosecondsPerMessage() {
+            RateLimiter limiter = new RateLimiter(1_000_000_000L, 1_000_000_000L, RateLimitAction.DROP).withCost(5, 2);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            session.setRateLimiter(limiter);
+            int admitted = this.run(session);
+            long begin = System.nanoTime();
+            admitted += this.run(session);
+            long elapsed = System.nanoTime() - begin;
+            assertEquals(2 * MESSAGES, admitted);
+            LOGGER.log(System.Logger.Level.INFO, "Rate limit check: {0} ns per message, reading the time once per {1} messages.",
+                    (double) elapsed / MESSAGES, READ);
+        }
+
+        /**
+         * Check the messages by reads of several messages, as done by the handler.
+         */
+        private int run(Session session) {
+            int admitted = 0;
+            for (int i = 0; i < MESSAGES; i += READ) {
+                long now = System.nanoTime();
+                for (int j = i; j < i + READ; j++) {
+                    admitted += session.admit(j & 7, now) ? 1 : 0;
+                }
+            }
+            return admitted;
+        }
+    }
+
+    /**
+     * Session recording the pauses and the closing.
+     */
+    private static final class PausedSession extends Helper.SessionWrapper {
+
+        private long pause;
+
+        private boolean closed;
+
+        private PausedSession() {
+            super(PlayerId.valueOf(1));
+        }
+
+        @Override
+        protected void pauseReading(long nanos) {
+            this.pause = nanos;
+        }
+
+        @Override
+        protected void closeSession() {
+            this.closed = true;
+        }
+    }
+}
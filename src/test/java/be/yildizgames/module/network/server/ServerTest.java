@@ -0,0 +1,93 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.module.network.exceptions.NetworkException;
+import be.yildizgames.module.network.server.nio.BlockingServer;
+import be.yildizgames.module.network.server.dummy.DummyServer;
+import be.yildizgames.module.network.server.dummy.DummyServerProvider;
+import be.yildizgames.module.network.server.nio.NioServer;
+import be.yildizgames.module.network.server.nio.NioServerProvider;
+import be.yildizgames.module.network.server.nio.VirtualThreadServerProvider;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class ServerTest {
+
+    @Nested
+    class GetEngine {
+
+        @Test
+        void byName() {
+            assertTrue(Server.getEngine("nio") instanceof NioServer);
+            assertTrue(Server.getEngine("virtual-thread") instanceof BlockingServer);
+        }
+
+        @Test
+        void byProperty() {
+            System.setProperty(Server.PROVIDER_PROPERTY, "virtual-thread");
+            try {
+                assertTrue(Server.getEngine() instanceof BlockingServer);
+            } finally {
+                System.clearProperty(Server.PROVIDER_PROPERTY);
+            }
+        }
+
+        @Test
+        void unknownName() {
+            assertThrows(NetworkException.class, () -> Server.getEngine("unknown"));
+        }
+
+        @Test
+        void withoutPropertyBundledProvidersSkipped() {
+            assertTrue(Server.getEngine() instanceof DummyServer);
+        }
+
+        @Test
+        void withoutPropertyThirdPartyProviderPreferred() {
+            ServerProvider thirdParty = new ThirdPartyProvider();
+            assertSame(thirdParty, Server.select(List.of(new NioServerProvider(), thirdParty, new VirtualThreadServerProvider())));
+            assertSame(thirdParty, Server.select(List.of(thirdParty, new NioServerProvider())));
+            assertTrue(Server.select(List.of(new NioServerProvider(), new VirtualThreadServerProvider())) instanceof DummyServerProvider);
+        }
+    }
+
+    private static final class ThirdPartyProvider implements ServerProvider {
+
+        @Override
+        public Server getEngine() {
+            return new DummyServer();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.Helper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class SessionIndexTest {
+
+    @Nested
+    class Put {
+
+        @Test
+        void happyFlow() {
+            SessionIndex index = new SessionIndex();
+            Session session = Helper.givenASession(PlayerId.valueOf(5));
+            assertNull(index.put(session));
+            assertSame(session, index.get(5));
+            assertEquals(1, index.size());
+        }
+
+        @Test
+        void replace() {
+            SessionIndex index = new SessionIndex();
+            Session old = Helper.givenASession(PlayerId.valueOf(5));
+            Session current = Helper.givenASession(PlayerId.valueOf(5));
+            index.put(old);
+            long version = index.getVersion();
+            assertSame(old, index.put(current));
+            assertSame(current, index.get(5));
+            assertEquals(1, index.size());
+            assertTrue(index.getVersion() > version);
+        }
+
+        @Test
+        void highId() {
+            SessionIndex index = new SessionIndex();
+            Session session = Helper.givenASession(PlayerId.valueOf(Integer.MAX_VALUE));
+            index.put(session);
+            assertSame(session, index.get(Integer.MAX_VALUE));
+            assertNull(index.get(Integer.MAX_VALUE - 1));
+            assertEquals(List.of(session), index.toList());
+        }
+
+        @Test
+        void sparseId() {
+            SessionIndex index = new SessionIndex();
+            Session dense = Helper.givenASession(PlayerId.valueOf(5));
+            Session sparse = Helper.givenASession(PlayerId.valueOf(1_000_000_000));
+            Session replacing = Helper.givenASession(PlayerId.valueOf(1_000_000_000));
+            index.put(dense);
+            index.put(sparse);
+            assertSame(sparse, index.get(1_000_000_000));
+            assertTrue(index.getMemoryUsage() < 16 * 1024, "Memory usage: " + index.getMemoryUsage());
+            assertEquals(List.of(sparse, dense), index.toList());
+            assertSame(sparse, index.put(replacing));
+            assertEquals(2, index.size());
+            assertFalse(index.remove(sparse));
+            assertTrue(index.remove(replacing));
+            assertNull(index.get(1_000_000_000));
+            assertEquals(List.of(dense), index.toList());
+        }
+
+        @Test
+        void pagedBound() {
+            SessionIndex index = new SessionIndex();
+            Session last = Helper.givenASession(PlayerId.valueOf(SessionIndex.MAX_PAGED_ID - 1));
+            Session first = Helper.givenASession(PlayerId.valueOf(SessionIndex.MAX_PAGED_ID));
+            index.put(last);
+            index.put(first);
+            assertSame(last, index.get(SessionIndex.MAX_PAGED_ID - 1));
+            assertSame(first, index.get(SessionIndex.MAX_PAGED_ID));
+            assertEquals(2, index.size());
+        }
+
+        @Test
+        void negativeId() {
+            SessionIndex index = new SessionIndex();
+            Session session = Helper.givenASession(PlayerId.valueOf(-3));
+            index.put(session);
+            assertSame(session, index.get(-3));
+            assertNull(index.get(-4));
+            assertTrue(index.remove(session));
+            assertNull(index.get(-3));
+        }
+    }
+
+    @Nested
+    class Remove {
+
+        @Test
+        void happyFlow() {
+            SessionIndex index = new SessionIndex();
+            Session session = Helper.givenASession(PlayerId.valueOf(5));
+            index.put(session);
+            assertTrue(index.remove(session));
+            assertNull(index.get(5));
+            assertEquals(0, index.size());
+        }
+
+        @Test
+        void replacedSession() {
+            SessionIndex index = new SessionIndex();
+            Session old = Helper.givenASession(PlayerId.valueOf(5));
+            Session current = Helper.givenASession(PlayerId.valueOf(5));
+            index.put(old);
+            index.put(current);
+            assertFalse(index.remove(old));
+            assertSame(current, index.get(5));
+        }
+
+        @Test
+        void notPresent() {
+            SessionIndex index = new SessionIndex();
+            assertFalse(index.remove(Helper.givenASession(PlayerId.valueOf(5000))));
+        }
+    }
+
+    @Nested
+    class Iteration {
+
+        @Test
+        void inIdOrder() {
+            SessionIndex index = new SessionIndex();
+            Session s3000 = Helper.givenASession(PlayerId.valueOf(3000));
+            Session s2 = Helper.givenASession(PlayerId.valueOf(2));
+            Session s1 = Helper.givenASession(PlayerId.valueOf(1));
+            index.put(s3000);
+            index.put(s2);
+            index.put(s1);
+            List<Session> result = new ArrayList<>();
+            index.forEach(result::add);
+            assertEquals(List.of(s1, s2, s3000), result);
+        }
+
+        @Test
+        void players() {
+            SessionIndex index = new SessionIndex();
+            index.put(Helper.givenASession(PlayerId.valueOf(1)));
+            index.put(Helper.givenASession(PlayerId.valueOf(2000)));
+            assertEquals(2, index.players().size());
+            assertTrue(index.players().contains(PlayerId.valueOf(2000)));
+            assertFalse(index.players().contains(PlayerId.valueOf(2)));
+            assertThrows(UnsupportedOperationException.class, () -> index.players().add(PlayerId.valueOf(3)));
+        }
+    }
+
+    @Nested
+    class Benchmark {
+
+        private static final System.Logger LOGGER = System.getLogger(SessionIndexTest.class.getName());
+
+        private static final int LOOKUPS = 2_000_000;
+
+        @Test
+        void againstMap() {
+            for (int count : new int[]{1_000, 10_000, 100_000}) {
+                List<Session> sessions = new ArrayList<>(count);
+                PlayerId[] ids = new PlayerId[count];
+                for (int i = 0; i < count; i++) {
+                    ids[i] = PlayerId.valueOf(i + 1);
+                    sessions.add(Helper.givenASession(ids[i]));
+                }
+                long before = usedMemory();
+                SessionIndex index = new SessionIndex();
+                sessions.forEach(index::put);
+                long indexHeap = usedMemory() - before;
+                before = usedMemory();
+                Map<PlayerId, Session> map = new ConcurrentHashMap<>();
+                sessions.forEach(s -> map.put(s.getPlayer(), s));
+                long mapHeap = usedMemory() - before;
+                int found = 0;
+                long begin = System.nanoTime();
+                for (int i = 0; i < LOOKUPS; i++) {
+                    if (index.get(ids[i % count].value) != null) {
+                        found++;
+                    }
+                }
+                long indexTime = System.nanoTime() - begin;
+                begin = System.nanoTime();
+                for (int i = 0; i < LOOKUPS; i++) {
+                    if (map.get(ids[i % count]) != null) {
+                        found++;
+                    }
+                }
+                long mapTime = System.nanoTime() - begin;
+                assertEquals(2 * LOOKUPS, found);
+                assertEquals(count, index.size());
+                LOGGER.log(System.Logger.Level.INFO, "{0} sessions: index {1} ns/lookup {2} bytes (estimated {3}), map {4} ns/lookup {5} bytes.",
+                        count, (double) indexTime / LOOKUPS, indexHeap, index.getMemoryUsage(), (double) mapTime / LOOKUPS, mapHeap);
+            }
+        }
+
+        private long usedMemory() {
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+}
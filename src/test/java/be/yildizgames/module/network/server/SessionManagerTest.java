@@ -0,0 +1,376 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.Helper;
+import be.yildizgames.module.network.protocol.BinaryCodec;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class SessionManagerTest {
+
+    @Nested
+    class AddCommandHandler {
+
+        @Test
+        void decodedOnce() {
+            TestSessionManager sm = new TestSessionManager();
+            CountingMapper mapper = new CountingMapper();
+            List<String> first = new ArrayList<>();
+            List<String> second = new ArrayList<>();
+            sm.addCommandHandler(3, mapper, (s, dto) -> first.add(dto));
+            sm.addCommandHandler(3, mapper, (s, dto) -> second.add(dto));
+            Session session = givenAnAuthenticatedSession(sm);
+            sm.messageReceived(session, new MessageWrapper("3_abc"));
+            assertEquals(1, mapper.calls);
+            assertEquals(List.of("abc"), first);
+            assertSame(first.get(0), second.get(0));
+        }
+
+        @Test
+        void onlySubscribedCommand() {
+            TestSessionManager sm = new TestSessionManager();
+            CountingMapper mapper = new CountingMapper();
+            List<String> received = new ArrayList<>();
+            sm.addCommandHandler(3, mapper, (s, dto) -> received.add(dto));
+            Session session = givenAnAuthenticatedSession(sm);
+            sm.messageReceived(session, new MessageWrapper("4_abc"));
+            sm.messageReceived(session, new MessageWrapper("300_abc"));
+            assertEquals(0, mapper.calls);
+            assertEquals(0, received.size());
+        }
+
+        @Test
+        void listenersStillNotified() {
+            TestSessionManager sm = new TestSessionManager();
+            List<MessageWrapper> received = new ArrayList<>();
+            sm.addSessionListener((s, m) -> received.add(m));
+            sm.addCommandHandler(3, new CountingMapper(), (s, dto) -> {});
+            Session session = givenAnAuthenticatedSession(sm);
+            sm.messageReceived(session, new MessageWrapper("3_abc"));
+            sm.messageReceived(session, new MessageWrapper("4_abc"));
+            assertEquals(2, received.size());
+        }
+
+        @Test
+        void notAuthenticated() {
+            TestSessionManager sm = new TestSessionManager();
+            CountingMapper mapper = new CountingMapper();
+            sm.addCommandHandler(3, mapper, (s, dto) -> {});
+            sm.messageReceived(Helper.givenASession(PlayerId.valueOf(1)), new MessageWrapper("3_abc"));
+            assertEquals(0, mapper.calls);
+            assertEquals(1, sm.authenticationRequests);
+        }
+
+        @Test
+        void otherMapper() {
+            TestSessionManager sm = new TestSessionManager();
+            sm.addCommandHandler(3, new CountingMapper(), (s, dto) -> {});
+            assertThrows(IllegalArgumentException.class, () -> sm.addCommandHandler(3, new CountingMapper(), (s, dto) -> {}));
+        }
+
+        @Test
+        void negativeCommand() {
+            TestSessionManager sm = new TestSessionManager();
+            assertThrows(IllegalArgumentException.class, () -> sm.addCommandHandler(-1, new CountingMapper(), (s, dto) -> {}));
+        }
+
+        @Test
+        void commandAboveMaximum() {
+            TestSessionManager sm = new TestSessionManager();
+            sm.addCommandHandler(SessionManager.MAX_COMMAND, new CountingMapper(), (s, dto) -> {});
+            assertThrows(IllegalArgumentException.class, () -> sm.addCommandHandler(SessionManager.MAX_COMMAND + 1, new CountingMapper(), (s, dto) -> {}));
+            assertThrows(IllegalArgumentException.class, () -> sm.addCommandHandler(1_000_000_000, new CountingMapper(), (s, dto) -> {}));
+        }
+
+        @Test
+        void withNull() {
+            TestSessionManager sm = new TestSessionManager();
+            assertThrows(NullPointerException.class, () -> sm.addCommandHandler(1, null, (s, dto) -> {}));
+            assertThrows(NullPointerException.class, () -> sm.addCommandHandler(1, new CountingMapper(), null));
+        }
+    }
+
+    @Nested
+    class Broadcast {
+
+        @Test
+        void encodedOnce() {
+            TestSessionManager sm = new TestSessionManager();
+            Helper.SessionWrapper s1 = givenAnAuthenticatedSession(sm, 1);
+            Helper.SessionWrapper s2 = givenAnAuthenticatedSession(sm, 2);
+            int reached = sm.broadcast(new NetworkMessage<>("abc", new CountingMapper(), 3));
+            assertEquals(2, reached);
+            assertEquals("&3_abc#", s1.getMessage());
+            assertSame(s1.getMessage(), s2.getMessage());
+        }
+
+        @Test
+        void withFilter() {
+            TestSessionManager sm = new TestSessionManager();
+            Helper.SessionWrapper s1 = givenAnAuthenticatedSession(sm, 1);
+            Helper.SessionWrapper s2 = givenAnAuthenticatedSession(sm, 2);
+            int reached = sm.broadcast(new NetworkMessage<>("abc", new CountingMapper(), 3), s -> s.getPlayer().value == 2);
+            assertEquals(1, reached);
+            assertNull(s1.getMessage());
+            assertEquals("&3_abc#", s2.getMessage());
+        }
+
+        @Test
+        void withGroup() {
+            TestSessionManager sm = new TestSessionManager();
+            Helper.SessionWrapper s1 = givenAnAuthenticatedSession(sm, 1);
+            givenAnAuthenticatedSession(sm, 2);
+            int reached = sm.broadcast(new NetworkMessage<>("abc", new CountingMapper(), 3), List.of(PlayerId.valueOf(1), PlayerId.valueOf(8)));
+            assertEquals(1, reached);
+            assertEquals("&3_abc#", s1.getMessage());
+        }
+
+        @Test
+        void withBinarySession() {
+            TestSessionManager sm = new TestSessionManager();
+            Helper.SessionWrapper s1 = Helper.givenABinarySession(PlayerId.valueOf(1));
+            sm.setAuthenticated(s1);
+            NetworkMessage<String> message = new NetworkMessage<>("abc", new CountingMapper(), 3);
+            sm.broadcast(message);
+            assertEquals(BinaryCodec.encode(message), s1.getBinaryMessage());
+        }
+    }
+
+    @Nested
+    class Flush {
+
+        @Test
+        void happyFlow() {
+            TestSessionManager sm = new TestSessionManager();
+            Helper.SessionWrapper s1 = givenAnAuthenticatedSession(sm, 1);
+            Helper.SessionWrapper s2 = givenAnAuthenticatedSession(sm, 2);
+            s1.enableCoalescing(1024, Long.MAX_VALUE);
+            s2.enableCoalescing(1024, Long.MAX_VALUE);
+            for (int i = 0; i < 30; i++) {
+                sm.broadcast(new NetworkMessage<>("abc", new CountingMapper(), 3));
+            }
+            assertEquals(0, s1.getWrites());
+            sm.update();
+            assertEquals(1, s1.getWrites());
+            assertEquals(1, s2.getWrites());
+            assertEquals("&3_abc#".repeat(30), s1.getMessage());
+            assertEquals(30, s2.getMaxFramesPerFlush());
+        }
+    }
+
+    @Nested
+    class RemoveSessionListener {
+
+        @Test
+        void notNotifiedOnceRemoved() {
+            TestSessionManager sm = new TestSessionManager();
+            List<Session> authenticated = new ArrayList<>();
+            SessionListener listener = new SessionListener() {
+                @Override
+                public void messageReceived(Session session, MessageWrapper message) {
+                    //does nothing
+                }
+
+                @Override
+                public void clientAuthenticated(Session session) {
+                    authenticated.add(session);
+                }
+            };
+            sm.addSessionListener(listener);
+            Session first = givenAnAuthenticatedSession(sm, 1);
+            sm.removeSessionListener(listener);
+            givenAnAuthenticatedSession(sm, 2);
+            assertEquals(List.of(first), authenticated);
+        }
+    }
+
+    @Nested
+    class GetActiveSessions {
+
+        @Test
+        void snapshotReusedWhenUnchanged() {
+            TestSessionManager sm = new TestSessionManager();
+            givenAnAuthenticatedSession(sm, 1);
+            List<Session> first = sm.getActiveSessions();
+            assertSame(first, sm.getActiveSessions());
+            Helper.SessionWrapper s2 = givenAnAuthenticatedSession(sm, 2);
+            List<Session> second = sm.getActiveSessions();
+            assertNotSame(first, second);
+            assertEquals(2, second.size());
+            sm.disconnectSession(s2);
+            assertEquals(1, sm.getActiveSessions().size());
+        }
+
+        @Test
+        void replacedSessionNotRemoved() {
+            TestSessionManager sm = new TestSessionManager();
+            Helper.SessionWrapper old = givenAnAuthenticatedSession(sm, 1);
+            Helper.SessionWrapper current = givenAnAuthenticatedSession(sm, 1);
+            sm.disconnectSession(old);
+            assertSame(current, sm.getSessionByPlayer(PlayerId.valueOf(1)));
+        }
+    }
+
+    @Nested
+    class Concurrency {
+
+        private static final System.Logger LOGGER = System.getLogger(SessionManagerTest.class.getName());
+
+        private static final int WRITERS = 4;
+
+        private static final int READERS = 4;
+
+        private static final int PLAYERS_PER_WRITER = 32;
+
+        private static final int ROUNDS = 50;
+
+        @Test
+        void connectDisconnectWhileReading() throws Exception {
+            TestSessionManager sm = new TestSessionManager();
+            AtomicInteger dispatched = new AtomicInteger();
+            sm.addCommandHandler(3, new CountingMapper(), (s, dto) -> dispatched.incrementAndGet());
+            ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicBoolean writing = new AtomicBoolean(true);
+            AtomicInteger reads = new AtomicInteger();
+            List<Future<?>> writers = new ArrayList<>();
+            List<Future<?>> readers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int first = w * PLAYERS_PER_WRITER + 1;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        List<Session> sessions = new ArrayList<>();
+                        for (int p = first; p < first + PLAYERS_PER_WRITER; p++) {
+                            Helper.SessionWrapper session = Helper.givenASession(PlayerId.valueOf(p));
+                            sm.setAuthenticated(session);
+                            sm.messageReceived(session, new MessageWrapper("3_abc"));
+                            sessions.add(session);
+                        }
+                        sessions.forEach(sm::disconnectSession);
+                    }
+                    return null;
+                }));
+            }
+            for (int r = 0; r < READERS; r++) {
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    while (writing.get()) {
+                        for (Session session : sm.getActiveSessions()) {
+                            assertFalse(session.getPlayer() == PlayerId.WORLD);
+                        }
+                        sm.getSessionByPlayer(PlayerId.valueOf(reads.get() % (WRITERS * PLAYERS_PER_WRITER) + 1));
+                        sm.broadcast(new NetworkMessage<>("abc", new CountingMapper(), 3));
+                        reads.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> f : writers) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+            long elapsed = System.nanoTime() - begin;
+            writing.set(false);
+            for (Future<?> f : readers) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+            int operations = WRITERS * ROUNDS * PLAYERS_PER_WRITER;
+            assertEquals(operations, dispatched.get());
+            assertEquals(0, sm.getActivePlayers().size());
+            assertEquals(0, sm.getActiveSessions().size());
+            LOGGER.log(System.Logger.Level.INFO, "{0} connections and {1} reads in {2} ms, {3} connections/s.",
+                    operations, reads.get(), TimeUnit.NANOSECONDS.toMillis(elapsed), operations * 1_000_000_000L / Math.max(1, elapsed));
+        }
+    }
+
+    private static Helper.SessionWrapper givenAnAuthenticatedSession(SessionManager sm) {
+        return givenAnAuthenticatedSession(sm, 1);
+    }
+
+    private static Helper.SessionWrapper givenAnAuthenticatedSession(SessionManager sm, int player) {
+        Helper.SessionWrapper session = Helper.givenASession(PlayerId.valueOf(player));
+        sm.setAuthenticated(session);
+        return session;
+    }
+
+    static class TestSessionManager extends SessionManager {
+
+        int authenticationRequests;
+
+        @Override
+        protected void authenticate(Session session, MessageWrapper message) {
+            this.authenticationRequests++;
+        }
+
+        @Override
+        public void update() {
+            this.flush();
+        }
+    }
+
+    private static final class CountingMapper implements ObjectMapper<String> {
+
+        private int calls;
+
+        @Override
+        public String from(String s) {
+            this.calls++;
+            return new String(s);
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    }
+}
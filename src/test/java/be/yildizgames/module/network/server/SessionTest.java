@@ -24,16 +24,23 @@
 
 package be.yildizgames.module.network.server;
 
+import be.yildizgames.common.mapping.ObjectMapper;
 import be.yildizgames.common.model.PlayerId;
 import be.yildizgames.module.network.Helper;
+import be.yildizgames.module.network.protocol.BinaryCodec;
+import be.yildizgames.module.network.protocol.EncodedMessage;
 import be.yildizgames.module.network.protocol.NetworkMessage;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -117,6 +124,73 @@ class SessionTest {
             assertEquals("someMessage", sw.getMessage());
         }
 
+        @Test
+        void withBinaryCodec() {
+            var sw = Helper.givenABinarySession(PlayerId.valueOf(5));
+            sw.sendMessage(new NetworkMessage<>("abc", new StringMapper(), 3));
+            assertNull(sw.getMessage());
+            assertEquals(BinaryCodec.encode(new NetworkMessage<>("abc", new StringMapper(), 3)), sw.getBinaryMessage());
+        }
+
+        @Test
+        void withStringCodec() {
+            var sw = Helper.givenASession(PlayerId.valueOf(5));
+            sw.sendMessage(new NetworkMessage<>("abc", new StringMapper(), 3));
+            assertEquals("&3_abc#", sw.getMessage());
+        }
+
+        @Test
+        void withCompression() {
+            var sw = Helper.givenASession(PlayerId.valueOf(5));
+            sw.enableCompression(10);
+            String payload = "abcdefghij".repeat(50);
+            sw.sendMessage(new NetworkMessage<>(payload, new StringMapper(), 3));
+            assertTrue(sw.getMessage().startsWith("&3~"));
+            var received = Helper.givenASession(PlayerId.valueOf(6));
+            String frame = sw.getMessage();
+            assertEquals(payload, received.getPayloadCompressor().toWrapper(frame, 1, frame.length() - 1).content);
+        }
+
+        @Test
+        void withCompressionDisconnectedWhileSending() throws InterruptedException {
+            var sw = Helper.givenASession(PlayerId.valueOf(5));
+            sw.enableCompression(10);
+            String payload = "abcdefghij".repeat(50);
+            List<Throwable> errors = new ArrayList<>();
+            Thread sender = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        sw.sendMessage(new NetworkMessage<>(payload, new StringMapper(), 3));
+                    }
+                } catch (RuntimeException e) {
+                    errors.add(e);
+                }
+            });
+            sender.start();
+            Thread.sleep(5);
+            sw.disconnect();
+            sender.join();
+            assertTrue(errors.isEmpty(), () -> errors.toString());
+            sw.sendMessage(new NetworkMessage<>(payload, new StringMapper(), 3));
+            assertEquals("&3_" + payload + "#", sw.getMessage());
+        }
+
+        @Test
+        void delta() {
+            var sw = Helper.givenASession(PlayerId.valueOf(5));
+            sw.sendDelta(new NetworkMessage<>("100@200@300", new StringMapper(), 3), 7);
+            assertEquals("&3!7!0!K!100@200@300#", sw.getMessage());
+            sw.sendDelta(new NetworkMessage<>("100@200@301", new StringMapper(), 3), 7);
+            assertEquals("&3!7!1!D!3@2@301#", sw.getMessage());
+        }
+
+        @Test
+        void deltaWithBinaryCodec() {
+            var sw = Helper.givenABinarySession(PlayerId.valueOf(5));
+            sw.sendDelta(new NetworkMessage<>("abc", new StringMapper(), 3), 7);
+            assertEquals(BinaryCodec.encode(new NetworkMessage<>("abc", new StringMapper(), 3)), sw.getBinaryMessage());
+        }
+
         @Test
         void withNullServerResponse() {
             var sw = Helper.givenASession(PlayerId.valueOf(5));
@@ -130,5 +204,166 @@ class SessionTest {
         }
     }
 
+    @Nested
+    class Coalescing {
+
+        @Test
+        void happyFlow() {
+            var sw = Helper.givenASession(PlayerId.valueOf(5));
+            sw.enableCoalescing(1024, Long.MAX_VALUE);
+            sw.sendMessage(new NetworkMessage<>("a", new StringMapper(), 1));
+            sw.sendMessage(new NetworkMessage<>("b", new StringMapper(), 2));
+            sw.sendMessage(EncodedMessage.of(new NetworkMessage<>("c", new StringMapper(), 3)));
+            assertEquals(0, sw.getWrites());
+            sw.flush();
+            assertEquals(1, sw.getWrites());
+            assertEquals("&1_a#&2_b#&3_c#", sw.getMessage());
+            assertEquals(1, sw.getFlushCount());
+            assertEquals(3, sw.getFlushedFrameCount());
+            assertEquals(3, sw.getMaxFramesPerFlush());
+        }
+
+        @Test
+        void flushWithoutPendingFrame() {
+            var sw = Helper.givenASession(PlayerId.valueOf(5));
+            sw.enableCoalescing(1024, Long.MAX_VALUE);
+            sw.flush();
+            assertEquals(0, sw.getWrites());
+            assertEquals(0, sw.getFlushCount());
+        }
 
-}
\ No newline at end of file
+        @Test
+        void byteThreshold() {
+            var sw = Helper.givenASession(PlayerId.valueOf(5));
+            sw.enableCoalescing(10, Long.MAX_VALUE);
+            sw.sendMessage(new NetworkMessage<>("abc", new StringMapper(), 1));
+            assertEquals(0, sw.getWrites());
+            sw.sendMessage(new NetworkMessage<>("def", new StringMapper(), 1));
+            assertEquals(1, sw.getWrites());
+            assertEquals("&1_abc#&1_def#", sw.getMessage());
+        }
+
+        @Test
+        void delayThreshold() {
+            var sw = Helper.givenASession(PlayerId.valueOf(5));
+            sw.enableCoalescing(1024, 1);
+            sw.sendMessage(new NetworkMessage<>("abc", new StringMapper(), 1));
+            sw.flushIfExpired();
+            assertEquals(1, sw.getWrites());
+        }
+
+        @Test
+        void binary() {
+            var sw = Helper.givenABinarySession(PlayerId.valueOf(5));
+            sw.enableCoalescing(1024, Long.MAX_VALUE);
+            sw.sendMessage(new NetworkMessage<>("abc", new StringMapper(), 1));
+            sw.sendMessage(new NetworkMessage<>("def", new StringMapper(), 2));
+            sw.flush();
+            assertEquals(1, sw.getWrites());
+            List<String> received = new ArrayList<>();
+            BinaryCodec.decode(sw.getBinaryMessage(), (c, p) -> received.add(BinaryCodec.toWrapper(c, p).message));
+            assertEquals(List.of("1_abc", "2_def"), received);
+        }
+
+        @Test
+        void disconnectDiscardsPending() {
+            var sw = Helper.givenASession(PlayerId.valueOf(5));
+            sw.enableCoalescing(1024, Long.MAX_VALUE);
+            sw.sendMessage(new NetworkMessage<>("abc", new StringMapper(), 1));
+            sw.disconnect();
+            sw.flush();
+            assertEquals(0, sw.getWrites());
+        }
+
+        @Test
+        void concurrentSends() throws InterruptedException {
+            StringBuilder received = new StringBuilder();
+            Session session = new Session(PlayerId.valueOf(5)) {
+                @Override
+                protected void closeSession() {
+                    //does nothing
+                }
+
+                @Override
+                public void sendMessage(String message) {
+                    synchronized (received) {
+                        received.append(message);
+                    }
+                }
+            };
+            session.enableCoalescing(256, Long.MAX_VALUE);
+            List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> senders = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int sender = t;
+                senders.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            session.sendMessage(new NetworkMessage<>(sender + "-" + i, new StringMapper(), 3));
+                            if (i % 100 == 0) {
+                                session.flush();
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        errors.add(e);
+                    }
+                }));
+            }
+            senders.forEach(Thread::start);
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            session.flush();
+            assertTrue(errors.isEmpty(), () -> errors.toString());
+            String[] frames = received.toString().split("#");
+            assertEquals(8000, frames.length);
+            int[] next = new int[4];
+            for (String frame : frames) {
+                String[] parts = frame.substring(3).split("-");
+                int sender = Integer.parseInt(parts[0]);
+                assertEquals("&3_", frame.substring(0, 3));
+                assertEquals(next[sender]++, Integer.parseInt(parts[1]));
+            }
+        }
+
+        @Test
+        void deltaDisconnectedWhileSending() throws InterruptedException {
+            var sw = Helper.givenASession(PlayerId.valueOf(5));
+            sw.enableCoalescing(256, Long.MAX_VALUE);
+            List<Throwable> errors = new ArrayList<>();
+            Thread sender = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        sw.sendDelta(new NetworkMessage<>("100@200@" + i, new StringMapper(), 3), i % 10);
+                    }
+                } catch (RuntimeException e) {
+                    errors.add(e);
+                }
+            });
+            sender.start();
+            Thread.sleep(5);
+            sw.disconnect();
+            sender.join();
+            assertTrue(errors.isEmpty(), () -> errors.toString());
+        }
+
+        @Test
+        void invalidThreshold() {
+            var sw = Helper.givenASession(PlayerId.valueOf(5));
+            assertThrows(IllegalArgumentException.class, () -> sw.enableCoalescing(0, 10));
+        }
+    }
+
+    private static final class StringMapper implements ObjectMapper<String> {
+
+        @Override
+        public String from(String s) {
+            return s;
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    }
+}
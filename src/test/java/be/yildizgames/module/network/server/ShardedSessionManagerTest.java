@@ -0,0 +1,288 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.Helper;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class ShardedSessionManagerTest {
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void invalidShardCount() {
+            assertThrows(IllegalArgumentException.class, () -> new TestShardedSessionManager(0));
+        }
+    }
+
+    @Nested
+    class Affinity {
+
+        @Test
+        void happyFlow() {
+            try (TestShardedSessionManager sm = new TestShardedSessionManager(4)) {
+                assertSame(sm.getShard(1), sm.getShard(PlayerId.valueOf(5)));
+                assertSame(sm.getShard(3), sm.getShard(PlayerId.valueOf(-1)));
+                assertEquals(4, sm.getShardCount());
+            }
+        }
+    }
+
+    @Nested
+    class Routing {
+
+        @Test
+        void messagesProcessedInOrderByShardThread() throws InterruptedException {
+            try (TestShardedSessionManager sm = new TestShardedSessionManager(2)) {
+                List<String> received = Collections.synchronizedList(new ArrayList<>());
+                List<String> threads = Collections.synchronizedList(new ArrayList<>());
+                CountDownLatch done = new CountDownLatch(100);
+                sm.getShard(1).addSessionListener((s, m) -> {
+                    received.add(m.content);
+                    threads.add(Thread.currentThread().getName());
+                    done.countDown();
+                });
+                Session session = givenAnAuthenticatedSession(sm, 3);
+                for (int i = 0; i < 100; i++) {
+                    sm.messageReceived(session, new MessageWrapper("1_" + i));
+                }
+                assertTrue(done.await(5, TimeUnit.SECONDS));
+                for (int i = 0; i < 100; i++) {
+                    assertEquals(String.valueOf(i), received.get(i));
+                    assertEquals("network-shard-1", threads.get(i));
+                }
+                assertTrue(sm.getShard(1).getActivePlayers().contains(PlayerId.valueOf(3)));
+                assertTrue(sm.getShard(0).getActivePlayers().isEmpty());
+            }
+        }
+
+        @Test
+        void disconnection() throws InterruptedException {
+            try (TestShardedSessionManager sm = new TestShardedSessionManager(2)) {
+                CountDownLatch closed = new CountDownLatch(1);
+                sm.getShard(0).addSessionListener(new SessionListener() {
+                    @Override
+                    public void messageReceived(Session session, MessageWrapper message) {
+                        //does nothing
+                    }
+
+                    @Override
+                    public void sessionClosed(Session session) {
+                        closed.countDown();
+                    }
+                });
+                Session session = givenAnAuthenticatedSession(sm, 2);
+                sm.disconnectSession(session);
+                assertTrue(closed.await(5, TimeUnit.SECONDS));
+                assertTrue(sm.getShard(0).getActivePlayers().isEmpty());
+                assertTrue(sm.getActivePlayers().isEmpty());
+            }
+        }
+
+        @Test
+        void sendAndPublish() throws InterruptedException {
+            try (TestShardedSessionManager sm = new TestShardedSessionManager(2)) {
+                Helper.SessionWrapper s1 = givenAnAuthenticatedSession(sm, 1);
+                Helper.SessionWrapper s2 = givenAnAuthenticatedSession(sm, 2);
+                sm.send(PlayerId.valueOf(1), new NetworkMessage<>("abc", TestShardedSessionManager.MAPPER, 3));
+                CountDownLatch done = new CountDownLatch(2);
+                sm.execute(PlayerId.valueOf(1), done::countDown);
+                sm.execute(PlayerId.valueOf(2), done::countDown);
+                assertTrue(done.await(5, TimeUnit.SECONDS));
+                assertEquals("&3_abc#", s1.getMessage());
+                sm.publish(new NetworkMessage<>("def", TestShardedSessionManager.MAPPER, 4));
+                CountDownLatch published = new CountDownLatch(2);
+                sm.execute(PlayerId.valueOf(1), published::countDown);
+                sm.execute(PlayerId.valueOf(2), published::countDown);
+                assertTrue(published.await(5, TimeUnit.SECONDS));
+                assertEquals("&4_def#", s1.getMessage());
+                assertEquals("&4_def#", s2.getMessage());
+            }
+        }
+
+        @Test
+        void broadcastSentFromShardThreads() throws InterruptedException {
+            try (TestShardedSessionManager sm = new TestShardedSessionManager(2)) {
+                Helper.SessionWrapper s1 = givenAnAuthenticatedSession(sm, 1);
+                Helper.SessionWrapper s2 = givenAnAuthenticatedSession(sm, 2);
+                CountDownLatch release = new CountDownLatch(1);
+                sm.execute(PlayerId.valueOf(1), () -> awaitQuietly(release));
+                sm.execute(PlayerId.valueOf(2), () -> awaitQuietly(release));
+                assertEquals(1, sm.broadcast(new NetworkMessage<>("abc", TestShardedSessionManager.MAPPER, 3), s -> s.getPlayer().value == 2));
+                assertEquals(1, sm.broadcast(new NetworkMessage<>("def", TestShardedSessionManager.MAPPER, 4), List.of(PlayerId.valueOf(1), PlayerId.valueOf(7))));
+                assertNull(s1.getMessage());
+                assertNull(s2.getMessage());
+                release.countDown();
+                CountDownLatch done = new CountDownLatch(2);
+                sm.execute(PlayerId.valueOf(1), done::countDown);
+                sm.execute(PlayerId.valueOf(2), done::countDown);
+                assertTrue(done.await(5, TimeUnit.SECONDS));
+                assertEquals("&4_def#", s1.getMessage());
+                assertEquals("&3_abc#", s2.getMessage());
+            }
+        }
+    }
+
+    @Nested
+    class Start {
+
+        @Test
+        void coalescedFramesFlushedAfterShardUpdate() throws InterruptedException {
+            try (TestShardedSessionManager sm = new TestShardedSessionManager(2)) {
+                Helper.SessionWrapper session = givenAnAuthenticatedSession(sm, 1);
+                session.enableCoalescing(65536, TimeUnit.SECONDS.toNanos(10));
+                sm.start(5);
+                sm.send(PlayerId.valueOf(1), new NetworkMessage<>("abc", TestShardedSessionManager.MAPPER, 3));
+                long end = System.currentTimeMillis() + 5000;
+                while (session.getFlushCount() == 0) {
+                    assertTrue(System.currentTimeMillis() < end);
+                    Thread.sleep(5);
+                }
+                assertEquals("&3_abc#", session.getMessage());
+            }
+        }
+
+        @Test
+        void shardsUpdated() throws InterruptedException {
+            try (TestShardedSessionManager sm = new TestShardedSessionManager(2)) {
+                sm.start(5);
+                long end = System.currentTimeMillis() + 5000;
+                while (sm.getShardUpdateCount(0) < 3 || sm.getShardUpdateCount(1) < 3) {
+                    assertTrue(System.currentTimeMillis() < end);
+                    Thread.sleep(5);
+                }
+            }
+        }
+    }
+
+    @Nested
+    class Scaling {
+
+        private static final System.Logger LOGGER = System.getLogger(ShardedSessionManagerTest.class.getName());
+
+        private static final int SESSIONS = 64;
+
+        private static final int MESSAGES = 100;
+
+        @Test
+        void oneToSixteenShards() throws InterruptedException {
+            for (int shards : new int[]{1, 2, 4, 8, 16}) {
+                try (TestShardedSessionManager sm = new TestShardedSessionManager(shards)) {
+                    CountDownLatch done = new CountDownLatch(SESSIONS * MESSAGES);
+                    for (int i = 0; i < shards; i++) {
+                        sm.getShard(i).addSessionListener((s, m) -> {
+                            work();
+                            done.countDown();
+                        });
+                    }
+                    List<Session> sessions = new ArrayList<>();
+                    for (int i = 1; i <= SESSIONS; i++) {
+                        sessions.add(givenAnAuthenticatedSession(sm, i));
+                    }
+                    long begin = System.nanoTime();
+                    for (int m = 0; m < MESSAGES; m++) {
+                        for (Session session : sessions) {
+                            sm.messageReceived(session, new MessageWrapper("1_a"));
+                        }
+                    }
+                    assertTrue(done.await(60, TimeUnit.SECONDS));
+                    long elapsed = System.nanoTime() - begin;
+                    LOGGER.log(System.Logger.Level.INFO, "{0} shards on {1} processors: {2} messages/s.",
+                            shards, Runtime.getRuntime().availableProcessors(), SESSIONS * MESSAGES * 1_000_000_000L / elapsed);
+                }
+            }
+        }
+
+        /**
+         * Busy work of about 20 microseconds, standing for the processing of a message.
+         */
+        private void work() {
+            long end = System.nanoTime() + 20_000;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Helper.SessionWrapper givenAnAuthenticatedSession(SessionManager sm, int player) {
+        Helper.SessionWrapper session = Helper.givenASession(PlayerId.valueOf(player));
+        sm.setAuthenticated(session);
+        return session;
+    }
+
+    private static final class TestShardedSessionManager extends ShardedSessionManager {
+
+        static final ObjectMapper<String> MAPPER = new ObjectMapper<>() {
+            @Override
+            public String from(String s) {
+                return s;
+            }
+
+            @Override
+            public String to(String s) {
+                return s;
+            }
+        };
+
+        private TestShardedSessionManager(int shards) {
+            super(shards, i -> new SessionManagerTest.TestSessionManager());
+        }
+
+        @Override
+        protected void authenticate(Session session, MessageWrapper message) {
+            session.setPlayer(PlayerId.valueOf(Integer.parseInt(message.content)));
+            this.setAuthenticated(session);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.Helper;
+import be.yildizgames.module.network.protocol.EncodedMessage;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class TickSchedulerTest {
+
+    private static final long BUDGET = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final ObjectMapper<String> MAPPER = new ObjectMapper<>() {
+        @Override
+        public String from(String s) {
+            return s;
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    };
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void invalidRate() {
+            assertThrows(IllegalArgumentException.class, () -> new TickScheduler(() -> {}, 0, BUDGET));
+            assertThrows(IllegalArgumentException.class, () -> new TickScheduler(() -> {}, 1001, BUDGET));
+        }
+
+        @Test
+        void invalidBudget() {
+            assertThrows(IllegalArgumentException.class, () -> new TickScheduler(() -> {}, 20, 0));
+        }
+
+        @Test
+        void invalidMaxBacklog() {
+            assertThrows(IllegalArgumentException.class, () -> new TickScheduler(() -> {}, 20, BUDGET, 0, BacklogPolicy.DISCONNECT));
+        }
+
+        @Test
+        void nullPolicy() {
+            assertThrows(NullPointerException.class, () -> new TickScheduler(() -> {}, 20, BUDGET, 10, null));
+        }
+
+        @Test
+        void nullUpdate() {
+            assertThrows(NullPointerException.class, () -> new TickScheduler(null, 20, BUDGET));
+        }
+
+        @Test
+        void period() {
+            assertEquals(50_000_000L, new TickScheduler(() -> {}, 20, BUDGET).getPeriod());
+        }
+    }
+
+    @Nested
+    class Tick {
+
+        @Test
+        void coalescedFramesFlushedAfterUpdate() {
+            Helper.SessionWrapper session = Helper.givenASession(PlayerId.valueOf(1));
+            session.enableCoalescing(65536, TimeUnit.SECONDS.toNanos(10));
+            SessionManager sm = new SessionManagerTest.TestSessionManager() {
+                @Override
+                public void update() {
+                    session.sendMessage(EncodedMessage.of(new NetworkMessage<>("abc", MAPPER, 3)));
+                }
+            };
+            sm.setAuthenticated(session);
+            TickScheduler scheduler = TickScheduler.of(sm, 20, BUDGET);
+            scheduler.tick();
+            assertEquals("&3_abc#", session.getMessage());
+            assertEquals(1, session.getFlushCount());
+        }
+
+        @Test
+        void messagesBeforeUpdate() {
+            List<String> events = new ArrayList<>();
+            TickScheduler scheduler = new TickScheduler(() -> events.add("update"), 20, BUDGET);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            scheduler.dispatch(session, () -> events.add("a"));
+            scheduler.dispatch(session, () -> events.add("b"));
+            assertEquals(2, scheduler.getBacklog());
+            scheduler.tick();
+            assertEquals(List.of("a", "b", "update"), events);
+            assertEquals(0, scheduler.getBacklog());
+            assertEquals(2, scheduler.getLastDispatched());
+            assertEquals(1, scheduler.getTickCount());
+        }
+
+        @Test
+        void budgetSpentCarriedOver() {
+            List<Integer> processed = new ArrayList<>();
+            TickScheduler scheduler = new TickScheduler(() -> {}, 20, BUDGET);
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            for (int i = 0; i < 40; i++) {
+                int value = i;
+                scheduler.dispatch(session, () -> {
+                    busyWait(BUDGET);
+                    processed.add(value);
+                });
+            }
+            scheduler.tick();
+            assertEquals(TickScheduler.BUDGET_CHECK_INTERVAL, scheduler.getLastDispatched());
+            assertEquals(40 - TickScheduler.BUDGET_CHECK_INTERVAL, scheduler.getBacklog());
+            assertTrue(scheduler.getLastDispatchDuration() >= BUDGET);
+            while (scheduler.getBacklog() > 0) {
+                scheduler.tick();
+            }
+            for (int i = 0; i < 40; i++) {
+                assertEquals(i, processed.get(i));
+            }
+        }
+
+        @Test
+        void overrun() {
+            TickScheduler scheduler = new TickScheduler(() -> busyWait(TimeUnit.MILLISECONDS.toNanos(3)), 1000, BUDGET);
+            scheduler.tick();
+            assertEquals(1, scheduler.getOverrunCount());
+            assertTrue(scheduler.getLastUpdateDuration() >= TimeUnit.MILLISECONDS.toNanos(3));
+            assertTrue(scheduler.getMaxTickDuration() >= TimeUnit.MILLISECONDS.toNanos(3));
+        }
+
+        @Test
+        void failingMessageDoesNotStopTick() {
+            AtomicInteger updates = new AtomicInteger();
+            TickScheduler scheduler = new TickScheduler(updates::incrementAndGet, 20, BUDGET);
+            scheduler.dispatch(Helper.givenASession(PlayerId.valueOf(1)), () -> {
+                throw new IllegalStateException("test");
+            });
+            scheduler.tick();
+            assertEquals(1, updates.get());
+        }
+    }
+
+    @Nested
+    class Backlog {
+
+        @Test
+        void fullPausesReading() {
+            List<Long> pauses = new ArrayList<>();
+            Session session = new Helper.SessionWrapper(PlayerId.valueOf(1)) {
+                @Override
+                protected void pauseReading(long nanos) {
+                    pauses.add(nanos);
+                }
+            };
+            TickScheduler scheduler = new TickScheduler(() -> {}, 20, BUDGET, 2, BacklogPolicy.PAUSE_READING);
+            scheduler.dispatch(session, () -> {});
+            scheduler.dispatch(session, () -> {});
+            assertTrue(pauses.isEmpty());
+            scheduler.dispatch(session, () -> {});
+            assertEquals(List.of(scheduler.getPeriod()), pauses);
+            assertEquals(3, scheduler.getBacklog());
+        }
+
+        @Test
+        void fullDisconnects() {
+            AtomicInteger closed = new AtomicInteger();
+            Session session = new Helper.SessionWrapper(PlayerId.valueOf(1)) {
+                @Override
+                protected void closeSession() {
+                    closed.incrementAndGet();
+                }
+            };
+            List<String> events = new ArrayList<>();
+            TickScheduler scheduler = new TickScheduler(() -> {}, 20, BUDGET, 1, BacklogPolicy.DISCONNECT);
+            scheduler.dispatch(session, () -> events.add("a"));
+            scheduler.dispatch(session, () -> events.add("b"));
+            assertEquals(1, closed.get());
+            assertEquals(1, scheduler.getBacklog());
+            scheduler.tick();
+            assertEquals(List.of("a"), events);
+        }
+
+        @Test
+        void fullDisconnectsOnce() {
+            AtomicInteger closed = new AtomicInteger();
+            Session session = new Helper.SessionWrapper(PlayerId.valueOf(1)) {
+                @Override
+                protected void closeSession() {
+                    closed.incrementAndGet();
+                }
+            };
+            TickScheduler scheduler = new TickScheduler(() -> {}, 20, BUDGET, 1, BacklogPolicy.DISCONNECT);
+            scheduler.dispatch(session, () -> {});
+            scheduler.dispatch(session, () -> {});
+            scheduler.dispatch(session, () -> {});
+            assertEquals(1, closed.get());
+            assertEquals(1, scheduler.getBacklog());
+        }
+
+        @Test
+        void fullDisconnectsThroughSessionManager() {
+            SessionManager sm = new SessionManagerTest.TestSessionManager();
+            List<Session> closed = new ArrayList<>();
+            sm.addSessionListener(new SessionListener() {
+                @Override
+                public void messageReceived(Session session, MessageWrapper message) {
+                    //does nothing
+                }
+
+                @Override
+                public void sessionClosed(Session session) {
+                    closed.add(session);
+                }
+            });
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            sm.setAuthenticated(session);
+            TickScheduler scheduler = new TickScheduler(() -> {}, 20, BUDGET, 1, BacklogPolicy.DISCONNECT);
+            scheduler.dispatch(session, () -> {});
+            scheduler.dispatch(session, () -> {});
+            assertFalse(session.isConnected());
+            assertTrue(sm.getActivePlayers().isEmpty());
+            assertEquals(List.of(session), closed);
+        }
+
+        @Test
+        void fullDisconnectsNeverExceeded() throws InterruptedException {
+            TickScheduler scheduler = new TickScheduler(() -> {}, 20, BUDGET, 100, BacklogPolicy.DISCONNECT);
+            AtomicInteger accepted = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int id = t;
+                threads.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        Session session = Helper.givenASession(PlayerId.valueOf(id * 1000 + i));
+                        scheduler.dispatch(session, () -> {});
+                        if (session.isConnected()) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(100, accepted.get());
+            assertEquals(100, scheduler.getBacklog());
+        }
+    }
+
+    @Nested
+    class Start {
+
+        @Test
+        void restartAfterClose() throws InterruptedException {
+            try (TickScheduler scheduler = new TickScheduler(() -> {}, 100, BUDGET)) {
+                scheduler.start();
+                scheduler.close();
+                scheduler.tick();
+                long ticks = scheduler.getTickCount();
+                scheduler.start();
+                long end = System.currentTimeMillis() + 5000;
+                while (scheduler.getTickCount() == ticks) {
+                    assertTrue(System.currentTimeMillis() < end);
+                    Thread.sleep(5);
+                }
+            }
+        }
+
+        @Test
+        void tickWhileStarted() {
+            try (TickScheduler scheduler = new TickScheduler(() -> {}, 100, BUDGET)) {
+                scheduler.start();
+                assertThrows(IllegalStateException.class, scheduler::tick);
+            }
+        }
+
+        private static final System.Logger LOGGER = System.getLogger(TickSchedulerTest.class.getName());
+
+        @Test
+        void sessionManagerDriven() throws InterruptedException {
+            AtomicInteger updates = new AtomicInteger();
+            AtomicInteger received = new AtomicInteger();
+            SessionManager sm = new SessionManagerTest.TestSessionManager() {
+                @Override
+                public void update() {
+                    updates.incrementAndGet();
+                }
+            };
+            sm.addSessionListener((session, message) -> received.incrementAndGet());
+            Session session = Helper.givenASession(PlayerId.valueOf(1));
+            sm.setAuthenticated(session);
+            try (TickScheduler scheduler = TickScheduler.of(sm, 100, BUDGET)) {
+                sm.messageReceived(session, new MessageWrapper("1_a"));
+                assertEquals(0, received.get());
+                scheduler.start();
+                assertThrows(IllegalStateException.class, scheduler::start);
+                Thread.sleep(300);
+                scheduler.close();
+                assertEquals(1, received.get());
+                long ticks = scheduler.getTickCount();
+                assertEquals(ticks, updates.get());
+                assertTrue(ticks >= 10 && ticks <= 32, "Unexpected tick count: " + ticks);
+                LOGGER.log(System.Logger.Level.INFO, "{0} ticks in 300 ms at 100 ticks per second, maximum jitter {1} microseconds.",
+                        ticks, scheduler.getMaxJitter() / 1000);
+            }
+        }
+    }
+
+    private static void busyWait(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+}
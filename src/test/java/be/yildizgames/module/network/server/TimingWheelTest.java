@@ -0,0 +1,167 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class TimingWheelTest {
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void invalidTick() {
+            assertThrows(IllegalArgumentException.class, () -> new TimingWheel(0, 8, 0));
+        }
+
+        @Test
+        void invalidSlots() {
+            assertThrows(IllegalArgumentException.class, () -> new TimingWheel(10, 0, 0));
+        }
+    }
+
+    @Nested
+    class Schedule {
+
+        @Test
+        void expiredAtDeadline() {
+            TimingWheel wheel = new TimingWheel(10, 8, 0);
+            TestTimeout timeout = new TestTimeout();
+            wheel.schedule(timeout, 35);
+            assertEquals(0, wheel.advance(39));
+            assertEquals(1, wheel.advance(40));
+            assertEquals(List.of(40L), timeout.expirations);
+            assertFalse(timeout.isScheduled());
+            assertEquals(0, wheel.size());
+        }
+
+        @Test
+        void fartherThanOneTurn() {
+            TimingWheel wheel = new TimingWheel(10, 4, 0);
+            TestTimeout timeout = new TestTimeout();
+            wheel.schedule(timeout, 250);
+            for (long now = 0; now < 250; now += 10) {
+                assertEquals(0, wheel.advance(now));
+            }
+            assertEquals(1, wheel.advance(250));
+        }
+
+        @Test
+        void passedDeadlineExpiredOnNextTick() {
+            TimingWheel wheel = new TimingWheel(10, 8, 0);
+            wheel.advance(100);
+            TestTimeout timeout = new TestTimeout();
+            wheel.schedule(timeout, 20);
+            assertEquals(1, wheel.advance(110));
+        }
+
+        @Test
+        void scheduledAgainIsMoved() {
+            TimingWheel wheel = new TimingWheel(10, 8, 0);
+            TestTimeout timeout = new TestTimeout();
+            wheel.schedule(timeout, 20);
+            wheel.schedule(timeout, 60);
+            assertEquals(1, wheel.size());
+            assertEquals(0, wheel.advance(50));
+            assertEquals(1, wheel.advance(60));
+        }
+
+        @Test
+        void scheduledAgainFromExpiration() {
+            TimingWheel wheel = new TimingWheel(10, 4, 0);
+            TestTimeout timeout = new TestTimeout();
+            timeout.onExpired = now -> wheel.schedule(timeout, now + 40);
+            wheel.schedule(timeout, 10);
+            assertEquals(1, wheel.advance(10));
+            assertEquals(0, wheel.advance(40));
+            assertEquals(1, wheel.advance(50));
+            assertEquals(List.of(10L, 50L), timeout.expirations);
+        }
+    }
+
+    @Nested
+    class Cancel {
+
+        @Test
+        void happyFlow() {
+            TimingWheel wheel = new TimingWheel(10, 8, 0);
+            TestTimeout first = new TestTimeout();
+            TestTimeout second = new TestTimeout();
+            TestTimeout third = new TestTimeout();
+            wheel.schedule(first, 30);
+            wheel.schedule(second, 30);
+            wheel.schedule(third, 30);
+            wheel.cancel(second);
+            assertEquals(2, wheel.size());
+            assertEquals(2, wheel.advance(30));
+            assertTrue(second.expirations.isEmpty());
+        }
+
+        @Test
+        void notScheduled() {
+            TimingWheel wheel = new TimingWheel(10, 8, 0);
+            wheel.cancel(new TestTimeout());
+            assertEquals(0, wheel.size());
+        }
+
+        @Test
+        void fromExpirationOfAnotherTimeout() {
+            TimingWheel wheel = new TimingWheel(10, 8, 0);
+            TestTimeout first = new TestTimeout();
+            TestTimeout second = new TestTimeout();
+            first.onExpired = now -> wheel.cancel(second);
+            second.onExpired = now -> wheel.cancel(first);
+            wheel.schedule(first, 30);
+            wheel.schedule(second, 30);
+            assertEquals(1, wheel.advance(30));
+            assertEquals(1, first.expirations.size() + second.expirations.size());
+        }
+    }
+
+    private static final class TestTimeout extends TimingWheel.Timeout {
+
+        private final List<Long> expirations = new ArrayList<>();
+
+        private java.util.function.LongConsumer onExpired = now -> {};
+
+        @Override
+        void expired(long now) {
+            this.expirations.add(now);
+            this.onExpired.accept(now);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compare the blocking server using virtual threads with the one using platform threads: connections served, heap and threads used per session, and message round trip latency.
+ * The number of connections is set with the network.comparison.connections system property, the results are logged.
+ *
+ * @author Grégory Van den Borre
+ */
+class BlockingServerComparisonTest {
+
+    private static final System.Logger LOGGER = System.getLogger(BlockingServerComparisonTest.class.getName());
+
+    private static final int CONNECTIONS = Integer.getInteger("network.comparison.connections", 500);
+
+    private static final int ROUND_TRIPS = 2000;
+
+    @Test
+    void virtualThreads() throws Exception {
+        this.run("virtual threads", BlockingServer.virtualThreads());
+    }
+
+    @Test
+    void platformThreads() throws Exception {
+        this.run("platform threads", BlockingServer.platformThreads());
+    }
+
+    private void run(String name, BlockingServer server) throws Exception {
+        EchoSessionManager sessionManager = new EchoSessionManager();
+        server.startServer("localhost", 0, sessionManager, DecoderEncoder.STRING);
+        List<SocketChannel> clients = new ArrayList<>(CONNECTIONS);
+        try {
+            long heapBefore = usedHeap();
+            int threadsBefore = Thread.activeCount();
+            InetSocketAddress address = new InetSocketAddress("localhost", server.getPort());
+            for (int i = 0; i < CONNECTIONS; i++) {
+                SocketChannel client = SocketChannel.open(address);
+                client.write(StandardCharsets.UTF_8.encode("&0_" + (i + 1) + "#"));
+                clients.add(client);
+            }
+            for (SocketChannel client : clients) {
+                assertEquals("&1_ok#", read(client, 6));
+            }
+            assertEquals(CONNECTIONS, server.getConnectionCount());
+            long heapPerSession = (usedHeap() - heapBefore) / CONNECTIONS;
+            int platformThreads = Thread.activeCount() - threadsBefore;
+            long[] latencies = new long[ROUND_TRIPS];
+            for (int i = 0; i < ROUND_TRIPS; i++) {
+                SocketChannel client = clients.get(i % clients.size());
+                long start = System.nanoTime();
+                client.write(StandardCharsets.UTF_8.encode("&5_ping#"));
+                assertEquals("&5_ping#", read(client, 8));
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            LOGGER.log(System.Logger.Level.INFO, "{0}: {1} connections, {2} bytes of heap per session, {3} platform threads added, round trip p50 {4} us, p99 {5} us.",
+                    name, CONNECTIONS, heapPerSession, platformThreads,
+                    latencies[ROUND_TRIPS / 2] / 1000, latencies[ROUND_TRIPS * 99 / 100] / 1000);
+        } finally {
+            for (SocketChannel client : clients) {
+                client.close();
+            }
+            NioServerTest.await(() -> server.getConnectionCount() == 0);
+            server.stop();
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String read(SocketChannel client, int length) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (client.read(buffer) < 0) {
+                break;
+            }
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.protocol.BinaryCodec;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class BlockingServerTest {
+
+    private BlockingServer server;
+
+    private EchoSessionManager sessionManager;
+
+    @AfterEach
+    void stopServer() {
+        if (this.server != null) {
+            this.server.stop();
+        }
+    }
+
+    private Socket givenAConnectedClient(BlockingServer s, DecoderEncoder codec) throws IOException {
+        this.server = s;
+        this.sessionManager = new EchoSessionManager();
+        this.server.startServer("localhost", 0, this.sessionManager, codec);
+        Socket socket = new Socket("localhost", this.server.getPort());
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void invalidBufferSize() {
+            assertThrows(IllegalArgumentException.class, () -> new BlockingServer(Thread.ofVirtual().factory(), 0));
+        }
+
+        @Test
+        void withNullFactory() {
+            assertThrows(NullPointerException.class, () -> new BlockingServer(null, 10));
+        }
+    }
+
+    @Nested
+    class VirtualThreads {
+
+        @Test
+        void happyFlow() throws Exception {
+            try (Socket socket = givenAConnectedClient(BlockingServer.virtualThreads(), DecoderEncoder.STRING)) {
+                socket.getOutputStream().write("&0_42#&5_héllo#".getBytes(StandardCharsets.UTF_8));
+                byte[] expected = "&1_ok#&5_héllo#".getBytes(StandardCharsets.UTF_8);
+                assertEquals("&1_ok#&5_héllo#", new String(NioServerTest.read(socket.getInputStream(), expected.length), StandardCharsets.UTF_8));
+                assertEquals(PlayerId.valueOf(42), sessionManager.getActiveSessions().get(0).getPlayer());
+            }
+        }
+
+        @Test
+        void largeMessage() throws Exception {
+            try (Socket socket = givenAConnectedClient(BlockingServer.virtualThreads(), DecoderEncoder.STRING)) {
+                byte[] message = ("&5_" + "x".repeat(100_000) + "#").getBytes(StandardCharsets.UTF_8);
+                OutputStream out = socket.getOutputStream();
+                out.write("&0_42#".getBytes(StandardCharsets.UTF_8));
+                out.write(message);
+                byte[] received = NioServerTest.read(socket.getInputStream(), 6 + message.length);
+                assertEquals('#', received[received.length - 1]);
+            }
+        }
+
+        @Test
+        void binary() throws Exception {
+            try (Socket socket = givenAConnectedClient(BlockingServer.virtualThreads(), DecoderEncoder.BINARY)) {
+                ByteBuffer auth = BinaryCodec.encode(new NetworkMessage<>("42", EchoSessionManager.MAPPER, 0));
+                ByteBuffer hello = BinaryCodec.encode(new NetworkMessage<>("hello", EchoSessionManager.MAPPER, 5));
+                socket.getOutputStream().write(auth.array(), 0, auth.limit());
+                socket.getOutputStream().write(hello.array(), 0, hello.limit());
+                ByteBuffer ok = BinaryCodec.encode(new NetworkMessage<>("ok", EchoSessionManager.MAPPER, 1));
+                ByteBuffer received = ByteBuffer.wrap(NioServerTest.read(socket.getInputStream(), ok.limit() + hello.limit()));
+                List<String> messages = new ArrayList<>();
+                BinaryCodec.decode(received, (c, p) -> messages.add(BinaryCodec.toWrapper(c, p).message));
+                assertEquals(List.of("1_ok", "5_hello"), messages);
+            }
+        }
+
+        @Test
+        void disconnection() throws Exception {
+            Socket socket = givenAConnectedClient(BlockingServer.virtualThreads(), DecoderEncoder.STRING);
+            socket.getOutputStream().write("&0_42#".getBytes(StandardCharsets.UTF_8));
+            NioServerTest.read(socket.getInputStream(), 6);
+            assertEquals(1, server.getConnectionCount());
+            socket.close();
+            NioServerTest.await(() -> server.getConnectionCount() == 0);
+            assertTrue(sessionManager.getActivePlayers().isEmpty());
+        }
+
+        @Test
+        void serverDisconnection() throws Exception {
+            try (Socket socket = givenAConnectedClient(BlockingServer.virtualThreads(), DecoderEncoder.STRING)) {
+                socket.getOutputStream().write("&0_42#".getBytes(StandardCharsets.UTF_8));
+                NioServerTest.read(socket.getInputStream(), 6);
+                sessionManager.disconnectSession(sessionManager.getSessionByPlayer(PlayerId.valueOf(42)));
+                assertEquals(-1, socket.getInputStream().read());
+                NioServerTest.await(() -> server.getConnectionCount() == 0);
+            }
+        }
+    }
+
+    @Nested
+    class PlatformThreads {
+
+        @Test
+        void happyFlow() throws Exception {
+            try (Socket socket = givenAConnectedClient(BlockingServer.platformThreads(), DecoderEncoder.STRING)) {
+                socket.getOutputStream().write("&0_42#&5_hello#".getBytes(StandardCharsets.UTF_8));
+                assertEquals("&1_ok#&5_hello#", new String(NioServerTest.read(socket.getInputStream(), 15), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Nested
+    class Http {
+
+        @TempDir
+        Path root;
+
+        @Test
+        void pipelined() throws Exception {
+            byte[] content = NioServerTest.givenAFile(this.root);
+            BlockingServer s = new BlockingServer(Thread.ofVirtual().factory(), 1024);
+            s.setFileRoot(this.root);
+            try (Socket socket = givenAConnectedClient(s, DecoderEncoder.HTTP)) {
+                socket.getOutputStream().write(("GET /patch.bin HTTP/1.1\r\nRange: bytes=0-99\r\n\r\n"
+                        + "GET /patch.bin HTTP/1.1\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                InputStream in = socket.getInputStream();
+                assertTrue(NioServerTest.readHttpHeaders(in).startsWith("HTTP/1.1 206 Partial Content\r\n"));
+                assertTrue(Arrays.equals(Arrays.copyOf(content, 100), NioServerTest.read(in, 100)));
+                assertTrue(NioServerTest.readHttpHeaders(in).startsWith("HTTP/1.1 200 OK\r\n"));
+                assertTrue(Arrays.equals(content, NioServerTest.read(in, 4096)));
+                assertEquals(-1, in.read());
+            }
+        }
+    }
+}
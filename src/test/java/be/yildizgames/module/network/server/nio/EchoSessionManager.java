@@ -0,0 +1,83 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.common.mapping.ObjectMapper;
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.protocol.MessageWrapper;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+import be.yildizgames.module.network.server.Session;
+import be.yildizgames.module.network.server.SessionListener;
+import be.yildizgames.module.network.server.SessionManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Session manager authenticating the player id sent in the first message, and sending back every message received.
+ *
+ * @author Grégory Van den Borre
+ */
+class EchoSessionManager extends SessionManager {
+
+    static final ObjectMapper<String> MAPPER = new ObjectMapper<>() {
+        @Override
+        public String from(String s) {
+            return s;
+        }
+
+        @Override
+        public String to(String s) {
+            return s;
+        }
+    };
+
+    final AtomicInteger received = new AtomicInteger();
+
+    EchoSessionManager() {
+        super();
+        this.addSessionListener(new EchoListener());
+    }
+
+    @Override
+    protected void authenticate(Session session, MessageWrapper message) {
+        session.setPlayer(PlayerId.valueOf(Integer.parseInt(message.content)));
+        this.setAuthenticated(session);
+        session.sendMessage(new NetworkMessage<>("ok", MAPPER, 1));
+    }
+
+    @Override
+    public void update() {
+        this.flush();
+    }
+
+    private final class EchoListener implements SessionListener {
+
+        @Override
+        public void messageReceived(Session session, MessageWrapper message) {
+            EchoSessionManager.this.received.incrementAndGet();
+            session.sendMessage(new NetworkMessage<>(message.content, MAPPER, message.command));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Download a large file over loopback with the HTTP codec, logging the throughput and the heap used during the download.
+ * The file size is set with the network.http.benchmark.size system property, in megabytes, 1024 by default, the file is sparse so it does not take any disk space.
+ * Tagged as benchmark, it is only run with the benchmark profile.
+ *
+ * @author Grégory Van den Borre
+ */
+@Tag("benchmark")
+class HttpFileBenchmarkTest {
+
+    private static final System.Logger LOGGER = System.getLogger(HttpFileBenchmarkTest.class.getName());
+
+    private static final long SIZE = Long.getLong("network.http.benchmark.size", 1024) * 1024 * 1024;
+
+    /**
+     * Number of reads between two heap measures.
+     */
+    private static final int HEAP_SAMPLE = 256;
+
+    /**
+     * Maximum heap growth during the download, whatever the file size, the file bytes never being copied on the heap.
+     */
+    private static final long MAX_HEAP_GROWTH = 4L * 1024 * 1024;
+
+    @TempDir
+    Path root;
+
+    @Test
+    void download() throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(this.root.resolve("large.bin").toFile(), "rw")) {
+            file.setLength(SIZE);
+            file.seek(SIZE - 4);
+            file.write(new byte[]{1, 2, 3, 4});
+        }
+        NioServer server = new NioServer(1);
+        server.setFileRoot(this.root);
+        server.startServer("localhost", 0, new EchoSessionManager(), DecoderEncoder.HTTP);
+        try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+            long heapPeak = heapBefore;
+            long begin = System.nanoTime();
+            client.write(StandardCharsets.ISO_8859_1.encode("GET /large.bin HTTP/1.1\r\nConnection: close\r\n\r\n"));
+            long received = 0;
+            int tail = 0;
+            int reads = 0;
+            while (client.read(buffer) >= 0) {
+                received += buffer.position();
+                for (int i = Math.max(0, buffer.position() - 4); i < buffer.position(); i++) {
+                    tail = (tail << 8) | (buffer.get(i) & 0xFF);
+                }
+                buffer.clear();
+                if (++reads % HEAP_SAMPLE == 0) {
+                    heapPeak = Math.max(heapPeak, runtime.totalMemory() - runtime.freeMemory());
+                }
+            }
+            long elapsed = System.nanoTime() - begin;
+            heapPeak = Math.max(heapPeak, runtime.totalMemory() - runtime.freeMemory());
+            assertEquals(0x01020304, tail);
+            assertTrue(received > SIZE);
+            assertTrue(heapPeak - heapBefore < MAX_HEAP_GROWTH, "Heap grew by " + (heapPeak - heapBefore) + " bytes.");
+            LOGGER.log(System.Logger.Level.INFO, "HTTP download of {0} MB: {1} MB/s, heap used before {2} MB, peak {3} MB.",
+                    SIZE >> 20, (SIZE >> 20) * 1_000_000_000L / elapsed, heapBefore >> 20, heapPeak >> 20);
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class HttpFileChannelCodecTest {
+
+    @Nested
+    class Range {
+
+        @Test
+        void noHeader() {
+            assertNull(HttpFileChannelCodec.range(null, 100));
+        }
+
+        @Test
+        void closed() {
+            assertArrayEquals(new long[]{10, 19}, HttpFileChannelCodec.range("bytes=10-19", 100));
+        }
+
+        @Test
+        void open() {
+            assertArrayEquals(new long[]{10, 99}, HttpFileChannelCodec.range("bytes=10-", 100));
+        }
+
+        @Test
+        void endAfterSize() {
+            assertArrayEquals(new long[]{90, 99}, HttpFileChannelCodec.range("bytes=90-500", 100));
+        }
+
+        @Test
+        void suffix() {
+            assertArrayEquals(new long[]{95, 99}, HttpFileChannelCodec.range("bytes=-5", 100));
+            assertArrayEquals(new long[]{0, 99}, HttpFileChannelCodec.range("bytes=-500", 100));
+        }
+
+        @Test
+        void notSatisfiable() {
+            assertEquals(0, HttpFileChannelCodec.range("bytes=100-", 100).length);
+            assertEquals(0, HttpFileChannelCodec.range("bytes=-0", 100).length);
+            assertEquals(0, HttpFileChannelCodec.range("bytes=0-", 0).length);
+        }
+
+        @Test
+        void ignored() {
+            assertNull(HttpFileChannelCodec.range("bytes=0-1,5-6", 100));
+            assertNull(HttpFileChannelCodec.range("bytes=5-1", 100));
+            assertNull(HttpFileChannelCodec.range("bytes=a-b", 100));
+            assertNull(HttpFileChannelCodec.range("bytes=5", 100));
+            assertNull(HttpFileChannelCodec.range("items=0-1", 100));
+        }
+    }
+}
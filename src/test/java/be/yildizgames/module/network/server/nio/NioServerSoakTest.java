@@ -0,0 +1,84 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Open many concurrent loopback connections on a server with two event loops.
+ * The number of connections is set with the network.soak.connections system property, 10000 by default.
+ * The connections are opened by a client process, so the server process only needs one file descriptor per connection.
+ * Tagged as soak, it is only run with the soak profile.
+ *
+ * @author Grégory Van den Borre
+ */
+@Tag("soak")
+class NioServerSoakTest {
+
+    private static final int CONNECTIONS = Integer.getInteger("network.soak.connections", 10000);
+
+    @Test
+    void concurrentConnections() throws Exception {
+        NioServer server = new NioServer(2);
+        EchoSessionManager sessionManager = new EchoSessionManager();
+        server.startServer("localhost", 0, sessionManager, DecoderEncoder.STRING);
+        Process client = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", Path.of(SoakClient.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString(),
+                SoakClient.class.getName(), "localhost", String.valueOf(server.getPort()), String.valueOf(CONNECTIONS))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try {
+            BufferedReader output = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("ready", output.readLine());
+            assertEquals(CONNECTIONS, server.getConnectionCount());
+            assertEquals(CONNECTIONS, sessionManager.getActivePlayers().size());
+            long serverThreads = Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().startsWith("network-")).count();
+            assertTrue(serverThreads <= 3);
+            try (Writer input = client.outputWriter(StandardCharsets.UTF_8)) {
+                input.write("close\n");
+            }
+            assertTrue(client.waitFor(60, TimeUnit.SECONDS));
+            assertEquals(0, client.exitValue());
+        } finally {
+            client.destroy();
+        }
+        NioServerTest.await(() -> server.getConnectionCount() == 0);
+        assertTrue(sessionManager.getActivePlayers().isEmpty());
+        server.stop();
+    }
+}
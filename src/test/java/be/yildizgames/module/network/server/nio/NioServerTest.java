@@ -0,0 +1,642 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.exceptions.NetworkException;
+import be.yildizgames.module.network.protocol.AdmissionNotice;
+import be.yildizgames.module.network.protocol.BinaryCodec;
+import be.yildizgames.module.network.protocol.NetworkMessage;
+import be.yildizgames.module.network.server.AdmissionPolicy;
+import be.yildizgames.module.network.server.OutboundLimits;
+import be.yildizgames.module.network.server.OverflowPolicy;
+import be.yildizgames.module.network.server.RateLimitAction;
+import be.yildizgames.module.network.server.RateLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class NioServerTest {
+
+    private NioServer server;
+
+    private EchoSessionManager sessionManager;
+
+    @AfterEach
+    void stopServer() {
+        if (this.server != null) {
+            this.server.stop();
+        }
+    }
+
+    private Socket givenAConnectedClient(DecoderEncoder codec) throws IOException {
+        this.server = new NioServer(2);
+        this.sessionManager = new EchoSessionManager();
+        this.server.startServer("localhost", 0, this.sessionManager, codec);
+        Socket socket = new Socket("localhost", this.server.getPort());
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    static byte[] read(InputStream in, int length) throws IOException {
+        byte[] result = in.readNBytes(length);
+        assertEquals(length, result.length);
+        return result;
+    }
+
+    static String readHttpHeaders(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        while (!result.toString(StandardCharsets.ISO_8859_1).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            assertTrue(b >= 0, "Connection closed before the end of the headers.");
+            result.write(b);
+        }
+        return result.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    static byte[] givenAFile(Path root) throws IOException {
+        byte[] content = new byte[4096];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        Files.write(root.resolve("patch.bin"), content);
+        Files.createDirectory(root.resolve("dir"));
+        return content;
+    }
+
+    static void await(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < end, "Condition not met in time.");
+            Thread.sleep(5);
+        }
+    }
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void invalidEventLoopCount() {
+            assertThrows(IllegalArgumentException.class, () -> new NioServer(0));
+        }
+    }
+
+    @Nested
+    class Start {
+
+        @Test
+        void portInUse() throws Exception {
+            try (ServerSocketChannel used = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0))) {
+                long threads = eventLoopThreads();
+                server = new NioServer(2);
+                sessionManager = new EchoSessionManager();
+                int port = ((InetSocketAddress) used.getLocalAddress()).getPort();
+                assertThrows(NetworkException.class, () -> server.startServer("localhost", port, sessionManager, DecoderEncoder.STRING));
+                assertEquals(threads, eventLoopThreads());
+                server.stop();
+                server.startServer("localhost", 0, sessionManager, DecoderEncoder.STRING);
+                try (Socket socket = new Socket("localhost", server.getPort())) {
+                    socket.setSoTimeout(10000);
+                    socket.getOutputStream().write("&0_42#".getBytes(StandardCharsets.UTF_8));
+                    assertEquals("&1_ok#", new String(read(socket.getInputStream(), 6), StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        @Test
+        void restartWithSameSessionManager() throws Exception {
+            server = new NioServer(1);
+            sessionManager = new EchoSessionManager();
+            for (int i = 0; i < 3; i++) {
+                server.startServer("localhost", 0, sessionManager, DecoderEncoder.STRING);
+                try (Socket socket = new Socket("localhost", server.getPort())) {
+                    socket.setSoTimeout(10000);
+                    socket.getOutputStream().write(("&0_" + (i + 1) + "#").getBytes(StandardCharsets.UTF_8));
+                    assertEquals("&1_ok#", new String(read(socket.getInputStream(), 6), StandardCharsets.UTF_8));
+                    assertEquals(0, server.getUnauthenticatedCount());
+                }
+                server.stop();
+            }
+        }
+
+        private long eventLoopThreads() {
+            return Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().startsWith("network-event-loop")).count();
+        }
+    }
+
+    @Nested
+    class Text {
+
+        @Test
+        void happyFlow() throws Exception {
+            try (Socket socket = givenAConnectedClient(DecoderEncoder.STRING)) {
+                socket.getOutputStream().write("&0_42#&5_hello#".getBytes(StandardCharsets.UTF_8));
+                assertEquals("&1_ok#&5_hello#", new String(read(socket.getInputStream(), 15), StandardCharsets.UTF_8));
+                assertEquals(PlayerId.valueOf(42), sessionManager.getActiveSessions().get(0).getPlayer());
+            }
+        }
+
+        @Test
+        void messageSplitAcrossReads() throws Exception {
+            try (Socket socket = givenAConnectedClient(DecoderEncoder.STRING)) {
+                OutputStream out = socket.getOutputStream();
+                byte[] bytes = "&0_42#&5_héllo#".getBytes(StandardCharsets.UTF_8);
+                for (byte b : bytes) {
+                    out.write(b);
+                    out.flush();
+                    Thread.sleep(1);
+                }
+                byte[] expected = "&1_ok#&5_héllo#".getBytes(StandardCharsets.UTF_8);
+                assertEquals("&1_ok#&5_héllo#", new String(read(socket.getInputStream(), expected.length), StandardCharsets.UTF_8));
+            }
+        }
+
+        @Test
+        void partialWrites() throws Exception {
+            try (Socket socket = givenAConnectedClient(DecoderEncoder.STRING)) {
+                String payload = "x".repeat(900_000);
+                OutputStream out = socket.getOutputStream();
+                out.write("&0_42#".getBytes(StandardCharsets.UTF_8));
+                read(socket.getInputStream(), 6);
+                byte[] message = ("&5_" + payload + "#").getBytes(StandardCharsets.UTF_8);
+                for (int i = 0; i < 10; i++) {
+                    out.write(message);
+                }
+                await(() -> sessionManager.received.get() == 10);
+                byte[] received = read(socket.getInputStream(), message.length * 10);
+                for (int i = 0; i < 10; i++) {
+                    assertEquals('&', received[i * message.length]);
+                    assertEquals('#', received[(i + 1) * message.length - 1]);
+                }
+            }
+        }
+
+        @Test
+        void disconnection() throws Exception {
+            Socket socket = givenAConnectedClient(DecoderEncoder.STRING);
+            socket.getOutputStream().write("&0_42#".getBytes(StandardCharsets.UTF_8));
+            read(socket.getInputStream(), 6);
+            assertEquals(1, server.getConnectionCount());
+            socket.close();
+            await(() -> server.getConnectionCount() == 0);
+            await(() -> sessionManager.getActivePlayers().isEmpty());
+        }
+
+        @Test
+        void invalidMessageClosesConnection() throws Exception {
+            try (Socket socket = givenAConnectedClient(DecoderEncoder.STRING)) {
+                socket.getOutputStream().write("&abc_42#".getBytes(StandardCharsets.UTF_8));
+                assertEquals(-1, socket.getInputStream().read());
+            }
+        }
+
+        @Test
+        void serverDisconnection() throws Exception {
+            try (Socket socket = givenAConnectedClient(DecoderEncoder.STRING)) {
+                socket.getOutputStream().write("&0_42#".getBytes(StandardCharsets.UTF_8));
+                read(socket.getInputStream(), 6);
+                sessionManager.disconnectSession(sessionManager.getSessionByPlayer(PlayerId.valueOf(42)));
+                assertEquals(-1, socket.getInputStream().read());
+                await(() -> server.getConnectionCount() == 0);
+            }
+        }
+    }
+
+    @Nested
+    class Outbound {
+
+        @Test
+        void slowClientDisconnected() throws Exception {
+            server = new NioServer(2);
+            sessionManager = new EchoSessionManager();
+            server.setOutboundLimits(new OutboundLimits(64_000, 128_000, 256_000, OverflowPolicy.DISCONNECT));
+            server.startServer("localhost", 0, sessionManager, DecoderEncoder.STRING);
+            try (Socket socket = new Socket()) {
+                socket.setReceiveBufferSize(4096);
+                socket.connect(new InetSocketAddress("localhost", server.getPort()));
+                OutputStream out = socket.getOutputStream();
+                out.write("&0_42#".getBytes(StandardCharsets.UTF_8));
+                await(() -> sessionManager.getActivePlayers().size() == 1);
+                byte[] message = ("&5_" + "x".repeat(100_000) + "#").getBytes(StandardCharsets.UTF_8);
+                try {
+                    for (int i = 0; i < 200 && !sessionManager.getActivePlayers().isEmpty(); i++) {
+                        out.write(message);
+                    }
+                } catch (IOException e) {
+                    //connection closed by the server while writing
+                }
+                await(() -> sessionManager.getActivePlayers().isEmpty());
+                await(() -> server.getConnectionCount() == 0);
+            }
+        }
+    }
+
+    @Nested
+    class RateLimit {
+
+        @Test
+        void floodingClientDisconnected() throws Exception {
+            server = new NioServer(2);
+            sessionManager = new EchoSessionManager();
+            RateLimiter limiter = new RateLimiter(10, 10, RateLimitAction.DISCONNECT);
+            server.setRateLimiter(limiter);
+            server.startServer("localhost", 0, sessionManager, DecoderEncoder.STRING);
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                socket.setSoTimeout(10000);
+                socket.getOutputStream().write(("&0_42#" + "&5_a#".repeat(20)).getBytes(StandardCharsets.UTF_8));
+                InputStream in = socket.getInputStream();
+                while (in.read() != -1) {
+                    //read until closed by the server.
+                }
+                await(() -> server.getConnectionCount() == 0);
+                await(() -> sessionManager.getActivePlayers().isEmpty());
+                assertEquals(9, sessionManager.received.get());
+                assertEquals(1, limiter.getLimitedCount(5));
+            }
+        }
+
+        @Test
+        void floodingClientDelayed() throws Exception {
+            server = new NioServer(1);
+            sessionManager = new EchoSessionManager();
+            server.setRateLimiter(new RateLimiter(5, 200, RateLimitAction.DELAY).withCost(0, 0));
+            server.startServer("localhost", 0, sessionManager, DecoderEncoder.STRING);
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                socket.setSoTimeout(10000);
+                OutputStream out = socket.getOutputStream();
+                out.write("&0_42#".getBytes(StandardCharsets.UTF_8));
+                read(socket.getInputStream(), 6);
+                for (int i = 0; i < 10; i++) {
+                    out.write("&5_a#".repeat(10).getBytes(StandardCharsets.UTF_8));
+                }
+                await(() -> sessionManager.received.get() == 100);
+                read(socket.getInputStream(), 500);
+                assertTrue(sessionManager.getSessionByPlayer(PlayerId.valueOf(42)).getRateLimitedCount() > 0);
+                assertTrue(socket.isConnected());
+            }
+        }
+    }
+
+    @Nested
+    class Admission {
+
+        private static final String QUEUED = "&" + AdmissionNotice.QUEUED + "_";
+
+        private static final String RETRY_AFTER = "&" + AdmissionNotice.RETRY_AFTER + "_";
+
+        private Socket givenAServerWithPolicy(AdmissionPolicy policy) throws IOException {
+            server = new NioServer(2);
+            sessionManager = new EchoSessionManager();
+            server.setAdmissionPolicy(policy);
+            server.startServer("localhost", 0, sessionManager, DecoderEncoder.STRING);
+            return connect();
+        }
+
+        private Socket connect() throws IOException {
+            Socket socket = new Socket("localhost", server.getPort());
+            socket.setSoTimeout(10000);
+            return socket;
+        }
+
+        @Test
+        void queuedUntilAuthenticated() throws Exception {
+            try (Socket first = givenAServerWithPolicy(new AdmissionPolicy(1).withQueue(10, 1000))) {
+                await(() -> server.getUnauthenticatedCount() == 1);
+                try (Socket second = connect()) {
+                    assertEquals(QUEUED + "1#", readUntil(second.getInputStream(), "#"));
+                    assertEquals(1, server.getPendingConnectionCount());
+                    second.getOutputStream().write("&0_43#".getBytes(StandardCharsets.UTF_8));
+                    first.getOutputStream().write("&0_42#".getBytes(StandardCharsets.UTF_8));
+                    assertEquals("&1_ok#", readUntil(first.getInputStream(), "#"));
+                    assertTrue(readUntil(second.getInputStream(), "&1_ok#").endsWith("&1_ok#"));
+                    await(() -> sessionManager.getActivePlayers().size() == 2);
+                    assertEquals(0, server.getPendingConnectionCount());
+                    assertEquals(0, server.getUnauthenticatedCount());
+                }
+            }
+        }
+
+        @Test
+        void queueFullRefused() throws Exception {
+            try (Socket first = givenAServerWithPolicy(new AdmissionPolicy(1).withRetryAfter(500))) {
+                await(() -> server.getUnauthenticatedCount() == 1);
+                try (Socket second = connect()) {
+                    String notice = readUntil(second.getInputStream(), "#");
+                    assertTrue(notice.startsWith(RETRY_AFTER));
+                    long delay = Long.parseLong(notice.substring(RETRY_AFTER.length(), notice.length() - 1));
+                    assertTrue(delay >= 500 && delay < 1000);
+                    assertEquals(-1, second.getInputStream().read());
+                    assertEquals(1, server.getRefusedConnectionCount());
+                }
+            }
+        }
+
+        @Test
+        void closedConnectionNoLongerCounted() throws Exception {
+            Socket first = givenAServerWithPolicy(new AdmissionPolicy(1));
+            await(() -> server.getUnauthenticatedCount() == 1);
+            first.close();
+            await(() -> server.getUnauthenticatedCount() == 0);
+            try (Socket second = connect()) {
+                second.getOutputStream().write("&0_42#".getBytes(StandardCharsets.UTF_8));
+                assertEquals("&1_ok#", readUntil(second.getInputStream(), "#"));
+            }
+        }
+
+        @Test
+        void addressRateExceededRefused() throws Exception {
+            try (Socket first = givenAServerWithPolicy(new AdmissionPolicy(100).withAddressRate(2, 1).withRetryAfter(10));
+                 Socket second = connect();
+                 Socket third = connect()) {
+                String notice = readUntil(third.getInputStream(), "#");
+                assertTrue(notice.startsWith(RETRY_AFTER));
+                assertTrue(Long.parseLong(notice.substring(RETRY_AFTER.length(), notice.length() - 1)) > 10);
+                assertEquals(1, server.getRefusedConnectionCount());
+                await(() -> server.getUnauthenticatedCount() == 2);
+            }
+        }
+
+        /**
+         * Read the text received until it ends with a suffix.
+         */
+        private String readUntil(InputStream in, String suffix) throws IOException {
+            StringBuilder result = new StringBuilder();
+            while (result.length() < suffix.length() || !result.toString().endsWith(suffix)) {
+                int b = in.read();
+                assertTrue(b != -1, "Connection closed after " + result);
+                result.append((char) b);
+            }
+            return result.toString();
+        }
+    }
+
+    @Nested
+    class Binary {
+
+        @Test
+        void happyFlow() throws Exception {
+            try (Socket socket = givenAConnectedClient(DecoderEncoder.BINARY)) {
+                OutputStream out = socket.getOutputStream();
+                ByteBuffer auth = BinaryCodec.encode(new NetworkMessage<>("42", EchoSessionManager.MAPPER, 0));
+                ByteBuffer hello = BinaryCodec.encode(new NetworkMessage<>("hello", EchoSessionManager.MAPPER, 5));
+                out.write(auth.array(), 0, auth.limit());
+                out.write(hello.array(), 0, 3);
+                out.flush();
+                Thread.sleep(20);
+                out.write(hello.array(), 3, hello.limit() - 3);
+                ByteBuffer ok = BinaryCodec.encode(new NetworkMessage<>("ok", EchoSessionManager.MAPPER, 1));
+                ByteBuffer received = ByteBuffer.wrap(read(socket.getInputStream(), ok.limit() + hello.limit()));
+                List<String> messages = new ArrayList<>();
+                BinaryCodec.decode(received, (c, p) -> messages.add(BinaryCodec.toWrapper(c, p).message));
+                assertEquals(List.of("1_ok", "5_hello"), messages);
+            }
+        }
+    }
+
+    @Nested
+    class WebSocket {
+
+        @Test
+        void happyFlow() throws Exception {
+            try (Socket socket = givenAConnectedClient(DecoderEncoder.WEBSOCKET)) {
+                OutputStream out = socket.getOutputStream();
+                InputStream in = socket.getInputStream();
+                out.write(("GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                        + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                String response = readHandshake(in);
+                assertTrue(response.startsWith("HTTP/1.1 101"));
+                assertTrue(response.contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo="));
+                out.write(maskedFrame(0x01, "&0_4"));
+                out.write(maskedFrame(0x80, "2#&5_hello#"));
+                assertEquals("&1_ok#", readFrame(in));
+                assertEquals("&5_hello#", readFrame(in));
+                out.write(maskedFrame(0x89, "p"));
+                byte[] pong = read(in, 3);
+                assertEquals((byte) 0x8A, pong[0]);
+                out.write(maskedFrame(0x88, ""));
+                assertEquals((byte) 0x88, read(in, 2)[0]);
+                assertEquals(-1, in.read());
+            }
+        }
+
+        @Test
+        void missingKey() throws Exception {
+            try (Socket socket = givenAConnectedClient(DecoderEncoder.WEBSOCKET)) {
+                socket.getOutputStream().write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                assertEquals(-1, socket.getInputStream().read());
+            }
+        }
+
+        private String readHandshake(InputStream in) throws IOException {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            while (!result.toString(StandardCharsets.ISO_8859_1).endsWith("\r\n\r\n")) {
+                result.write(in.read());
+            }
+            return result.toString(StandardCharsets.ISO_8859_1);
+        }
+
+        private String readFrame(InputStream in) throws IOException {
+            byte[] header = read(in, 2);
+            assertEquals((byte) 0x81, header[0]);
+            return new String(read(in, header[1]), StandardCharsets.UTF_8);
+        }
+
+        private byte[] maskedFrame(int first, String text) {
+            byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+            byte[] mask = {1, 2, 3, 4};
+            byte[] frame = new byte[6 + payload.length];
+            frame[0] = (byte) first;
+            frame[1] = (byte) (0x80 | payload.length);
+            System.arraycopy(mask, 0, frame, 2, 4);
+            for (int i = 0; i < payload.length; i++) {
+                frame[6 + i] = (byte) (payload[i] ^ mask[i & 3]);
+            }
+            return frame;
+        }
+    }
+
+    @Nested
+    class Http {
+
+        @TempDir
+        Path root;
+
+        private byte[] content;
+
+        private Socket givenAFileServer() throws IOException {
+            this.content = givenAFile(this.root);
+            server = new NioServer(2);
+            server.setFileRoot(this.root);
+            sessionManager = new EchoSessionManager();
+            server.startServer("localhost", 0, sessionManager, DecoderEncoder.HTTP);
+            Socket socket = new Socket("localhost", server.getPort());
+            socket.setSoTimeout(10000);
+            return socket;
+        }
+
+        private void request(Socket socket, String request) throws IOException {
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        @Test
+        void wholeFile() throws Exception {
+            try (Socket socket = givenAFileServer()) {
+                request(socket, "GET /patch.bin HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                String headers = readHttpHeaders(socket.getInputStream());
+                assertTrue(headers.startsWith("HTTP/1.1 200 OK\r\n"));
+                assertTrue(headers.contains("Content-Length: 4096\r\n"));
+                assertTrue(headers.contains("Accept-Ranges: bytes\r\n"));
+                assertTrue(Arrays.equals(this.content, read(socket.getInputStream(), 4096)));
+            }
+        }
+
+        @Test
+        void range() throws Exception {
+            try (Socket socket = givenAFileServer()) {
+                request(socket, "GET /patch.bin HTTP/1.1\r\nRange: bytes=1000-1999\r\n\r\n");
+                String headers = readHttpHeaders(socket.getInputStream());
+                assertTrue(headers.startsWith("HTTP/1.1 206 Partial Content\r\n"));
+                assertTrue(headers.contains("Content-Range: bytes 1000-1999/4096\r\n"));
+                assertTrue(headers.contains("Content-Length: 1000\r\n"));
+                assertTrue(Arrays.equals(Arrays.copyOfRange(this.content, 1000, 2000), read(socket.getInputStream(), 1000)));
+            }
+        }
+
+        @Test
+        void resume() throws Exception {
+            try (Socket socket = givenAFileServer()) {
+                request(socket, "GET /patch.bin HTTP/1.1\r\nRange: bytes=4000-\r\n\r\n");
+                assertTrue(readHttpHeaders(socket.getInputStream()).contains("Content-Range: bytes 4000-4095/4096\r\n"));
+                assertTrue(Arrays.equals(Arrays.copyOfRange(this.content, 4000, 4096), read(socket.getInputStream(), 96)));
+            }
+        }
+
+        @Test
+        void notSatisfiable() throws Exception {
+            try (Socket socket = givenAFileServer()) {
+                request(socket, "GET /patch.bin HTTP/1.1\r\nRange: bytes=4096-\r\n\r\n");
+                String headers = readHttpHeaders(socket.getInputStream());
+                assertTrue(headers.startsWith("HTTP/1.1 416 Range Not Satisfiable\r\n"));
+                assertTrue(headers.contains("Content-Range: bytes */4096\r\n"));
+            }
+        }
+
+        @Test
+        void notFound() throws Exception {
+            try (Socket socket = givenAFileServer()) {
+                request(socket, "GET /missing.bin HTTP/1.1\r\n\r\nGET /dir HTTP/1.1\r\n\r\nGET /dir/../../patch.bin HTTP/1.1\r\n\r\nGET /%2e%2e/patch.bin HTTP/1.1\r\n\r\n");
+                for (int i = 0; i < 4; i++) {
+                    assertTrue(readHttpHeaders(socket.getInputStream()).startsWith("HTTP/1.1 404 Not Found\r\n"));
+                }
+            }
+        }
+
+        @Test
+        void methodNotAllowed() throws Exception {
+            try (Socket socket = givenAFileServer()) {
+                request(socket, "POST /patch.bin HTTP/1.1\r\nContent-Length: 0\r\n\r\n");
+                String headers = readHttpHeaders(socket.getInputStream());
+                assertTrue(headers.startsWith("HTTP/1.1 405 Method Not Allowed\r\n"));
+                assertTrue(headers.contains("Allow: GET, HEAD\r\n"));
+            }
+        }
+
+        @Test
+        void head() throws Exception {
+            try (Socket socket = givenAFileServer()) {
+                request(socket, "HEAD /patch.bin HTTP/1.1\r\n\r\nGET /patch.bin HTTP/1.1\r\nRange: bytes=-10\r\n\r\n");
+                String headers = readHttpHeaders(socket.getInputStream());
+                assertTrue(headers.startsWith("HTTP/1.1 200 OK\r\n"));
+                assertTrue(headers.contains("Content-Length: 4096\r\n"));
+                assertTrue(readHttpHeaders(socket.getInputStream()).contains("Content-Range: bytes 4086-4095/4096\r\n"));
+                assertTrue(Arrays.equals(Arrays.copyOfRange(this.content, 4086, 4096), read(socket.getInputStream(), 10)));
+            }
+        }
+
+        @Test
+        void pipelined() throws Exception {
+            try (Socket socket = givenAFileServer()) {
+                request(socket, "GET /patch.bin HTTP/1.1\r\n\r\nGET /patch.bin HTTP/1.1\r\nConnection: close\r\n\r\nGET /patch.bin HTTP/1.1\r\n\r\n");
+                InputStream in = socket.getInputStream();
+                assertTrue(readHttpHeaders(in).startsWith("HTTP/1.1 200 OK\r\n"));
+                assertTrue(Arrays.equals(this.content, read(in, 4096)));
+                assertTrue(readHttpHeaders(in).contains("Connection: close\r\n"));
+                assertTrue(Arrays.equals(this.content, read(in, 4096)));
+                assertEquals(-1, in.read());
+            }
+            await(() -> server.getConnectionCount() == 0);
+            assertTrue(sessionManager.getActivePlayers().isEmpty());
+        }
+
+        @Test
+        void http10() throws Exception {
+            try (Socket socket = givenAFileServer()) {
+                request(socket, "GET /patch.bin HTTP/1.0\r\n\r\n");
+                assertTrue(readHttpHeaders(socket.getInputStream()).contains("Connection: close\r\n"));
+                assertTrue(Arrays.equals(this.content, read(socket.getInputStream(), 4096)));
+                assertEquals(-1, socket.getInputStream().read());
+            }
+        }
+
+        @Test
+        void invalidRoot() {
+            NioServer s = new NioServer(1);
+            assertThrows(IllegalArgumentException.class, () -> s.setFileRoot(this.root.resolve("missing")));
+        }
+
+        @Test
+        void withoutRoot() throws Exception {
+            try (Socket socket = givenAConnectedClient(DecoderEncoder.HTTP)) {
+                socket.getOutputStream().write("&0_42#&5_hello#".getBytes(StandardCharsets.UTF_8));
+                assertEquals("&1_ok#&5_hello#", new String(read(socket.getInputStream(), 15), StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.server.nio;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client side of the soak test, run in its own process so the client and the server connections do not share the file descriptor limit.
+ * Open the connections, authenticate and ping them, print ready and keep them open until a line is read on the standard input.
+ *
+ * @author Grégory Van den Borre
+ */
+final class SoakClient {
+
+    private SoakClient() {
+        super();
+    }
+
+    /**
+     * @param args Host, port and number of connections.
+     * @throws IOException If a connection fails.
+     */
+    public static void main(final String[] args) throws IOException {
+        final InetSocketAddress address = new InetSocketAddress(args[0], Integer.parseInt(args[1]));
+        final int connections = Integer.parseInt(args[2]);
+        final List<SocketChannel> clients = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                final SocketChannel client = SocketChannel.open(address);
+                client.write(StandardCharsets.UTF_8.encode("&0_" + (i + 1) + "#"));
+                clients.add(client);
+            }
+            for (SocketChannel client : clients) {
+                expect(client, "&1_ok#");
+                client.write(StandardCharsets.UTF_8.encode("&5_ping#"));
+            }
+            for (SocketChannel client : clients) {
+                expect(client, "&5_ping#");
+            }
+            System.out.println("ready");
+            System.out.flush();
+            new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).readLine();
+        } finally {
+            for (SocketChannel client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    private static void expect(final SocketChannel client, final String expected) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(expected.length());
+        while (buffer.hasRemaining()) {
+            if (client.read(buffer) < 0) {
+                break;
+            }
+        }
+        final String received = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        if (!expected.equals(received)) {
+            throw new IOException("Expected " + expected + " but received " + received);
+        }
+    }
+}